@@ -0,0 +1,31 @@
+package com.github.mstepan.demo_ai.bench;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.lang.NonNull;
+
+import java.util.List;
+
+/**
+ * {@link ChatModel} that answers every prompt with the same text, so benchmarks measure only the
+ * local request path (prompt rendering, advisors, output conversion, metrics) and not OCI.
+ */
+public final class StubChatModel implements ChatModel {
+
+    private final String answer;
+
+    public StubChatModel(String answer) {
+        this.answer = answer;
+    }
+
+    @Override
+    @NonNull
+    public ChatResponse call(@NonNull Prompt prompt) {
+        return ChatResponse.builder()
+                .generations(List.of(new Generation(new AssistantMessage(answer))))
+                .build();
+    }
+}
@@ -0,0 +1,118 @@
+package com.github.mstepan.demo_ai.evaluators;
+
+import com.github.mstepan.demo_ai.bench.StubChatModel;
+import com.github.mstepan.demo_ai.domain.EvaluationResult;
+import com.github.mstepan.demo_ai.embedding.HashingEmbedder;
+import com.github.mstepan.demo_ai.prompts.PromptProperties;
+import com.github.mstepan.demo_ai.prompts.PromptTemplateRegistry;
+import com.github.mstepan.demo_ai.rag.DocumentIngestor;
+import com.github.mstepan.demo_ai.rag.DocumentRetriever;
+import com.github.mstepan.demo_ai.rag.InMemoryDocumentStore;
+import com.github.mstepan.demo_ai.rag.RagProperties;
+import com.github.mstepan.demo_ai.rag.TextChunker;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.evaluation.EvaluationRequest;
+import org.springframework.ai.evaluation.EvaluationResponse;
+import org.springframework.ai.evaluation.Evaluator;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local cost of both LLM-as-judge evaluators (prompt rendering, structured output conversion, and
+ * document retrieval of the facts evaluator) with the model call stubbed out.
+ *
+ * <p>{@link #relevancyClientPerCall} is the previous design, building a ChatClient and binding the
+ * system prompt on every evaluation, as a baseline for the pre-built client of {@link
+ * LlmJudgeEvaluator}. Compare 'gc.alloc.rate.norm' of both (the 'jmh' profile runs '-prof gc').
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EvaluatorsBenchmark {
+
+    private ChatClient.Builder judge;
+    private PromptTemplateRegistry prompts;
+
+    private Evaluator relevancyEvaluator;
+    private Evaluator factsEvaluator;
+
+    private EvaluationRequest relevancyRequest;
+    private EvaluationRequest factsRequest;
+
+    @Setup
+    public void setUp() {
+        judge = ChatClient.builder(new StubChatModel("{\"relevant\": true}"));
+        prompts = new PromptTemplateRegistry(new PromptProperties(null), new SimpleMeterRegistry());
+
+        relevancyEvaluator = new OCIGenAIRelevancyEvaluator(judge, prompts);
+        var embedder = new HashingEmbedder(384);
+        var store = new InMemoryDocumentStore(1024);
+        new DocumentIngestor(
+                        new TextChunker(1200, 200), 64, embedder, store, new SimpleMeterRegistry())
+                .ingest(
+                        "pirate-names",
+                        """
+                        Here are few pirate names:
+                            1. Blackbeak Betty "The Buccaneer"
+                            2.*Captain Krael "The Kraken"
+                            3. Bartholomew "Blackheart" Blake
+                            4. Calico "The Corsair" Jack
+                            5. Mad Dog McSweeney "The Scourge"
+                        """);
+        var retriever =
+                new DocumentRetriever(
+                        true,
+                        new RagProperties.Retrieval(
+                                4, 0.0, 6000, new RagProperties.Hybrid(true, 20, 60, 0.3)),
+                        embedder,
+                        store,
+                        new SimpleMeterRegistry());
+        factsEvaluator = new OCIGenAIFactsEvaluator(judge, prompts, retriever);
+
+        relevancyRequest =
+                new EvaluationRequest("What is the capital of France?", "The capital is Paris.");
+        factsRequest = new EvaluationRequest("Captain Krael is a pirate", "");
+    }
+
+    @Benchmark
+    public EvaluationResponse relevancy() {
+        return relevancyEvaluator.evaluate(relevancyRequest);
+    }
+
+    @Benchmark
+    public EvaluationResult relevancyClientPerCall() {
+        return judge.build()
+                .prompt()
+                .system(prompts.get(OCIGenAIRelevancyEvaluator.SYSTEM_PROMPT).text())
+                .user(
+                        prompts.get(OCIGenAIRelevancyEvaluator.USER_PROMPT)
+                                .render(
+                                        "question",
+                                        relevancyRequest.getUserText(),
+                                        "answer",
+                                        relevancyRequest.getResponseContent()))
+                .call()
+                .entity(EvaluationResult.class);
+    }
+
+    @Benchmark
+    public EvaluationResponse facts() {
+        return factsEvaluator.evaluate(factsRequest);
+    }
+}
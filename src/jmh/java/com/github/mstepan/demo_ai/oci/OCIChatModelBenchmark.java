@@ -0,0 +1,211 @@
+package com.github.mstepan.demo_ai.oci;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import com.oracle.bmc.generativeaiinference.GenerativeAiInferenceClient;
+import com.oracle.bmc.generativeaiinference.model.AssistantMessage;
+import com.oracle.bmc.generativeaiinference.model.ChatChoice;
+import com.oracle.bmc.generativeaiinference.model.ChatContent;
+import com.oracle.bmc.generativeaiinference.model.ChatDetails;
+import com.oracle.bmc.generativeaiinference.model.ChatResult;
+import com.oracle.bmc.generativeaiinference.model.GenericChatRequest;
+import com.oracle.bmc.generativeaiinference.model.GenericChatResponse;
+import com.oracle.bmc.generativeaiinference.model.OnDemandServingMode;
+import com.oracle.bmc.generativeaiinference.model.SystemMessage;
+import com.oracle.bmc.generativeaiinference.model.TextContent;
+import com.oracle.bmc.generativeaiinference.model.UserMessage;
+import com.oracle.bmc.generativeaiinference.requests.ChatRequest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OCI adapter hot path with the SDK client stubbed out: {@link OCIChatModel#call} (pool lease,
+ * request building, response mapping) and {@link OCILogService#buildLoggableRequest}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OCIChatModelBenchmark {
+
+    private static final String SYSTEM_PROMPT = "You are a helpful, reliable chat assistant.";
+    private static final String USER_PROMPT =
+            "Answer the following question clearly and concisely: What is the capital of France?";
+
+    private OCIGenAiClientPool clientPool;
+    private OCIChatModel chatModel;
+    private OCILogService logService;
+
+    private Prompt prompt;
+    private ChatDetails chatDetails;
+
+    @Setup
+    public void setUp() {
+        OCIGenAiProperties properties =
+                new OCIGenAiProperties(
+                        "http://localhost:8080",
+                        "DEFAULT",
+                        "ocid1.compartment.oc1..aaaaaaaabenchmark",
+                        "meta.llama-4-maverick-17b-128e-instruct-fp8",
+                        0.7,
+                        2048,
+                        Duration.ofSeconds(10),
+                        Duration.ofSeconds(60),
+                        new OCIGenAiProperties.Pool(
+                                16, Duration.ofSeconds(5), Duration.ofMinutes(15)),
+                        new OCIGenAiProperties.Embedding(
+                                "cohere.embed-multilingual-v3.0", 1024, 96),
+                        new OCIGenAiProperties.Limiter(
+                                true,
+                                8,
+                                1,
+                                16,
+                                0.9,
+                                Duration.ofSeconds(30),
+                                128,
+                                Duration.ofSeconds(1)),
+                        new OCIGenAiProperties.Retry(
+                                3,
+                                Duration.ofMillis(200),
+                                2.0,
+                                Duration.ofSeconds(2),
+                                Duration.ofSeconds(20)),
+                        new OCIGenAiProperties.CircuitBreaker(
+                                true, 20, 10, 0.5, Duration.ofSeconds(30), 2),
+                        new OCIGenAiProperties.Routing(List.of(), Duration.ofSeconds(10)));
+
+        // stubOnly: don't record invocations, they would pile up over millions of calls
+        GenerativeAiInferenceClient client =
+                mock(GenerativeAiInferenceClient.class, withSettings().stubOnly());
+        when(client.chat(any(ChatRequest.class))).thenReturn(ociResponse());
+
+        clientPool =
+                new OCIGenAiClientPool(
+                        () -> client, properties.pool(), "test", new SimpleMeterRegistry());
+        var router =
+                new OCIGenAiRouter(
+                        List.of(
+                                new OCIGenAiRouter.Endpoint(
+                                        "test",
+                                        clientPool,
+                                        new OCICircuitBreaker(
+                                                properties.circuitBreaker(),
+                                                "test",
+                                                new SimpleMeterRegistry()))),
+                        properties.routing().decayTime(),
+                        properties.readTimeout(),
+                        new SimpleMeterRegistry());
+        logService = new OCILogService();
+        // streaming isn't benchmarked here
+        chatModel =
+                new OCIChatModel(
+                        router,
+                        new AdaptiveConcurrencyLimiter(
+                                properties.limiter(), new SimpleMeterRegistry()),
+                        GenAiClientFactoryFactory.newRetryTemplate(
+                                properties.retry(), new SimpleMeterRegistry()),
+                        logService,
+                        properties,
+                        null);
+
+        prompt =
+                new Prompt(
+                        List.of(
+                                new org.springframework.ai.chat.messages.SystemMessage(
+                                        SYSTEM_PROMPT),
+                                new org.springframework.ai.chat.messages.UserMessage(
+                                        USER_PROMPT)));
+
+        chatDetails =
+                ChatDetails.builder()
+                        .compartmentId(properties.compartment())
+                        .servingMode(
+                                OnDemandServingMode.builder().modelId(properties.model()).build())
+                        .chatRequest(
+                                GenericChatRequest.builder()
+                                        .messages(
+                                                List.of(
+                                                        SystemMessage.builder()
+                                                                .content(text(SYSTEM_PROMPT))
+                                                                .build(),
+                                                        UserMessage.builder()
+                                                                .content(text(USER_PROMPT))
+                                                                .build()))
+                                        .temperature(properties.temperature())
+                                        .maxTokens(properties.maxTokens())
+                                        .isEcho(false)
+                                        .isStream(false)
+                                        .build())
+                        .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        clientPool.close();
+    }
+
+    @Benchmark
+    public ChatResponse call() {
+        return chatModel.call(prompt);
+    }
+
+    @Benchmark
+    public Object buildLoggableRequest() {
+        return logService.buildLoggableRequest(chatDetails);
+    }
+
+    private static com.oracle.bmc.generativeaiinference.responses.ChatResponse ociResponse() {
+        ChatChoice choice =
+                ChatChoice.builder()
+                        .index(0)
+                        .finishReason("STOP")
+                        .message(
+                                AssistantMessage.builder()
+                                        .content(text("The capital of France is Paris."))
+                                        .build())
+                        .build();
+
+        GenericChatResponse genericResponse =
+                GenericChatResponse.builder()
+                        .timeCreated(new Date())
+                        .choices(List.of(choice))
+                        .build();
+
+        return com.oracle.bmc.generativeaiinference.responses.ChatResponse.builder()
+                .chatResult(
+                        ChatResult.builder()
+                                .modelId("meta.llama-4-maverick-17b-128e-instruct-fp8")
+                                .modelVersion("1.0.0")
+                                .chatResponse(genericResponse)
+                                .build())
+                .build();
+    }
+
+    private static List<ChatContent> text(String text) {
+        return List.of(TextContent.builder().text(text).build());
+    }
+}
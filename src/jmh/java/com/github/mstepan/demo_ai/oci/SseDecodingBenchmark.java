@@ -0,0 +1,127 @@
+package com.github.mstepan.demo_ai.oci;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of a whole OCI GenAI chat event stream: the previous line-reader + {@code Map} tree path
+ * against {@link SseEventDecoder} + {@link TextDeltaExtractor}.
+ *
+ * <p>Run with the GC profiler to compare allocation rates (gc.alloc.rate.norm is bytes per
+ * stream):
+ *
+ * <pre>
+ * ./mvnw -Pjmh test-compile exec:exec -Djmh.includes=SseDecodingBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SseDecodingBenchmark {
+
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+
+    /** Number of token events in one stream. */
+    @Param({"500"})
+    private int events;
+
+    private byte[] stream;
+
+    @Setup
+    public void setUp() {
+        StringBuilder sse = new StringBuilder();
+        for (int i = 0; i < events; ++i) {
+            sse.append("data: {\"index\":0,\"message\":{\"role\":\"ASSISTANT\",\"content\":")
+                    .append("[{\"type\":\"TEXT\",\"text\":\" token")
+                    .append(i)
+                    .append("\"}]},\"pad\":\"aaaaaaaaaaaaaaaa\"}\n\n");
+        }
+        sse.append("data: {\"message\":{\"role\":\"ASSISTANT\"},\"finishReason\":\"STOP\"}\n\n");
+        sse.append("data: [DONE]\n\n");
+        stream = sse.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public void streamingDecoder(Blackhole bh) throws IOException {
+        SseEventDecoder decoder = new SseEventDecoder(new ByteArrayInputStream(stream));
+        while (decoder.next()) {
+            if (decoder.isDone()) {
+                break;
+            }
+            bh.consume(TextDeltaExtractor.extract(decoder.data(), 0, decoder.dataLength()));
+        }
+    }
+
+    /** The decoding path OCIGenAiStreamingSinkFactory used before, kept as the baseline. */
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public void readerAndMapTree(Blackhole bh) throws IOException {
+        try (BufferedReader reader =
+                new BufferedReader(
+                        new InputStreamReader(
+                                new ByteArrayInputStream(stream), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith(":")) {
+                    continue;
+                }
+                if (line.startsWith("data:")) {
+                    String data = line.substring("data:".length()).trim();
+                    if ("[DONE]".equalsIgnoreCase(data)) {
+                        break;
+                    }
+                    Map<String, Object> event = JSON_MAPPER.readValue(data, Map.class);
+                    Object text = findFirstText(event);
+                    bh.consume(text instanceof String s ? s : null);
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object findFirstText(Object node) {
+        if (node instanceof Map) {
+            for (var entry : ((Map<String, Object>) node).entrySet()) {
+                if ("text".equalsIgnoreCase(entry.getKey()) && entry.getValue() instanceof String) {
+                    return entry.getValue();
+                }
+                Object nested = findFirstText(entry.getValue());
+                if (nested != null) {
+                    return nested;
+                }
+            }
+        } else if (node instanceof List) {
+            for (Object item : (List<?>) node) {
+                Object nested = findFirstText(item);
+                if (nested != null) {
+                    return nested;
+                }
+            }
+        }
+        return null;
+    }
+}
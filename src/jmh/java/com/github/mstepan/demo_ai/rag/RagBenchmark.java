@@ -0,0 +1,126 @@
+package com.github.mstepan.demo_ai.rag;
+
+import com.github.mstepan.demo_ai.embedding.HashingEmbedder;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ingestion throughput and retrieval latency of the knowledge base with the in-process {@link
+ * InMemoryDocumentStore} and the local {@link HashingEmbedder}, i.e. the cost of chunking,
+ * indexing and searching without the embedding round trip to OCI.
+ *
+ * <p>{@link #ingest} re-ingests documents of about {@link #CHUNKS_PER_DOCUMENT} chunks into a
+ * store of 'corpus' chunks, its score is documents per time unit; replaced chunks make the store
+ * compact regularly, so the cost of compaction is part of it. {@link #retrieve} is a single
+ * question against the same store, 'hybrid' adds the keyword search and rank fusion to it.
+ *
+ * <pre>
+ * ./mvnw -Pjmh test-compile exec:exec -Djmh.includes=RagBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RagBenchmark {
+
+    private static final int CHUNKS_PER_DOCUMENT = 16;
+    private static final int CHUNK_CHARS = 1000;
+    private static final int DOCUMENTS_REINGESTED = 64;
+
+    private static final String[] VOCABULARY =
+            ("pirate ship captain treasure island map gold crew sail storm harbour cannon flag"
+                            + " parrot compass anchor deck rum navy port voyage kraken legend"
+                            + " buccaneer corsair scourge blackheart betty krael blake calico")
+                    .split(" ");
+
+    /** Number of chunks in the store. */
+    @Param({"10000"})
+    private int corpus;
+
+    /** Keyword search fused with the vector search. */
+    @Param({"false", "true"})
+    private boolean hybrid;
+
+    private DocumentIngestor ingestor;
+    private DocumentRetriever retriever;
+
+    private String[] documents;
+    private int nextDocument;
+
+    @Setup
+    public void setUp() {
+        var embedder = new HashingEmbedder(384);
+        var store = new InMemoryDocumentStore(corpus * 2);
+        ingestor =
+                new DocumentIngestor(
+                        new TextChunker(CHUNK_CHARS, 0),
+                        64,
+                        embedder,
+                        store,
+                        new SimpleMeterRegistry());
+        retriever =
+                new DocumentRetriever(
+                        true,
+                        new RagProperties.Retrieval(
+                                4, 0.0, 6000, new RagProperties.Hybrid(hybrid, 20, 60, 0.3)),
+                        embedder,
+                        store,
+                        new SimpleMeterRegistry());
+
+        SplittableRandom random = new SplittableRandom(42L);
+        documents = new String[corpus / CHUNKS_PER_DOCUMENT];
+        for (int i = 0; i < documents.length; ++i) {
+            documents[i] = document(random);
+            ingestor.ingest("doc-" + i, documents[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DOCUMENTS_REINGESTED)
+    public int ingest() {
+        int chunks = 0;
+        for (int i = 0; i < DOCUMENTS_REINGESTED; ++i) {
+            int document = nextDocument;
+            nextDocument = (nextDocument + 1) % DOCUMENTS_REINGESTED;
+            chunks += ingestor.ingest("doc-" + document, documents[document]);
+        }
+        return chunks;
+    }
+
+    @Benchmark
+    public List<ScoredChunk> retrieve() {
+        return retriever.retrieve("Which pirate captain sailed the ship with the kraken flag?");
+    }
+
+    /** Text of about {@link #CHUNKS_PER_DOCUMENT} chunks: words and short sentences. */
+    private static String document(SplittableRandom random) {
+        StringBuilder text = new StringBuilder(CHUNKS_PER_DOCUMENT * CHUNK_CHARS);
+        while (text.length() < CHUNKS_PER_DOCUMENT * CHUNK_CHARS - 20) {
+            text.append(VOCABULARY[random.nextInt(VOCABULARY.length)]).append(' ');
+            if (random.nextInt(12) == 0) {
+                text.append("item-").append(random.nextInt(100_000)).append(". ");
+            }
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,126 @@
+package com.github.mstepan.demo_ai.service;
+
+import com.github.mstepan.demo_ai.bench.StubChatModel;
+import com.github.mstepan.demo_ai.domain.Answer;
+import com.github.mstepan.demo_ai.domain.Question;
+import com.github.mstepan.demo_ai.evaluators.OCIGenAIRelevancyEvaluator;
+import com.github.mstepan.demo_ai.prompts.PromptProperties;
+import com.github.mstepan.demo_ai.prompts.PromptTemplateRegistry;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.evaluation.Evaluator;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.retry.annotation.EnableRetry;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ChatService#askQuestion} end to end against a stubbed {@code ChatModel}: retry proxy,
+ * coalescing, prompt rendering, the relevancy evaluator with its output conversion and metric
+ * recording. Caches are disabled, so every invocation takes the full path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChatServiceBenchmark {
+
+    private final Question question = new Question("What is the capital of France?");
+
+    private AnnotationConfigApplicationContext context;
+    private ChatService chatService;
+
+    @Setup
+    public void setUp() {
+        context = new AnnotationConfigApplicationContext(BenchmarkConfig.class, ChatService.class);
+        chatService = context.getBean(ChatService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Answer askQuestion() {
+        return chatService.askQuestion(question);
+    }
+
+    @Configuration
+    @EnableRetry
+    static class BenchmarkConfig {
+
+        @Bean
+        ChatClient.Builder chatClientBuilder() {
+            return ChatClient.builder(new StubChatModel("The capital of France is Paris."));
+        }
+
+        @Bean
+        Evaluator relevancyEvaluator(PromptTemplateRegistry prompts) {
+            return new OCIGenAIRelevancyEvaluator(
+                    ChatClient.builder(new StubChatModel("{\"relevant\": true}")), prompts);
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        PromptTemplateRegistry promptTemplateRegistry(MeterRegistry meterRegistry) {
+            return new PromptTemplateRegistry(new PromptProperties(null), meterRegistry);
+        }
+
+        @Bean
+        ChatProperties chatProperties() {
+            return TestChatProperties.defaults();
+        }
+
+        @Bean
+        AnswerCache answerCache(ChatProperties properties, MeterRegistry meterRegistry) {
+            return new AnswerCache(
+                    properties.cache(), "stub", 1.0, () -> 1, () -> -1L, meterRegistry);
+        }
+
+        @Bean
+        TokenBudget tokenBudget(ChatProperties properties, MeterRegistry meterRegistry) {
+            return new TokenBudget(properties.tokenBudget(), "stub", meterRegistry);
+        }
+
+        @Bean
+        RelevancyAuditLog relevancyAuditLog() {
+            return new RelevancyAuditLog((String) null);
+        }
+
+        @Bean
+        SemanticAnswerCache semanticAnswerCache(
+                ChatProperties properties, MeterRegistry meterRegistry) {
+            return new SemanticAnswerCache(
+                    properties.semanticCache(),
+                    () -> {
+                        throw new IllegalStateException("Semantic cache is disabled");
+                    },
+                    () -> 1,
+                    () -> -1L,
+                    meterRegistry);
+        }
+    }
+}
@@ -1,14 +1,28 @@
 package com.github.mstepan.demo_ai;
 
+import com.github.mstepan.demo_ai.embedding.EmbeddingProperties;
+import com.github.mstepan.demo_ai.evaluators.EvaluationProperties;
 import com.github.mstepan.demo_ai.oci.OCIGenAiProperties;
+import com.github.mstepan.demo_ai.prompts.PromptProperties;
+import com.github.mstepan.demo_ai.rag.RagProperties;
+import com.github.mstepan.demo_ai.service.ChatProperties;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.retry.annotation.EnableRetry;
 
-@SpringBootApplication
-@EnableConfigurationProperties(OCIGenAiProperties.class)
+// The Oracle knowledge base has its own pool, see RagConfiguration
+@SpringBootApplication(exclude = DataSourceAutoConfiguration.class)
+@EnableConfigurationProperties({
+    OCIGenAiProperties.class,
+    ChatProperties.class,
+    EmbeddingProperties.class,
+    PromptProperties.class,
+    EvaluationProperties.class,
+    RagProperties.class
+})
 @EnableRetry
 public class DemoAiApplication {
 
@@ -0,0 +1,3 @@
+package com.github.mstepan.demo_ai.domain;
+
+public record BatchEvaluationResult(int id, boolean relevant) {}
@@ -0,0 +1,21 @@
+package com.github.mstepan.demo_ai.domain;
+
+/**
+ * Outcome of one run of a bulk ingestion, counts cover this run only.
+ *
+ * @param job name of the job, null for an ingestion without checkpoints
+ * @param resumedFrom input offset (bytes) this run started from, 0 unless resumed from a checkpoint
+ * @param bytes input bytes read by this run
+ * @param documents ingested documents
+ * @param chunks embedded and stored chunks
+ * @param skipped invalid JSONL lines that were skipped
+ * @param documentsPerSecond ingestion throughput of this run
+ */
+public record BulkIngestionResult(
+        String job,
+        long resumedFrom,
+        long bytes,
+        long documents,
+        long chunks,
+        long skipped,
+        double documentsPerSecond) {}
@@ -0,0 +1,10 @@
+package com.github.mstepan.demo_ai.domain;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+
+public record Document(
+        @NotBlank(message = "'source' is required field")
+                @Size(max = 1000, message = "'source' must be at most 1000 chars")
+                String source,
+        @NotBlank(message = "'text' is required field") String text) {}
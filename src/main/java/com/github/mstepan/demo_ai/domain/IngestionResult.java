@@ -0,0 +1,7 @@
+package com.github.mstepan.demo_ai.domain;
+
+/**
+ * @param source id of the ingested or deleted document
+ * @param chunks number of chunks the document was split into, or deleted
+ */
+public record IngestionResult(String source, int chunks) {}
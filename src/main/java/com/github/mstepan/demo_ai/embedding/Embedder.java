@@ -0,0 +1,36 @@
+package com.github.mstepan.demo_ai.embedding;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns text into dense vectors. Implementations are pluggable via 'app.embedding.provider': OCI
+ * GenAI embeddings in production and a deterministic local embedder for offline tests.
+ */
+public interface Embedder {
+
+    /** Size of every vector returned by this embedder. */
+    int dimensions();
+
+    float[] embed(String text);
+
+    /**
+     * Max number of texts sent to the provider in one request, bulk ingestion fills its batches up
+     * to it. Unlimited for local embedders.
+     */
+    default int maxBatchSize() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Embeds several texts at once. The default implementation embeds them one by one, remote
+     * implementations override it to send a single batched request.
+     */
+    default List<float[]> embedAll(List<String> texts) {
+        List<float[]> vectors = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            vectors.add(embed(text));
+        }
+        return vectors;
+    }
+}
@@ -0,0 +1,28 @@
+package com.github.mstepan.demo_ai.embedding;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.validation.annotation.Validated;
+
+/** Binds properties under 'app.embedding' from 'application.yaml'. */
+@ConfigurationProperties(prefix = "app.embedding")
+@Validated
+public record EmbeddingProperties(
+        @DefaultValue("oci") Provider provider, @Valid @DefaultValue Hashing hashing) {
+
+    public enum Provider {
+        /** OCI GenAI embedding model configured under 'oci.genai.embedding'. */
+        OCI,
+        /** Deterministic in-process feature hashing, no network calls. */
+        HASHING
+    }
+
+    /**
+     * @param dimensions size of the hashed feature vector
+     */
+    public record Hashing(@Min(16) @Max(8192) @DefaultValue("384") Integer dimensions) {}
+}
@@ -0,0 +1,98 @@
+package com.github.mstepan.demo_ai.embedding;
+
+import com.github.mstepan.demo_ai.text.Tokenizer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Deterministic local embedder based on the feature hashing trick.
+ *
+ * <p>Word unigrams, word bigrams and character trigrams are hashed into a fixed-size signed
+ * vector which is then L2-normalized. Texts sharing vocabulary (typical for paraphrased questions)
+ * end up close in cosine space. Far weaker than a neural model, but free, offline and stable
+ * across runs, which makes it a good fit for tests and cheap local pre-filtering.
+ */
+@Component
+@ConditionalOnProperty(name = "app.embedding.provider", havingValue = "hashing")
+public final class HashingEmbedder implements Embedder {
+
+    private static final float UNIGRAM_WEIGHT = 1.0F;
+    private static final float BIGRAM_WEIGHT = 0.5F;
+    private static final float TRIGRAM_WEIGHT = 0.25F;
+
+    private final int dimensions;
+
+    @Autowired
+    public HashingEmbedder(EmbeddingProperties properties) {
+        this(properties.hashing().dimensions());
+    }
+
+    public HashingEmbedder(int dimensions) {
+        this.dimensions = dimensions;
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    @Override
+    public float[] embed(String text) {
+        float[] vector = new float[dimensions];
+
+        List<String> tokens = Tokenizer.tokenize(text);
+        String prev = null;
+        for (String token : tokens) {
+            addFeature(vector, token, UNIGRAM_WEIGHT);
+            if (prev != null) {
+                addFeature(vector, prev + ' ' + token, BIGRAM_WEIGHT);
+            }
+            if (token.length() > 3) {
+                for (int i = 0; i + 3 <= token.length(); ++i) {
+                    addFeature(vector, "#" + token.substring(i, i + 3), TRIGRAM_WEIGHT);
+                }
+            }
+            prev = token;
+        }
+
+        return normalize(vector);
+    }
+
+    private void addFeature(float[] vector, String feature, float weight) {
+        int hash = mix(feature.hashCode());
+        int index = Math.floorMod(hash, dimensions);
+        // independent bit for the sign keeps collisions unbiased
+        vector[index] += ((hash >>> 28) & 1) == 0 ? weight : -weight;
+    }
+
+    /** Murmur3 finalizer, spreads String.hashCode() bits over the whole int. */
+    private static int mix(int hash) {
+        int h = hash;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static float[] normalize(float[] vector) {
+        double sumOfSquares = 0.0;
+        for (float value : vector) {
+            sumOfSquares += value * value;
+        }
+        if (sumOfSquares == 0.0) {
+            return vector;
+        }
+
+        float invNorm = (float) (1.0 / Math.sqrt(sumOfSquares));
+        for (int i = 0; i < vector.length; ++i) {
+            vector[i] *= invNorm;
+        }
+        return vector;
+    }
+}
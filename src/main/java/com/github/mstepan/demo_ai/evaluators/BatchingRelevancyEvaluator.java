@@ -0,0 +1,314 @@
+package com.github.mstepan.demo_ai.evaluators;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.github.mstepan.demo_ai.domain.BatchEvaluationResult;
+import com.github.mstepan.demo_ai.oci.Deadline;
+import com.github.mstepan.demo_ai.oci.DeadlineExceededException;
+import com.github.mstepan.demo_ai.prompts.PromptTemplateRegistry;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.evaluation.EvaluationRequest;
+import org.springframework.ai.evaluation.EvaluationResponse;
+import org.springframework.ai.evaluation.Evaluator;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Relevancy evaluator that judges several question/answer pairs with one OCI call.
+ *
+ * <p>Evaluations arriving within 'app.evaluation.batching.max_wait' of each other are collected,
+ * up to 'max_batch_size', and sent as one JSON array of items in a single prompt; the judge replies
+ * with a JSON array of verdicts keyed by item id. The system prompt and the request overhead are
+ * paid once per batch instead of once per answer. Each caller still gets its own verdict, {@link
+ * #evaluate} blocks until it is known, {@link #evaluateAsync} returns a future.
+ *
+ * <p>A batch of one is judged by the single-answer evaluator. When the judge's reply can't be
+ * parsed, or lacks a verdict for some items, those items are judged one by one if
+ * 'fallback_to_single' is on and fail with {@link IllegalStateException} otherwise.
+ *
+ * <p>{@link #evaluate} waits for the verdict at most until the caller's {@link Deadline}, the batch
+ * is judged for the other callers regardless.
+ *
+ * <p>With 'app.evaluation.batching.enabled' off every evaluation goes straight to {@link
+ * OCIGenAIRelevancyEvaluator}.
+ *
+ * <p>Metrics (Prometheus/Micrometer):
+ *
+ * <ul>
+ *   <li>app_evaluator_batch_size (DistributionSummary): evaluations per sent batch
+ *   <li>app_evaluator_batch_total (Counter): sent batches, result in {"success","fallback",
+ *       "failure"}
+ * </ul>
+ */
+@Component("batchingRelevancyEvaluator")
+public class BatchingRelevancyEvaluator extends LlmJudgeEvaluator implements DisposableBean {
+
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    static final String SYSTEM_PROMPT = "relevanceEvaluator/relevanceEvaluatorBatchSystemPrompt";
+    static final String USER_PROMPT = "relevanceEvaluator/relevanceEvaluatorBatchUserPrompt";
+
+    private static final ParameterizedTypeReference<List<BatchEvaluationResult>> VERDICTS =
+            new ParameterizedTypeReference<>() {};
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final Evaluator singleEvaluator;
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final boolean fallbackToSingle;
+
+    private final ScheduledExecutorService timer;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Batch being collected, guarded by {@link #lock}. */
+    private List<Pending> collecting;
+
+    private final DistributionSummary batchSize;
+    private final Counter batchSuccess;
+    private final Counter batchFallback;
+    private final Counter batchFailure;
+
+    @Autowired
+    public BatchingRelevancyEvaluator(
+            ChatClient.Builder chatClientBuilder,
+            PromptTemplateRegistry prompts,
+            @Qualifier("ociGenAIRelevancyEvaluator") Evaluator singleEvaluator,
+            EvaluationProperties evaluationProperties,
+            MeterRegistry meterRegistry) {
+        this(
+                chatClientBuilder,
+                prompts,
+                singleEvaluator,
+                evaluationProperties.batching(),
+                meterRegistry);
+    }
+
+    BatchingRelevancyEvaluator(
+            ChatClient.Builder chatClientBuilder,
+            PromptTemplateRegistry prompts,
+            Evaluator singleEvaluator,
+            EvaluationProperties.Batching settings,
+            MeterRegistry meterRegistry) {
+        super(chatClientBuilder, prompts, SYSTEM_PROMPT, USER_PROMPT);
+        this.singleEvaluator = singleEvaluator;
+        this.enabled = Boolean.TRUE.equals(settings.enabled());
+        this.maxBatchSize = settings.maxBatchSize();
+        this.maxWaitNanos = settings.maxWait().toNanos();
+        this.fallbackToSingle = Boolean.TRUE.equals(settings.fallbackToSingle());
+        this.collecting = new ArrayList<>(maxBatchSize);
+
+        this.timer =
+                Executors.newSingleThreadScheduledExecutor(
+                        Thread.ofPlatform().daemon().name("evaluation-batch-timer").factory());
+
+        this.batchSize =
+                DistributionSummary.builder("app_evaluator_batch_size").register(meterRegistry);
+        this.batchSuccess = meterRegistry.counter("app_evaluator_batch_total", "result", "success");
+        this.batchFallback =
+                meterRegistry.counter("app_evaluator_batch_total", "result", "fallback");
+        this.batchFailure = meterRegistry.counter("app_evaluator_batch_total", "result", "failure");
+    }
+
+    @Override
+    public EvaluationResponse evaluate(EvaluationRequest evaluationRequest) {
+        if (!enabled) {
+            return singleEvaluator.evaluate(evaluationRequest);
+        }
+
+        try {
+            CompletableFuture<EvaluationResponse> verdict = evaluateAsync(evaluationRequest);
+            if (!Deadline.CURRENT.isBound()) {
+                return verdict.get();
+            }
+            return verdict.get(
+                    Deadline.CURRENT.get().remaining().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException timeoutEx) {
+            throw new DeadlineExceededException(
+                    "Deadline exceeded waiting for the batched relevancy verdict", timeoutEx);
+        } catch (ExecutionException execEx) {
+            if (execEx.getCause() instanceof RuntimeException runtimeEx) {
+                throw runtimeEx;
+            }
+            throw new IllegalStateException(
+                    "Batched relevancy evaluation failed", execEx.getCause());
+        } catch (InterruptedException interEx) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted during relevancy evaluation", interEx);
+        }
+    }
+
+    /** Adds the evaluation to the batch being collected, the future completes with its verdict. */
+    public CompletableFuture<EvaluationResponse> evaluateAsync(
+            EvaluationRequest evaluationRequest) {
+        if (!enabled) {
+            return CompletableFuture.supplyAsync(
+                    () -> singleEvaluator.evaluate(evaluationRequest), executor);
+        }
+
+        var pending = new Pending(evaluationRequest, new CompletableFuture<>());
+        List<Pending> full = null;
+
+        lock.lock();
+        try {
+            List<Pending> batch = collecting;
+            batch.add(pending);
+
+            if (batch.size() == 1) {
+                timer.schedule(() -> sendOnTimeout(batch), maxWaitNanos, TimeUnit.NANOSECONDS);
+            }
+            if (batch.size() >= maxBatchSize) {
+                full = batch;
+                collecting = new ArrayList<>(maxBatchSize);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (full != null) {
+            send(full);
+        }
+        return pending.verdict();
+    }
+
+    @Override
+    public void destroy() {
+        timer.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    private void sendOnTimeout(List<Pending> batch) {
+        lock.lock();
+        try {
+            if (collecting != batch) {
+                // already sent because it filled up
+                return;
+            }
+            collecting = new ArrayList<>(maxBatchSize);
+        } finally {
+            lock.unlock();
+        }
+        send(batch);
+    }
+
+    private void send(List<Pending> batch) {
+        batchSize.record(batch.size());
+        executor.execute(() -> judgeBatch(batch));
+    }
+
+    private void judgeBatch(List<Pending> batch) {
+        if (batch.size() == 1) {
+            batchSuccess.increment();
+            judgeSingle(batch.getFirst());
+            return;
+        }
+
+        List<BatchEvaluationResult> verdicts;
+        try {
+            verdicts = judge("items", toJsonItems(batch), VERDICTS);
+        } catch (RuntimeException ex) {
+            // typically an unparsable reply, any other failure takes the same fallback path
+            LOGGER.warn("Batched relevancy evaluation of {} answers failed", batch.size(), ex);
+            verdicts = List.of();
+        }
+
+        Boolean[] relevant = new Boolean[batch.size()];
+        if (verdicts != null) {
+            for (BatchEvaluationResult verdict : verdicts) {
+                if (verdict != null && verdict.id() >= 0 && verdict.id() < relevant.length) {
+                    relevant[verdict.id()] = verdict.relevant();
+                }
+            }
+        }
+
+        boolean complete = true;
+        for (Boolean verdict : relevant) {
+            complete &= verdict != null;
+        }
+        if (complete) {
+            batchSuccess.increment();
+        } else {
+            (fallbackToSingle ? batchFallback : batchFailure).increment();
+        }
+
+        for (int id = 0; id < relevant.length; ++id) {
+            Pending pending = batch.get(id);
+            if (relevant[id] != null) {
+                pending.verdict().complete(toResponse(relevant[id]));
+            } else if (fallbackToSingle) {
+                executor.execute(() -> judgeSingle(pending));
+            } else {
+                pending.verdict()
+                        .completeExceptionally(
+                                new IllegalStateException(
+                                        "No verdict for the answer in the judge's reply"));
+            }
+        }
+    }
+
+    private void judgeSingle(Pending pending) {
+        try {
+            pending.verdict().complete(singleEvaluator.evaluate(pending.request()));
+        } catch (RuntimeException ex) {
+            pending.verdict().completeExceptionally(ex);
+        }
+    }
+
+    /** Items are numbered by their index in the batch, verdicts refer to them by that id. */
+    private static String toJsonItems(List<Pending> batch) {
+        var out = new StringWriter(256 * batch.size());
+        try (JsonGenerator json = JSON.createGenerator(out)) {
+            json.writeStartArray();
+            for (int id = 0; id < batch.size(); ++id) {
+                EvaluationRequest request = batch.get(id).request();
+                json.writeStartObject();
+                json.writeNumberField("id", id);
+                json.writeStringField("question", request.getUserText());
+                json.writeStringField("answer", request.getResponseContent());
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+        } catch (IOException ioEx) {
+            throw new UncheckedIOException(ioEx);
+        }
+        return out.toString();
+    }
+
+    private static EvaluationResponse toResponse(boolean relevant) {
+        return new EvaluationResponse(
+                relevant, relevant ? 1.0F : 0.0F, "", Collections.emptyMap());
+    }
+
+    private record Pending(
+            EvaluationRequest request, CompletableFuture<EvaluationResponse> verdict) {}
+}
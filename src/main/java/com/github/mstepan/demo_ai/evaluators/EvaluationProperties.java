@@ -0,0 +1,55 @@
+package com.github.mstepan.demo_ai.evaluators;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+
+import org.hibernate.validator.constraints.time.DurationMin;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+
+/** Binds properties under 'app.evaluation' from 'application.yaml'. */
+@ConfigurationProperties(prefix = "app.evaluation")
+@Validated
+public record EvaluationProperties(
+        @Valid @DefaultValue PreFilter preFilter, @Valid @DefaultValue Batching batching) {
+
+    /**
+     * Local relevancy stage in front of the LLM judge, see {@link TieredRelevancyEvaluator}. An
+     * answer is accepted locally when both the lexical overlap and the similarity reach their
+     * accept thresholds, rejected when the similarity is below 'reject_similarity' and the answer
+     * shares no content word with the question; anything in between goes to the LLM judge.
+     *
+     * @param enabled opt-in switch, local decisions are cheaper but less accurate than the judge
+     * @param acceptOverlap min share of the question's content words found in the answer
+     * @param acceptSimilarity min cosine similarity of question and answer to accept locally
+     * @param rejectSimilarity cosine similarity below which an answer may be rejected locally; kept
+     *     low since relevant answers sometimes share no word with the question
+     */
+    public record PreFilter(
+            @DefaultValue("false") Boolean enabled,
+            @DecimalMin("0.0") @DecimalMax("1.0") @DefaultValue("0.6") Double acceptOverlap,
+            @DecimalMin("0.0") @DecimalMax("1.0") @DefaultValue("0.5") Double acceptSimilarity,
+            @DecimalMin("0.0") @DecimalMax("1.0") @DefaultValue("0.0") Double rejectSimilarity) {}
+
+    /**
+     * Micro-batching of LLM judge calls, see {@link BatchingRelevancyEvaluator}.
+     *
+     * @param enabled opt-in switch, batching adds up to 'max_wait' to every evaluation
+     * @param maxBatchSize a batch is sent as soon as it has this many evaluations
+     * @param maxWait a batch is sent at the latest this long after its first evaluation arrived
+     * @param fallbackToSingle when the judge's reply can't be parsed or lacks a verdict, evaluate
+     *     the affected answers one by one instead of failing them
+     */
+    public record Batching(
+            @DefaultValue("false") Boolean enabled,
+            @Min(2) @Max(64) @DefaultValue("16") Integer maxBatchSize,
+            @DurationMin(millis = 1) @DefaultValue("10ms") Duration maxWait,
+            @DefaultValue("true") Boolean fallbackToSingle) {}
+}
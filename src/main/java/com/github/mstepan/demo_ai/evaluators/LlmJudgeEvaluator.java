@@ -0,0 +1,78 @@
+package com.github.mstepan.demo_ai.evaluators;
+
+import com.github.mstepan.demo_ai.domain.EvaluationResult;
+import com.github.mstepan.demo_ai.prompts.PromptTemplate;
+import com.github.mstepan.demo_ai.prompts.PromptTemplateRegistry;
+
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.evaluation.Evaluator;
+import org.springframework.core.ParameterizedTypeReference;
+
+/**
+ * Base of the LLM-as-judge evaluators: holds one pre-built, thread-safe {@link ChatClient} with
+ * the evaluator's system prompt bound as its default, so an evaluation only renders the user
+ * prompt and makes the call instead of rebuilding the client, advisor chain and options each time.
+ *
+ * <p>The client is rebuilt only when the system prompt template is hot-reloaded, see {@link
+ * PromptTemplateRegistry}.
+ */
+abstract class LlmJudgeEvaluator implements Evaluator {
+
+    private final ChatClient.Builder chatClientBuilder;
+    private final PromptTemplateRegistry prompts;
+    private final String systemPromptName;
+    private final String userPromptName;
+
+    private volatile BoundClient boundClient;
+
+    LlmJudgeEvaluator(
+            ChatClient.Builder chatClientBuilder,
+            PromptTemplateRegistry prompts,
+            String systemPromptName,
+            String userPromptName) {
+        this.chatClientBuilder = chatClientBuilder;
+        this.prompts = prompts;
+        this.systemPromptName = systemPromptName;
+        this.userPromptName = userPromptName;
+        this.boundClient = bind(prompts.get(systemPromptName));
+    }
+
+    /** Renders the user prompt with the two parameters and asks the judge for a verdict. */
+    final EvaluationResult judge(String param1, String value1, String param2, String value2) {
+        return chatClient()
+                .prompt()
+                .user(prompts.get(userPromptName).render(param1, value1, param2, value2))
+                .call()
+                .entity(EvaluationResult.class);
+    }
+
+    /** Renders the user prompt with the parameter and converts the judge's reply to the type. */
+    final <T> T judge(String param, String value, ParameterizedTypeReference<T> responseType) {
+        return chatClient()
+                .prompt()
+                .user(prompts.get(userPromptName).render(param, value))
+                .call()
+                .entity(responseType);
+    }
+
+    private ChatClient chatClient() {
+        PromptTemplate systemPrompt = prompts.get(systemPromptName);
+
+        BoundClient current = boundClient;
+        if (current.systemPrompt() != systemPrompt) {
+            // racing rebuilds after a reload are harmless, both clients are equivalent
+            current = bind(systemPrompt);
+            boundClient = current;
+        }
+        return current.chatClient();
+    }
+
+    private BoundClient bind(PromptTemplate systemPrompt) {
+        // clone: never mutate the injected builder, it may be shared
+        return new BoundClient(
+                systemPrompt,
+                chatClientBuilder.clone().defaultSystem(systemPrompt.text()).build());
+    }
+
+    private record BoundClient(PromptTemplate systemPrompt, ChatClient chatClient) {}
+}
@@ -1,74 +1,69 @@
 package com.github.mstepan.demo_ai.evaluators;
 
-import com.github.mstepan.demo_ai.domain.EvaluationResult;
+import com.github.mstepan.demo_ai.prompts.PromptTemplateRegistry;
+import com.github.mstepan.demo_ai.rag.DocumentRetriever;
+import com.github.mstepan.demo_ai.rag.ScoredChunk;
 
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.evaluation.EvaluationRequest;
 import org.springframework.ai.evaluation.EvaluationResponse;
-import org.springframework.ai.evaluation.Evaluator;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Component;
 
 import java.util.Collections;
+import java.util.List;
 
 /**
- * Evaluator that verifies whether a natural-language claim is supported by a provided document,
+ * Evaluator that verifies whether a natural-language claim is supported by the knowledge base,
  * using an OCI GenAI-backed ChatClient. The model is instructed to produce exactly one word: "yes"
  * or "no".
  *
  * <p>Interpretation: - "yes" (any case) -> passing=true - any other output -> passing=false
  *
- * <p>Input mapping: - EvaluationRequest.userText : the claim to verify - Document : a fixed test
- * document held in {@link #FACTS}
+ * <p>Input mapping: - EvaluationRequest.userText : the claim to verify - Document : the chunks of
+ * the knowledge base relevant to the claim, see {@link DocumentRetriever}. A claim without any
+ * relevant chunk fails without calling the model.
  *
- * <p>A ChatClient is built from the supplied builder for each evaluation call.
- *
- * @param chatClientBuilder builder used to create ChatClient instances
+ * <p>A single ChatClient with the system prompt pre-bound is shared by all evaluation calls, see
+ * {@link LlmJudgeEvaluator}.
  */
 @Component("ociGenAIFactsEvaluator")
-public record OCIGenAIFactsEvaluator(
-        ChatClient.Builder chatClientBuilder,
-        @Value("classpath:/prompts/factsEvaluator/factsEvaluatorSystemPrompt.st")
-                Resource systemPromptTemplate,
-        @Value("classpath:/prompts/factsEvaluator/factsEvaluatorUserPrompt.st")
-                Resource userPromptTemplate)
-        implements Evaluator {
+public class OCIGenAIFactsEvaluator extends LlmJudgeEvaluator {
+
+    static final String SYSTEM_PROMPT = "factsEvaluator/factsEvaluatorSystemPrompt";
+    static final String USER_PROMPT = "factsEvaluator/factsEvaluatorUserPrompt";
+
+    static final String NO_DOCUMENT_REASON = "No document of the knowledge base covers the claim";
 
-    private static final String FACTS =
-            """
-            Here are few pirate names:
-                1. Blackbeak Betty "The Buccaneer"
-                2.*Captain Krael "The Kraken"
-                3. Bartholomew "Blackheart" Blake
-                4. Calico "The Corsair" Jack
-                5. Mad Dog McSweeney "The Scourge"
-            """;
+    private final DocumentRetriever retriever;
+
+    public OCIGenAIFactsEvaluator(
+            ChatClient.Builder chatClientBuilder,
+            PromptTemplateRegistry prompts,
+            DocumentRetriever retriever) {
+        super(chatClientBuilder, prompts, SYSTEM_PROMPT, USER_PROMPT);
+        this.retriever = retriever;
+    }
 
     /**
-     * Executes the fact verification by rendering the system and user prompts and delegating the
-     * decision to the underlying chat model.
+     * Executes the fact verification by rendering the user prompt and delegating the decision to
+     * the underlying chat model.
      *
      * <p>Mapping: - Model output "yes" (any case) -> passing=true - Otherwise -> passing=false
      *
      * @param evaluationRequest container holding the claim (userText)
-     * @return EvaluationResponse indicating pass/fail; reason is empty
+     * @return EvaluationResponse indicating pass/fail; reason is empty unless no document was found
      */
     @Override
     public EvaluationResponse evaluate(EvaluationRequest evaluationRequest) {
+        String claim = evaluationRequest.getUserText();
+
+        List<ScoredChunk> chunks = retriever.retrieve(claim);
+        if (chunks.isEmpty()) {
+            return new EvaluationResponse(false, NO_DOCUMENT_REASON, Collections.emptyMap());
+        }
 
         var evaluationResult =
-                this.chatClientBuilder
-                        .build()
-                        .prompt()
-                        .system(systemPromptTemplate)
-                        .user(
-                                userSpec ->
-                                        userSpec.text(userPromptTemplate)
-                                                .param("claim", evaluationRequest.getUserText())
-                                                .param("document", FACTS))
-                        .call()
-                        .entity(EvaluationResult.class);
+                judge("claim", claim, "document", DocumentRetriever.format(chunks));
 
         return new EvaluationResponse(evaluationResult.relevant(), "", Collections.emptyMap());
     }
@@ -1,12 +1,9 @@
 package com.github.mstepan.demo_ai.evaluators;
 
-import com.github.mstepan.demo_ai.domain.EvaluationResult;
+import com.github.mstepan.demo_ai.prompts.PromptTemplateRegistry;
 
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.evaluation.EvaluationRequest;
-import org.springframework.ai.evaluation.Evaluator;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Component;
 
 import java.util.Collections;
@@ -22,22 +19,23 @@ import java.util.Collections;
  * <p>Input mapping: - EvaluationRequest.userText : question to be evaluated against -
  * EvaluationRequest.responseContent : candidate answer to judge
  *
- * <p>A ChatClient is built from the supplied builder for each evaluation call.
- *
- * @param chatClientBuilder builder used to create ChatClient instances
+ * <p>A single ChatClient with the system prompt pre-bound is shared by all evaluation calls, see
+ * {@link LlmJudgeEvaluator}.
  */
 @Component("ociGenAIRelevancyEvaluator")
-public record OCIGenAIRelevancyEvaluator(
-        ChatClient.Builder chatClientBuilder,
-        @Value("classpath:/prompts/relevanceEvaluator/relevanceEvaluatorSystemPrompt.st")
-                Resource systemPromptTemplate,
-        @Value("classpath:/prompts/relevanceEvaluator/relevanceEvaluatorUserPrompt.st")
-                Resource userPromptTemplate)
-        implements Evaluator {
+public class OCIGenAIRelevancyEvaluator extends LlmJudgeEvaluator {
+
+    static final String SYSTEM_PROMPT = "relevanceEvaluator/relevanceEvaluatorSystemPrompt";
+    static final String USER_PROMPT = "relevanceEvaluator/relevanceEvaluatorUserPrompt";
+
+    public OCIGenAIRelevancyEvaluator(
+            ChatClient.Builder chatClientBuilder, PromptTemplateRegistry prompts) {
+        super(chatClientBuilder, prompts, SYSTEM_PROMPT, USER_PROMPT);
+    }
 
     /**
-     * Executes the relevancy evaluation by constructing a system and user prompt and delegating the
-     * judgment to the underlying chat model.
+     * Executes the relevancy evaluation by rendering the user prompt and delegating the judgment to
+     * the underlying chat model.
      *
      * @param evaluationRequest container holding the question (userText) and the candidate answer
      *     (responseContent)
@@ -48,19 +46,11 @@ public record OCIGenAIRelevancyEvaluator(
             EvaluationRequest evaluationRequest) {
 
         var evaluationResult =
-                this.chatClientBuilder
-                        .build()
-                        .prompt()
-                        .system(systemPromptTemplate)
-                        .user(
-                                userSpec ->
-                                        userSpec.text(userPromptTemplate)
-                                                .param("question", evaluationRequest.getUserText())
-                                                .param(
-                                                        "answer",
-                                                        evaluationRequest.getResponseContent()))
-                        .call()
-                        .entity(EvaluationResult.class);
+                judge(
+                        "question",
+                        evaluationRequest.getUserText(),
+                        "answer",
+                        evaluationRequest.getResponseContent());
 
         if (evaluationResult.relevant()) {
             return new org.springframework.ai.evaluation.EvaluationResponse(
@@ -0,0 +1,173 @@
+package com.github.mstepan.demo_ai.evaluators;
+
+import com.github.mstepan.demo_ai.embedding.EmbeddingProperties;
+import com.github.mstepan.demo_ai.embedding.HashingEmbedder;
+import com.github.mstepan.demo_ai.text.Tokenizer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.springframework.ai.evaluation.EvaluationRequest;
+import org.springframework.ai.evaluation.EvaluationResponse;
+import org.springframework.ai.evaluation.Evaluator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Relevancy evaluator with a cheap local tier in front of the LLM judge.
+ *
+ * <p>The local tier scores the answer against the question with lexical overlap of content words
+ * and cosine similarity of {@link HashingEmbedder} vectors, both computed in-process in
+ * microseconds. Clear passes and clear failures are decided right there, only uncertain answers
+ * pay for the OCI round trip of {@link OCIGenAIRelevancyEvaluator}, batched with other uncertain
+ * answers by {@link BatchingRelevancyEvaluator} when enabled. With
+ * 'app.evaluation.pre_filter.enabled' off every answer goes to the judge.
+ *
+ * <p>Metrics (Prometheus/Micrometer):
+ *
+ * <ul>
+ *   <li>app_evaluator_tier_total (Counter): evaluations by deciding tier, tier in {"local","llm"},
+ *       outcome in {"pass","fail"}
+ * </ul>
+ */
+@Component("relevancyEvaluator")
+public class TieredRelevancyEvaluator implements Evaluator {
+
+    /** Too common to say anything about relevance. */
+    private static final Set<String> STOP_WORDS =
+            Set.of(
+                    ("the and are was were for with what which who whom why how when where does did"
+                                    + " can could would should will this that these those from into"
+                                    + " about you your please tell explain there their its has have"
+                                    + " had not but any some all our more most")
+                            .split(" "));
+
+    private static final int MIN_CONTENT_WORD_LENGTH = 3;
+
+    private final Evaluator judge;
+    private final EvaluationProperties.PreFilter settings;
+    private final boolean enabled;
+    private final HashingEmbedder localEmbedder;
+
+    private final Counter localPass;
+    private final Counter localFail;
+    private final Counter llmPass;
+    private final Counter llmFail;
+
+    @Autowired
+    public TieredRelevancyEvaluator(
+            @Qualifier("batchingRelevancyEvaluator") Evaluator judge,
+            EvaluationProperties evaluationProperties,
+            EmbeddingProperties embeddingProperties,
+            MeterRegistry meterRegistry) {
+        this(
+                judge,
+                evaluationProperties.preFilter(),
+                new HashingEmbedder(embeddingProperties.hashing().dimensions()),
+                meterRegistry);
+    }
+
+    TieredRelevancyEvaluator(
+            Evaluator judge,
+            EvaluationProperties.PreFilter settings,
+            HashingEmbedder localEmbedder,
+            MeterRegistry meterRegistry) {
+        this.judge = judge;
+        this.settings = settings;
+        this.enabled = Boolean.TRUE.equals(settings.enabled());
+        this.localEmbedder = localEmbedder;
+
+        this.localPass = tierCounter(meterRegistry, "local", "pass");
+        this.localFail = tierCounter(meterRegistry, "local", "fail");
+        this.llmPass = tierCounter(meterRegistry, "llm", "pass");
+        this.llmFail = tierCounter(meterRegistry, "llm", "fail");
+    }
+
+    @Override
+    public EvaluationResponse evaluate(EvaluationRequest evaluationRequest) {
+        if (enabled) {
+            LocalVerdict verdict =
+                    preFilter(
+                            evaluationRequest.getUserText(),
+                            evaluationRequest.getResponseContent());
+
+            if (verdict == LocalVerdict.PASS) {
+                localPass.increment();
+                return new EvaluationResponse(true, 1.0F, "local", Collections.emptyMap());
+            }
+            if (verdict == LocalVerdict.FAIL) {
+                localFail.increment();
+                return new EvaluationResponse(false, 0.0F, "local", Collections.emptyMap());
+            }
+        }
+
+        EvaluationResponse response = judge.evaluate(evaluationRequest);
+        (response.isPass() ? llmPass : llmFail).increment();
+        return response;
+    }
+
+    LocalVerdict preFilter(String question, String answer) {
+        if (answer == null || answer.isBlank()) {
+            return LocalVerdict.FAIL;
+        }
+
+        Set<String> questionWords = contentWords(Tokenizer.tokenize(question));
+        if (questionWords.isEmpty()) {
+            // nothing to compare against, e.g. "Why?"
+            return LocalVerdict.UNSURE;
+        }
+
+        List<String> answerTokens = Tokenizer.tokenize(answer);
+        int matched = 0;
+        for (String token : answerTokens) {
+            if (questionWords.remove(token)) {
+                ++matched;
+            }
+        }
+        double overlap = (double) matched / (matched + questionWords.size());
+        double similarity = cosine(localEmbedder.embed(question), localEmbedder.embed(answer));
+
+        if (overlap >= settings.acceptOverlap() && similarity >= settings.acceptSimilarity()) {
+            return LocalVerdict.PASS;
+        }
+        if (matched == 0 && similarity < settings.rejectSimilarity()) {
+            return LocalVerdict.FAIL;
+        }
+        return LocalVerdict.UNSURE;
+    }
+
+    private static Set<String> contentWords(List<String> tokens) {
+        Set<String> words = new HashSet<>();
+        for (String token : tokens) {
+            if (token.length() >= MIN_CONTENT_WORD_LENGTH && !STOP_WORDS.contains(token)) {
+                words.add(token);
+            }
+        }
+        return words;
+    }
+
+    /** Both vectors are L2-normalized by {@link HashingEmbedder}, so the dot product is enough. */
+    private static double cosine(float[] first, float[] second) {
+        double dot = 0.0;
+        for (int i = 0; i < first.length; ++i) {
+            dot += first[i] * second[i];
+        }
+        return dot;
+    }
+
+    private static Counter tierCounter(MeterRegistry meterRegistry, String tier, String outcome) {
+        return meterRegistry.counter("app_evaluator_tier_total", "tier", tier, "outcome", outcome);
+    }
+
+    enum LocalVerdict {
+        PASS,
+        FAIL,
+        UNSURE
+    }
+}
@@ -0,0 +1,266 @@
+package com.github.mstepan.demo_ai.oci;
+
+import com.oracle.bmc.model.BmcException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Adaptive concurrency limit of outbound OCI chat calls, so a traffic spike can't turn into an
+ * unbounded flood of upstream requests that OCI answers with throttling and collapsing latency.
+ *
+ * <p>The limit follows AIMD (additive increase, multiplicative decrease): a call that succeeds
+ * within 'oci.genai.limiter.latency_threshold' while the limit was actually in use raises the
+ * limit by one; a throttled, failed (429, 5xx, timeout) or too slow call multiplies it by
+ * 'backoff_ratio'. The limit stays within ['min_limit', 'max_limit'].
+ *
+ * <p>Callers beyond the limit wait in a FIFO queue, at most 'max_queue_size' of them and each for
+ * at most 'queue_timeout'; otherwise they fail fast with {@link
+ * ConcurrencyLimitExceededException}, mapped to 503 by the web layer. Waiting is cheap, callers
+ * run on virtual threads.
+ *
+ * <p>Metrics (Prometheus/Micrometer):
+ *
+ * <ul>
+ *   <li>app_oci_limiter_limit (Gauge): current concurrency limit
+ *   <li>app_oci_limiter_inflight (Gauge): calls holding a permit
+ *   <li>app_oci_limiter_queued (Gauge): callers waiting for a permit
+ *   <li>app_oci_limiter_rejected_total (Counter): rejected callers, reason in
+ *       {"queue_full","queue_timeout"}
+ * </ul>
+ */
+public final class AdaptiveConcurrencyLimiter {
+
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    private static final int HTTP_SERVER_ERROR = 500;
+
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long latencyThresholdNanos;
+    private final int maxQueueSize;
+    private final long queueTimeoutNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Callers waiting for a permit, oldest first; guarded by {@link #lock}. */
+    private final ArrayDeque<Waiter> queue = new ArrayDeque<>();
+
+    /** Written under {@link #lock}, volatile for the gauges. */
+    private volatile int limit;
+
+    private volatile int inFlight;
+
+    private final Counter rejectedQueueFull;
+    private final Counter rejectedQueueTimeout;
+
+    public AdaptiveConcurrencyLimiter(
+            OCIGenAiProperties.Limiter settings, MeterRegistry meterRegistry) {
+        this.enabled = Boolean.TRUE.equals(settings.enabled());
+        this.minLimit = settings.minLimit();
+        this.maxLimit = Math.max(settings.maxLimit(), minLimit);
+        this.backoffRatio = settings.backoffRatio();
+        this.latencyThresholdNanos = settings.latencyThreshold().toNanos();
+        this.maxQueueSize = settings.maxQueueSize();
+        this.queueTimeoutNanos = settings.queueTimeout().toNanos();
+        this.limit = Math.clamp(settings.initialLimit(), minLimit, maxLimit);
+
+        Gauge.builder("app_oci_limiter_limit", this, limiter -> limiter.limit)
+                .register(meterRegistry);
+        Gauge.builder("app_oci_limiter_inflight", this, limiter -> limiter.inFlight)
+                .register(meterRegistry);
+        Gauge.builder("app_oci_limiter_queued", this, AdaptiveConcurrencyLimiter::queued)
+                .register(meterRegistry);
+        this.rejectedQueueFull =
+                meterRegistry.counter("app_oci_limiter_rejected_total", "reason", "queue_full");
+        this.rejectedQueueTimeout =
+                meterRegistry.counter("app_oci_limiter_rejected_total", "reason", "queue_timeout");
+    }
+
+    /**
+     * Takes a permit, waiting in the queue if the limit is reached. The returned {@link Permit}
+     * must be closed once the call is over, preferably with try-with-resources.
+     *
+     * @throws ConcurrencyLimitExceededException if the queue is full or no permit became free
+     *     within the queue timeout
+     * @throws IllegalStateException if the waiting thread was interrupted
+     */
+    public Permit acquire() {
+        if (!enabled) {
+            return new Permit(false, 0);
+        }
+
+        lock.lock();
+        try {
+            if (queue.isEmpty() && inFlight < limit) {
+                ++inFlight;
+                return new Permit(true, inFlight);
+            }
+            if (queue.size() >= maxQueueSize) {
+                rejectedQueueFull.increment();
+                throw new ConcurrencyLimitExceededException(
+                        "Too many concurrent OCI calls (limit = %d, queued = %d)"
+                                .formatted(limit, queue.size()),
+                        limit);
+            }
+
+            Waiter waiter = new Waiter(lock.newCondition());
+            queue.addLast(waiter);
+            try {
+                long remainingNanos = queueTimeoutNanos;
+                while (!waiter.granted) {
+                    if (remainingNanos <= 0L) {
+                        queue.remove(waiter);
+                        rejectedQueueTimeout.increment();
+                        throw new ConcurrencyLimitExceededException(
+                                "No OCI call permit within %d ms (limit = %d)"
+                                        .formatted(queueTimeoutNanos / 1_000_000L, limit),
+                                limit);
+                    }
+                    remainingNanos = waiter.condition.awaitNanos(remainingNanos);
+                }
+            } catch (InterruptedException interEx) {
+                if (waiter.granted) {
+                    --inFlight;
+                    grantWaiters();
+                } else {
+                    queue.remove(waiter);
+                }
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(
+                        "Interrupted while waiting for an OCI call permit", interEx);
+            }
+            return new Permit(true, inFlight);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int limit() {
+        return limit;
+    }
+
+    int inFlight() {
+        return inFlight;
+    }
+
+    /** True for failures that signal an overloaded upstream rather than a bad request. */
+    static boolean isOverload(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof BmcException bmcEx) {
+                return bmcEx.isTimeout()
+                        || bmcEx.getStatusCode() == HTTP_TOO_MANY_REQUESTS
+                        || bmcEx.getStatusCode() >= HTTP_SERVER_ERROR;
+            }
+        }
+        return false;
+    }
+
+    private double queued() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(Permit permit, boolean overloaded) {
+        lock.lock();
+        try {
+            --inFlight;
+
+            int previous = limit;
+            if (overloaded) {
+                limit = Math.max(minLimit, (int) (limit * backoffRatio));
+            } else if (permit.inFlightAtStart * 2 >= limit) {
+                // only grow while the limit is actually in use
+                limit = Math.min(maxLimit, limit + 1);
+            }
+            if (limit != previous && LOGGER.isDebugEnabled()) {
+                LOGGER.debug("OCI concurrency limit {} -> {}", previous, limit);
+            }
+
+            grantWaiters();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Hands free permits to the oldest waiters. Called under {@link #lock}. */
+    private void grantWaiters() {
+        while (inFlight < limit && !queue.isEmpty()) {
+            Waiter waiter = queue.pollFirst();
+            waiter.granted = true;
+            ++inFlight;
+            waiter.condition.signal();
+        }
+    }
+
+    private static final class Waiter {
+        private final Condition condition;
+        private boolean granted;
+
+        Waiter(Condition condition) {
+            this.condition = condition;
+        }
+    }
+
+    /**
+     * Permission to make one OCI call. The call's latency (from the grant until {@link
+     * #recordLatency()} or {@link #close()}) and {@link #dropped()} feed the limit.
+     */
+    public final class Permit implements AutoCloseable {
+
+        private final boolean counted;
+        private final int inFlightAtStart;
+        private final long startNanos = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private long latencyNanos = -1L;
+        private boolean dropped;
+
+        private Permit(boolean counted, int inFlightAtStart) {
+            this.counted = counted;
+            this.inFlightAtStart = inFlightAtStart;
+        }
+
+        /**
+         * Takes the time elapsed so far as the call's latency, e.g. once a stream's response
+         * headers arrived, so the time spent reading the stream doesn't count as slowness.
+         */
+        public void recordLatency() {
+            if (latencyNanos < 0L) {
+                latencyNanos = System.nanoTime() - startNanos;
+            }
+        }
+
+        /** Marks the call as throttled or failed by an overloaded upstream. */
+        public void dropped() {
+            dropped = true;
+        }
+
+        @Override
+        public void close() {
+            if (!counted || !released.compareAndSet(false, true)) {
+                return;
+            }
+            recordLatency();
+            release(this, dropped || latencyNanos > latencyThresholdNanos);
+        }
+    }
+}
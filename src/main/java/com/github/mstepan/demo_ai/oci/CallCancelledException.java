@@ -0,0 +1,13 @@
+package com.github.mstepan.demo_ai.oci;
+
+/**
+ * Thrown when an OCI call was cancelled by its caller, i.e. its thread was interrupted, e.g. a
+ * hedged candidate that lost. Says nothing about the endpoint's health, so it's neither retried
+ * nor counted by the {@link OCICircuitBreaker}.
+ */
+public final class CallCancelledException extends RuntimeException {
+
+    public CallCancelledException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
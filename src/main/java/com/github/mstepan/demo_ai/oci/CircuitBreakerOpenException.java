@@ -0,0 +1,22 @@
+package com.github.mstepan.demo_ai.oci;
+
+import java.time.Duration;
+
+/**
+ * Thrown instead of calling OCI while the {@link OCICircuitBreaker} is open, i.e. OCI recently
+ * failed too often to be worth calling.
+ */
+public final class CircuitBreakerOpenException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public CircuitBreakerOpenException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    /** Time until the breaker lets a trial call through. */
+    public Duration retryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,21 @@
+package com.github.mstepan.demo_ai.oci;
+
+/**
+ * Thrown when an outbound OCI call didn't get a permit from {@link AdaptiveConcurrencyLimiter}:
+ * either too many callers were already queued or the queue timeout elapsed; or when it didn't get
+ * a client of the {@link OCIGenAiClientPool} within the acquire timeout.
+ */
+public final class ConcurrencyLimitExceededException extends RuntimeException {
+
+    private final int limit;
+
+    public ConcurrencyLimitExceededException(String message, int limit) {
+        super(message);
+        this.limit = limit;
+    }
+
+    /** Concurrency limit at the time of the rejection, the max connections for the pool. */
+    public int limit() {
+        return limit;
+    }
+}
@@ -0,0 +1,144 @@
+package com.github.mstepan.demo_ai.oci;
+
+import java.time.Duration;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Point in time by which a request must be answered, the client has given up after it.
+ *
+ * <p>The web layer binds it to {@link #CURRENT} for the whole request, downstream code derives its
+ * timeouts from the {@link #remaining()} time instead of from static settings only. A downstream
+ * call is not started once less than 'min_call_time' is left, it would most likely be cut off
+ * anyway, see {@link #checkCall}. Code without a bound deadline (background evaluations, tests) is
+ * bounded by its own timeouts only.
+ */
+public final class Deadline {
+
+    /** Deadline of the current request, unbound for internal calls. */
+    public static final ScopedValue<Deadline> CURRENT = ScopedValue.newInstance();
+
+    private final long expiresAtNanos;
+    private final long minCallNanos;
+
+    private Deadline(long expiresAtNanos, long minCallNanos) {
+        this.expiresAtNanos = expiresAtNanos;
+        this.minCallNanos = minCallNanos;
+    }
+
+    /**
+     * @param timeout time the request may take from now on
+     * @param minCallTime shortest remaining time a downstream call is still started with
+     */
+    public static Deadline after(Duration timeout, Duration minCallTime) {
+        return new Deadline(System.nanoTime() + timeout.toNanos(), minCallTime.toNanos());
+    }
+
+    /** Time left until the deadline, zero once it passed. */
+    public Duration remaining() {
+        return Duration.ofNanos(Math.max(0L, remainingNanos()));
+    }
+
+    /** True while a downstream call started now can still finish in time. */
+    public boolean allowsCall() {
+        return remainingNanos() >= minCallNanos;
+    }
+
+    /**
+     * @param call what is about to be called, for the exception message
+     * @throws DeadlineExceededException if too little time is left for the call
+     */
+    public void checkCall(String call) {
+        if (!allowsCall()) {
+            throw new DeadlineExceededException(
+                    "No time left for %s, %d ms remaining"
+                            .formatted(call, remaining().toMillis()));
+        }
+    }
+
+    /** Checks the {@link #CURRENT} deadline, if any, see {@link #checkCall(String)}. */
+    public static void checkCurrent(String call) {
+        if (CURRENT.isBound()) {
+            CURRENT.get().checkCall(call);
+        }
+    }
+
+    /**
+     * Interrupts the calling thread once the deadline passes, until the returned {@link Watch} is
+     * closed. Blocking waits (pool, limiter) react to the interrupt right away, and so does a
+     * virtual thread blocked in a socket read: the socket is closed and the in-flight HTTP request
+     * aborted. A platform thread stays blocked in the read until the read timeout.
+     */
+    public Watch interruptOnExpiry(ScheduledExecutorService timer) {
+        return new Watch(Thread.currentThread(), timer);
+    }
+
+    private long remainingNanos() {
+        return expiresAtNanos - System.nanoTime();
+    }
+
+    /** Pending interrupt of {@link #interruptOnExpiry}. */
+    public final class Watch implements AutoCloseable {
+
+        private final Thread thread;
+        private final ScheduledFuture<?> interrupt;
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        /** Guarded by {@link #lock}. */
+        private boolean closed;
+
+        /** Guarded by {@link #lock}. */
+        private boolean fired;
+
+        private Watch(Thread thread, ScheduledExecutorService timer) {
+            this.thread = thread;
+            this.interrupt = timer.schedule(this::fire, remainingNanos(), TimeUnit.NANOSECONDS);
+        }
+
+        /** True if the thread was interrupted because the deadline passed. */
+        public boolean expired() {
+            lock.lock();
+            try {
+                return fired;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /** Cancels the interrupt, or clears it if it came after the watched call was over. */
+        @Override
+        public void close() {
+            boolean interrupted;
+            lock.lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                interrupted = fired;
+            } finally {
+                lock.unlock();
+            }
+
+            interrupt.cancel(false);
+            if (interrupted) {
+                Thread.interrupted();
+            }
+        }
+
+        private void fire() {
+            lock.lock();
+            try {
+                if (!closed) {
+                    fired = true;
+                    thread.interrupt();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
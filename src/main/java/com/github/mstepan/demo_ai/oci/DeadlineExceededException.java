@@ -0,0 +1,16 @@
+package com.github.mstepan.demo_ai.oci;
+
+/**
+ * Thrown when the {@link Deadline} of a request passed, or is too close to start another
+ * downstream call.
+ */
+public final class DeadlineExceededException extends RuntimeException {
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+
+    public DeadlineExceededException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -4,35 +4,191 @@ import com.oracle.bmc.ClientConfiguration;
 import com.oracle.bmc.auth.SessionTokenAuthenticationDetailsProvider;
 import com.oracle.bmc.generativeaiinference.GenerativeAiInferenceClient;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.config.ConfigurableBeanFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Scope;
+import org.springframework.retry.RetryCallback;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.RetryListener;
+import org.springframework.retry.RetryPolicy;
+import org.springframework.retry.backoff.ExponentialRandomBackOffPolicy;
+import org.springframework.retry.context.RetryContextSupport;
+import org.springframework.retry.policy.CompositeRetryPolicy;
+import org.springframework.retry.policy.SimpleRetryPolicy;
+import org.springframework.retry.policy.TimeoutRetryPolicy;
+import org.springframework.retry.support.RetryTemplate;
 
 import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
-public class GenAiClientFactoryFactory {
+public class GenAiClientFactoryFactory implements DisposableBean {
+
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
     private static final int DEFAULT_CONNECTION_TIMEOUT_MS = 10_000;
     private static final int DEFAULT_READ_TIMEOUT_MS = 60_000;
 
     private final OCIGenAiProperties properties;
 
+    private final ScheduledExecutorService credentialsRefresher =
+            Executors.newSingleThreadScheduledExecutor(
+                    Thread.ofVirtual().name("oci-credentials-refresh").factory());
+
+    private volatile SessionTokenAuthenticationDetailsProvider authProvider;
+
     public GenAiClientFactoryFactory(OCIGenAiProperties properties) {
         this.properties = properties;
     }
 
+    /**
+     * Shared, long-lived client pool used for all outbound OCI GenAI calls. Closed on context
+     * shutdown, i.e. after the graceful web server shutdown has drained in-flight requests.
+     */
+    @Bean(destroyMethod = "close")
+    public OCIGenAiClientPool ociGenAiClientPool(MeterRegistry meterRegistry) {
+        return new OCIGenAiClientPool(
+                this::newClient,
+                properties.pool(),
+                OCIGenAiRouter.nameOf(properties.baseUrl()),
+                meterRegistry);
+    }
+
+    /**
+     * Routes chat calls across 'base.url' and 'oci.genai.routing.endpoints'. Every endpoint has
+     * its own client pool and circuit breaker, 'base.url' uses the pool above, shared with the
+     * embeddings.
+     */
+    @Bean(destroyMethod = "close")
+    public OCIGenAiRouter ociGenAiRouter(
+            OCIGenAiClientPool clientPool, MeterRegistry meterRegistry) {
+        List<OCIGenAiRouter.Endpoint> endpoints = new ArrayList<>();
+
+        String primary = OCIGenAiRouter.nameOf(properties.baseUrl());
+        endpoints.add(
+                new OCIGenAiRouter.Endpoint(
+                        primary,
+                        clientPool,
+                        new OCICircuitBreaker(
+                                properties.circuitBreaker(), primary, meterRegistry)));
+
+        for (String baseUrl : properties.routing().endpoints()) {
+            String name = OCIGenAiRouter.nameOf(baseUrl);
+            endpoints.add(
+                    new OCIGenAiRouter.Endpoint(
+                            name,
+                            new OCIGenAiClientPool(
+                                    () -> newClient(baseUrl),
+                                    properties.pool(),
+                                    name,
+                                    meterRegistry),
+                            new OCICircuitBreaker(
+                                    properties.circuitBreaker(), name, meterRegistry)));
+        }
+        LOGGER.info(
+                "OCI GenAI chat calls are routed across {}",
+                endpoints.stream().map(OCIGenAiRouter.Endpoint::name).toList());
+
+        return new OCIGenAiRouter(
+                endpoints,
+                properties.routing().decayTime(),
+                properties.readTimeout(),
+                meterRegistry);
+    }
+
+    /** Adaptive concurrency limit shared by all outbound chat calls, blocking and streaming. */
+    @Bean
+    public AdaptiveConcurrencyLimiter ociConcurrencyLimiter(MeterRegistry meterRegistry) {
+        return new AdaptiveConcurrencyLimiter(properties.limiter(), meterRegistry);
+    }
+
+    /** Retries of blocking chat calls, see {@link #newRetryTemplate}. */
+    @Bean
+    public RetryTemplate ociRetryTemplate(MeterRegistry meterRegistry) {
+        return newRetryTemplate(properties.retry(), meterRegistry);
+    }
+
+    /**
+     * Retries {@link OCIGenAiUnavailableException} up to 'max_attempts' times, but doesn't start a
+     * new attempt once 'total_timeout' passed since the first one, nor once the request's {@link
+     * Deadline} doesn't allow another call. Backoffs grow exponentially and are randomized
+     * (jitter), so callers failed by the same outage don't retry in lockstep.
+     *
+     * <p>Metrics (Prometheus/Micrometer):
+     *
+     * <ul>
+     *   <li>app_oci_retries_total (Counter): retried attempts
+     *   <li>app_oci_retry_exhausted_total (Counter): calls that still failed after their retries
+     * </ul>
+     */
+    static RetryTemplate newRetryTemplate(
+            OCIGenAiProperties.Retry settings, MeterRegistry meterRegistry) {
+        var attempts =
+                new SimpleRetryPolicy(
+                        settings.maxAttempts(),
+                        Map.of(OCIGenAiUnavailableException.class, true),
+                        true);
+        var deadline = new TimeoutRetryPolicy();
+        deadline.setTimeout(settings.totalTimeout().toMillis());
+
+        var retryPolicy = new CompositeRetryPolicy();
+        retryPolicy.setPolicies(new RetryPolicy[] {attempts, deadline, new DeadlineRetryPolicy()});
+
+        var backOffPolicy = new ExponentialRandomBackOffPolicy();
+        backOffPolicy.setInitialInterval(settings.initialBackoff().toMillis());
+        backOffPolicy.setMultiplier(settings.multiplier());
+        backOffPolicy.setMaxInterval(settings.maxBackoff().toMillis());
+
+        Counter retries = meterRegistry.counter("app_oci_retries_total");
+        Counter exhausted = meterRegistry.counter("app_oci_retry_exhausted_total");
+
+        var retryTemplate = new RetryTemplate();
+        retryTemplate.setRetryPolicy(retryPolicy);
+        retryTemplate.setBackOffPolicy(backOffPolicy);
+        retryTemplate.registerListener(
+                new RetryListener() {
+                    @Override
+                    public <T, E extends Throwable> void close(
+                            RetryContext context, RetryCallback<T, E> callback, Throwable ex) {
+                        // every failed attempt but the last one was retried
+                        int failedAttempts = context.getRetryCount();
+                        retries.increment(ex == null ? failedAttempts : failedAttempts - 1);
+                        if (ex instanceof OCIGenAiUnavailableException) {
+                            exhausted.increment();
+                        }
+                    }
+                });
+        return retryTemplate;
+    }
+
     /**
      * Prototype-scoped bean: each getObject() (via ObjectProvider/Provider) returns a new client.
-     * Caller is responsible for closing the client after use.
+     * Caller is responsible for closing the client after use. Application code should lease
+     * clients from {@link OCIGenAiClientPool} instead.
      */
     @Bean
     @Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
     public GenerativeAiInferenceClient newClient() {
-        try {
-            var authProvider = new SessionTokenAuthenticationDetailsProvider(properties.profile());
+        return newClient(properties.baseUrl());
+    }
 
+    /** New client bound to the given inference endpoint, see {@link #newClient()}. */
+    private GenerativeAiInferenceClient newClient(String endpoint) {
+        try {
             int connectionTimeoutMs =
                     (properties.connectionTimeout() != null)
                             ? (int) properties.connectionTimeout().toMillis()
@@ -52,15 +208,81 @@ public class GenAiClientFactoryFactory {
             var client =
                     GenerativeAiInferenceClient.builder()
                             .configuration(clientConfig)
-                            .build(authProvider);
+                            .build(authProvider());
 
             // Configure region or endpoint as needed
             // client.setRegion(Region.US_CHICAGO_1);
-            client.setEndpoint(properties.baseUrl());
+            client.setEndpoint(endpoint);
 
             return client;
         } catch (IOException ioEx) {
             throw new IllegalStateException(ioEx);
         }
     }
+
+    /**
+     * All clients share a single session token provider, so the profile is read from disk once
+     * and the token is refreshed in the background instead of on a caller's request path.
+     */
+    private SessionTokenAuthenticationDetailsProvider authProvider() throws IOException {
+        var provider = authProvider;
+        if (provider == null) {
+            synchronized (this) {
+                provider = authProvider;
+                if (provider == null) {
+                    provider = new SessionTokenAuthenticationDetailsProvider(properties.profile());
+                    authProvider = provider;
+                    scheduleCredentialsRefresh();
+                }
+            }
+        }
+        return provider;
+    }
+
+    private void scheduleCredentialsRefresh() {
+        long periodMs = properties.pool().credentialsRefreshInterval().toMillis();
+        credentialsRefresher.scheduleAtFixedRate(
+                this::refreshCredentials, periodMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void refreshCredentials() {
+        try {
+            authProvider.refresh();
+            LOGGER.debug("OCI session token refreshed for profile '{}'", properties.profile());
+        } catch (Exception ex) {
+            // Keep the schedule alive, the SDK still refreshes on a 401 as a fallback.
+            LOGGER.warn(
+                    "OCI session token refresh failed for profile '{}'", properties.profile(), ex);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        credentialsRefresher.shutdownNow();
+    }
+
+    /** Stops retrying once the {@link Deadline#CURRENT} deadline doesn't allow another call. */
+    private static final class DeadlineRetryPolicy implements RetryPolicy {
+
+        @Override
+        public boolean canRetry(RetryContext context) {
+            // the first attempt checks the deadline itself and fails with the reason
+            return context.getRetryCount() == 0
+                    || !Deadline.CURRENT.isBound()
+                    || Deadline.CURRENT.get().allowsCall();
+        }
+
+        @Override
+        public RetryContext open(RetryContext parent) {
+            return new RetryContextSupport(parent);
+        }
+
+        @Override
+        public void close(RetryContext context) {}
+
+        @Override
+        public void registerThrowable(RetryContext context, Throwable throwable) {
+            ((RetryContextSupport) context).registerThrowable(throwable);
+        }
+    }
 }
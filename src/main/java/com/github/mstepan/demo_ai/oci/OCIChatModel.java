@@ -8,49 +8,129 @@ import com.oracle.bmc.generativeaiinference.requests.ChatRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.model.Generation;
 import org.springframework.ai.chat.model.StreamingChatModel;
 import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Primary;
 import org.springframework.lang.NonNull;
+import org.springframework.retry.support.RetryTemplate;
 import org.springframework.stereotype.Component;
 
 import reactor.core.publisher.Flux;
-import reactor.core.scheduler.Schedulers;
 
 import java.lang.invoke.MethodHandles;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 @Primary
 @Component
-public class OCIChatModel implements ChatModel, StreamingChatModel {
+public class OCIChatModel implements ChatModel, StreamingChatModel, DisposableBean {
 
     private static final Logger LOGGER =
             LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
     private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
 
-    private final GenAiClientFactoryFactory clientConfig;
+    private final OCIGenAiRouter router;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final RetryTemplate retryTemplate;
     private final OCILogService logService;
     private final OCIGenAiProperties properties;
     private final OCIGenAiStreamingSinkFactory streamingSinkFactory;
 
+    /** Interrupts calls that outlive the {@link Deadline} of their request. */
+    private final ScheduledExecutorService deadlineTimer =
+            Executors.newSingleThreadScheduledExecutor(
+                    Thread.ofPlatform().daemon().name("oci-genai-deadline").factory());
+
     public OCIChatModel(
-            GenAiClientFactoryFactory clientConfig,
+            OCIGenAiRouter router,
+            AdaptiveConcurrencyLimiter limiter,
+            @Qualifier("ociRetryTemplate") RetryTemplate retryTemplate,
             OCILogService logService,
             OCIGenAiProperties properties,
             OCIGenAiStreamingSinkFactory streamingSinkFactory) {
-        this.clientConfig = clientConfig;
+        this.router = router;
+        this.limiter = limiter;
+        this.retryTemplate = retryTemplate;
         this.logService = logService;
         this.properties = properties;
         this.streamingSinkFactory = streamingSinkFactory;
     }
 
+    /**
+     * Calls OCI, transient failures are retried with backoff, see {@link
+     * GenAiClientFactoryFactory#newRetryTemplate}. Every attempt is routed by the {@link
+     * OCIGenAiRouter}, so a retry fails over to another endpoint once the failed one looks worse
+     * or its {@link OCICircuitBreaker} opened, and takes its own {@link AdaptiveConcurrencyLimiter}
+     * permit, so no permit is held while backing off.
+     *
+     * <p>With a {@link Deadline} bound, an attempt is only started while the deadline allows a
+     * call, and an attempt still running when the deadline passes is aborted: its thread is
+     * interrupted, which cancels waiting for a client or permit as well as the in-flight HTTP
+     * request. An attempt whose thread is interrupted otherwise is cancelled, it's neither retried
+     * nor counted against the endpoint.
+     *
+     * @throws DeadlineExceededException if the deadline passed before or during the call
+     * @throws OCIGenAiUnavailableException if OCI still failed transiently after the retries
+     * @throws OCIGenAiException if OCI rejected the request or its reply holds no answer
+     * @throws CallCancelledException if the calling thread was interrupted, e.g. a losing hedged
+     *     candidate
+     * @throws CircuitBreakerOpenException if the circuit breakers of all endpoints are open
+     * @throws ConcurrencyLimitExceededException if no permit of the {@link
+     *     AdaptiveConcurrencyLimiter} became free in time
+     */
     @Override
     @NonNull
     public ChatResponse call(@NonNull Prompt prompt) {
-        try (GenerativeAiInferenceClient client = clientConfig.newClient()) {
+        return retryTemplate.execute(context -> callOnce(prompt));
+    }
+
+    private ChatResponse callOnce(Prompt prompt) {
+        Deadline deadline = Deadline.CURRENT.isBound() ? Deadline.CURRENT.get() : null;
+        if (deadline != null) {
+            deadline.checkCall("OCI GenAI chat call");
+        }
+
+        OCIGenAiRouter.Route route = router.route();
+        Deadline.Watch watch = deadline == null ? null : deadline.interruptOnExpiry(deadlineTimer);
+        try (AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire()) {
+            ChatResponse response = call(prompt, permit, route);
+            route.onSuccess();
+            return response;
+        } catch (RuntimeException ex) {
+            if (watch != null) {
+                watch.close();
+                if (watch.expired()) {
+                    // our own timeout, says nothing about the endpoint's health
+                    route.onIgnored();
+                    throw new DeadlineExceededException(
+                            "Deadline exceeded during OCI GenAI chat call", ex);
+                }
+            }
+            if (ex instanceof OCIGenAiUnavailableException) {
+                route.onFailure();
+            } else {
+                route.onIgnored();
+            }
+            throw ex;
+        } finally {
+            if (watch != null) {
+                watch.close();
+            }
+        }
+    }
+
+    private ChatResponse call(
+            Prompt prompt, AdaptiveConcurrencyLimiter.Permit permit, OCIGenAiRouter.Route route) {
+        try (OCIGenAiClientPool.Lease lease = route.acquire()) {
+            GenerativeAiInferenceClient client = lease.client();
 
             // https://docs.oracle.com/en-us/iaas/api/#/en/generative-ai-inference/20231130/datatypes/SystemMessage
             SystemMessage systemPrompt =
@@ -127,8 +207,7 @@ public class OCIChatModel implements ChatModel, StreamingChatModel {
                     List<ChatChoice> choices = baseResponse.getChoices();
 
                     if (choices.isEmpty()) {
-                        LOGGER.warn("No choices inside LLM response");
-                        return ChatResponse.builder().build();
+                        throw malformedResponse("No choices inside LLM response");
                     }
 
                     ChatChoice firstChoice = choices.getFirst();
@@ -136,41 +215,76 @@ public class OCIChatModel implements ChatModel, StreamingChatModel {
                     List<ChatContent> chatContent = firstChoice.getMessage().getContent();
 
                     if (chatContent.isEmpty()) {
-                        System.err.println("Chat content is empty");
-                        return ChatResponse.builder().build();
+                        throw malformedResponse("Chat content is empty");
                     }
 
                     if (chatContent.getFirst() instanceof TextContent textContent) {
                         AssistantMessage assistant = new AssistantMessage(textContent.getText());
                         return ChatResponse.builder()
                                 .generations(List.of(new Generation(assistant)))
+                                .metadata(toMetadata(baseResponse.getUsage()))
                                 .build();
                     } else {
-                        LOGGER.warn("ChatContent is not of type TextContent");
-                        return ChatResponse.builder().build();
+                        throw malformedResponse("ChatContent is not of type TextContent");
                     }
                 } else {
-                    LOGGER.warn(
+                    throw malformedResponse(
                             "'response.getChatResult().getChatResponse()' is not of type 'GenericChatResponse'");
-                    return ChatResponse.builder().build();
                 }
             } else {
-                LOGGER.warn(
+                throw malformedResponse(
                         "'genericResponse' is not of type 'com.oracle.bmc.generativeaiinference.responses.ChatResponse'");
-                return ChatResponse.builder().build();
             }
 
         } catch (Exception ex) {
-            LOGGER.error("OCI GenAI call failed", ex);
-            return ChatResponse.builder().build();
+            if (Thread.currentThread().isInterrupted()) {
+                // interrupting closed the connection, the failure is ours, not the endpoint's
+                throw new CallCancelledException("OCI GenAI chat call cancelled", ex);
+            }
+            if (AdaptiveConcurrencyLimiter.isOverload(ex)) {
+                permit.dropped();
+            }
+            LOGGER.warn("OCI GenAI call to '{}' failed: {}", route.endpoint(), ex.toString());
+            throw OCIGenAiException.translate("OCI GenAI chat call failed", ex);
         }
     }
 
+    /**
+     * A reply without an answer, not retried: OCI would most likely answer the same again. Logged
+     * with the failure of the call.
+     */
+    private static OCIGenAiException malformedResponse(String reason) {
+        return new OCIGenAiException(
+                "OCI GenAI chat call returned no answer: " + reason,
+                null,
+                OCIGenAiException.NO_STATUS);
+    }
+
+    /** Token usage reported by OCI, it is what the token budgets are settled with. */
+    private static ChatResponseMetadata toMetadata(Usage usage) {
+        if (usage == null) {
+            return new ChatResponseMetadata();
+        }
+        return ChatResponseMetadata.builder()
+                .usage(
+                        new DefaultUsage(
+                                usage.getPromptTokens(),
+                                usage.getCompletionTokens(),
+                                usage.getTotalTokens()))
+                .build();
+    }
+
     @Override
     @NonNull
     public Flux<ChatResponse> stream(@NonNull Prompt prompt) {
-        return Flux.<ChatResponse>create(streamingSinkFactory.newInstance(prompt))
-                .subscribeOn(Schedulers.boundedElastic());
+        // The sink runs the blocking OCI call on its own virtual thread, see
+        // OCIGenAiStreamingSinkFactory
+        return Flux.create(streamingSinkFactory.newInstance(prompt));
+    }
+
+    @Override
+    public void destroy() {
+        deadlineTimer.shutdownNow();
     }
 
     public enum RequestDirection {
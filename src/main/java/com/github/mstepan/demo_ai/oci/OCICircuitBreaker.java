@@ -0,0 +1,284 @@
+package com.github.mstepan.demo_ai.oci;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Circuit breaker in front of outbound OCI chat calls of one inference endpoint, so an outage
+ * sheds load right away instead of every request waiting for its own timeouts and retries. The
+ * {@link OCIGenAiRouter} sends calls to other endpoints while a breaker is open.
+ *
+ * <p>CLOSED: calls go through, the outcomes of the last 'window_size' calls are kept and once at
+ * least 'minimum_calls' of them are known and 'failure_rate_threshold' of them failed the breaker
+ * opens. OPEN: calls fail with {@link CircuitBreakerOpenException} for 'open_duration'. HALF_OPEN:
+ * up to 'half_open_calls' trial calls go through, the breaker closes once all of them succeeded
+ * and opens again on the first failure.
+ *
+ * <p>Only transient upstream failures ({@link OCIGenAiUnavailableException}) count as failures.
+ * Calls that failed for other reasons, e.g. a rejected request or no concurrency permit, are
+ * {@link #onIgnored() ignored}.
+ *
+ * <p>Metrics (Prometheus/Micrometer), tagged with the endpoint:
+ *
+ * <ul>
+ *   <li>app_oci_circuit_state (Gauge): 0 - closed, 1 - half open, 2 - open
+ *   <li>app_oci_circuit_transitions_total (Counter): state changes, state in {"closed",
+ *       "half_open","open"}
+ *   <li>app_oci_circuit_rejected_total (Counter): calls rejected by an open breaker
+ * </ul>
+ */
+public final class OCICircuitBreaker {
+
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    public enum State {
+        CLOSED,
+        HALF_OPEN,
+        OPEN
+    }
+
+    private final String endpoint;
+    private final boolean enabled;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openDurationNanos;
+    private final int halfOpenCalls;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Outcomes of the last calls, true for a failure; guarded by {@link #lock}. */
+    private final boolean[] window;
+
+    private int windowPosition;
+    private int windowCalls;
+    private int windowFailures;
+
+    private long openedAtNanos;
+    private int trialCallsStarted;
+    private int trialCallsSucceeded;
+
+    /** Written under {@link #lock}, volatile for the gauge. */
+    private volatile State state = State.CLOSED;
+
+    private final Map<State, Counter> transitions = new EnumMap<>(State.class);
+    private final Counter rejected;
+
+    public OCICircuitBreaker(
+            OCIGenAiProperties.CircuitBreaker settings,
+            String endpoint,
+            MeterRegistry meterRegistry) {
+        this.enabled = Boolean.TRUE.equals(settings.enabled());
+        this.window = new boolean[settings.windowSize()];
+        this.minimumCalls = Math.min(settings.minimumCalls(), settings.windowSize());
+        this.failureRateThreshold = settings.failureRateThreshold();
+        this.openDurationNanos = settings.openDuration().toNanos();
+        this.halfOpenCalls = settings.halfOpenCalls();
+
+        this.endpoint = endpoint;
+
+        Gauge.builder("app_oci_circuit_state", this, breaker -> breaker.state.ordinal())
+                .tag("endpoint", endpoint)
+                .register(meterRegistry);
+        for (State to : State.values()) {
+            transitions.put(
+                    to,
+                    meterRegistry.counter(
+                            "app_oci_circuit_transitions_total",
+                            "endpoint",
+                            endpoint,
+                            "state",
+                            to.name().toLowerCase(Locale.ROOT)));
+        }
+        this.rejected =
+                meterRegistry.counter("app_oci_circuit_rejected_total", "endpoint", endpoint);
+    }
+
+    /**
+     * Lets a call through or rejects it. A call let through must report its outcome with exactly
+     * one of {@link #onSuccess()}, {@link #onFailure()} or {@link #onIgnored()}.
+     *
+     * @throws CircuitBreakerOpenException while the breaker is open, or half open with all trial
+     *     calls in flight
+     */
+    public void acquirePermission() {
+        if (!enabled) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            if (state == State.OPEN) {
+                long remainingNanos = openedAtNanos + openDurationNanos - System.nanoTime();
+                if (remainingNanos > 0L) {
+                    rejected.increment();
+                    throw new CircuitBreakerOpenException(
+                            "OCI GenAI circuit breaker of '%s' is open".formatted(endpoint),
+                            Duration.ofNanos(remainingNanos));
+                }
+                transitionTo(State.HALF_OPEN);
+            }
+
+            if (state == State.HALF_OPEN) {
+                if (trialCallsStarted >= halfOpenCalls) {
+                    rejected.increment();
+                    throw new CircuitBreakerOpenException(
+                            "OCI GenAI circuit breaker of '%s' is half open, trial calls in flight"
+                                    .formatted(endpoint),
+                            Duration.ofSeconds(1L));
+                }
+                ++trialCallsStarted;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void onSuccess() {
+        record(false);
+    }
+
+    public void onFailure() {
+        record(true);
+    }
+
+    /** The call failed for a reason that says nothing about OCI's health. */
+    public void onIgnored() {
+        if (!enabled) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            if (state == State.HALF_OPEN && trialCallsStarted > 0) {
+                // give the trial slot to the next call
+                --trialCallsStarted;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public State state() {
+        return state;
+    }
+
+    /**
+     * True if {@link #acquirePermission()} would let a call through right now, without taking
+     * the permission.
+     */
+    public boolean isCallPermitted() {
+        if (!enabled) {
+            return true;
+        }
+
+        lock.lock();
+        try {
+            return switch (state) {
+                case CLOSED -> true;
+                case HALF_OPEN -> trialCallsStarted < halfOpenCalls;
+                case OPEN -> System.nanoTime() - openedAtNanos >= openDurationNanos;
+            };
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Time until an open breaker lets a trial call through, zero if it isn't open. */
+    public Duration retryAfter() {
+        lock.lock();
+        try {
+            if (state != State.OPEN) {
+                return Duration.ZERO;
+            }
+            return Duration.ofNanos(
+                    Math.max(0L, openedAtNanos + openDurationNanos - System.nanoTime()));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void record(boolean failure) {
+        if (!enabled) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            switch (state) {
+                case CLOSED -> {
+                    addToWindow(failure);
+                    if (windowCalls >= minimumCalls
+                            && windowFailures >= failureRateThreshold * windowCalls) {
+                        open();
+                    }
+                }
+                case HALF_OPEN -> {
+                    if (failure) {
+                        open();
+                    } else if (++trialCallsSucceeded >= halfOpenCalls) {
+                        transitionTo(State.CLOSED);
+                    }
+                }
+                case OPEN -> {
+                    // a call started before the breaker opened, its outcome is stale
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Called under {@link #lock}. */
+    private void addToWindow(boolean failure) {
+        if (windowCalls == window.length) {
+            if (window[windowPosition]) {
+                --windowFailures;
+            }
+        } else {
+            ++windowCalls;
+        }
+        window[windowPosition] = failure;
+        if (failure) {
+            ++windowFailures;
+        }
+        windowPosition = (windowPosition + 1) % window.length;
+    }
+
+    /** Called under {@link #lock}. */
+    private void open() {
+        openedAtNanos = System.nanoTime();
+        transitionTo(State.OPEN);
+    }
+
+    /** Called under {@link #lock}. */
+    private void transitionTo(State to) {
+        State from = state;
+        state = to;
+
+        // every state starts from scratch
+        windowPosition = 0;
+        windowCalls = 0;
+        windowFailures = 0;
+        trialCallsStarted = 0;
+        trialCallsSucceeded = 0;
+
+        transitions.get(to).increment();
+        if (to == State.CLOSED) {
+            LOGGER.info("OCI GenAI circuit breaker of '{}' {} -> {}", endpoint, from, to);
+        } else {
+            LOGGER.warn("OCI GenAI circuit breaker of '{}' {} -> {}", endpoint, from, to);
+        }
+    }
+}
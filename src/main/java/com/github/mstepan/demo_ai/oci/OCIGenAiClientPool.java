@@ -0,0 +1,203 @@
+package com.github.mstepan.demo_ai.oci;
+
+import com.oracle.bmc.generativeaiinference.GenerativeAiInferenceClient;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool of long-lived {@link GenerativeAiInferenceClient} instances of one inference
+ * endpoint.
+ *
+ * <p>Clients are created lazily (so the application starts without OCI credentials) and reused
+ * across calls, which keeps HTTP connections and TLS sessions warm. At most {@code
+ * maxConnections} clients are leased at the same time; callers block (cheap on virtual threads)
+ * up to {@code acquireTimeout} for a free one, then fail with {@link
+ * ConcurrencyLimitExceededException} (503 like the concurrency limiter). Idle clients are handed
+ * out LIFO so the most recently used connection is picked first.
+ *
+ * <p>Metrics (Prometheus/Micrometer), tagged with the endpoint:
+ *
+ * <ul>
+ *   <li>app_oci_client_pool_size (Gauge): clients created so far
+ *   <li>app_oci_client_pool_active (Gauge): clients currently leased
+ *   <li>app_oci_client_pool_pending (Gauge): callers waiting for a client
+ *   <li>app_oci_client_pool_max (Gauge): configured max connections
+ *   <li>app_oci_client_pool_acquire_seconds (Timer): time spent waiting for a client
+ * </ul>
+ */
+public final class OCIGenAiClientPool implements AutoCloseable {
+
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private final Supplier<GenerativeAiInferenceClient> clientFactory;
+    private final int maxConnections;
+    private final Duration acquireTimeout;
+
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<GenerativeAiInferenceClient> idle =
+            new ConcurrentLinkedDeque<>();
+    private final Set<GenerativeAiInferenceClient> allClients = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Timer acquireTimer;
+
+    private volatile boolean closed;
+
+    public OCIGenAiClientPool(
+            Supplier<GenerativeAiInferenceClient> clientFactory,
+            OCIGenAiProperties.Pool settings,
+            String endpoint,
+            MeterRegistry meterRegistry) {
+        this.clientFactory = clientFactory;
+        this.maxConnections = settings.maxConnections();
+        this.acquireTimeout = settings.acquireTimeout();
+        this.permits = new Semaphore(maxConnections, true);
+
+        Gauge.builder("app_oci_client_pool_size", allClients, Set::size)
+                .tag("endpoint", endpoint)
+                .register(meterRegistry);
+        Gauge.builder("app_oci_client_pool_active", active, AtomicInteger::get)
+                .tag("endpoint", endpoint)
+                .register(meterRegistry);
+        Gauge.builder("app_oci_client_pool_pending", pending, AtomicInteger::get)
+                .tag("endpoint", endpoint)
+                .register(meterRegistry);
+        Gauge.builder("app_oci_client_pool_max", this, pool -> pool.maxConnections)
+                .tag("endpoint", endpoint)
+                .register(meterRegistry);
+        this.acquireTimer =
+                Timer.builder("app_oci_client_pool_acquire_seconds")
+                        .tag("endpoint", endpoint)
+                        .register(meterRegistry);
+    }
+
+    /**
+     * Leases a client from the pool. The returned {@link Lease} must be closed to give the client
+     * back, preferably with try-with-resources.
+     *
+     * @throws ConcurrencyLimitExceededException if no client became available within the acquire
+     *     timeout
+     * @throws IllegalStateException if the pool is closed or the waiting thread was interrupted
+     */
+    public Lease acquire() {
+        if (closed) {
+            throw new IllegalStateException("OCI GenAI client pool is closed");
+        }
+
+        long startNanos = System.nanoTime();
+        pending.incrementAndGet();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException interEx) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(
+                    "Interrupted while waiting for OCI GenAI client", interEx);
+        } finally {
+            pending.decrementAndGet();
+            acquireTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+
+        if (!acquired) {
+            throw new ConcurrencyLimitExceededException(
+                    String.format(
+                            "No OCI GenAI client available within %d ms (max connections = %d)",
+                            acquireTimeout.toMillis(), maxConnections),
+                    maxConnections);
+        }
+
+        try {
+            GenerativeAiInferenceClient client = idle.pollFirst();
+            if (client == null) {
+                client = clientFactory.get();
+                allClients.add(client);
+                LOGGER.debug("Created pooled OCI GenAI client, pool size = {}", allClients.size());
+            }
+            active.incrementAndGet();
+            return new Lease(client);
+        } catch (RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    /** Closes idle clients immediately; leased clients are closed as soon as they are returned. */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        closeIdle();
+        LOGGER.info("OCI GenAI client pool closed, {} client(s) still leased", active.get());
+    }
+
+    private void release(GenerativeAiInferenceClient client) {
+        active.decrementAndGet();
+        if (closed) {
+            closeQuietly(client);
+        } else {
+            idle.offerFirst(client);
+            if (closed) {
+                // closed in the meantime, its drain may have run before the client was back
+                closeIdle();
+            }
+        }
+        permits.release();
+    }
+
+    private void closeIdle() {
+        GenerativeAiInferenceClient client;
+        while ((client = idle.pollFirst()) != null) {
+            closeQuietly(client);
+        }
+    }
+
+    private void closeQuietly(GenerativeAiInferenceClient client) {
+        allClients.remove(client);
+        try {
+            client.close();
+        } catch (Exception ex) {
+            LOGGER.warn("Failed to close OCI GenAI client", ex);
+        }
+    }
+
+    /** A client borrowed from the pool; closing the lease returns the client. */
+    public final class Lease implements AutoCloseable {
+
+        private final GenerativeAiInferenceClient client;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Lease(GenerativeAiInferenceClient client) {
+            this.client = client;
+        }
+
+        public GenerativeAiInferenceClient client() {
+            return client;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                release(client);
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.github.mstepan.demo_ai.oci;
+
+import com.github.mstepan.demo_ai.embedding.Embedder;
+import com.oracle.bmc.generativeaiinference.model.EmbedTextDetails;
+import com.oracle.bmc.generativeaiinference.model.OnDemandServingMode;
+import com.oracle.bmc.generativeaiinference.requests.EmbedTextRequest;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link Embedder} backed by the OCI GenAI 'embedText' API. Inputs are split into requests of at
+ * most 'oci.genai.embedding.max_batch_size' texts, each sent through a pooled client.
+ *
+ * <p>Metrics (Prometheus/Micrometer):
+ *
+ * <ul>
+ *   <li>app_oci_embedding_latency_seconds (Timer): latency of a single embedText call
+ * </ul>
+ */
+@Component
+@ConditionalOnProperty(name = "app.embedding.provider", havingValue = "oci", matchIfMissing = true)
+public class OCIGenAiEmbedder implements Embedder {
+
+    private final OCIGenAiClientPool clientPool;
+    private final OCIGenAiProperties properties;
+    private final Timer latencyTimer;
+
+    public OCIGenAiEmbedder(
+            OCIGenAiClientPool clientPool,
+            OCIGenAiProperties properties,
+            MeterRegistry meterRegistry) {
+        this.clientPool = clientPool;
+        this.properties = properties;
+        this.latencyTimer =
+                Timer.builder("app_oci_embedding_latency_seconds").register(meterRegistry);
+    }
+
+    @Override
+    public int dimensions() {
+        return properties.embedding().dimensions();
+    }
+
+    @Override
+    public int maxBatchSize() {
+        return properties.embedding().maxBatchSize();
+    }
+
+    @Override
+    public float[] embed(String text) {
+        return embedAll(List.of(text)).getFirst();
+    }
+
+    @Override
+    public List<float[]> embedAll(List<String> texts) {
+        int batchSize = properties.embedding().maxBatchSize();
+        List<float[]> vectors = new ArrayList<>(texts.size());
+        for (int from = 0; from < texts.size(); from += batchSize) {
+            vectors.addAll(
+                    embedBatch(texts.subList(from, Math.min(from + batchSize, texts.size()))));
+        }
+        return vectors;
+    }
+
+    private List<float[]> embedBatch(List<String> batch) {
+        // https://docs.oracle.com/en-us/iaas/api/#/en/generative-ai-inference/20231130/datatypes/EmbedTextDetails
+        EmbedTextDetails embedTextDetails =
+                EmbedTextDetails.builder()
+                        .inputs(batch)
+                        .servingMode(
+                                OnDemandServingMode.builder()
+                                        .modelId(properties.embedding().model())
+                                        .build())
+                        .compartmentId(properties.compartment())
+                        .truncate(EmbedTextDetails.Truncate.End)
+                        .build();
+
+        EmbedTextRequest request =
+                EmbedTextRequest.builder().embedTextDetails(embedTextDetails).build();
+
+        List<List<Float>> embeddings =
+                latencyTimer.record(
+                        () -> {
+                            try (OCIGenAiClientPool.Lease lease = clientPool.acquire()) {
+                                return lease.client()
+                                        .embedText(request)
+                                        .getEmbedTextResult()
+                                        .getEmbeddings();
+                            }
+                        });
+
+        if (embeddings == null || embeddings.size() != batch.size()) {
+            throw new IllegalStateException(
+                    String.format(
+                            "OCI embedText returned %d vectors for %d inputs",
+                            embeddings == null ? 0 : embeddings.size(), batch.size()));
+        }
+
+        List<float[]> vectors = new ArrayList<>(embeddings.size());
+        for (List<Float> embedding : embeddings) {
+            float[] vector = new float[embedding.size()];
+            for (int i = 0; i < vector.length; ++i) {
+                vector[i] = embedding.get(i);
+            }
+            vectors.add(vector);
+        }
+        return vectors;
+    }
+}
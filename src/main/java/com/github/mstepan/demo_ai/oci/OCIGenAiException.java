@@ -0,0 +1,70 @@
+package com.github.mstepan.demo_ai.oci;
+
+import com.oracle.bmc.model.BmcException;
+
+import java.io.InterruptedIOException;
+import java.net.SocketException;
+
+/**
+ * A failed OCI GenAI call that retrying won't fix, e.g. a rejected (4xx) request. Transient
+ * failures are reported as {@link OCIGenAiUnavailableException}.
+ */
+public class OCIGenAiException extends RuntimeException {
+
+    /** Status code of failures that didn't get an HTTP response. */
+    public static final int NO_STATUS = -1;
+
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    private static final int HTTP_SERVER_ERROR = 500;
+
+    private final int statusCode;
+
+    public OCIGenAiException(String message, Throwable cause, int statusCode) {
+        super(message, cause);
+        this.statusCode = statusCode;
+    }
+
+    /** HTTP status code OCI answered with, {@link #NO_STATUS} if there was no response. */
+    public int statusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Translates a failure of an OCI call: timeouts, throttling (429), server errors (5xx) and
+     * transport errors become {@link OCIGenAiUnavailableException}, other OCI errors {@link
+     * OCIGenAiException}. Local failures (e.g. no pooled client) are returned unchanged when
+     * unchecked.
+     */
+    public static RuntimeException translate(String message, Exception ex) {
+        BmcException bmcEx = findCause(ex, BmcException.class);
+        if (bmcEx != null) {
+            int statusCode = bmcEx.getStatusCode();
+            if (bmcEx.isTimeout()
+                    || statusCode <= 0
+                    || statusCode == HTTP_TOO_MANY_REQUESTS
+                    || statusCode >= HTTP_SERVER_ERROR) {
+                return new OCIGenAiUnavailableException(message, ex, statusCode);
+            }
+            return new OCIGenAiException(message, ex, statusCode);
+        }
+
+        if (findCause(ex, SocketException.class) != null
+                || findCause(ex, InterruptedIOException.class) != null) {
+            return new OCIGenAiUnavailableException(message, ex, NO_STATUS);
+        }
+
+        if (ex instanceof RuntimeException runtimeEx) {
+            return runtimeEx;
+        }
+        return new OCIGenAiException(message, ex, NO_STATUS);
+    }
+
+    private static <T extends Throwable> T findCause(Throwable ex, Class<T> type) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (type.isInstance(cause)) {
+                return type.cast(cause);
+            }
+        }
+        return null;
+    }
+}
@@ -1,7 +1,10 @@
 package com.github.mstepan.demo_ai.oci;
 
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.DecimalMax;
 import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Pattern;
 
@@ -13,6 +16,7 @@ import org.springframework.boot.context.properties.bind.Name;
 import org.springframework.validation.annotation.Validated;
 
 import java.time.Duration;
+import java.util.List;
 
 /** Binds properties under 'oci.genai' from 'application.yaml'. */
 @ConfigurationProperties(prefix = "oci.genai")
@@ -37,9 +41,111 @@ public record OCIGenAiProperties(
         @DurationMin(seconds = 5) @DurationMax(seconds = 60) @DefaultValue("10s")
                 Duration connectionTimeout,
         @DurationMin(seconds = 5) @DurationMax(seconds = 120) @DefaultValue("60s")
-                Duration readTimeout) {
+                Duration readTimeout,
+        @Valid @DefaultValue Pool pool,
+        @Valid @DefaultValue Embedding embedding,
+        @Valid @DefaultValue Limiter limiter,
+        @Valid @DefaultValue Retry retry,
+        @Valid @DefaultValue CircuitBreaker circuitBreaker,
+        @Valid @DefaultValue Routing routing) {
     // Accepts both 'ocid1.compartment.oc1..xxxxx' (no region) and
     // 'ocid1.compartment.oc1.<region>.xxxxx'
     public static final String COMPARTMENT_OCID_REGEX =
             "^ocid1\\.compartment\\.oc\\d+\\.(?:[a-z0-9-]+\\.|\\.)[A-Za-z0-9]+$";
+
+    /**
+     * Shared client pool settings (under 'oci.genai.pool').
+     *
+     * @param maxConnections upper bound of pooled clients, i.e. concurrent outbound OCI calls
+     * @param acquireTimeout how long a caller may wait for a free client before failing
+     * @param credentialsRefreshInterval period of the background session token refresh
+     */
+    public record Pool(
+            @Min(1) @Max(512) @DefaultValue("16") Integer maxConnections,
+            @DurationMin(millis = 1) @DurationMax(seconds = 60) @DefaultValue("5s")
+                    Duration acquireTimeout,
+            @DurationMin(minutes = 1) @DefaultValue("15m") Duration credentialsRefreshInterval) {}
+
+    /**
+     * Text embedding settings (under 'oci.genai.embedding').
+     *
+     * @param model embedding model id, e.g. 'cohere.embed-multilingual-v3.0'
+     * @param dimensions size of the vectors produced by the model
+     * @param maxBatchSize max number of inputs OCI accepts in a single embedText call
+     */
+    public record Embedding(
+            @NotBlank @DefaultValue("cohere.embed-multilingual-v3.0") String model,
+            @Min(1) @DefaultValue("1024") Integer dimensions,
+            @Min(1) @Max(96) @DefaultValue("96") Integer maxBatchSize) {}
+
+    /**
+     * Adaptive (AIMD) concurrency limit of outbound chat calls (under 'oci.genai.limiter'), see
+     * {@link AdaptiveConcurrencyLimiter}.
+     *
+     * @param enabled on by default, disable to only be bounded by the client pool
+     * @param initialLimit concurrency limit at startup
+     * @param minLimit the limit never drops below this
+     * @param maxLimit the limit never grows above this, keep it at most 'pool.max_connections'
+     * @param backoffRatio multiplicative decrease of the limit on throttling, errors or slow calls
+     * @param latencyThreshold a call slower than this counts as an overload signal
+     * @param maxQueueSize max number of callers waiting for a permit, further ones are rejected
+     * @param queueTimeout max time a caller waits for a permit before it is rejected
+     */
+    public record Limiter(
+            @DefaultValue("true") Boolean enabled,
+            @Min(1) @DefaultValue("8") Integer initialLimit,
+            @Min(1) @DefaultValue("1") Integer minLimit,
+            @Min(1) @Max(512) @DefaultValue("16") Integer maxLimit,
+            @DecimalMin("0.1") @DecimalMax("0.99") @DefaultValue("0.9") Double backoffRatio,
+            @DurationMin(millis = 1) @DefaultValue("30s") Duration latencyThreshold,
+            @Min(0) @DefaultValue("128") Integer maxQueueSize,
+            @DurationMin(millis = 0) @DefaultValue("1s") Duration queueTimeout) {}
+
+    /**
+     * Retries of failed chat calls (under 'oci.genai.retry'). Only transient failures (timeouts,
+     * 429, 5xx, broken connections) are retried, with exponential backoff plus random jitter.
+     *
+     * @param maxAttempts max number of attempts including the first one, 1 disables retries
+     * @param initialBackoff backoff before the first retry
+     * @param multiplier growth of the backoff from one retry to the next
+     * @param maxBackoff upper bound of a single backoff
+     * @param totalTimeout no further attempt is started once this much time passed since the first
+     */
+    public record Retry(
+            @Min(1) @Max(10) @DefaultValue("3") Integer maxAttempts,
+            @DurationMin(millis = 1) @DefaultValue("200ms") Duration initialBackoff,
+            @DecimalMin("1.0") @DecimalMax("10.0") @DefaultValue("2.0") Double multiplier,
+            @DurationMin(millis = 1) @DefaultValue("2s") Duration maxBackoff,
+            @DurationMin(millis = 1) @DefaultValue("20s") Duration totalTimeout) {}
+
+    /**
+     * Circuit breaker of outbound chat calls (under 'oci.genai.circuit_breaker'), see {@link
+     * OCICircuitBreaker}. Every endpoint has its own breaker.
+     *
+     * @param enabled on by default
+     * @param windowSize number of recent calls the failure rate is computed over
+     * @param minimumCalls the breaker doesn't open before this many calls are in the window
+     * @param failureRateThreshold share of failed calls in the window that opens the breaker
+     * @param openDuration how long an open breaker rejects calls before letting trial calls through
+     * @param halfOpenCalls trial calls that must all succeed to close the breaker again
+     */
+    public record CircuitBreaker(
+            @DefaultValue("true") Boolean enabled,
+            @Min(1) @Max(1000) @DefaultValue("20") Integer windowSize,
+            @Min(1) @DefaultValue("10") Integer minimumCalls,
+            @DecimalMin("0.01") @DecimalMax("1.0") @DefaultValue("0.5") Double failureRateThreshold,
+            @DurationMin(millis = 1) @DefaultValue("30s") Duration openDuration,
+            @Min(1) @DefaultValue("2") Integer halfOpenCalls) {}
+
+    /**
+     * Routing of chat calls across inference endpoints (under 'oci.genai.routing'), see {@link
+     * OCIGenAiRouter}.
+     *
+     * @param endpoints inference endpoints besides 'base.url', e.g. of other regions; empty routes
+     *     every call to 'base.url'
+     * @param decayTime how fast the latency and error rate averages forget older calls
+     */
+    public record Routing(
+            @DefaultValue List<String> endpoints,
+            @DurationMin(millis = 1) @DefaultValue("10s") Duration decayTime) {}
 }
@@ -0,0 +1,320 @@
+package com.github.mstepan.demo_ai.oci;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Routes outbound chat calls across several OCI inference endpoints, e.g. of different regions.
+ *
+ * <p>Every call goes to the better of two randomly picked endpoints ("power of two choices"), so
+ * the load follows the endpoints' health without every caller herding onto the single best one.
+ * The cost of an endpoint is its latency average times its in-flight calls + 1, divided by its
+ * success rate average. Both are exponentially weighted moving averages that decay with
+ * 'oci.genai.routing.decay_time', so a recovered endpoint wins calls back soon. A failed call
+ * counts as a call that took 'read_timeout', and an endpoint not called yet costs nothing, so it
+ * is tried right away.
+ *
+ * <p>Endpoints whose {@link OCICircuitBreaker} is open are skipped, i.e. calls fail over to the
+ * remaining ones. Only when the breakers of all endpoints are open the call fails with {@link
+ * CircuitBreakerOpenException}.
+ *
+ * <p>Metrics (Prometheus/Micrometer), tagged with the endpoint:
+ *
+ * <ul>
+ *   <li>app_oci_endpoint_latency_seconds (Timer, histogram): latency of successful calls
+ *   <li>app_oci_endpoint_failures_total (Counter): failed calls
+ *   <li>app_oci_endpoint_latency_ewma_seconds (Gauge): latency average the routing is based on
+ *   <li>app_oci_endpoint_error_rate (Gauge): error rate average the routing is based on
+ * </ul>
+ */
+public final class OCIGenAiRouter implements AutoCloseable {
+
+    /** Region part of OCI GenAI inference hosts. */
+    private static final Pattern OCI_REGION = Pattern.compile("\\.generativeai\\.([a-z0-9-]+)\\.");
+
+    /** Retry-After while all breakers are half open with their trial calls in flight. */
+    private static final Duration HALF_OPEN_RETRY_AFTER = Duration.ofSeconds(1L);
+
+    /** Success rate a failing endpoint is costed with at worst, i.e. at most 20x its latency. */
+    private static final double MIN_SUCCESS_RATE = 0.05;
+
+    private final List<Node> nodes;
+    private final double decayNanos;
+    private final long failurePenaltyNanos;
+
+    /**
+     * @param endpoints endpoints to route across, the first one is the primary; the router closes
+     *     their pools
+     * @param decayTime how fast the averages forget older calls
+     * @param failurePenalty latency a failed call is counted with
+     */
+    public OCIGenAiRouter(
+            List<Endpoint> endpoints,
+            Duration decayTime,
+            Duration failurePenalty,
+            MeterRegistry meterRegistry) {
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException("At least one OCI GenAI endpoint is required");
+        }
+
+        Set<String> names = new HashSet<>();
+        List<Node> newNodes = new ArrayList<>(endpoints.size());
+        for (Endpoint endpoint : endpoints) {
+            if (!names.add(endpoint.name())) {
+                throw new IllegalArgumentException(
+                        "Duplicate OCI GenAI endpoint '%s'".formatted(endpoint.name()));
+            }
+            newNodes.add(new Node(endpoint, meterRegistry));
+        }
+        this.nodes = List.copyOf(newNodes);
+        this.decayNanos = decayTime.toNanos();
+        this.failurePenaltyNanos = failurePenalty.toNanos();
+    }
+
+    /**
+     * Endpoint name used in metrics and logs: the region of OCI GenAI hosts, e.g. 'us-chicago-1',
+     * host and port of any other URL.
+     */
+    static String nameOf(String baseUrl) {
+        URI uri = URI.create(baseUrl);
+        String host = uri.getHost() == null ? baseUrl : uri.getHost();
+
+        Matcher regionMatcher = OCI_REGION.matcher(host);
+        if (regionMatcher.find()) {
+            return regionMatcher.group(1);
+        }
+        return uri.getPort() < 0 ? host : host + ":" + uri.getPort();
+    }
+
+    /**
+     * Picks the endpoint of the next call and takes the permission of its circuit breaker. The
+     * returned {@link Route} must report the outcome of the call.
+     *
+     * @throws CircuitBreakerOpenException if the breakers of all endpoints are open
+     */
+    public Route route() {
+        List<Node> candidates = new ArrayList<>(nodes.size());
+        for (Node node : nodes) {
+            if (node.endpoint.circuitBreaker().isCallPermitted()) {
+                candidates.add(node);
+            }
+        }
+
+        while (!candidates.isEmpty()) {
+            Node node = pick(candidates);
+            try {
+                node.endpoint.circuitBreaker().acquirePermission();
+                node.inFlight.incrementAndGet();
+                return new Route(node);
+            } catch (CircuitBreakerOpenException ex) {
+                // opened since it was checked, fail over to the others
+                candidates.remove(node);
+            }
+        }
+
+        Duration retryAfter = null;
+        for (Node node : nodes) {
+            Duration nodeRetryAfter = node.endpoint.circuitBreaker().retryAfter();
+            if (retryAfter == null || nodeRetryAfter.compareTo(retryAfter) < 0) {
+                retryAfter = nodeRetryAfter;
+            }
+        }
+        throw new CircuitBreakerOpenException(
+                "OCI GenAI circuit breakers of all endpoints are open",
+                retryAfter.isZero() ? HALF_OPEN_RETRY_AFTER : retryAfter);
+    }
+
+    /** The primary (first) endpoint. */
+    public Endpoint primary() {
+        return nodes.getFirst().endpoint;
+    }
+
+    /** Closes the client pools of all endpoints. */
+    @Override
+    public void close() {
+        for (Node node : nodes) {
+            node.endpoint.pool().close();
+        }
+    }
+
+    double cost(String endpoint) {
+        for (Node node : nodes) {
+            if (node.endpoint.name().equals(endpoint)) {
+                return node.cost();
+            }
+        }
+        throw new IllegalArgumentException("Unknown OCI GenAI endpoint '%s'".formatted(endpoint));
+    }
+
+    private static Node pick(List<Node> candidates) {
+        if (candidates.size() == 1) {
+            return candidates.getFirst();
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(candidates.size());
+        int second = random.nextInt(candidates.size() - 1);
+        if (second >= first) {
+            ++second;
+        }
+
+        Node firstNode = candidates.get(first);
+        Node secondNode = candidates.get(second);
+        return firstNode.cost() <= secondNode.cost() ? firstNode : secondNode;
+    }
+
+    /**
+     * An inference endpoint.
+     *
+     * @param name endpoint name used in metrics and logs
+     * @param pool clients bound to the endpoint
+     * @param circuitBreaker breaker of the endpoint
+     */
+    public record Endpoint(
+            String name, OCIGenAiClientPool pool, OCICircuitBreaker circuitBreaker) {}
+
+    /** A call routed to an endpoint; exactly one outcome is reported, later ones are ignored. */
+    public final class Route {
+
+        private final Node node;
+        private final AtomicBoolean finished = new AtomicBoolean();
+
+        private volatile long startNanos = System.nanoTime();
+
+        private Route(Node node) {
+            this.node = node;
+        }
+
+        public String endpoint() {
+            return node.endpoint.name();
+        }
+
+        /**
+         * Leases a client of the endpoint, the latency of the call is measured from here on.
+         *
+         * @see OCIGenAiClientPool#acquire()
+         */
+        public OCIGenAiClientPool.Lease acquire() {
+            startNanos = System.nanoTime();
+            return node.endpoint.pool().acquire();
+        }
+
+        public void onSuccess() {
+            if (finished.compareAndSet(false, true)) {
+                long latencyNanos = System.nanoTime() - startNanos;
+                node.latency.record(latencyNanos, TimeUnit.NANOSECONDS);
+                node.record(latencyNanos, false);
+                node.endpoint.circuitBreaker().onSuccess();
+            }
+        }
+
+        /** The call failed transiently, see {@link OCICircuitBreaker#onFailure()}. */
+        public void onFailure() {
+            if (finished.compareAndSet(false, true)) {
+                node.failures.increment();
+                node.record(Math.max(failurePenaltyNanos, System.nanoTime() - startNanos), true);
+                node.endpoint.circuitBreaker().onFailure();
+            }
+        }
+
+        /** The call failed for a reason that says nothing about the endpoint's health. */
+        public void onIgnored() {
+            if (finished.compareAndSet(false, true)) {
+                node.inFlight.decrementAndGet();
+                node.endpoint.circuitBreaker().onIgnored();
+            }
+        }
+    }
+
+    private final class Node {
+
+        private final Endpoint endpoint;
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        /** Written under {@link #lock}, volatile for the gauge; negative before the first call. */
+        private volatile double latencyEwmaNanos = -1.0;
+
+        /** Written under {@link #lock}, volatile for the gauge. */
+        private volatile double errorRateEwma;
+
+        /** Guarded by {@link #lock}. */
+        private long lastUpdateNanos;
+
+        private final Timer latency;
+        private final Counter failures;
+
+        Node(Endpoint endpoint, MeterRegistry meterRegistry) {
+            this.endpoint = endpoint;
+            this.latency =
+                    Timer.builder("app_oci_endpoint_latency_seconds")
+                            .tag("endpoint", endpoint.name())
+                            .publishPercentileHistogram()
+                            .register(meterRegistry);
+            this.failures =
+                    meterRegistry.counter(
+                            "app_oci_endpoint_failures_total", "endpoint", endpoint.name());
+            Gauge.builder(
+                            "app_oci_endpoint_latency_ewma_seconds",
+                            this,
+                            node -> Math.max(0.0, node.latencyEwmaNanos) / 1.0e9)
+                    .tag("endpoint", endpoint.name())
+                    .register(meterRegistry);
+            Gauge.builder("app_oci_endpoint_error_rate", this, node -> node.errorRateEwma)
+                    .tag("endpoint", endpoint.name())
+                    .register(meterRegistry);
+        }
+
+        double cost() {
+            lock.lock();
+            try {
+                if (latencyEwmaNanos < 0.0) {
+                    return 0.0;
+                }
+                double successRate = Math.max(MIN_SUCCESS_RATE, 1.0 - errorRateEwma);
+                return latencyEwmaNanos * (inFlight.get() + 1) / successRate;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void record(long latencyNanos, boolean failure) {
+            inFlight.decrementAndGet();
+
+            lock.lock();
+            try {
+                long nowNanos = System.nanoTime();
+                if (latencyEwmaNanos < 0.0) {
+                    latencyEwmaNanos = latencyNanos;
+                    errorRateEwma = failure ? 1.0 : 0.0;
+                } else {
+                    // weight by the time since the last call, so the averages span 'decay_time'
+                    // regardless of the call rate
+                    double weight = 1.0 - Math.exp(-(nowNanos - lastUpdateNanos) / decayNanos);
+                    latencyEwmaNanos += weight * (latencyNanos - latencyEwmaNanos);
+                    errorRateEwma += weight * ((failure ? 1.0 : 0.0) - errorRateEwma);
+                }
+                lastUpdateNanos = nowNanos;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
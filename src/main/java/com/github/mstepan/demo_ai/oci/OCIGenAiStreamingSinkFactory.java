@@ -1,7 +1,7 @@
 package com.github.mstepan.demo_ai.oci;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.oracle.bmc.generativeaiinference.GenerativeAiInferenceClient;
 import com.oracle.bmc.generativeaiinference.model.*;
 import com.oracle.bmc.generativeaiinference.requests.ChatRequest;
 
@@ -17,13 +17,12 @@ import org.springframework.context.annotation.Scope;
 
 import reactor.core.publisher.FluxSink;
 
-import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.lang.invoke.MethodHandles;
-import java.nio.charset.StandardCharsets;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
 
 @Configuration
@@ -34,15 +33,18 @@ public class OCIGenAiStreamingSinkFactory {
 
     private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
 
-    private final GenAiClientFactoryFactory clientConfig;
+    private final OCIGenAiRouter router;
+    private final AdaptiveConcurrencyLimiter limiter;
     private final OCILogService logService;
     private final OCIGenAiProperties properties;
 
     public OCIGenAiStreamingSinkFactory(
-            GenAiClientFactoryFactory clientConfig,
+            OCIGenAiRouter router,
+            AdaptiveConcurrencyLimiter limiter,
             OCILogService logService,
             OCIGenAiProperties properties) {
-        this.clientConfig = clientConfig;
+        this.router = router;
+        this.limiter = limiter;
         this.logService = logService;
         this.properties = properties;
     }
@@ -53,130 +55,239 @@ public class OCIGenAiStreamingSinkFactory {
         return new OCIStreamingConsumer(prompt);
     }
 
+    /**
+     * Streams one prompt. The blocking OCI call and the reading of its event stream run on a
+     * dedicated virtual thread, so no scheduler thread is pinned for the duration of the stream.
+     *
+     * <p>Backpressure: the next event is only read from the connection once the subscriber has
+     * outstanding demand, so a slow subscriber pauses reading (and TCP flow control slows down
+     * OCI) instead of buffering the whole answer.
+     *
+     * <p>Cancellation: interrupts the reading thread, which closes the underlying socket of a
+     * virtual thread blocked in a read, so the upstream connection is dropped right away instead
+     * of being read until '[DONE]'.
+     *
+     * <p>Starting the stream takes an {@link AdaptiveConcurrencyLimiter} permit, it's released once
+     * the response headers arrived, which is also its latency sample; reading the stream isn't
+     * limited. A rejected permit fails the stream.
+     *
+     * <p>Streams are routed by the {@link OCIGenAiRouter} like blocking calls, a stream counts as
+     * successful once the response headers arrived. They are not retried, a retry could repeat
+     * already emitted chunks; failures are reported as {@link OCIGenAiException}. A stream
+     * cancelled before the response headers arrived doesn't count against the endpoint.
+     */
     private final class OCIStreamingConsumer implements Consumer<FluxSink<ChatResponse>> {
 
         private final Prompt prompt;
 
+        private final ReentrantLock demandLock = new ReentrantLock();
+        private final Condition demandChanged = demandLock.newCondition();
+
+        private volatile boolean cancelled;
+        private volatile Thread worker;
+
+        /** Endpoint of the stream, only used by the worker thread. */
+        private OCIGenAiRouter.Route route;
+
         public OCIStreamingConsumer(Prompt prompt) {
             this.prompt = prompt;
         }
 
         @Override
         public void accept(FluxSink<ChatResponse> sink) {
+            sink.onRequest(ignored -> signalDemandChanged());
+            sink.onCancel(this::cancel);
 
-            try (GenerativeAiInferenceClient client = clientConfig.newClient()) {
-                // Build messages (system + user) same as non-streaming
-                SystemMessage systemPrompt =
-                        SystemMessage.builder()
-                                .content(
-                                        List.of(
-                                                TextContent.builder()
-                                                        .text(prompt.getSystemMessage().getText())
-                                                        .build()))
-                                .build();
-
-                UserMessage userQuery =
-                        UserMessage.builder()
-                                .content(
-                                        List.of(
-                                                TextContent.builder()
-                                                        .text(prompt.getUserMessage().getText())
-                                                        .build()))
-                                .build();
-
-                // Enable streaming
-                GenericChatRequest genericChatRequest =
-                        GenericChatRequest.builder()
-                                .messages(List.of(systemPrompt, userQuery))
-                                .temperature(properties.temperature())
-                                .isEcho(false)
-                                .isStream(true)
-                                .build();
-
-                ChatDetails chatDetails =
-                        ChatDetails.builder()
-                                .compartmentId(properties.compartment())
-                                .servingMode(
-                                        OnDemandServingMode.builder()
-                                                .modelId(properties.model())
-                                                .build())
-                                .chatRequest(genericChatRequest)
-                                .build();
-
-                ChatRequest chatRequest = ChatRequest.builder().chatDetails(chatDetails).build();
-
-                if (LOGGER.isDebugEnabled()) {
-                    String rawJson =
-                            JSON_MAPPER
-                                    .writerWithDefaultPrettyPrinter()
-                                    .writeValueAsString(
-                                            logService.buildLoggableRequest(chatDetails));
-                    logService.logLLMInteraction(OCIChatModel.RequestDirection.OUT_BOUND, rawJson);
-                }
-
-                // Call the API with streaming enabled
-                Object responseObj = client.chat(chatRequest);
+            Thread thread = Thread.ofVirtual().name("oci-genai-stream").unstarted(() -> pump(sink));
+            worker = thread;
+            thread.start();
+        }
 
-                InputStream is = eventStream(responseObj);
+        private void pump(FluxSink<ChatResponse> sink) {
+            try (InputStream is = start()) {
+                SseEventDecoder decoder = new SseEventDecoder(is);
 
-                try (BufferedReader reader =
-                        new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
+                while (awaitDemand(sink) && decoder.next()) {
+                    if (decoder.isDone()) {
+                        break; // end of stream
+                    }
 
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        // SSE lines may include comments or blank lines. We only
-                        // care about 'data:' lines.
-                        if (line.isEmpty() || line.startsWith(":")) {
-                            continue;
+                    try {
+                        // Each event is a JSON object, pull the text delta out of it
+                        // without building a tree.
+                        String delta =
+                                TextDeltaExtractor.extract(
+                                        decoder.data(), 0, decoder.dataLength());
+                        if (delta != null && !delta.isEmpty()) {
+                            org.springframework.ai.chat.messages.AssistantMessage assistantMsg =
+                                    new org.springframework.ai.chat.messages.AssistantMessage(
+                                            delta);
+                            ChatResponse cr =
+                                    ChatResponse.builder()
+                                            .generations(List.of(new Generation(assistantMsg)))
+                                            .build();
+                            sink.next(cr);
                         }
-
-                        if (line.startsWith("data:")) {
-                            String data = line.substring("data:".length()).trim();
-                            if ("[DONE]".equalsIgnoreCase(data)) {
-                                break; // end of stream
-                            }
-
-                            try {
-                                // Each event is a JSON object; parse it
-                                // structurally.
-                                @SuppressWarnings("unchecked")
-                                Map<String, Object> event = JSON_MAPPER.readValue(data, Map.class);
-
-                                // Extract text delta from the event payload, robust
-                                // to schema variations.
-                                String delta = extractTextDelta(event);
-                                if (delta != null && !delta.isEmpty()) {
-                                    org.springframework.ai.chat.messages.AssistantMessage
-                                            assistantMsg =
-                                                    new org.springframework.ai.chat.messages
-                                                            .AssistantMessage(delta);
-                                    ChatResponse cr =
-                                            ChatResponse.builder()
-                                                    .generations(
-                                                            List.of(new Generation(assistantMsg)))
-                                                    .build();
-                                    sink.next(cr);
-                                }
-                            } catch (Exception parseEx) {
-                                if (LOGGER.isDebugEnabled()) {
-                                    LOGGER.debug(
-                                            "Failed to parse streaming event line: {}",
-                                            line,
-                                            parseEx);
-                                }
-                                // Ignore malformed lines but continue the stream.
-                            }
+                    } catch (IOException parseEx) {
+                        if (cancelled) {
+                            throw parseEx;
                         }
+                        if (LOGGER.isDebugEnabled()) {
+                            LOGGER.debug(
+                                    "Failed to parse streaming event: {}",
+                                    decoder.dataAsString(),
+                                    parseEx);
+                        }
+                        // Ignore malformed events but continue the stream.
                     }
+                }
 
+                if (!cancelled) {
                     // When the stream ends, complete.
                     sink.complete();
                 }
             } catch (Exception ex) {
+                if (cancelled) {
+                    LOGGER.debug("OCI GenAI stream cancelled by subscriber");
+                    return;
+                }
                 LOGGER.error("OCI GenAI streaming call failed", ex);
                 sink.error(ex);
             }
         }
+
+        /**
+         * Starts the call. The permit and the client are only held until the response headers
+         * arrived: the event stream owns the connection, and a stream read at the pace of a slow
+         * client must not keep blocking calls and other streams from starting.
+         *
+         * @return the event stream
+         */
+        private InputStream start() throws Exception {
+            try (AdaptiveConcurrencyLimiter.Permit permit = acquirePermit()) {
+                Object responseObj;
+                try (OCIGenAiClientPool.Lease lease = route.acquire()) {
+                    responseObj = lease.client().chat(buildChatRequest());
+                } catch (Exception ex) {
+                    if (cancelled) {
+                        // the subscriber went away, interrupting closed the connection
+                        route.onIgnored();
+                        throw new CallCancelledException("OCI GenAI streaming call cancelled", ex);
+                    }
+                    if (AdaptiveConcurrencyLimiter.isOverload(ex)) {
+                        permit.dropped();
+                    }
+                    RuntimeException translated =
+                            OCIGenAiException.translate("OCI GenAI streaming call failed", ex);
+                    if (translated instanceof OCIGenAiUnavailableException) {
+                        route.onFailure();
+                    } else {
+                        route.onIgnored();
+                    }
+                    throw translated;
+                }
+                permit.recordLatency();
+                route.onSuccess();
+                return eventStream(responseObj);
+            }
+        }
+
+        /** Routed first, so open circuit breakers don't take a permit. */
+        private AdaptiveConcurrencyLimiter.Permit acquirePermit() {
+            route = router.route();
+            try {
+                return limiter.acquire();
+            } catch (RuntimeException ex) {
+                route.onIgnored();
+                throw ex;
+            }
+        }
+
+        private ChatRequest buildChatRequest() throws JsonProcessingException {
+            // Build messages (system + user) same as non-streaming
+            SystemMessage systemPrompt =
+                    SystemMessage.builder()
+                            .content(
+                                    List.of(
+                                            TextContent.builder()
+                                                    .text(prompt.getSystemMessage().getText())
+                                                    .build()))
+                            .build();
+
+            UserMessage userQuery =
+                    UserMessage.builder()
+                            .content(
+                                    List.of(
+                                            TextContent.builder()
+                                                    .text(prompt.getUserMessage().getText())
+                                                    .build()))
+                            .build();
+
+            // Enable streaming
+            GenericChatRequest genericChatRequest =
+                    GenericChatRequest.builder()
+                            .messages(List.of(systemPrompt, userQuery))
+                            .temperature(properties.temperature())
+                            .isEcho(false)
+                            .isStream(true)
+                            .build();
+
+            ChatDetails chatDetails =
+                    ChatDetails.builder()
+                            .compartmentId(properties.compartment())
+                            .servingMode(
+                                    OnDemandServingMode.builder()
+                                            .modelId(properties.model())
+                                            .build())
+                            .chatRequest(genericChatRequest)
+                            .build();
+
+            if (LOGGER.isDebugEnabled()) {
+                String rawJson =
+                        JSON_MAPPER
+                                .writerWithDefaultPrettyPrinter()
+                                .writeValueAsString(logService.buildLoggableRequest(chatDetails));
+                logService.logLLMInteraction(OCIChatModel.RequestDirection.OUT_BOUND, rawJson);
+            }
+
+            return ChatRequest.builder().chatDetails(chatDetails).build();
+        }
+
+        /**
+         * Blocks until the subscriber requested more elements.
+         *
+         * @return false if the subscriber cancelled in the meantime
+         */
+        private boolean awaitDemand(FluxSink<ChatResponse> sink) throws InterruptedException {
+            demandLock.lock();
+            try {
+                while (!cancelled && sink.requestedFromDownstream() == 0L) {
+                    demandChanged.await();
+                }
+                return !cancelled;
+            } finally {
+                demandLock.unlock();
+            }
+        }
+
+        private void signalDemandChanged() {
+            demandLock.lock();
+            try {
+                demandChanged.signalAll();
+            } finally {
+                demandLock.unlock();
+            }
+        }
+
+        private void cancel() {
+            cancelled = true;
+            signalDemandChanged();
+
+            Thread thread = worker;
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
     }
 
     private static InputStream eventStream(Object responseObj) {
@@ -189,38 +300,4 @@ public class OCIGenAiStreamingSinkFactory {
         throw new IllegalStateException(
                 "responseObj is not of type com.oracle.bmc.generativeaiinference.responses.ChatResponse");
     }
-
-    /**
-     * Extract text delta from a streaming event JSON. This method is tolerant to schema variations
-     * by scanning for the first reachable "text" string value.
-     */
-    private static String extractTextDelta(Map<String, Object> event) {
-        Object res = findFirstText(event);
-        return res instanceof String s ? s : null;
-    }
-
-    @SuppressWarnings("unchecked")
-    private static Object findFirstText(Object node) {
-        if (node instanceof Map) {
-            for (var entry : ((Map<String, Object>) node).entrySet()) {
-                String key = entry.getKey();
-                Object val = entry.getValue();
-                if ("text".equalsIgnoreCase(key) && val instanceof String) {
-                    return val;
-                }
-                Object nested = findFirstText(val);
-                if (nested != null) {
-                    return nested;
-                }
-            }
-        } else if (node instanceof List) {
-            for (Object item : (List<?>) node) {
-                Object nested = findFirstText(item);
-                if (nested != null) {
-                    return nested;
-                }
-            }
-        }
-        return null;
-    }
 }
@@ -0,0 +1,12 @@
+package com.github.mstepan.demo_ai.oci;
+
+/**
+ * A transient OCI GenAI failure: timeout, throttling (429), server error (5xx) or a broken
+ * connection. Retried with backoff and counted by the {@link OCICircuitBreaker}.
+ */
+public final class OCIGenAiUnavailableException extends OCIGenAiException {
+
+    public OCIGenAiUnavailableException(String message, Throwable cause, int statusCode) {
+        super(message, cause, statusCode);
+    }
+}
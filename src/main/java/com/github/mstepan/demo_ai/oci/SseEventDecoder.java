@@ -0,0 +1,310 @@
+package com.github.mstepan.demo_ai.oci;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Pull-style decoder of a Server-Sent Events stream (text/event-stream) that works directly on
+ * bytes.
+ *
+ * <p>The stream is read into a reusable buffer and split into lines (LF, CR or CRLF). The payloads
+ * of the 'data:' lines of one event are concatenated with '\n' into a second reusable buffer, and
+ * the event is dispatched on the blank line that ends it. 'event:' and 'id:' fields are tracked,
+ * comments (lines starting with ':') and unknown fields are skipped. In steady state no objects are
+ * allocated per line or per event; only 'event:'/'id:' values become Strings.
+ *
+ * <p>Unlike the spec, a trailing event that isn't terminated by a blank line is still dispatched at
+ * end of stream, some servers close the connection right after the last 'data:' line.
+ *
+ * <p>Not thread-safe, one instance per stream.
+ */
+final class SseEventDecoder {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private static final byte[] DATA = ascii("data");
+    private static final byte[] EVENT = ascii("event");
+    private static final byte[] ID = ascii("id");
+    private static final byte[] DONE = ascii("[DONE]");
+
+    private final InputStream in;
+    private final byte[] buffer;
+    private int position;
+    private int limit;
+    private boolean started;
+    private boolean skipLineFeed;
+
+    /** Holds a line that spans several reads. */
+    private byte[] carry = new byte[256];
+
+    private int carryLength;
+
+    /** Current line: either a slice of {@link #buffer} or of {@link #carry}. */
+    private byte[] lineBytes;
+
+    private int lineOffset;
+    private int lineLength;
+
+    private byte[] data = new byte[1024];
+    private int dataLength;
+    private boolean hasData;
+    private String eventType;
+    private String lastEventId;
+
+    SseEventDecoder(InputStream in) {
+        this(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    SseEventDecoder(InputStream in, int bufferSize) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("bufferSize must be positive: " + bufferSize);
+        }
+        this.in = in;
+        this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * Advances to the next event that has data.
+     *
+     * @return false at end of stream
+     */
+    boolean next() throws IOException {
+        dataLength = 0;
+        hasData = false;
+        eventType = null;
+
+        while (readLine()) {
+            if (!started) {
+                started = true;
+                skipByteOrderMark();
+            }
+
+            if (lineLength == 0) {
+                if (hasData) {
+                    return true;
+                }
+                // event without data: nothing to dispatch, its type doesn't carry over
+                eventType = null;
+                continue;
+            }
+            processField(lineBytes, lineOffset, lineLength);
+        }
+        return hasData;
+    }
+
+    /** Data of the current event, valid up to {@link #dataLength()} until the next call to next. */
+    byte[] data() {
+        return data;
+    }
+
+    int dataLength() {
+        return dataLength;
+    }
+
+    /** Value of the 'event:' field of the current event, null if absent. */
+    String eventType() {
+        return eventType;
+    }
+
+    /** Value of the last 'id:' field seen on the stream, null if none. */
+    String lastEventId() {
+        return lastEventId;
+    }
+
+    /** True if the current event is the '[DONE]' end-of-stream marker. */
+    boolean isDone() {
+        int from = 0;
+        int to = dataLength;
+        while (from < to && isWhitespace(data[from])) {
+            ++from;
+        }
+        while (to > from && isWhitespace(data[to - 1])) {
+            --to;
+        }
+        if (to - from != DONE.length) {
+            return false;
+        }
+        for (int i = 0; i < DONE.length; ++i) {
+            if (toLowerAscii(data[from + i]) != toLowerAscii(DONE[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Data of the current event as a String, for logging only. */
+    String dataAsString() {
+        return new String(data, 0, dataLength, StandardCharsets.UTF_8);
+    }
+
+    private void processField(byte[] bytes, int offset, int length) {
+        int colon = indexOf(bytes, offset, length, (byte) ':');
+        if (colon == offset) {
+            return; // comment
+        }
+
+        int nameLength = (colon < 0 ? offset + length : colon) - offset;
+        int valueOffset = colon < 0 ? offset + length : colon + 1;
+        if (valueOffset < offset + length && bytes[valueOffset] == ' ') {
+            ++valueOffset;
+        }
+        int valueLength = offset + length - valueOffset;
+
+        if (fieldIs(bytes, offset, nameLength, DATA)) {
+            if (hasData) {
+                appendData((byte) '\n');
+            }
+            appendData(bytes, valueOffset, valueLength);
+            hasData = true;
+        } else if (fieldIs(bytes, offset, nameLength, EVENT)) {
+            eventType = new String(bytes, valueOffset, valueLength, StandardCharsets.UTF_8);
+        } else if (fieldIs(bytes, offset, nameLength, ID)) {
+            lastEventId = new String(bytes, valueOffset, valueLength, StandardCharsets.UTF_8);
+        }
+        // 'retry' and unknown fields are ignored
+    }
+
+    /**
+     * Reads the next line into {@link #lineBytes}/{@link #lineOffset}/{@link #lineLength}, without
+     * the line terminator.
+     *
+     * @return false at end of stream
+     */
+    private boolean readLine() throws IOException {
+        carryLength = 0;
+        boolean carrying = false;
+
+        while (true) {
+            if (position == limit && !fill()) {
+                if (carrying) {
+                    setLine(carry, 0, carryLength);
+                    return true;
+                }
+                return false;
+            }
+
+            if (skipLineFeed) {
+                // second half of a CRLF split across two reads
+                skipLineFeed = false;
+                if (buffer[position] == '\n') {
+                    ++position;
+                    continue;
+                }
+            }
+
+            int start = position;
+            while (position < limit) {
+                byte ch = buffer[position];
+                if (ch == '\n' || ch == '\r') {
+                    int end = position;
+                    ++position;
+                    if (ch == '\r') {
+                        if (position < limit) {
+                            if (buffer[position] == '\n') {
+                                ++position;
+                            }
+                        } else {
+                            skipLineFeed = true;
+                        }
+                    }
+
+                    if (carrying) {
+                        appendCarry(start, end - start);
+                        setLine(carry, 0, carryLength);
+                    } else {
+                        setLine(buffer, start, end - start);
+                    }
+                    return true;
+                }
+                ++position;
+            }
+
+            appendCarry(start, limit - start);
+            carrying = true;
+        }
+    }
+
+    private boolean fill() throws IOException {
+        int read;
+        do {
+            read = in.read(buffer, 0, buffer.length);
+        } while (read == 0);
+
+        if (read < 0) {
+            position = limit = 0;
+            return false;
+        }
+
+        position = 0;
+        limit = read;
+        return true;
+    }
+
+    /** A UTF-8 byte order mark is allowed (and ignored) at the very start of the stream. */
+    private void skipByteOrderMark() {
+        if (lineLength >= 3
+                && lineBytes[lineOffset] == (byte) 0xEF
+                && lineBytes[lineOffset + 1] == (byte) 0xBB
+                && lineBytes[lineOffset + 2] == (byte) 0xBF) {
+            lineOffset += 3;
+            lineLength -= 3;
+        }
+    }
+
+    private void setLine(byte[] bytes, int offset, int length) {
+        lineBytes = bytes;
+        lineOffset = offset;
+        lineLength = length;
+    }
+
+    private void appendCarry(int offset, int length) {
+        if (carryLength + length > carry.length) {
+            carry = Arrays.copyOf(carry, Math.max(carry.length * 2, carryLength + length));
+        }
+        System.arraycopy(buffer, offset, carry, carryLength, length);
+        carryLength += length;
+    }
+
+    private void appendData(byte value) {
+        if (dataLength == data.length) {
+            data = Arrays.copyOf(data, data.length * 2);
+        }
+        data[dataLength++] = value;
+    }
+
+    private void appendData(byte[] bytes, int offset, int length) {
+        if (dataLength + length > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, dataLength + length));
+        }
+        System.arraycopy(bytes, offset, data, dataLength, length);
+        dataLength += length;
+    }
+
+    private static boolean fieldIs(byte[] bytes, int offset, int length, byte[] name) {
+        return length == name.length
+                && Arrays.equals(bytes, offset, offset + length, name, 0, name.length);
+    }
+
+    private static int indexOf(byte[] bytes, int offset, int length, byte value) {
+        for (int i = offset; i < offset + length; ++i) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isWhitespace(byte ch) {
+        return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\r';
+    }
+
+    private static byte toLowerAscii(byte ch) {
+        return (ch >= 'A' && ch <= 'Z') ? (byte) (ch + ('a' - 'A')) : ch;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,43 @@
+package com.github.mstepan.demo_ai.oci;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * Extracts the text delta from a streaming chat event JSON without building a tree: the event is
+ * scanned with Jackson's streaming {@link JsonParser} and the first string value of a "text" field
+ * (case-insensitive, in document order, at any depth) is returned. This is tolerant to schema
+ * variations between models the same way a recursive walk over the parsed tree is, but only the
+ * returned String is materialized; field names come from the parser's symbol table.
+ */
+final class TextDeltaExtractor {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private TextDeltaExtractor() {
+        throw new AssertionError("Can't instantiate utility-only class");
+    }
+
+    /**
+     * @return text delta or null if the event has no "text" string field
+     * @throws IOException if the event is not valid JSON
+     */
+    static String extract(byte[] json, int offset, int length) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(json, offset, length)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token == JsonToken.FIELD_NAME
+                        && "text".equalsIgnoreCase(parser.currentName())) {
+                    if (parser.nextToken() == JsonToken.VALUE_STRING) {
+                        return parser.getText();
+                    }
+                    // non-string "text" value: keep scanning, including inside it
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.github.mstepan.demo_ai.prompts;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Binds properties under 'app.prompts' from 'application.yaml'.
+ *
+ * @param reloadDirectory optional directory laid out like 'classpath:/prompts'; '.st' files found
+ *     there override the bundled templates and are reloaded on change without a restart
+ */
+@ConfigurationProperties(prefix = "app.prompts")
+public record PromptProperties(String reloadDirectory) {}
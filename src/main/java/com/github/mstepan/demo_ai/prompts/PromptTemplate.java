@@ -0,0 +1,197 @@
+package com.github.mstepan.demo_ai.prompts;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A '.st' prompt template compiled once into literal segments and placeholder slots.
+ *
+ * <p>Only the subset of StringTemplate syntax the prompts actually use is supported: '{name}'
+ * placeholders and '\{' / '\}' escapes. Anything else (conditionals, iterations, attribute
+ * access) is rejected at compile time instead of being silently rendered verbatim.
+ *
+ * <p>Rendering sizes the output buffer exactly upfront, so it is never grown or copied while
+ * appending. A template without placeholders is rendered at compile time, see {@link #text()}.
+ */
+public final class PromptTemplate {
+
+    private final String name;
+    private final int fingerprint;
+
+    /** literals.length == params.length + 1, output is literal[0] param[0] literal[1] ... */
+    private final String[] literals;
+
+    private final String[] params;
+    private final int literalsLength;
+
+    /** Fully rendered text of a template without placeholders, otherwise null. */
+    private final String staticText;
+
+    private PromptTemplate(String name, String source, List<String> literals, List<String> params) {
+        this.name = name;
+        this.fingerprint = source.hashCode();
+        this.literals = literals.toArray(String[]::new);
+        this.params = params.toArray(String[]::new);
+
+        int length = 0;
+        for (String literal : this.literals) {
+            length += literal.length();
+        }
+        this.literalsLength = length;
+        this.staticText = this.params.length == 0 ? this.literals[0] : null;
+    }
+
+    /**
+     * Parses the template source.
+     *
+     * @throws IllegalArgumentException if the source uses unsupported StringTemplate syntax
+     */
+    public static PromptTemplate compile(String name, String source) {
+        Objects.requireNonNull(name, "null 'name' detected");
+        Objects.requireNonNull(source, "null 'source' detected");
+
+        List<String> literals = new ArrayList<>();
+        List<String> params = new ArrayList<>();
+
+        StringBuilder literal = new StringBuilder(source.length());
+        int i = 0;
+        while (i < source.length()) {
+            char ch = source.charAt(i);
+
+            if (ch == '\\'
+                    && i + 1 < source.length()
+                    && (source.charAt(i + 1) == '{' || source.charAt(i + 1) == '}')) {
+                literal.append(source.charAt(i + 1));
+                i += 2;
+            } else if (ch == '{') {
+                int end = source.indexOf('}', i + 1);
+                if (end < 0) {
+                    throw invalid(name, "unterminated '{' at offset " + i);
+                }
+                String param = source.substring(i + 1, end).strip();
+                if (!isIdentifier(param)) {
+                    throw invalid(name, "unsupported expression '{" + param + "}'");
+                }
+                literals.add(literal.toString());
+                literal.setLength(0);
+                params.add(param);
+                i = end + 1;
+            } else if (ch == '}') {
+                throw invalid(name, "unbalanced '}' at offset " + i);
+            } else {
+                literal.append(ch);
+                ++i;
+            }
+        }
+        literals.add(literal.toString());
+
+        return new PromptTemplate(name, source, literals, params);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /** Hash of the template source, changes whenever the template is edited. */
+    public int fingerprint() {
+        return fingerprint;
+    }
+
+    public boolean isStatic() {
+        return staticText != null;
+    }
+
+    /**
+     * Pre-rendered text of a template without placeholders.
+     *
+     * @throws IllegalStateException if the template has placeholders
+     */
+    public String text() {
+        if (staticText == null) {
+            throw new IllegalStateException(
+                    "Template '%s' has placeholders, use render(...)".formatted(name));
+        }
+        return staticText;
+    }
+
+    public String render(String param, String value) {
+        if (staticText != null) {
+            return staticText;
+        }
+
+        String[] values = new String[params.length];
+        fill(values, param, value);
+        return join(values);
+    }
+
+    public String render(String param1, String value1, String param2, String value2) {
+        if (staticText != null) {
+            return staticText;
+        }
+
+        String[] values = new String[params.length];
+        fill(values, param1, value1);
+        fill(values, param2, value2);
+        return join(values);
+    }
+
+    public String render(Map<String, String> values) {
+        if (staticText != null) {
+            return staticText;
+        }
+
+        String[] ordered = new String[params.length];
+        values.forEach((param, value) -> fill(ordered, param, value));
+        return join(ordered);
+    }
+
+    private void fill(String[] values, String param, String value) {
+        for (int i = 0; i < params.length; ++i) {
+            if (params[i].equals(param)) {
+                values[i] = value;
+            }
+        }
+    }
+
+    private String join(String[] values) {
+        int length = literalsLength;
+        for (int i = 0; i < values.length; ++i) {
+            if (values[i] == null) {
+                throw new IllegalStateException(
+                        "No value for '%s' in template '%s'".formatted(params[i], name));
+            }
+            length += values[i].length();
+        }
+
+        StringBuilder out = new StringBuilder(length);
+        out.append(literals[0]);
+        for (int i = 0; i < values.length; ++i) {
+            out.append(values[i]).append(literals[i + 1]);
+        }
+        return out.toString();
+    }
+
+    private static boolean isIdentifier(String text) {
+        if (text.isEmpty() || !Character.isJavaIdentifierStart(text.charAt(0))) {
+            return false;
+        }
+        for (int i = 1; i < text.length(); ++i) {
+            if (!Character.isJavaIdentifierPart(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static IllegalArgumentException invalid(String name, String reason) {
+        return new IllegalArgumentException(
+                "Invalid prompt template '%s': %s".formatted(name, reason));
+    }
+
+    @Override
+    public String toString() {
+        return "PromptTemplate[" + name + "]";
+    }
+}
@@ -0,0 +1,228 @@
+package com.github.mstepan.demo_ai.prompts;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Compiled prompt templates, keyed by their path under 'prompts/' without the '.st' extension,
+ * e.g. 'chat/chatUserPrompt'.
+ *
+ * <p>All templates under 'classpath:/prompts/**' are loaded and compiled once at startup, so the
+ * request path never reads or parses a template. With 'app.prompts.reload_directory' set, '.st'
+ * files from that directory override the bundled ones and a background watcher recompiles a
+ * template whenever its file is created or modified; deleting the file falls back to the bundled
+ * version. A template that fails to compile on reload is logged and the previous version is kept.
+ *
+ * <p>Metrics (Prometheus/Micrometer):
+ *
+ * <ul>
+ *   <li>app_prompt_reloads_total (Counter): template reloads, result in {"success","failure"}
+ * </ul>
+ */
+@Component
+public class PromptTemplateRegistry implements DisposableBean {
+
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final String CLASSPATH_LOCATION = "classpath*:prompts/**/*.st";
+    private static final String PROMPTS_DIR = "/prompts/";
+    private static final String EXTENSION = ".st";
+
+    /** Templates bundled with the application, fallback when an override file is deleted. */
+    private final Map<String, PromptTemplate> bundled;
+
+    private final Map<String, PromptTemplate> templates = new ConcurrentHashMap<>();
+
+    private final Path reloadDirectory;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> watchedDirs = new ConcurrentHashMap<>();
+
+    private final Counter reloadSuccess;
+    private final Counter reloadFailure;
+
+    public PromptTemplateRegistry(PromptProperties properties, MeterRegistry meterRegistry) {
+        this.bundled = loadBundled();
+        this.templates.putAll(bundled);
+
+        this.reloadSuccess = meterRegistry.counter("app_prompt_reloads_total", "result", "success");
+        this.reloadFailure = meterRegistry.counter("app_prompt_reloads_total", "result", "failure");
+
+        String dir = properties.reloadDirectory();
+        if (dir == null || dir.isBlank()) {
+            this.reloadDirectory = null;
+            this.watchService = null;
+            return;
+        }
+
+        this.reloadDirectory = Path.of(dir).toAbsolutePath().normalize();
+        if (!Files.isDirectory(reloadDirectory)) {
+            throw new IllegalStateException(
+                    "'app.prompts.reload_directory' is not a directory: " + reloadDirectory);
+        }
+
+        try {
+            this.watchService = reloadDirectory.getFileSystem().newWatchService();
+            registerTree(reloadDirectory);
+        } catch (IOException ioEx) {
+            throw new UncheckedIOException(ioEx);
+        }
+
+        Thread.ofPlatform().daemon().name("prompt-template-watcher").start(this::watch);
+        LOGGER.info("Watching prompt templates in '{}'", reloadDirectory);
+    }
+
+    /**
+     * @throws IllegalArgumentException if there is no such template
+     */
+    public PromptTemplate get(String name) {
+        PromptTemplate template = templates.get(name);
+        if (template == null) {
+            throw new IllegalArgumentException("Unknown prompt template: '%s'".formatted(name));
+        }
+        return template;
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    private static Map<String, PromptTemplate> loadBundled() {
+        try {
+            Map<String, PromptTemplate> loaded = new HashMap<>();
+            for (Resource resource :
+                    new PathMatchingResourcePatternResolver().getResources(CLASSPATH_LOCATION)) {
+                String url = resource.getURL().toString();
+                String name =
+                        url.substring(
+                                url.lastIndexOf(PROMPTS_DIR) + PROMPTS_DIR.length(),
+                                url.length() - EXTENSION.length());
+                loaded.put(
+                        name,
+                        PromptTemplate.compile(
+                                name, resource.getContentAsString(StandardCharsets.UTF_8)));
+            }
+            LOGGER.info("Compiled {} prompt templates", loaded.size());
+            return Map.copyOf(loaded);
+        } catch (IOException ioEx) {
+            throw new UncheckedIOException(ioEx);
+        }
+    }
+
+    /** Registers the directory and all its subdirectories, loading the templates found there. */
+    private void registerTree(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                if (Files.isDirectory(path)) {
+                    WatchKey key =
+                            path.register(
+                                    watchService,
+                                    StandardWatchEventKinds.ENTRY_CREATE,
+                                    StandardWatchEventKinds.ENTRY_MODIFY,
+                                    StandardWatchEventKinds.ENTRY_DELETE);
+                    watchedDirs.put(key, path);
+                } else if (isTemplate(path)) {
+                    reload(path);
+                }
+            }
+        }
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Path dir = watchedDirs.get(key);
+
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (dir == null || event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        continue;
+                    }
+                    Path path = dir.resolve((Path) event.context());
+
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                        if (isTemplate(path)) {
+                            revert(path);
+                        }
+                    } else if (Files.isDirectory(path)) {
+                        registerTree(path);
+                    } else if (isTemplate(path)) {
+                        reload(path);
+                    }
+                }
+
+                if (!key.reset()) {
+                    watchedDirs.remove(key);
+                }
+            }
+        } catch (ClosedWatchServiceException closedEx) {
+            LOGGER.debug("Prompt template watcher stopped");
+        } catch (InterruptedException interEx) {
+            Thread.currentThread().interrupt();
+        } catch (IOException ioEx) {
+            LOGGER.error("Prompt template watcher failed, hot reload is disabled", ioEx);
+        }
+    }
+
+    private void reload(Path file) {
+        String name = nameOf(file);
+        try {
+            templates.put(
+                    name,
+                    PromptTemplate.compile(name, Files.readString(file, StandardCharsets.UTF_8)));
+            reloadSuccess.increment();
+            LOGGER.info("Prompt template '{}' loaded from '{}'", name, file);
+        } catch (IOException | IllegalArgumentException ex) {
+            reloadFailure.increment();
+            LOGGER.warn("Can't load prompt template '{}', keeping previous version", name, ex);
+        }
+    }
+
+    private void revert(Path file) {
+        String name = nameOf(file);
+        PromptTemplate original = bundled.get(name);
+        if (original != null) {
+            templates.put(name, original);
+            LOGGER.info("Prompt template '{}' reverted to the bundled version", name);
+        } else {
+            templates.remove(name);
+            LOGGER.info("Prompt template '{}' removed", name);
+        }
+        reloadSuccess.increment();
+    }
+
+    private String nameOf(Path file) {
+        String relative = reloadDirectory.relativize(file).toString().replace('\\', '/');
+        return relative.substring(0, relative.length() - EXTENSION.length());
+    }
+
+    private static boolean isTemplate(Path path) {
+        return path.getFileName().toString().endsWith(EXTENSION);
+    }
+}
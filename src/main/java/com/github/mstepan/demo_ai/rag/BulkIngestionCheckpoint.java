@@ -0,0 +1,84 @@
+package com.github.mstepan.demo_ai.rag;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Progress of a bulk ingestion job: every document before {@code offset} is completely stored, and
+ * the first {@code chunks} chunks of the document at {@code offset}.
+ *
+ * @param format format of the input
+ * @param source id of the document of a text input, null for JSONL
+ * @param offset input offset (bytes) of the first document not completely stored, always 0 for a
+ *     text input
+ * @param chunks number of stored chunks of the document at {@code offset}
+ */
+record BulkIngestionCheckpoint(
+        BulkIngestor.Format format, String source, long offset, int chunks) {
+
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final int MAGIC = 0x42494350; // "BICP"
+    private static final int VERSION = 1;
+
+    /** True if this checkpoint was written for an input of the given format and source. */
+    boolean matches(BulkIngestor.Format otherFormat, String otherSource) {
+        return format == otherFormat && Objects.equals(source, otherSource);
+    }
+
+    /** Replaces the checkpoint at {@code path} atomically. */
+    void save(Path path) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out =
+                new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(format.name());
+            out.writeBoolean(source != null);
+            if (source != null) {
+                out.writeUTF(source);
+            }
+            out.writeLong(offset);
+            out.writeInt(chunks);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return the checkpoint at {@code path}, empty if there is none or it is unreadable
+     */
+    static Optional<BulkIngestionCheckpoint> load(Path path) {
+        if (!Files.isReadable(path)) {
+            return Optional.empty();
+        }
+
+        try (DataInputStream in =
+                new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                LOGGER.warn("Ignoring bulk ingestion checkpoint with unknown format: {}", path);
+                return Optional.empty();
+            }
+
+            BulkIngestor.Format format = BulkIngestor.Format.valueOf(in.readUTF());
+            String source = in.readBoolean() ? in.readUTF() : null;
+            return Optional.of(
+                    new BulkIngestionCheckpoint(format, source, in.readLong(), in.readInt()));
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.warn("Ignoring unreadable bulk ingestion checkpoint: {}", path, ex);
+            return Optional.empty();
+        }
+    }
+}
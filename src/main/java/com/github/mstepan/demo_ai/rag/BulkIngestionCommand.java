@@ -0,0 +1,99 @@
+package com.github.mstepan.demo_ai.rag;
+
+import com.github.mstepan.demo_ai.domain.BulkIngestionResult;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Bulk ingestion from the command line: started with '--ingest=FILE' the application ingests the
+ * file with the {@link BulkIngestor} and exits, 0 on success and 1 on failure.
+ *
+ * <pre>
+ * java -jar demo-ai.jar --spring.main.web-application-type=none \
+ *     --ingest=pirates.jsonl --job=pirates
+ * </pre>
+ *
+ * <p>Options: '--format' jsonl or text (default: jsonl for *.jsonl and *.ndjson files, text
+ * otherwise), '--source' id of a text document (default: the file name), '--job' name of the job
+ * for checkpoints; running a failed job again resumes it.
+ */
+@Component
+public class BulkIngestionCommand implements ApplicationRunner {
+
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private final BulkIngestor ingestor;
+    private final ConfigurableApplicationContext context;
+
+    public BulkIngestionCommand(BulkIngestor ingestor, ConfigurableApplicationContext context) {
+        this.ingestor = ingestor;
+        this.context = context;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        String file = option(args, "ingest");
+        if (file == null) {
+            return;
+        }
+
+        int exitCode = ingest(args, Path.of(file)) ? 0 : 1;
+        System.exit(SpringApplication.exit(context, () -> exitCode));
+    }
+
+    private boolean ingest(ApplicationArguments args, Path file) {
+        String fileName = file.getFileName().toString();
+        try (FileChannel input = FileChannel.open(file, StandardOpenOption.READ)) {
+            BulkIngestor.Format format = format(option(args, "format"), fileName);
+            String source = option(args, "source");
+
+            BulkIngestionResult result =
+                    ingestor.ingest(
+                            input,
+                            format,
+                            source == null ? fileName : source,
+                            option(args, "job"));
+            LOGGER.info(
+                    "Ingested {}: {} documents, {} chunks, {} invalid lines skipped, {} docs/s",
+                    file,
+                    result.documents(),
+                    result.chunks(),
+                    result.skipped(),
+                    String.format(Locale.ROOT, "%.1f", result.documentsPerSecond()));
+            return true;
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.error("Bulk ingestion of {} failed", file, ex);
+            return false;
+        }
+    }
+
+    private static BulkIngestor.Format format(String format, String fileName) {
+        if (format != null) {
+            return BulkIngestor.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        }
+        String name = fileName.toLowerCase(Locale.ROOT);
+        return name.endsWith(".jsonl") || name.endsWith(".ndjson")
+                ? BulkIngestor.Format.JSONL
+                : BulkIngestor.Format.TEXT;
+    }
+
+    private static String option(ApplicationArguments args, String name) {
+        List<String> values = args.getOptionValues(name);
+        return values == null || values.isEmpty() ? null : values.getLast();
+    }
+}
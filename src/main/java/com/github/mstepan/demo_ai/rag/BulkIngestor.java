@@ -0,0 +1,666 @@
+package com.github.mstepan.demo_ai.rag;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.github.mstepan.demo_ai.domain.BulkIngestionResult;
+import com.github.mstepan.demo_ai.embedding.Embedder;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * Ingestion of inputs too large for {@link DocumentIngestor}: JSONL with one {"source": ...,
+ * "text": ...} document per line, or plain UTF-8 text that is a single document.
+ *
+ * <p>The input channel is read sequentially in blocks of {@value #READ_BUFFER_BYTES} bytes and
+ * chunked on the fly, a text document piece by piece with a {@link TextChunker.Splitter}, so memory
+ * use is bounded by the longest JSONL line plus the batches in flight, not by the input. Chunks of
+ * consecutive documents are packed into batches of the embedder's max batch size. Up to
+ * 'app.rag.bulk.concurrency' batches (over all running ingestions) are embedded and stored in
+ * parallel on virtual threads; the reader blocks while all of them are busy.
+ *
+ * <p>A named job writes a {@link BulkIngestionCheckpoint} to 'app.rag.bulk.checkpoint_directory'
+ * at most every 'checkpoint_interval' and when it fails. Batches complete out of order, so the
+ * checkpoint only moves past a batch once all earlier batches are stored. Running a failed or
+ * killed job again with the same input resumes from its checkpoint, chunks stored after the
+ * checkpoint are stored again (upserts make that harmless). A completed job deletes its
+ * checkpoint.
+ *
+ * <p>Metrics (Prometheus/Micrometer):
+ *
+ * <ul>
+ *   <li>app_rag_ingested_documents_total, app_rag_ingested_chunks_total (Counter): shared with
+ *       {@link DocumentIngestor}, their rate is the ingestion throughput in documents and chunks
+ *       per second
+ *   <li>app_rag_embedding_batch_seconds (Timer, histogram): embedding latency of a batch
+ *   <li>app_rag_bulk_batches_in_flight (Gauge): batches being embedded or stored
+ * </ul>
+ */
+@Component
+public class BulkIngestor {
+
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    static final int READ_BUFFER_BYTES = 64 * 1024;
+
+    /** A longer JSONL line fails the ingestion instead of growing the line buffer further. */
+    static final int MAX_LINE_BYTES = 64 * 1024 * 1024;
+
+    private static final int MAX_SOURCE_CHARS = 1000;
+
+    private static final Pattern JOB_NAME = Pattern.compile("[A-Za-z0-9][A-Za-z0-9_.-]{0,99}");
+
+    public enum Format {
+        /** One JSON object with 'source' and 'text' per line, invalid lines are skipped. */
+        JSONL,
+        /** The whole input is the text of one document. */
+        TEXT
+    }
+
+    private final TextChunker chunker;
+    private final int batchSize;
+    private final Embedder embedder;
+    private final DocumentStore store;
+
+    /** Null if checkpoints are disabled. */
+    private final Path checkpointDirectory;
+
+    private final long checkpointIntervalNanos;
+
+    private final Semaphore permits;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final Counter ingestedDocuments;
+    private final Counter ingestedChunks;
+    private final Timer embeddingTimer;
+
+    @Autowired
+    public BulkIngestor(
+            RagProperties properties,
+            Embedder embedder,
+            DocumentStore store,
+            MeterRegistry meterRegistry) {
+        this(
+                new TextChunker(
+                        properties.chunking().maxChars(), properties.chunking().overlapChars()),
+                properties.bulk(),
+                embedder,
+                store,
+                meterRegistry);
+    }
+
+    public BulkIngestor(
+            TextChunker chunker,
+            RagProperties.Bulk settings,
+            Embedder embedder,
+            DocumentStore store,
+            MeterRegistry meterRegistry) {
+        this.chunker = chunker;
+        this.batchSize = Math.min(embedder.maxBatchSize(), settings.maxBatchSize());
+        this.embedder = embedder;
+        this.store = store;
+
+        String directory = settings.checkpointDirectory();
+        this.checkpointDirectory =
+                (directory == null || directory.isBlank()) ? null : Path.of(directory);
+        this.checkpointIntervalNanos = settings.checkpointInterval().toNanos();
+        this.permits = new Semaphore(settings.concurrency());
+
+        this.ingestedDocuments = meterRegistry.counter("app_rag_ingested_documents_total");
+        this.ingestedChunks = meterRegistry.counter("app_rag_ingested_chunks_total");
+        this.embeddingTimer =
+                Timer.builder("app_rag_embedding_batch_seconds")
+                        .publishPercentileHistogram()
+                        .register(meterRegistry);
+        Gauge.builder("app_rag_bulk_batches_in_flight", inFlight, AtomicInteger::get)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ingests all documents of {@code input}, replacing earlier versions with the same source.
+     * Returns once every document is stored.
+     *
+     * @param input positioned at the start of the input, not closed
+     * @param source id of the document of a text input, ignored for JSONL
+     * @param job optional name of the job, with it the ingestion is checkpointed and resumes from
+     *     the checkpoint of an earlier failed run
+     * @throws IllegalArgumentException if the arguments are invalid or don't match the checkpoint
+     *     of the job
+     * @throws IOException if reading the input fails, the job's checkpoint is saved
+     */
+    public BulkIngestionResult ingest(
+            ReadableByteChannel input, Format format, String source, String job)
+            throws IOException {
+        String documentSource = format == Format.TEXT ? checkSource(source) : null;
+
+        Path checkpointPath = null;
+        BulkIngestionCheckpoint resumeFrom = null;
+        if (job != null) {
+            checkpointPath = checkpointPath(job);
+            resumeFrom = BulkIngestionCheckpoint.load(checkpointPath).orElse(null);
+            if (resumeFrom != null && !resumeFrom.matches(format, documentSource)) {
+                throw new IllegalArgumentException(
+                        String.format(
+                                "Job '%s' has a checkpoint of another input, delete '%s' to start"
+                                        + " over",
+                                job, checkpointPath));
+            }
+        }
+
+        long offset = resumeFrom == null ? 0L : resumeFrom.offset();
+        if (offset > 0) {
+            skip(input, offset);
+        }
+        LOGGER.info(
+                "Bulk ingestion {} started: format = {}, offset = {}, skipped chunks = {}",
+                job == null ? "(no job)" : "'" + job + "'",
+                format,
+                offset,
+                resumeFrom == null ? 0 : resumeFrom.chunks());
+
+        try (Run run =
+                new Run(
+                        format,
+                        documentSource,
+                        job,
+                        checkpointPath,
+                        offset,
+                        resumeFrom == null ? 0 : resumeFrom.chunks())) {
+            if (format == Format.JSONL) {
+                run.readJsonl(input);
+            } else {
+                run.readText(input);
+            }
+            BulkIngestionResult result = run.finish();
+            LOGGER.info("Bulk ingestion completed: {}", result);
+            return result;
+        }
+    }
+
+    private static String checkSource(String source) {
+        if (source == null || source.isBlank() || source.length() > MAX_SOURCE_CHARS) {
+            throw new IllegalArgumentException(
+                    "'source' of a text document is required, at most "
+                            + MAX_SOURCE_CHARS
+                            + " chars");
+        }
+        return source;
+    }
+
+    private Path checkpointPath(String job) throws IOException {
+        if (!JOB_NAME.matcher(job).matches()) {
+            throw new IllegalArgumentException(
+                    "Invalid job name '" + job + "', expected " + JOB_NAME.pattern());
+        }
+        if (checkpointDirectory == null) {
+            throw new IllegalArgumentException(
+                    "Jobs need 'app.rag.bulk.checkpoint_directory' to store their checkpoints");
+        }
+        Files.createDirectories(checkpointDirectory);
+        return checkpointDirectory.resolve(job + ".checkpoint");
+    }
+
+    /** Moves {@code input} forward by {@code bytes}: seeks if possible, reads and drops if not. */
+    private static void skip(ReadableByteChannel input, long bytes) throws IOException {
+        if (input instanceof SeekableByteChannel seekable) {
+            long target = seekable.position() + bytes;
+            if (target > seekable.size()) {
+                throw new IllegalArgumentException(
+                        "Input is shorter than the checkpoint offset " + bytes);
+            }
+            seekable.position(target);
+            return;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_BYTES);
+        long left = bytes;
+        while (left > 0) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), left));
+            int read = input.read(buffer);
+            if (read == -1) {
+                throw new IllegalArgumentException(
+                        "Input is shorter than the checkpoint offset " + bytes);
+            }
+            left -= read;
+        }
+    }
+
+    /** Document whose last chunk is in a batch, its chunks from {@code chunks} on are stale. */
+    private record DocumentEnd(String source, int chunks) {}
+
+    /**
+     * @param checkpoint progress once this batch and all earlier ones are stored
+     */
+    private record Batch(
+            long sequence,
+            List<DocumentChunk> chunks,
+            List<DocumentEnd> ends,
+            BulkIngestionCheckpoint checkpoint) {}
+
+    /** One ingestion of an input: reading and batching on the caller's thread. */
+    private final class Run implements AutoCloseable {
+
+        private final Format format;
+        private final String textSource;
+        private final String job;
+        private final Path checkpointPath;
+        private final long startOffset;
+        private final long startNanos = System.nanoTime();
+
+        private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+        // reader state, caller's thread only
+
+        private List<DocumentChunk> chunks = new ArrayList<>(batchSize);
+        private List<DocumentEnd> ends = new ArrayList<>();
+        private long nextSequence;
+
+        /** Input offset after the last byte read. */
+        private long position;
+
+        private String documentSource;
+        private long documentOffset;
+        private int documentChunks;
+
+        /** Chunks of the next document that were stored before the resumed checkpoint. */
+        private int resumedChunks;
+
+        private long skippedLines;
+
+        // completion state, guarded by lock
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final TreeMap<Long, BulkIngestionCheckpoint> completed = new TreeMap<>();
+        private long nextToCommit;
+        private BulkIngestionCheckpoint committed;
+        private long savedNanos;
+        private boolean finished;
+
+        private final AtomicLong storedDocuments = new AtomicLong();
+        private final AtomicLong storedChunks = new AtomicLong();
+
+        /** First failure of a batch, stops reading. */
+        private volatile Throwable failure;
+
+        Run(
+                Format format,
+                String textSource,
+                String job,
+                Path checkpointPath,
+                long startOffset,
+                int resumedChunks) {
+            this.format = format;
+            this.textSource = textSource;
+            this.job = job;
+            this.checkpointPath = checkpointPath;
+            this.startOffset = startOffset;
+            this.position = startOffset;
+            this.documentOffset = startOffset;
+            this.resumedChunks = resumedChunks;
+            this.savedNanos = startNanos;
+        }
+
+        void readJsonl(ReadableByteChannel input) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_BYTES);
+            byte[] bytes = buffer.array();
+
+            // a line split over several reads is collected here
+            byte[] line = new byte[READ_BUFFER_BYTES];
+            int lineLength = 0;
+            long lineOffset = position;
+
+            while (failure == null && input.read(buffer) != -1) {
+                int length = buffer.position();
+                int lineStart = 0;
+                for (int i = 0; i < length; ++i) {
+                    if (bytes[i] != '\n') {
+                        continue;
+                    }
+                    long lineEnd = position + i + 1;
+                    if (lineLength == 0) {
+                        jsonlDocument(bytes, lineStart, i - lineStart, lineOffset, lineEnd);
+                    } else {
+                        line = append(line, lineLength, bytes, lineStart, i - lineStart);
+                        lineLength += i - lineStart;
+                        jsonlDocument(line, 0, lineLength, lineOffset, lineEnd);
+                        lineLength = 0;
+                    }
+                    lineStart = i + 1;
+                    lineOffset = lineEnd;
+                }
+
+                line = append(line, lineLength, bytes, lineStart, length - lineStart);
+                lineLength += length - lineStart;
+                position += length;
+                buffer.clear();
+            }
+
+            if (failure == null && lineLength > 0) {
+                jsonlDocument(line, 0, lineLength, lineOffset, position);
+            }
+        }
+
+        void readText(ReadableByteChannel input) throws IOException {
+            startDocument(textSource, position);
+
+            CharsetDecoder decoder =
+                    StandardCharsets.UTF_8
+                            .newDecoder()
+                            .onMalformedInput(CodingErrorAction.REPLACE)
+                            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            ByteBuffer bytes = ByteBuffer.allocate(READ_BUFFER_BYTES);
+            // UTF-8 never decodes to more chars than bytes
+            CharBuffer chars = CharBuffer.allocate(READ_BUFFER_BYTES);
+            TextChunker.Splitter splitter = chunker.splitter(this::addChunk);
+
+            boolean endOfInput = false;
+            while (failure == null && !endOfInput) {
+                int read = input.read(bytes);
+                endOfInput = read == -1;
+                position += Math.max(read, 0);
+
+                bytes.flip();
+                decoder.decode(bytes, chars, endOfInput);
+                if (endOfInput) {
+                    decoder.flush(chars);
+                }
+                bytes.compact();
+
+                splitter.append(chars.flip());
+                chars.clear();
+            }
+
+            if (failure == null) {
+                splitter.finish();
+                endDocument(position);
+            }
+        }
+
+        private void jsonlDocument(byte[] bytes, int from, int length, long start, long end)
+                throws IOException {
+            String source = null;
+            String text = null;
+            try (JsonParser parser = JSON.createParser(bytes, from, length)) {
+                JsonToken token = parser.nextToken();
+                if (token == null) {
+                    // blank line
+                    documentOffset = end;
+                    return;
+                }
+                if (token == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String field = parser.currentName();
+                        JsonToken value = parser.nextToken();
+                        if (value == JsonToken.VALUE_STRING && "source".equals(field)) {
+                            source = parser.getText();
+                        } else if (value == JsonToken.VALUE_STRING && "text".equals(field)) {
+                            text = parser.getText();
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                }
+            } catch (JsonProcessingException jsonEx) {
+                LOGGER.debug("Malformed JSONL line at offset {}", start, jsonEx);
+            }
+
+            if (source == null
+                    || source.isBlank()
+                    || source.length() > MAX_SOURCE_CHARS
+                    || text == null
+                    || text.isBlank()) {
+                ++skippedLines;
+                documentOffset = end;
+                LOGGER.warn(
+                        "Skipping invalid JSONL line at offset {}, expected non-blank 'source'"
+                                + " and 'text'",
+                        start);
+                return;
+            }
+
+            startDocument(source, start);
+            for (String chunk : chunker.split(text)) {
+                addChunk(chunk);
+            }
+            endDocument(end);
+        }
+
+        private void startDocument(String source, long offset) {
+            documentSource = source;
+            documentOffset = offset;
+            documentChunks = 0;
+        }
+
+        private void addChunk(String text) {
+            int index = documentChunks++;
+            if (resumedChunks > 0) {
+                // stored by the run that wrote the checkpoint
+                --resumedChunks;
+                return;
+            }
+
+            chunks.add(new DocumentChunk(documentSource, index, text));
+            if (chunks.size() == batchSize) {
+                seal();
+            }
+        }
+
+        private void endDocument(long end) {
+            ends.add(new DocumentEnd(documentSource, documentChunks));
+            documentOffset = end;
+            documentChunks = 0;
+        }
+
+        /** Hands the collected chunks and document ends over to a virtual thread. */
+        private void seal() {
+            if (chunks.isEmpty() && ends.isEmpty()) {
+                return;
+            }
+
+            Batch batch =
+                    new Batch(
+                            nextSequence++,
+                            chunks,
+                            ends,
+                            new BulkIngestionCheckpoint(
+                                    format, textSource, documentOffset, documentChunks));
+            chunks = new ArrayList<>(batchSize);
+            ends = new ArrayList<>();
+
+            try {
+                permits.acquire();
+            } catch (InterruptedException interEx) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(
+                        "Interrupted while waiting for a free ingestion slot", interEx);
+            }
+
+            if (failure != null) {
+                permits.release();
+                return;
+            }
+
+            inFlight.incrementAndGet();
+            executor.execute(
+                    () -> {
+                        try {
+                            store(batch);
+                            complete(batch);
+                        } catch (Throwable ex) {
+                            if (failure == null) {
+                                failure = ex;
+                            }
+                        } finally {
+                            inFlight.decrementAndGet();
+                            permits.release();
+                        }
+                    });
+        }
+
+        private void store(Batch batch) {
+            if (!batch.chunks().isEmpty()) {
+                List<String> texts = new ArrayList<>(batch.chunks().size());
+                for (DocumentChunk chunk : batch.chunks()) {
+                    texts.add(chunk.text());
+                }
+
+                long embedStartNanos = System.nanoTime();
+                List<float[]> vectors = embedder.embedAll(texts);
+                embeddingTimer.record(System.nanoTime() - embedStartNanos, TimeUnit.NANOSECONDS);
+
+                store.upsert(batch.chunks(), vectors);
+                ingestedChunks.increment(batch.chunks().size());
+                storedChunks.addAndGet(batch.chunks().size());
+            }
+
+            for (DocumentEnd end : batch.ends()) {
+                store.delete(end.source(), end.chunks());
+            }
+            ingestedDocuments.increment(batch.ends().size());
+            storedDocuments.addAndGet(batch.ends().size());
+        }
+
+        /** Moves the checkpoint past all batches stored without a gap. */
+        private void complete(Batch batch) {
+            lock.lock();
+            try {
+                completed.put(batch.sequence(), batch.checkpoint());
+                while (!completed.isEmpty() && completed.firstKey() == nextToCommit) {
+                    committed = completed.pollFirstEntry().getValue();
+                    ++nextToCommit;
+                }
+
+                if (System.nanoTime() - savedNanos >= checkpointIntervalNanos) {
+                    saveCheckpoint();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /** Must be called under {@link #lock}. */
+        private void saveCheckpoint() {
+            if (checkpointPath == null || committed == null || finished) {
+                return;
+            }
+            try {
+                committed.save(checkpointPath);
+                savedNanos = System.nanoTime();
+            } catch (IOException ioEx) {
+                LOGGER.warn("Failed to save bulk ingestion checkpoint {}", checkpointPath, ioEx);
+            }
+        }
+
+        /** Stores the last batch and waits for all batches. */
+        BulkIngestionResult finish() throws IOException {
+            seal();
+            executor.close();
+
+            if (failure != null) {
+                if (failure instanceof RuntimeException runtimeEx) {
+                    throw runtimeEx;
+                }
+                if (failure instanceof Error error) {
+                    throw error;
+                }
+                throw new IllegalStateException("Bulk ingestion failed", failure);
+            }
+
+            lock.lock();
+            try {
+                finished = true;
+            } finally {
+                lock.unlock();
+            }
+            if (checkpointPath != null) {
+                Files.deleteIfExists(checkpointPath);
+            }
+
+            double seconds = Math.max(System.nanoTime() - startNanos, 1L) / 1e9;
+            return new BulkIngestionResult(
+                    job,
+                    startOffset,
+                    position - startOffset,
+                    storedDocuments.get(),
+                    storedChunks.get(),
+                    skippedLines,
+                    storedDocuments.get() / seconds);
+        }
+
+        /** Waits for the batches in flight and saves the checkpoint of a failed run. */
+        @Override
+        public void close() {
+            executor.close();
+
+            lock.lock();
+            try {
+                if (!finished && checkpointPath != null && committed != null) {
+                    saveCheckpoint();
+                    LOGGER.warn(
+                            "Bulk ingestion '{}' stopped, resume from offset {} (chunks {})",
+                            job,
+                            committed.offset(),
+                            committed.chunks());
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /** Appends {@code length} bytes to a line of {@code lineLength} bytes, growing it if needed. */
+    private static byte[] append(byte[] line, int lineLength, byte[] bytes, int from, int length) {
+        if (length == 0) {
+            return line;
+        }
+        int newLength = lineLength + length;
+        if (newLength > MAX_LINE_BYTES) {
+            throw new IllegalArgumentException(
+                    "JSONL line longer than " + MAX_LINE_BYTES + " bytes");
+        }
+
+        byte[] target = line;
+        if (newLength > line.length) {
+            int capacity = Math.min(Math.max(line.length * 2, newLength), MAX_LINE_BYTES);
+            target = Arrays.copyOf(line, capacity);
+        }
+        System.arraycopy(bytes, from, target, lineLength, length);
+        return target;
+    }
+}
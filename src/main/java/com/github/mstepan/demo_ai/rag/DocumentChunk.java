@@ -0,0 +1,16 @@
+package com.github.mstepan.demo_ai.rag;
+
+/**
+ * A piece of an ingested document, the unit that is embedded, stored and retrieved.
+ *
+ * @param source id of the document, e.g. its file name or URL
+ * @param index position of the chunk within the document, starting at 0
+ * @param text content of the chunk
+ */
+public record DocumentChunk(String source, int index, String text) {
+
+    /** Key of the chunk in a {@link DocumentStore}, re-ingesting a document replaces its chunks. */
+    public String id() {
+        return source + '#' + index;
+    }
+}
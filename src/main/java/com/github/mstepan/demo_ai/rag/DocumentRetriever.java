@@ -0,0 +1,212 @@
+package com.github.mstepan.demo_ai.rag;
+
+import com.github.mstepan.demo_ai.embedding.Embedder;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds the chunks of the knowledge base relevant to a question or claim: embeds it, searches the
+ * {@link DocumentStore} for the 'top_k' most similar chunks and keeps those at least
+ * 'min_similarity' similar, within 'max_context_chars' in total.
+ *
+ * <p>With hybrid retrieval the store is searched by keywords (BM25) too, 'candidates' hits each,
+ * and the two rankings are merged by reciprocal rank fusion (Cormack et al.): a chunk scores the
+ * sum of 1 / (rrf_k + rank) over the searches that found it. Fusion only needs ranks, so cosine
+ * similarities and BM25 scores never have to be made comparable.
+ *
+ * <p>Used by the chat prompt (with 'app.rag.enabled') and the facts evaluator.
+ *
+ * <p>Metrics (Prometheus/Micrometer):
+ *
+ * <ul>
+ *   <li>app_rag_retrieval_seconds (Timer, histogram, p50/p95/p99): whole retrieval latency
+ *   <li>app_rag_search_seconds (Timer, histogram, p50/p95/p99): latency of one search, kind in
+ *       {"vector","keyword"}; vector includes embedding the query
+ *   <li>app_rag_retrievals_total (Counter): retrievals, result in {"hit","miss"}; a miss found no
+ *       chunk relevant enough
+ * </ul>
+ */
+@Component
+public class DocumentRetriever {
+
+    private final boolean enabled;
+    private final RagProperties.Retrieval settings;
+    private final Embedder embedder;
+    private final DocumentStore store;
+
+    private final Timer latency;
+    private final Timer vectorLatency;
+    private final Timer keywordLatency;
+    private final Counter hits;
+    private final Counter misses;
+
+    @Autowired
+    public DocumentRetriever(
+            RagProperties properties,
+            Embedder embedder,
+            DocumentStore store,
+            MeterRegistry meterRegistry) {
+        this(
+                Boolean.TRUE.equals(properties.enabled()),
+                properties.retrieval(),
+                embedder,
+                store,
+                meterRegistry);
+    }
+
+    public DocumentRetriever(
+            boolean enabled,
+            RagProperties.Retrieval settings,
+            Embedder embedder,
+            DocumentStore store,
+            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.settings = settings;
+        this.embedder = embedder;
+        this.store = store;
+
+        this.latency =
+                Timer.builder("app_rag_retrieval_seconds")
+                        .publishPercentileHistogram()
+                        .publishPercentiles(0.5, 0.95, 0.99)
+                        .register(meterRegistry);
+        this.vectorLatency = searchTimer(meterRegistry, "vector");
+        this.keywordLatency = searchTimer(meterRegistry, "keyword");
+        this.hits = meterRegistry.counter("app_rag_retrievals_total", "result", "hit");
+        this.misses = meterRegistry.counter("app_rag_retrievals_total", "result", "miss");
+    }
+
+    /** True if chat prompts are augmented with retrieved chunks ('app.rag.enabled'). */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** {@link DocumentStore#version()} of the knowledge base, changes with every ingestion. */
+    public long knowledgeBaseVersion() {
+        return store.version();
+    }
+
+    /**
+     * @return the relevant chunks, most relevant first; empty if the knowledge base has none
+     */
+    public List<ScoredChunk> retrieve(String query) {
+        long startNanos = System.nanoTime();
+        try {
+            RagProperties.Hybrid hybrid = settings.hybrid();
+            boolean fused = Boolean.TRUE.equals(hybrid.enabled());
+            int candidates =
+                    fused ? Math.max(hybrid.candidates(), settings.topK()) : settings.topK();
+
+            List<ScoredChunk> found = vectorSearch(query, candidates);
+            if (fused) {
+                found = fuse(found, keywordSearch(query, candidates), hybrid.rrfK());
+            }
+
+            List<ScoredChunk> relevant = new ArrayList<>(settings.topK());
+            int contextChars = 0;
+            for (ScoredChunk scored : found) {
+                if (relevant.size() == settings.topK()) {
+                    break;
+                }
+                contextChars += scored.chunk().text().length();
+                if (contextChars > settings.maxContextChars() && !relevant.isEmpty()) {
+                    break;
+                }
+                relevant.add(scored);
+            }
+
+            (relevant.isEmpty() ? misses : hits).increment();
+            return relevant;
+        } finally {
+            latency.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /** Chunks at least 'min_similarity' similar to the query, most similar first. */
+    private List<ScoredChunk> vectorSearch(String query, int topK) {
+        long startNanos = System.nanoTime();
+        try {
+            List<ScoredChunk> found = store.search(embedder.embed(query), topK);
+            int similar = 0;
+            while (similar < found.size()
+                    && found.get(similar).score() >= settings.minSimilarity()) {
+                ++similar;
+            }
+            return found.subList(0, similar);
+        } finally {
+            vectorLatency.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private List<ScoredChunk> keywordSearch(String query, int topK) {
+        long startNanos = System.nanoTime();
+        try {
+            return store.searchText(query, topK, settings.hybrid().minKeywordCoverage());
+        } finally {
+            keywordLatency.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static Timer searchTimer(MeterRegistry meterRegistry, String kind) {
+        return Timer.builder("app_rag_search_seconds")
+                .tag("kind", kind)
+                .publishPercentileHistogram()
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Merges rankings by reciprocal rank fusion, a chunk found by several searches is scored by
+     * the sum of its per-search scores. Ties keep the order of the rankings.
+     *
+     * @return chunks of all rankings, by decreasing fused score
+     */
+    static List<ScoredChunk> fuse(
+            List<ScoredChunk> ranking1, List<ScoredChunk> ranking2, int rrfK) {
+        Map<String, ScoredChunk> fused = new LinkedHashMap<>();
+        for (List<ScoredChunk> ranking : List.of(ranking1, ranking2)) {
+            for (int rank = 0; rank < ranking.size(); ++rank) {
+                DocumentChunk chunk = ranking.get(rank).chunk();
+                float score = 1.0F / (rrfK + rank + 1);
+                fused.merge(
+                        chunk.id(),
+                        new ScoredChunk(chunk, score),
+                        (first, next) -> new ScoredChunk(first.chunk(), first.score() + score));
+            }
+        }
+
+        List<ScoredChunk> sorted = new ArrayList<>(fused.values());
+        sorted.sort(Comparator.comparingDouble(ScoredChunk::score).reversed());
+        return sorted;
+    }
+
+    /** Formats retrieved chunks as the context of a prompt, numbered and with their source. */
+    public static String format(List<ScoredChunk> chunks) {
+        StringBuilder context = new StringBuilder();
+        for (int i = 0; i < chunks.size(); ++i) {
+            DocumentChunk chunk = chunks.get(i).chunk();
+            if (i > 0) {
+                context.append("\n\n");
+            }
+            context.append('[')
+                    .append(i + 1)
+                    .append("] (")
+                    .append(chunk.source())
+                    .append(")\n")
+                    .append(chunk.text());
+        }
+        return context.toString();
+    }
+}
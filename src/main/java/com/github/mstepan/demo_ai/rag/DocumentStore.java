@@ -0,0 +1,54 @@
+package com.github.mstepan.demo_ai.rag;
+
+import java.util.List;
+
+/**
+ * Stores embedded {@link DocumentChunk}s and finds the ones most similar to a query vector, or
+ * containing the words of a query.
+ * Selected by 'app.rag.store': {@link InMemoryDocumentStore} for tests and local runs, {@link
+ * OracleDocumentStore} backed by Oracle Database 23ai.
+ *
+ * <p>Implementations are thread-safe.
+ */
+public interface DocumentStore {
+
+    /**
+     * Inserts the chunks, replacing stored chunks with the same {@link DocumentChunk#id()}.
+     *
+     * @param embeddings embedding of every chunk, in the same order
+     */
+    void upsert(List<DocumentChunk> chunks, List<float[]> embeddings);
+
+    /**
+     * Finds up to {@code topK} chunks most similar to the query.
+     *
+     * @return chunks ordered by decreasing similarity
+     */
+    List<ScoredChunk> search(float[] query, int topK);
+
+    /**
+     * Finds up to {@code topK} chunks containing the words of the query, ranked by BM25.
+     *
+     * @param minCoverage min share of the query words, weighted by their rarity, a chunk must
+     *     contain, from 0 to 1
+     * @return chunks ordered by decreasing BM25 score
+     */
+    List<ScoredChunk> searchText(String query, int topK, double minCoverage);
+
+    /**
+     * Deletes the chunks of a document from {@code fromIndex} on, i.e. the whole document with 0
+     * and the leftovers of a longer previous version with its new chunk count.
+     *
+     * @return number of deleted chunks
+     */
+    int delete(String source, int fromIndex);
+
+    /** Number of stored chunks. */
+    int size();
+
+    /**
+     * Grows with every upsert and every delete that removed chunks through this store, answers
+     * derived from the stored chunks are only valid for the version they were generated with.
+     */
+    long version();
+}
@@ -0,0 +1,198 @@
+package com.github.mstepan.demo_ai.rag;
+
+import com.github.mstepan.demo_ai.vector.HnswIndex;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link DocumentStore} on top of an in-process {@link HnswIndex}, needs no database and keeps
+ * nothing across restarts.
+ *
+ * <p>Chunk texts are indexed for keyword search by a {@link LexicalIndex} along the way.
+ *
+ * <p>A replaced or deleted chunk stays in the index as a tombstone. When the index is full it is
+ * rebuilt from the live chunks only, an upsert fails with {@link IllegalStateException} once all
+ * 'app.rag.memory.capacity' chunks are live.
+ *
+ * <p>Searches run concurrently and never wait for writes, writes are serialized.
+ */
+public final class InMemoryDocumentStore implements DocumentStore {
+
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private final int capacity;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private final LexicalIndex lexicalIndex = new LexicalIndex(true);
+
+    /** Index node of every live chunk, by source and chunk index; guarded by {@link #writeLock}. */
+    private final Map<String, NavigableMap<Integer, Integer>> nodesBySource = new HashMap<>();
+
+    /** Index and chunks are swapped together on compaction, null before the first upsert. */
+    private volatile Generation generation;
+
+    private final AtomicLong version = new AtomicLong();
+
+    public InMemoryDocumentStore(int capacity) {
+        this.capacity = capacity;
+    }
+
+    @Override
+    public void upsert(List<DocumentChunk> chunks, List<float[]> embeddings) {
+        if (chunks.size() != embeddings.size()) {
+            throw new IllegalArgumentException(
+                    String.format(
+                            "%d chunks but %d embeddings", chunks.size(), embeddings.size()));
+        }
+
+        writeLock.lock();
+        try {
+            for (int i = 0; i < chunks.size(); ++i) {
+                DocumentChunk chunk = chunks.get(i);
+                Generation current = writableGeneration(embeddings.get(i).length);
+
+                NavigableMap<Integer, Integer> nodes =
+                        nodesBySource.computeIfAbsent(chunk.source(), source -> new TreeMap<>());
+                Integer replaced = nodes.get(chunk.index());
+                if (replaced != null) {
+                    current.remove(replaced);
+                }
+
+                int node = current.index().add(embeddings.get(i));
+                current.chunks().set(node, chunk);
+                nodes.put(chunk.index(), node);
+            }
+            lexicalIndex.upsert(chunks);
+            version.incrementAndGet();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public List<ScoredChunk> search(float[] query, int topK) {
+        Generation current = generation;
+        if (current == null) {
+            return List.of();
+        }
+
+        List<HnswIndex.Neighbor> neighbors = current.index().search(query, topK);
+        List<ScoredChunk> found = new ArrayList<>(neighbors.size());
+        for (HnswIndex.Neighbor neighbor : neighbors) {
+            DocumentChunk chunk = current.chunks().get(neighbor.node());
+            // null: deleted since the index was searched
+            if (chunk != null) {
+                found.add(new ScoredChunk(chunk, neighbor.similarity()));
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public List<ScoredChunk> searchText(String query, int topK, double minCoverage) {
+        return lexicalIndex.search(query, topK, minCoverage);
+    }
+
+    @Override
+    public int delete(String source, int fromIndex) {
+        writeLock.lock();
+        try {
+            NavigableMap<Integer, Integer> nodes = nodesBySource.get(source);
+            if (nodes == null) {
+                return 0;
+            }
+
+            NavigableMap<Integer, Integer> deleted = nodes.tailMap(fromIndex, true);
+            int count = deleted.size();
+            for (int node : deleted.values()) {
+                generation.remove(node);
+            }
+            deleted.clear();
+            if (nodes.isEmpty()) {
+                nodesBySource.remove(source);
+            }
+            lexicalIndex.delete(source, fromIndex);
+            if (count > 0) {
+                version.incrementAndGet();
+            }
+            return count;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        Generation current = generation;
+        return current == null ? 0 : current.index().liveSize();
+    }
+
+    @Override
+    public long version() {
+        return version.get();
+    }
+
+    /** Must be called under {@link #writeLock}. */
+    private Generation writableGeneration(int dimensions) {
+        Generation current = generation;
+        if (current == null) {
+            current = new Generation(capacity, dimensions);
+            generation = current;
+        } else if (current.index().size() == capacity) {
+            current = compact(current);
+            generation = current;
+        }
+        return current;
+    }
+
+    /** Rebuilds the index from the live chunks. Must be called under {@link #writeLock}. */
+    private Generation compact(Generation current) {
+        if (current.index().liveSize() == capacity) {
+            throw new IllegalStateException(
+                    "Document store is full, capacity = "
+                            + capacity
+                            + ", raise 'app.rag.memory.capacity'");
+        }
+
+        Generation compacted = new Generation(capacity, current.index().dimensions());
+        for (NavigableMap<Integer, Integer> nodes : nodesBySource.values()) {
+            for (Map.Entry<Integer, Integer> entry : nodes.entrySet()) {
+                int node = entry.getValue();
+                int newNode = compacted.index().add(current.index().vector(node));
+                compacted.chunks().set(newNode, current.chunks().get(node));
+                entry.setValue(newNode);
+            }
+        }
+
+        LOGGER.info(
+                "Document store compacted: kept {}, dropped {} replaced or deleted chunks",
+                compacted.index().size(),
+                current.index().size() - compacted.index().size());
+        return compacted;
+    }
+
+    private record Generation(HnswIndex index, AtomicReferenceArray<DocumentChunk> chunks) {
+        Generation(int capacity, int dimensions) {
+            this(new HnswIndex(dimensions, capacity), new AtomicReferenceArray<>(capacity));
+        }
+
+        void remove(int node) {
+            chunks.set(node, null);
+            index.remove(node);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.github.mstepan.demo_ai.rag;
+
+import com.github.mstepan.demo_ai.text.Bm25Index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Keyword index of the knowledge base: a {@link Bm25Index} over the chunk texts, kept up to date
+ * by the {@link DocumentStore} next to its vectors. Finds what embeddings are bad at, exact names,
+ * identifiers and rare words.
+ *
+ * <p>Replaced and deleted chunks are tombstones, the postings are compacted once there are more of
+ * them than live chunks, so updates never rebuild the index from the texts.
+ *
+ * <p>Thread-safe: searches run concurrently under a read lock, writes are serialized.
+ */
+public final class LexicalIndex {
+
+    /** Compacting a tiny index saves nothing. */
+    private static final int MIN_REMOVED_TO_COMPACT = 1024;
+
+    private final boolean keepText;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Bm25Index index = new Bm25Index();
+
+    /** Chunk of every document id of the index, null once replaced or deleted. */
+    private DocumentChunk[] chunks = new DocumentChunk[64];
+
+    /** Document id of every live chunk, by source and chunk index. */
+    private final Map<String, NavigableMap<Integer, Integer>> docsBySource = new HashMap<>();
+
+    /**
+     * @param keepText false to keep only the source and index of the chunks, hits then have a null
+     *     text and the caller loads it; for stores that keep the texts elsewhere anyway
+     */
+    public LexicalIndex(boolean keepText) {
+        this.keepText = keepText;
+    }
+
+    /** Indexes the chunks, replacing indexed chunks with the same {@link DocumentChunk#id()}. */
+    public void upsert(List<DocumentChunk> batch) {
+        lock.writeLock().lock();
+        try {
+            for (DocumentChunk chunk : batch) {
+                NavigableMap<Integer, Integer> docs =
+                        docsBySource.computeIfAbsent(chunk.source(), source -> new TreeMap<>());
+                Integer replaced = docs.get(chunk.index());
+                if (replaced != null) {
+                    remove(replaced);
+                }
+
+                int doc = index.add(chunk.text());
+                if (doc == chunks.length) {
+                    chunks = Arrays.copyOf(chunks, doc * 2);
+                }
+                chunks[doc] =
+                        keepText ? chunk : new DocumentChunk(chunk.source(), chunk.index(), null);
+                docs.put(chunk.index(), doc);
+            }
+            compactIfWorthIt();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Same as {@link DocumentStore#delete(String, int)}. */
+    public int delete(String source, int fromIndex) {
+        lock.writeLock().lock();
+        try {
+            NavigableMap<Integer, Integer> docs = docsBySource.get(source);
+            if (docs == null) {
+                return 0;
+            }
+
+            NavigableMap<Integer, Integer> deleted = docs.tailMap(fromIndex, true);
+            int count = deleted.size();
+            for (int doc : deleted.values()) {
+                remove(doc);
+            }
+            deleted.clear();
+            if (docs.isEmpty()) {
+                docsBySource.remove(source);
+            }
+            compactIfWorthIt();
+            return count;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds up to {@code topK} chunks by BM25 score, see {@link Bm25Index#search}.
+     *
+     * @return chunks ordered by decreasing BM25 score
+     */
+    public List<ScoredChunk> search(String query, int topK, double minCoverage) {
+        lock.readLock().lock();
+        try {
+            List<Bm25Index.Hit> hits = index.search(query, topK, minCoverage);
+            List<ScoredChunk> found = new ArrayList<>(hits.size());
+            for (Bm25Index.Hit hit : hits) {
+                found.add(new ScoredChunk(chunks[hit.doc()], hit.score()));
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Number of indexed chunks. */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.liveSize();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Must be called under the write lock. */
+    private void remove(int doc) {
+        index.remove(doc);
+        chunks[doc] = null;
+    }
+
+    /** Must be called under the write lock. */
+    private void compactIfWorthIt() {
+        int removed = index.size() - index.liveSize();
+        if (removed < MIN_REMOVED_TO_COMPACT || removed <= index.liveSize()) {
+            return;
+        }
+
+        int[] newIds = index.compact();
+        DocumentChunk[] compacted = new DocumentChunk[Math.max(64, index.size())];
+        for (int doc = 0; doc < newIds.length; ++doc) {
+            if (newIds[doc] != Bm25Index.REMOVED) {
+                compacted[newIds[doc]] = chunks[doc];
+            }
+        }
+        chunks = compacted;
+
+        for (NavigableMap<Integer, Integer> docs : docsBySource.values()) {
+            docs.replaceAll((chunkIndex, doc) -> newIds[doc]);
+        }
+    }
+}
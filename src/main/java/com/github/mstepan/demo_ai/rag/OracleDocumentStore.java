@@ -0,0 +1,266 @@
+package com.github.mstepan.demo_ai.rag;
+
+import oracle.jdbc.OracleType;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.lang.invoke.MethodHandles;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+/**
+ * {@link DocumentStore} backed by an Oracle Database 23ai table with a VECTOR column, searched
+ * with approximate cosine similarity.
+ *
+ * <p>The table is created on startup when missing, together with an in-memory HNSW vector index.
+ * Without a vector pool ('vector_memory_size') the index can't be created, searches then fall
+ * back to an exact scan, which is fine for small corpora only.
+ *
+ * <p>Keyword search uses an in-process {@link LexicalIndex} of the chunks (without their texts),
+ * built from the table on startup and updated by this store's writes. Writes of other application
+ * instances sharing the table are only seen after a restart, and don't change the {@link
+ * #version()}.
+ */
+public final class OracleDocumentStore implements DocumentStore {
+
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    /** Rows fetched per round trip and chunks indexed together while loading the keyword index. */
+    private static final int LOAD_BATCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final String upsertSql;
+    private final String searchSql;
+    private final String deleteSql;
+    private final String countSql;
+    private final String loadSql;
+    private final String textsSql;
+
+    private final LexicalIndex lexicalIndex = new LexicalIndex(false);
+
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * @param table plain table name, it's put into the statements as is
+     */
+    public OracleDocumentStore(DataSource dataSource, String table) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+
+        this.upsertSql =
+                """
+                MERGE INTO %1$s dst
+                USING (SELECT ? AS id, ? AS source, ? AS chunk_index FROM dual) src
+                ON (dst.id = src.id)
+                WHEN MATCHED THEN UPDATE SET dst.content = ?, dst.embedding = ?
+                WHEN NOT MATCHED THEN INSERT (id, source, chunk_index, content, embedding)
+                    VALUES (src.id, src.source, src.chunk_index, ?, ?)
+                """
+                        .formatted(table);
+        this.searchSql =
+                """
+                SELECT source, chunk_index, content,
+                    VECTOR_DISTANCE(embedding, ?, COSINE) AS distance
+                FROM %1$s
+                ORDER BY distance
+                FETCH APPROX FIRST ? ROWS ONLY
+                """
+                        .formatted(table);
+        this.deleteSql = "DELETE FROM %1$s WHERE source = ? AND chunk_index >= ?".formatted(table);
+        this.countSql = "SELECT COUNT(*) FROM %1$s".formatted(table);
+        this.loadSql = "SELECT source, chunk_index, content FROM %1$s".formatted(table);
+        this.textsSql =
+                """
+                SELECT source, chunk_index, content FROM %1$s
+                WHERE (source, chunk_index) IN (%%s)
+                """
+                        .formatted(table);
+
+        createSchema(table);
+        loadLexicalIndex(table);
+    }
+
+    @Override
+    public void upsert(List<DocumentChunk> chunks, List<float[]> embeddings) {
+        if (chunks.size() != embeddings.size()) {
+            throw new IllegalArgumentException(
+                    String.format(
+                            "%d chunks but %d embeddings", chunks.size(), embeddings.size()));
+        }
+
+        jdbcTemplate.batchUpdate(
+                upsertSql,
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        DocumentChunk chunk = chunks.get(i);
+                        float[] embedding = embeddings.get(i);
+                        ps.setString(1, chunk.id());
+                        ps.setString(2, chunk.source());
+                        ps.setInt(3, chunk.index());
+                        ps.setString(4, chunk.text());
+                        ps.setObject(5, embedding, OracleType.VECTOR_FLOAT32);
+                        ps.setString(6, chunk.text());
+                        ps.setObject(7, embedding, OracleType.VECTOR_FLOAT32);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return chunks.size();
+                    }
+                });
+        lexicalIndex.upsert(chunks);
+        version.incrementAndGet();
+    }
+
+    @Override
+    public List<ScoredChunk> search(float[] query, int topK) {
+        return jdbcTemplate.query(
+                searchSql,
+                ps -> {
+                    ps.setObject(1, query, OracleType.VECTOR_FLOAT32);
+                    ps.setInt(2, topK);
+                },
+                (rs, rowNum) ->
+                        new ScoredChunk(
+                                new DocumentChunk(
+                                        rs.getString("source"),
+                                        rs.getInt("chunk_index"),
+                                        rs.getString("content")),
+                                (float) (1.0 - rs.getDouble("distance"))));
+    }
+
+    @Override
+    public List<ScoredChunk> searchText(String query, int topK, double minCoverage) {
+        List<ScoredChunk> found = lexicalIndex.search(query, topK, minCoverage);
+        if (found.isEmpty()) {
+            return found;
+        }
+
+        Map<String, String> texts = new HashMap<>();
+        jdbcTemplate.query(
+                textsSql.formatted(String.join(", ", Collections.nCopies(found.size(), "(?, ?)"))),
+                ps -> {
+                    for (int i = 0; i < found.size(); ++i) {
+                        ps.setString(2 * i + 1, found.get(i).chunk().source());
+                        ps.setInt(2 * i + 2, found.get(i).chunk().index());
+                    }
+                },
+                rs -> {
+                    DocumentChunk chunk =
+                            new DocumentChunk(rs.getString("source"), rs.getInt("chunk_index"), "");
+                    texts.put(chunk.id(), rs.getString("content"));
+                });
+
+        List<ScoredChunk> withTexts = new ArrayList<>(found.size());
+        for (ScoredChunk scored : found) {
+            DocumentChunk chunk = scored.chunk();
+            String text = texts.get(chunk.id());
+            // null: deleted by another instance since the index was loaded
+            if (text != null) {
+                withTexts.add(
+                        new ScoredChunk(
+                                new DocumentChunk(chunk.source(), chunk.index(), text),
+                                scored.score()));
+            }
+        }
+        return withTexts;
+    }
+
+    @Override
+    public int delete(String source, int fromIndex) {
+        int deleted = jdbcTemplate.update(deleteSql, source, fromIndex);
+        lexicalIndex.delete(source, fromIndex);
+        if (deleted > 0) {
+            version.incrementAndGet();
+        }
+        return deleted;
+    }
+
+    @Override
+    public int size() {
+        Integer count = jdbcTemplate.queryForObject(countSql, Integer.class);
+        return count == null ? 0 : count;
+    }
+
+    @Override
+    public long version() {
+        return version.get();
+    }
+
+    private void loadLexicalIndex(String table) {
+        long startNanos = System.nanoTime();
+        List<DocumentChunk> batch = new ArrayList<>(LOAD_BATCH_SIZE);
+        jdbcTemplate.query(
+                con -> {
+                    PreparedStatement ps = con.prepareStatement(loadSql);
+                    ps.setFetchSize(LOAD_BATCH_SIZE);
+                    return ps;
+                },
+                rs -> {
+                    batch.add(
+                            new DocumentChunk(
+                                    rs.getString("source"),
+                                    rs.getInt("chunk_index"),
+                                    rs.getString("content")));
+                    if (batch.size() == LOAD_BATCH_SIZE) {
+                        lexicalIndex.upsert(batch);
+                        batch.clear();
+                    }
+                });
+        lexicalIndex.upsert(batch);
+
+        LOGGER.info(
+                "Keyword index of '{}' loaded: {} chunks in {} ms",
+                table,
+                lexicalIndex.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }
+
+    private void createSchema(String table) {
+        jdbcTemplate.execute(
+                """
+                CREATE TABLE IF NOT EXISTS %1$s (
+                    id VARCHAR2(1024) PRIMARY KEY,
+                    source VARCHAR2(1000) NOT NULL,
+                    chunk_index NUMBER(10) NOT NULL,
+                    content CLOB NOT NULL,
+                    embedding VECTOR(*, FLOAT32) NOT NULL
+                )
+                """
+                        .formatted(table));
+        jdbcTemplate.execute(
+                "CREATE INDEX IF NOT EXISTS %1$s_source_idx ON %1$s (source, chunk_index)"
+                        .formatted(table));
+
+        try {
+            jdbcTemplate.execute(
+                    """
+                    CREATE VECTOR INDEX IF NOT EXISTS %1$s_vector_idx ON %1$s (embedding)
+                    ORGANIZATION INMEMORY NEIGHBOR GRAPH
+                    DISTANCE COSINE
+                    WITH TARGET ACCURACY 95
+                    """
+                            .formatted(table));
+        } catch (DataAccessException ex) {
+            LOGGER.warn(
+                    "Can't create vector index on '{}', searches will scan the whole table: {}",
+                    table,
+                    ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.mstepan.demo_ai.rag;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.lang.invoke.MethodHandles;
+
+/**
+ * The {@link DocumentStore} selected by 'app.rag.store'.
+ *
+ * <p>The Oracle store gets its own connection pool from 'app.rag.oracle', there is no
+ * application-wide DataSource: the knowledge base is the only database use and the default
+ * in-process store must start without any database.
+ */
+@Configuration
+public class RagConfiguration {
+
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    @Bean
+    @ConditionalOnProperty(name = "app.rag.store", havingValue = "memory", matchIfMissing = true)
+    public DocumentStore inMemoryDocumentStore(RagProperties properties) {
+        return new InMemoryDocumentStore(properties.memory().capacity());
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "app.rag.store", havingValue = "oracle")
+    public HikariDataSource ragDataSource(RagProperties properties) {
+        RagProperties.Oracle oracle = properties.oracle();
+        if (oracle.url() == null || oracle.url().isBlank()) {
+            throw new IllegalStateException(
+                    "'app.rag.oracle.url' is required with 'app.rag.store: oracle'");
+        }
+
+        HikariDataSource dataSource =
+                DataSourceBuilder.create()
+                        .type(HikariDataSource.class)
+                        .url(oracle.url())
+                        .username(oracle.username())
+                        .password(oracle.password())
+                        .build();
+        dataSource.setPoolName("rag");
+        dataSource.setMaximumPoolSize(oracle.maxPoolSize());
+        return dataSource;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.rag.store", havingValue = "oracle")
+    public DocumentStore oracleDocumentStore(
+            HikariDataSource ragDataSource, RagProperties properties) {
+        LOGGER.info("Knowledge base is stored in Oracle table '{}'", properties.oracle().table());
+        return new OracleDocumentStore(ragDataSource, properties.oracle().table());
+    }
+}
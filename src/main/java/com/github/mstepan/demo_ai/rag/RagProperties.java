@@ -0,0 +1,132 @@
+package com.github.mstepan.demo_ai.rag;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Pattern;
+
+import org.hibernate.validator.constraints.time.DurationMin;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+
+/** Binds properties under 'app.rag' from 'application.yaml'. */
+@ConfigurationProperties(prefix = "app.rag")
+@Validated
+public record RagProperties(
+        @DefaultValue("false") Boolean enabled,
+        @DefaultValue("memory") Store store,
+        @Valid @DefaultValue Retrieval retrieval,
+        @Valid @DefaultValue Chunking chunking,
+        @Valid @DefaultValue Ingestion ingestion,
+        @Valid @DefaultValue Bulk bulk,
+        @Valid @DefaultValue Memory memory,
+        @Valid @DefaultValue Oracle oracle) {
+
+    public enum Store {
+        /** In-process {@link InMemoryDocumentStore}, nothing survives a restart. */
+        MEMORY,
+        /** Oracle Database 23ai table with a VECTOR column, see {@link OracleDocumentStore}. */
+        ORACLE
+    }
+
+    /**
+     * Retrieval of chunks for a question or claim, see {@link DocumentRetriever}.
+     *
+     * @param topK max number of chunks put into a prompt
+     * @param minSimilarity min cosine similarity of a chunk to the question to be used at all
+     * @param maxContextChars max total size of the chunks put into a prompt, lower ranked chunks
+     *     beyond it are dropped
+     * @param hybrid keyword search next to the vector search
+     */
+    public record Retrieval(
+            @Min(1) @Max(64) @DefaultValue("4") Integer topK,
+            @DecimalMin("0.0") @DecimalMax("1.0") @DefaultValue("0.3") Double minSimilarity,
+            @Min(1) @DefaultValue("6000") Integer maxContextChars,
+            @Valid @DefaultValue Hybrid hybrid) {}
+
+    /**
+     * Hybrid retrieval: keyword (BM25) hits are fused with the vector hits by reciprocal rank
+     * fusion, so exact names and identifiers are found even when their embedding isn't close.
+     *
+     * @param enabled false for vector search only
+     * @param candidates hits taken from each search before fusion, at least 'top_k' are taken
+     * @param rrfK rank constant of the fusion, a hit at rank r adds 1 / (rrf_k + r) per search it
+     *     is found by; higher values weigh the top ranks less
+     * @param minKeywordCoverage min share of the question words, weighted by their rarity, a chunk
+     *     must contain to be a keyword hit
+     */
+    public record Hybrid(
+            @DefaultValue("true") Boolean enabled,
+            @Min(1) @Max(256) @DefaultValue("20") Integer candidates,
+            @Min(1) @DefaultValue("60") Integer rrfK,
+            @DecimalMin("0.0") @DecimalMax("1.0") @DefaultValue("0.3")
+                    Double minKeywordCoverage) {}
+
+    /**
+     * Splitting of documents into chunks, see {@link TextChunker}.
+     *
+     * @param maxChars max size of a chunk
+     * @param overlapChars size of the tail of a chunk repeated at the start of the next one, so a
+     *     fact on a chunk border is found in either
+     */
+    public record Chunking(
+            @Min(100) @DefaultValue("1200") Integer maxChars,
+            @Min(0) @DefaultValue("200") Integer overlapChars) {}
+
+    /**
+     * Document ingestion, see {@link DocumentIngestor}.
+     *
+     * @param batchSize chunks embedded and upserted together; the embedder splits a batch further
+     *     into requests of at most its own max batch size
+     */
+    public record Ingestion(@Min(1) @Max(1024) @DefaultValue("64") Integer batchSize) {}
+
+    /**
+     * Bulk ingestion of large JSONL and text inputs, see {@link BulkIngestor}.
+     *
+     * @param concurrency max number of batches embedded and stored at the same time, over all bulk
+     *     ingestions; keep it below 'oci.genai.pool.max_connections' so chat calls still get a
+     *     client
+     * @param maxBatchSize max chunks per batch, batches are filled up to the embedder's own max
+     *     batch size (96 for OCI) or this, whichever is lower
+     * @param checkpointDirectory directory of the checkpoints of named jobs, empty disables
+     *     checkpoints (and resuming)
+     * @param checkpointInterval min time between two checkpoint writes of a job
+     */
+    public record Bulk(
+            @Min(1) @Max(256) @DefaultValue("4") Integer concurrency,
+            @Min(1) @Max(4096) @DefaultValue("256") Integer maxBatchSize,
+            String checkpointDirectory,
+            @DurationMin(millis = 1) @DefaultValue("5s") Duration checkpointInterval) {}
+
+    /**
+     * In-process store settings.
+     *
+     * @param capacity max number of indexed chunks, including replaced ones not compacted yet; the
+     *     vectors of all of them are allocated (off-heap) up front
+     */
+    public record Memory(@Min(16) @DefaultValue("20000") Integer capacity) {}
+
+    /**
+     * Oracle Database 23ai store settings.
+     *
+     * @param url JDBC url, e.g. 'jdbc:oracle:thin:@localhost:1521/FREEPDB1'
+     * @param username database user
+     * @param password database password
+     * @param table table of the chunks, created on startup if missing
+     * @param maxPoolSize max number of pooled connections
+     */
+    public record Oracle(
+            String url,
+            String username,
+            String password,
+            @Pattern(regexp = "[A-Za-z][A-Za-z0-9_]{0,99}", message = "table must be a plain name")
+                    @DefaultValue("rag_chunks")
+                    String table,
+            @Min(1) @Max(256) @DefaultValue("8") Integer maxPoolSize) {}
+}
@@ -0,0 +1,11 @@
+package com.github.mstepan.demo_ai.rag;
+
+/**
+ * A search hit of a {@link DocumentStore}.
+ *
+ * @param chunk the retrieved chunk
+ * @param score relevance to the query, higher is better: cosine similarity for {@link
+ *     DocumentStore#search}, BM25 score for {@link DocumentStore#searchText}, fused rank score for
+ *     {@link DocumentRetriever} with hybrid retrieval
+ */
+public record ScoredChunk(DocumentChunk chunk, float score) {}
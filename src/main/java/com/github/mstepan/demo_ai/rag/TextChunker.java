@@ -0,0 +1,156 @@
+package com.github.mstepan.demo_ai.rag;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Splits documents into chunks of at most 'max_chars' chars for embedding.
+ *
+ * <p>A chunk ends at the last paragraph break in its second half, else at the last sentence end,
+ * else at the last whitespace, so chunks rarely cut a sentence or a word. The next chunk starts
+ * 'overlap_chars' before that end (at a word start), so a fact on a chunk border is complete in
+ * one of the two chunks.
+ *
+ * <p>A document too big to be held as one String is split piece by piece with a {@link Splitter},
+ * which yields exactly the chunks {@link #split} would.
+ *
+ * <p>Thread-safe, stateless.
+ */
+public final class TextChunker {
+
+    private final int maxChars;
+    private final int overlapChars;
+
+    public TextChunker(int maxChars, int overlapChars) {
+        if (maxChars <= 0 || overlapChars < 0 || overlapChars > maxChars / 2) {
+            throw new IllegalArgumentException(
+                    String.format(
+                            "Invalid chunking: max_chars = %d, overlap_chars = %d, overlap must"
+                                    + " be at most half of max_chars",
+                            maxChars, overlapChars));
+        }
+        this.maxChars = maxChars;
+        this.overlapChars = overlapChars;
+    }
+
+    public List<String> split(String text) {
+        List<String> chunks = new ArrayList<>();
+        emit(text, 0, true, chunks::add);
+        return chunks;
+    }
+
+    /** Starts an incremental split, each chunk is passed to {@code sink} as soon as it's known. */
+    public Splitter splitter(Consumer<String> sink) {
+        return new Splitter(sink);
+    }
+
+    /**
+     * Passes the chunks of {@code text} from {@code from} to {@code sink}.
+     *
+     * @param complete false if more text may follow, then the last chunk is held back until it is
+     *     either longer than {@link #maxChars} or complete
+     * @return start of the first chunk not passed yet, {@code text.length()} if none is left
+     */
+    private int emit(CharSequence text, int from, boolean complete, Consumer<String> sink) {
+        int length = text.length();
+
+        int start = from;
+        while (true) {
+            start = skipWhitespace(text, start);
+            if (start == length) {
+                return length;
+            }
+
+            boolean last = start + maxChars >= length;
+            if (last && !complete) {
+                return start;
+            }
+            int end = last ? length : breakBefore(text, start);
+
+            String chunk = text.subSequence(start, end).toString().strip();
+            if (!chunk.isEmpty()) {
+                sink.accept(chunk);
+            }
+            if (end == length) {
+                return length;
+            }
+            start = nextStart(text, start, end);
+        }
+    }
+
+    /** End of a chunk starting at {@code start}, the text is longer than {@link #maxChars}. */
+    private int breakBefore(CharSequence text, int start) {
+        int limit = start + maxChars;
+        int minEnd = start + maxChars / 2;
+
+        for (int i = limit - 2; i >= minEnd; --i) {
+            if (text.charAt(i) == '\n' && text.charAt(i + 1) == '\n') {
+                return i;
+            }
+        }
+
+        for (int i = limit - 1; i > minEnd; --i) {
+            char prev = text.charAt(i - 1);
+            if ((prev == '.' || prev == '!' || prev == '?')
+                    && Character.isWhitespace(text.charAt(i))) {
+                return i;
+            }
+        }
+
+        for (int i = limit; i > minEnd; --i) {
+            if (Character.isWhitespace(text.charAt(i))) {
+                return i;
+            }
+        }
+
+        // a single huge "word", e.g. a URL or base64
+        return limit;
+    }
+
+    /** Start of the chunk after the one ending at {@code end}, overlapping at a word start. */
+    private int nextStart(CharSequence text, int start, int end) {
+        int next = end - overlapChars;
+        if (next <= start) {
+            return end;
+        }
+        while (next < end && !Character.isWhitespace(text.charAt(next - 1))) {
+            ++next;
+        }
+        return next;
+    }
+
+    private static int skipWhitespace(CharSequence text, int from) {
+        int pos = from;
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+            ++pos;
+        }
+        return pos;
+    }
+
+    /**
+     * Incremental split of one document: {@link #append} its text piece by piece, then {@link
+     * #finish}. Holds back at most one chunk of text plus the last appended piece. Not thread-safe.
+     */
+    public final class Splitter {
+
+        private final Consumer<String> sink;
+        private final StringBuilder pending = new StringBuilder();
+
+        private Splitter(Consumer<String> sink) {
+            this.sink = sink;
+        }
+
+        public void append(CharSequence text) {
+            pending.append(text);
+            int start = emit(pending, 0, false, sink);
+            pending.delete(0, start);
+        }
+
+        /** Passes the remaining chunk, if any; the splitter must not be used afterwards. */
+        public void finish() {
+            emit(pending, 0, true, sink);
+            pending.setLength(0);
+        }
+    }
+}
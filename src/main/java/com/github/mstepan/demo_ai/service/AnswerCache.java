@@ -0,0 +1,205 @@
+package com.github.mstepan.demo_ai.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.mstepan.demo_ai.domain.Question;
+import com.github.mstepan.demo_ai.oci.OCIGenAiProperties;
+import com.github.mstepan.demo_ai.prompts.PromptTemplateRegistry;
+import com.github.mstepan.demo_ai.rag.DocumentRetriever;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+
+/**
+ * Bounded, thread-safe exact-match cache of validated answers.
+ *
+ * <p>The key combines the normalized question text with everything else that shapes the answer:
+ * the prompt templates, model id and temperature, and with 'app.rag.enabled' the RAG prompt and
+ * the version of the knowledge base. Changing any of them (ingesting or deleting a document, too)
+ * naturally misses the old entries, which then age out via TTL/size eviction.
+ *
+ * <p>Metrics (Prometheus/Micrometer):
+ *
+ * <ul>
+ *   <li>app_oci_chat_cache_total (Counter): lookups, result in {"hit","miss"}
+ *   <li>app_oci_chat_cache_evictions_total (Counter): entries evicted by size or TTL
+ *   <li>app_oci_chat_cache_size (Gauge): approximate number of cached answers
+ * </ul>
+ */
+@Component
+public class AnswerCache {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final boolean enabled;
+    private final int replayChunkSize;
+    private final IntSupplier promptsFingerprint;
+    private final LongSupplier knowledgeBaseVersion;
+    private final String model;
+    private final Double temperature;
+
+    private final Cache<Key, String> cache;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    @Autowired
+    public AnswerCache(
+            ChatProperties chatProperties,
+            OCIGenAiProperties ociProperties,
+            PromptTemplateRegistry prompts,
+            ObjectProvider<DocumentRetriever> retriever,
+            MeterRegistry meterRegistry) {
+        this(
+                chatProperties.cache(),
+                ociProperties.model(),
+                ociProperties.temperature(),
+                // evaluated per key, so a hot-reloaded prompt misses the entries of the old one
+                () -> promptsFingerprint(prompts, retriever),
+                () -> knowledgeBaseVersion(retriever),
+                meterRegistry);
+    }
+
+    AnswerCache(
+            ChatProperties.Cache settings,
+            String model,
+            Double temperature,
+            IntSupplier promptsFingerprint,
+            LongSupplier knowledgeBaseVersion,
+            MeterRegistry meterRegistry) {
+        this.enabled = Boolean.TRUE.equals(settings.enabled());
+        this.replayChunkSize = settings.replayChunkSize();
+        this.model = model;
+        this.temperature = temperature;
+        this.promptsFingerprint = promptsFingerprint;
+        this.knowledgeBaseVersion = knowledgeBaseVersion;
+
+        Counter evictions = meterRegistry.counter("app_oci_chat_cache_evictions_total");
+        this.cache =
+                Caffeine.newBuilder()
+                        .maximumSize(settings.maxSize())
+                        .expireAfterWrite(settings.ttl())
+                        .removalListener(
+                                (Key key, String answer, RemovalCause cause) -> {
+                                    if (cause.wasEvicted()) {
+                                        evictions.increment();
+                                    }
+                                })
+                        .build();
+
+        this.hits = meterRegistry.counter("app_oci_chat_cache_total", "result", "hit");
+        this.misses = meterRegistry.counter("app_oci_chat_cache_total", "result", "miss");
+        Gauge.builder("app_oci_chat_cache_size", cache, Cache::estimatedSize)
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Optional<String> get(Question question) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        String answer = cache.getIfPresent(keyFor(question));
+        if (answer == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+
+        hits.increment();
+        return Optional.of(answer);
+    }
+
+    /** Stores an answer; callers must only pass answers that passed the relevancy evaluation. */
+    public void put(Question question, String answer) {
+        if (enabled) {
+            cache.put(keyFor(question), answer);
+        }
+    }
+
+    /**
+     * Replays a cached answer as a stream of chunks, so cache hits on /ask/stream look the same to
+     * clients as a live NDJSON stream.
+     */
+    public Flux<String> replay(String answer) {
+        return Flux.fromIterable(chunk(answer, replayChunkSize));
+    }
+
+    static List<String> chunk(String text, int chunkSize) {
+        List<String> chunks = new ArrayList<>(text.length() / chunkSize + 1);
+        int from = 0;
+        while (from < text.length()) {
+            int to = Math.min(from + chunkSize, text.length());
+            // never split a surrogate pair across two chunks
+            if (to < text.length() && Character.isHighSurrogate(text.charAt(to - 1))) {
+                ++to;
+            }
+            chunks.add(text.substring(from, to));
+            from = to;
+        }
+        return chunks;
+    }
+
+    /**
+     * Fingerprint of the prompt templates {@link ChatService} renders, the RAG user prompt counts
+     * only with 'app.rag.enabled'.
+     */
+    static int promptsFingerprint(
+            PromptTemplateRegistry prompts, ObjectProvider<DocumentRetriever> retriever) {
+        int fingerprint =
+                31 * prompts.get(ChatService.SYSTEM_PROMPT).fingerprint()
+                        + prompts.get(ChatService.USER_PROMPT).fingerprint();
+        DocumentRetriever documentRetriever = retriever.getIfAvailable();
+        if (documentRetriever != null && documentRetriever.isEnabled()) {
+            fingerprint = 31 * fingerprint + prompts.get(ChatService.RAG_USER_PROMPT).fingerprint();
+        }
+        return fingerprint;
+    }
+
+    /** Version of the knowledge base answers are generated from, -1 without 'app.rag.enabled'. */
+    static long knowledgeBaseVersion(ObjectProvider<DocumentRetriever> retriever) {
+        DocumentRetriever documentRetriever = retriever.getIfAvailable();
+        return documentRetriever != null && documentRetriever.isEnabled()
+                ? documentRetriever.knowledgeBaseVersion()
+                : -1L;
+    }
+
+    /** Case-insensitive, whitespace-collapsed form of the question text. */
+    static String normalize(String text) {
+        return WHITESPACE.matcher(text.strip()).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
+
+    private Key keyFor(Question question) {
+        return new Key(
+                normalize(question.question()),
+                promptsFingerprint.getAsInt(),
+                knowledgeBaseVersion.getAsLong(),
+                model,
+                temperature);
+    }
+
+    private record Key(
+            String normalizedQuestion,
+            int promptsFingerprint,
+            long knowledgeBaseVersion,
+            String model,
+            Double temperature) {}
+}
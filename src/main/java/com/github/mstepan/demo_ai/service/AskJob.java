@@ -0,0 +1,89 @@
+package com.github.mstepan.demo_ai.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.Locale;
+
+/**
+ * State of an asynchronous /ask job, see {@link AskJobService}. Immutable, every state change is a
+ * new instance.
+ *
+ * @param answer null unless {@link State#COMPLETED}
+ * @param error null unless {@link State#FAILED}, the error codes of {@link BatchQuestionAnswerer}
+ *     plus "interrupted" for a job that was pending when the application stopped
+ * @param detail error message, may be null
+ * @param finishedAt null while the job is pending
+ */
+public record AskJob(
+        String id,
+        State state,
+        String question,
+        String answer,
+        String error,
+        String detail,
+        Instant submittedAt,
+        Instant finishedAt) {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    public enum State {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        FAILED;
+
+        public boolean isFinished() {
+            return this == COMPLETED || this == FAILED;
+        }
+    }
+
+    static AskJob queued(String id, String question, Instant submittedAt) {
+        return new AskJob(id, State.QUEUED, question, null, null, null, submittedAt, null);
+    }
+
+    AskJob running() {
+        return new AskJob(id, State.RUNNING, question, null, null, null, submittedAt, null);
+    }
+
+    AskJob completed(String answerText, Instant now) {
+        return new AskJob(id, State.COMPLETED, question, answerText, null, null, submittedAt, now);
+    }
+
+    AskJob failed(String errorCode, String errorDetail, Instant now) {
+        return new AskJob(
+                id, State.FAILED, question, null, errorCode, errorDetail, submittedAt, now);
+    }
+
+    /** snake_case JSON object, the response of GET /ask/jobs/{id} and a line of the job log. */
+    public String toJson() {
+        var out = new StringWriter(256 + (answer == null ? 0 : answer.length()));
+        try (JsonGenerator json = JSON.createGenerator(out)) {
+            json.writeStartObject();
+            json.writeStringField("id", id);
+            json.writeStringField("state", state.name().toLowerCase(Locale.ROOT));
+            json.writeStringField("question", question);
+            if (answer != null) {
+                json.writeStringField("answer", answer);
+            }
+            if (error != null) {
+                json.writeStringField("error", error);
+            }
+            if (detail != null) {
+                json.writeStringField("detail", detail);
+            }
+            json.writeStringField("submitted_at", submittedAt.toString());
+            if (finishedAt != null) {
+                json.writeStringField("finished_at", finishedAt.toString());
+            }
+            json.writeEndObject();
+        } catch (IOException ioEx) {
+            throw new UncheckedIOException(ioEx);
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,190 @@
+package com.github.mstepan.demo_ai.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Local log of asynchronous /ask jobs, a JSONL file with an {@link AskJob#toJson()} line per state
+ * change; the latest line of a job wins. {@link #rewriteIfLonger} replaces it with the jobs still
+ * kept, so it doesn't grow without bound. A line cut short by a crash is ignored when loading.
+ */
+final class AskJobLog implements AutoCloseable {
+
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    static final String FILE_NAME = "ask-jobs.jsonl";
+
+    private final Path path;
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    /** Guarded by {@link #writeLock}, as is {@link #appendedLines}. */
+    private Writer writer;
+
+    /** Lines appended since the last rewrite. */
+    private int appendedLines;
+
+    AskJobLog(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        this.path = directory.resolve(FILE_NAME);
+        this.writer = open();
+    }
+
+    /**
+     * @return latest state of every logged job, in the order the jobs were first logged
+     */
+    Collection<AskJob> load() throws IOException {
+        Map<String, AskJob> jobs = new LinkedHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                AskJob job = parse(line);
+                if (job == null) {
+                    LOGGER.debug("Ignoring unreadable line of {}", path);
+                    continue;
+                }
+                jobs.put(job.id(), job);
+            }
+        }
+        return jobs.values();
+    }
+
+    /** Appends and flushes the job's state. */
+    void append(AskJob job) {
+        String line = job.toJson();
+        writeLock.lock();
+        try {
+            writer.write(line);
+            writer.write('\n');
+            writer.flush();
+            ++appendedLines;
+        } catch (IOException ioEx) {
+            // the job itself goes on, only a restart would forget it
+            LOGGER.error("Can't log job '{}' in {}", job.id(), path, ioEx);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Replaces the log atomically with a line per job once more than {@code maxAppendedLines} were
+     * appended since the last rewrite.
+     *
+     * @param jobs jobs to keep, taken while appends wait, so no later state change is lost
+     */
+    void rewriteIfLonger(int maxAppendedLines, Supplier<Collection<AskJob>> jobs) {
+        writeLock.lock();
+        try {
+            if (appendedLines > maxAppendedLines) {
+                rewrite(jobs.get());
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /** Replaces the log atomically with a line per job. */
+    void rewrite(Collection<AskJob> jobs) {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        writeLock.lock();
+        try {
+            try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (AskJob job : jobs) {
+                    out.write(job.toJson());
+                    out.write('\n');
+                }
+            }
+            writer.close();
+            Files.move(
+                    tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            writer = open();
+            appendedLines = 0;
+        } catch (IOException ioEx) {
+            LOGGER.error("Can't rewrite job log {}", path, ioEx);
+            try {
+                writer = open();
+            } catch (IOException reopenEx) {
+                LOGGER.error("Can't reopen job log {}", path, reopenEx);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writeLock.lock();
+        try {
+            writer.close();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private Writer open() throws IOException {
+        return Files.newBufferedWriter(
+                path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /** Null if the line is not a complete job. */
+    private static AskJob parse(String line) {
+        Map<String, String> fields = new HashMap<>();
+        try (JsonParser parser = JSON.createParser(line)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                if (parser.nextToken() != JsonToken.VALUE_STRING) {
+                    return null;
+                }
+                fields.put(field, parser.getText());
+            }
+            if (parser.currentToken() != JsonToken.END_OBJECT || fields.get("id") == null) {
+                return null;
+            }
+        } catch (IOException ioEx) {
+            return null;
+        }
+
+        try {
+            String finishedAt = fields.get("finished_at");
+            return new AskJob(
+                    fields.get("id"),
+                    AskJob.State.valueOf(fields.get("state").toUpperCase(Locale.ROOT)),
+                    fields.get("question"),
+                    fields.get("answer"),
+                    fields.get("error"),
+                    fields.get("detail"),
+                    Instant.parse(fields.get("submitted_at")),
+                    finishedAt == null ? null : Instant.parse(finishedAt));
+        } catch (RuntimeException ex) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.github.mstepan.demo_ai.service;
+
+/**
+ * Thrown when an asynchronous /ask job is submitted while 'app.chat.jobs.max_pending' jobs are
+ * queued or running, see {@link AskJobService}.
+ */
+public final class AskJobQueueFullException extends RuntimeException {
+
+    private final int maxPending;
+
+    public AskJobQueueFullException(String message, int maxPending) {
+        super(message);
+        this.maxPending = maxPending;
+    }
+
+    /** Max number of queued and running jobs. */
+    public int maxPending() {
+        return maxPending;
+    }
+}
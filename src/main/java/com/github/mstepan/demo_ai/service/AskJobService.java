@@ -0,0 +1,329 @@
+package com.github.mstepan.demo_ai.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.mstepan.demo_ai.domain.Answer;
+import com.github.mstepan.demo_ai.domain.Question;
+import com.github.mstepan.demo_ai.oci.Deadline;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asynchronous /ask: a submitted question becomes a job that is answered in the background by
+ * {@link ChatService}, the client polls its state or waits for its completion instead of holding a
+ * connection for the whole generation.
+ *
+ * <p>Up to 'app.chat.jobs.concurrency' jobs are answered at once, later ones wait in submission
+ * order, each on its own virtual thread. At most 'max_pending' jobs are queued or running, further
+ * submissions are rejected with {@link AskJobQueueFullException}. The deadline of a job starts when
+ * it starts running, time in the queue doesn't count.
+ *
+ * <p>Finished jobs are kept in memory for 'ttl' (at most 'max_jobs' of them). With
+ * 'app.chat.jobs.directory' set every job is also logged to a local file, so finished jobs survive
+ * a restart; jobs that were still pending are restored as failed with "interrupted".
+ *
+ * <p>Metrics (Prometheus/Micrometer):
+ *
+ * <ul>
+ *   <li>app_ask_jobs_total (Counter): jobs by result, one of {"completed","failed","rejected"}
+ *   <li>app_ask_jobs_pending (Gauge): queued and running jobs
+ *   <li>app_ask_job_queue_seconds (Timer, histogram): time jobs waited before running
+ * </ul>
+ */
+@Service
+public class AskJobService implements DisposableBean {
+
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private final ChatService chatService;
+    private final ChatProperties.RequestTimeout requestTimeout;
+    private final int maxPending;
+    private final int maxJobs;
+
+    private final Semaphore permits;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /** Queued and running jobs, a job is in {@link #finished} before it's removed from here. */
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    private final Cache<String, AskJob> finished;
+
+    /** Null without 'app.chat.jobs.directory'. */
+    private final AskJobLog log;
+
+    private final Counter completed;
+    private final Counter failed;
+    private final Counter rejected;
+    private final Timer queueTime;
+
+    @Autowired
+    public AskJobService(
+            ChatService chatService, ChatProperties properties, MeterRegistry meterRegistry) {
+        this(chatService, properties.jobs(), properties.requestTimeout(), meterRegistry);
+    }
+
+    public AskJobService(
+            ChatService chatService,
+            ChatProperties.Jobs settings,
+            ChatProperties.RequestTimeout requestTimeout,
+            MeterRegistry meterRegistry) {
+        this.chatService = chatService;
+        this.requestTimeout = requestTimeout;
+        this.maxPending = settings.maxPending();
+        this.maxJobs = settings.maxJobs();
+        // fair, so waiting jobs start in submission order
+        this.permits = new Semaphore(settings.concurrency(), true);
+
+        Duration ttl = settings.ttl();
+        this.finished =
+                Caffeine.newBuilder()
+                        .maximumSize(settings.maxJobs())
+                        .expireAfter(
+                                new Expiry<String, AskJob>() {
+                                    @Override
+                                    public long expireAfterCreate(
+                                            String id, AskJob job, long currentTime) {
+                                        // a restored job keeps its original expiry
+                                        Duration age =
+                                                Duration.between(job.finishedAt(), Instant.now());
+                                        return Math.max(0L, ttl.minus(age).toNanos());
+                                    }
+
+                                    @Override
+                                    public long expireAfterUpdate(
+                                            String id,
+                                            AskJob job,
+                                            long currentTime,
+                                            long currentDuration) {
+                                        return currentDuration;
+                                    }
+
+                                    @Override
+                                    public long expireAfterRead(
+                                            String id,
+                                            AskJob job,
+                                            long currentTime,
+                                            long currentDuration) {
+                                        return currentDuration;
+                                    }
+                                })
+                        .build();
+
+        this.log = openLog(settings.directory());
+
+        this.completed = meterRegistry.counter("app_ask_jobs_total", "result", "completed");
+        this.failed = meterRegistry.counter("app_ask_jobs_total", "result", "failed");
+        this.rejected = meterRegistry.counter("app_ask_jobs_total", "result", "rejected");
+        this.queueTime =
+                Timer.builder("app_ask_job_queue_seconds")
+                        .publishPercentileHistogram()
+                        .register(meterRegistry);
+        Gauge.builder("app_ask_jobs_pending", pendingCount, AtomicInteger::get)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues the question, it's answered in the background.
+     *
+     * @param mode evaluation mode, null for 'app.chat.evaluation.mode'
+     * @param client client the job is charged to, see {@link TokenBudget#CLIENT}
+     * @param timeout deadline of the job once it runs
+     * @return the queued job
+     * @throws AskJobQueueFullException if 'app.chat.jobs.max_pending' jobs are pending
+     */
+    public AskJob submit(Question question, EvaluationMode mode, String client, Duration timeout) {
+        if (pendingCount.incrementAndGet() > maxPending) {
+            pendingCount.decrementAndGet();
+            rejected.increment();
+            throw new AskJobQueueFullException(
+                    "Too many pending jobs (" + maxPending + "), retry later", maxPending);
+        }
+
+        AskJob job =
+                AskJob.queued(UUID.randomUUID().toString(), question.question(), Instant.now());
+        Pending entry = new Pending(job);
+        pending.put(job.id(), entry);
+        if (log != null) {
+            log.append(job);
+        }
+
+        try {
+            executor.execute(() -> run(entry, question, mode, client, timeout));
+        } catch (RuntimeException ex) {
+            // rejected while shutting down
+            finish(entry, job.failed("interrupted", ex.getMessage(), Instant.now()));
+        }
+        return job;
+    }
+
+    /**
+     * @return latest state of the job, empty if it's unknown or was evicted
+     */
+    public Optional<AskJob> find(String id) {
+        Pending entry = pending.get(id);
+        if (entry != null) {
+            return Optional.of(entry.job);
+        }
+        return Optional.ofNullable(finished.getIfPresent(id));
+    }
+
+    /**
+     * @return the finished job once it finishes, completed right away for a finished job; empty if
+     *     the job is unknown or was evicted
+     */
+    public Optional<CompletableFuture<AskJob>> completion(String id) {
+        Pending entry = pending.get(id);
+        if (entry != null) {
+            return Optional.of(entry.completion);
+        }
+        return Optional.ofNullable(finished.getIfPresent(id))
+                .map(CompletableFuture::completedFuture);
+    }
+
+    @Override
+    public void destroy() throws IOException, InterruptedException {
+        // pending jobs fail as interrupted, the ones that don't finish in time are restored so
+        executor.shutdownNow();
+        executor.awaitTermination(5L, TimeUnit.SECONDS);
+        if (log != null) {
+            log.close();
+        }
+    }
+
+    private void run(
+            Pending entry,
+            Question question,
+            EvaluationMode mode,
+            String client,
+            Duration timeout) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException interEx) {
+            Thread.currentThread().interrupt();
+            finish(entry, entry.job.failed("interrupted", "Application stopped", Instant.now()));
+            return;
+        }
+
+        try {
+            queueTime.record(Duration.between(entry.job.submittedAt(), Instant.now()));
+            entry.job = entry.job.running();
+
+            Answer answer =
+                    ScopedValue.where(TokenBudget.CLIENT, client)
+                            .where(
+                                    Deadline.CURRENT,
+                                    Deadline.after(timeout, requestTimeout.minCallTime()))
+                            .call(
+                                    () ->
+                                            mode == null
+                                                    ? chatService.askQuestion(question)
+                                                    : chatService.askQuestion(question, mode));
+            finish(entry, entry.job.completed(answer.answer(), Instant.now()));
+        } catch (RuntimeException ex) {
+            LOGGER.debug("Job '{}' failed", entry.job.id(), ex);
+            // failures while stopping are most likely caused by the interruption
+            String error =
+                    executor.isShutdown() ? "interrupted" : BatchQuestionAnswerer.errorOf(ex);
+            finish(entry, entry.job.failed(error, ex.getMessage(), Instant.now()));
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void finish(Pending entry, AskJob job) {
+        // visible in 'finished' before it leaves 'pending', so it's never missing in between
+        finished.put(job.id(), job);
+        entry.job = job;
+        pending.remove(job.id());
+        pendingCount.decrementAndGet();
+        (job.state() == AskJob.State.COMPLETED ? completed : failed).increment();
+
+        if (log != null) {
+            log.append(job);
+            log.rewriteIfLonger(2 * (maxJobs + maxPending), this::jobs);
+        }
+        entry.completion.complete(job);
+    }
+
+    /** Finished and pending jobs, what the log must keep. */
+    private List<AskJob> jobs() {
+        List<AskJob> jobs = new ArrayList<>(finished.asMap().values());
+        for (Pending entry : pending.values()) {
+            jobs.add(entry.job);
+        }
+        return jobs;
+    }
+
+    private AskJobLog openLog(String directory) {
+        if (directory == null || directory.isBlank()) {
+            return null;
+        }
+
+        try {
+            AskJobLog jobLog = new AskJobLog(Path.of(directory));
+            Instant now = Instant.now();
+            int restored = 0;
+            for (AskJob job : jobLog.load()) {
+                finished.put(
+                        job.id(),
+                        job.state().isFinished()
+                                ? job
+                                : job.failed("interrupted", "Application stopped", now));
+                ++restored;
+            }
+            finished.cleanUp();
+            jobLog.rewrite(finished.asMap().values());
+            LOGGER.info(
+                    "Job log: '{}', {} jobs restored, {} kept",
+                    directory,
+                    restored,
+                    finished.estimatedSize());
+            return jobLog;
+        } catch (IOException ioEx) {
+            throw new UncheckedIOException(ioEx);
+        }
+    }
+
+    /** A queued or running job. */
+    private static final class Pending {
+
+        private volatile AskJob job;
+        private final CompletableFuture<AskJob> completion = new CompletableFuture<>();
+
+        Pending(AskJob job) {
+            this.job = job;
+        }
+    }
+}
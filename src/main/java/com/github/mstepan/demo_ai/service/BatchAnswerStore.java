@@ -0,0 +1,154 @@
+package com.github.mstepan.demo_ai.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.github.mstepan.demo_ai.service.BatchQuestionAnswerer.BatchAnswer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Answers of a batch job, a JSONL file with a {@link BatchAnswer#toJson()} line per item. Lines
+ * are only appended, a rerun of the job appends the items again, the latest line of an id wins.
+ * A line cut short by a crash is ignored when loading.
+ */
+final class BatchAnswerStore implements AutoCloseable {
+
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final Path path;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final Writer writer;
+
+    BatchAnswerStore(Path path) throws IOException {
+        this.path = path;
+        this.writer =
+                Files.newBufferedWriter(
+                        path,
+                        StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.APPEND);
+    }
+
+    static Path path(Path directory, String job) {
+        return directory.resolve(job + ".answers.jsonl");
+    }
+
+    /** Appends and flushes the item, the answer is then kept even if the process dies. */
+    void append(BatchAnswer item) {
+        String line = item.toJson();
+        writeLock.lock();
+        try {
+            writer.write(line);
+            writer.write('\n');
+            writer.flush();
+        } catch (IOException ioEx) {
+            // storing must never fail the batch, a rerun asks the question again
+            LOGGER.error("Can't store batch answer '{}' in {}", item.id(), path, ioEx);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writeLock.lock();
+        try {
+            writer.close();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * @return latest item of every id, in the order the ids were first stored
+     */
+    static List<BatchAnswer> load(Path path) throws IOException {
+        Map<String, BatchAnswer> byId = new LinkedHashMap<>();
+        forEach(path, item -> byId.put(item.id(), item));
+        return new ArrayList<>(byId.values());
+    }
+
+    /**
+     * @return answer of every successfully answered question, by {@link AnswerCache#normalize}
+     */
+    static Map<String, String> loadAnswers(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return Map.of();
+        }
+        Map<String, String> answers = new HashMap<>();
+        forEach(
+                path,
+                item -> {
+                    if (item.error() == null && item.question() != null) {
+                        answers.put(AnswerCache.normalize(item.question()), item.answer());
+                    }
+                });
+        return answers;
+    }
+
+    private static void forEach(Path path, Consumer<BatchAnswer> action) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                BatchAnswer item = parse(line);
+                if (item == null) {
+                    LOGGER.debug("Ignoring unreadable line of {}", path);
+                    continue;
+                }
+                action.accept(item);
+            }
+        }
+    }
+
+    /** Null if the line is not a complete item. */
+    private static BatchAnswer parse(String line) {
+        Map<String, String> fields = new HashMap<>();
+        try (JsonParser parser = JSON.createParser(line)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                if (parser.nextToken() != JsonToken.VALUE_STRING) {
+                    return null;
+                }
+                fields.put(field, parser.getText());
+            }
+            if (parser.currentToken() != JsonToken.END_OBJECT || fields.get("id") == null) {
+                return null;
+            }
+        } catch (IOException ioEx) {
+            return null;
+        }
+        if (fields.get("answer") == null && fields.get("error") == null) {
+            return null;
+        }
+        return new BatchAnswer(
+                fields.get("id"),
+                fields.get("question"),
+                fields.get("answer"),
+                fields.get("error"),
+                fields.get("detail"));
+    }
+}
@@ -0,0 +1,708 @@
+package com.github.mstepan.demo_ai.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.github.mstepan.demo_ai.domain.Answer;
+import com.github.mstepan.demo_ai.domain.AnswerNotRelevantException;
+import com.github.mstepan.demo_ai.domain.Question;
+import com.github.mstepan.demo_ai.oci.CircuitBreakerOpenException;
+import com.github.mstepan.demo_ai.oci.ConcurrencyLimitExceededException;
+import com.github.mstepan.demo_ai.oci.Deadline;
+import com.github.mstepan.demo_ai.oci.DeadlineExceededException;
+import com.github.mstepan.demo_ai.oci.OCIGenAiException;
+import com.github.mstepan.demo_ai.oci.OCIGenAiUnavailableException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Answers a batch of questions, JSONL with one {"id": ..., "question": ...} item per line, through
+ * {@link ChatService#askQuestion(Question, EvaluationMode)}.
+ *
+ * <p>The input is read line by line while up to 'app.chat.batch.concurrency' questions (over all
+ * running batches) are answered in parallel on virtual threads; the reader blocks while all of
+ * them are busy. Identical (normalized) questions are asked once, every item gets the answer; the
+ * results of the last {@value #MAX_FINISHED_QUESTIONS} distinct questions are kept for that, a
+ * duplicate of an older one is asked again. Each question gets its own {@link Deadline} of
+ * 'app.chat.request_timeout.default_timeout'. Answers are passed on in completion order, a failed
+ * item gets an error code instead of an answer and never fails the batch.
+ *
+ * <p>A named job stores every answer in 'app.chat.batch.directory' as soon as it's known. Running
+ * the job again, e.g. after a disconnect or a restart, answers the stored questions from the store
+ * and asks only the others, including the ones that failed before.
+ *
+ * <p>Metrics (Prometheus/Micrometer):
+ *
+ * <ul>
+ *   <li>app_batch_questions_total (Counter): batch items, result in {"answered","failed",
+ *       "duplicate","resumed"}; its rate is the batch throughput
+ *   <li>app_batch_question_seconds (Timer, histogram): answer latency of a question
+ *   <li>app_batch_questions_in_flight (Gauge): questions being answered
+ * </ul>
+ */
+@Service
+public class BatchQuestionAnswerer {
+
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private static final Pattern JOB_NAME = Pattern.compile("[A-Za-z0-9][A-Za-z0-9_.-]{0,99}");
+
+    /** Statuses of finished jobs kept for {@link #status}, the oldest ones are dropped beyond. */
+    private static final int MAX_JOBS = 256;
+
+    /** Results of a batch kept for later duplicates, the least recently used ones are dropped. */
+    static final int MAX_FINISHED_QUESTIONS = 1024;
+
+    private final ChatService chatService;
+    private final ChatProperties.RequestTimeout requestTimeout;
+    private final int maxQuestionChars;
+
+    /** Null if jobs are disabled. */
+    private final Path directory;
+
+    private final Semaphore permits;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /** Jobs of this process by name, guarded by itself. */
+    private final Map<String, Progress> jobs =
+            new LinkedHashMap<>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Progress> eldest) {
+                    return size() > MAX_JOBS && eldest.getValue().state != JobState.RUNNING;
+                }
+            };
+
+    private final Counter answered;
+    private final Counter failed;
+    private final Counter duplicates;
+    private final Counter resumed;
+    private final Timer latency;
+
+    @Autowired
+    public BatchQuestionAnswerer(
+            ChatService chatService, ChatProperties properties, MeterRegistry meterRegistry) {
+        this(chatService, properties.batch(), properties.requestTimeout(), meterRegistry);
+    }
+
+    public BatchQuestionAnswerer(
+            ChatService chatService,
+            ChatProperties.Batch settings,
+            ChatProperties.RequestTimeout requestTimeout,
+            MeterRegistry meterRegistry) {
+        this.chatService = chatService;
+        this.requestTimeout = requestTimeout;
+        this.maxQuestionChars = settings.maxQuestionChars();
+        this.directory =
+                (settings.directory() == null || settings.directory().isBlank())
+                        ? null
+                        : Path.of(settings.directory());
+        this.permits = new Semaphore(settings.concurrency());
+
+        this.answered = meterRegistry.counter("app_batch_questions_total", "result", "answered");
+        this.failed = meterRegistry.counter("app_batch_questions_total", "result", "failed");
+        this.duplicates = meterRegistry.counter("app_batch_questions_total", "result", "duplicate");
+        this.resumed = meterRegistry.counter("app_batch_questions_total", "result", "resumed");
+        this.latency =
+                Timer.builder("app_batch_question_seconds")
+                        .publishPercentileHistogram()
+                        .register(meterRegistry);
+        Gauge.builder("app_batch_questions_in_flight", inFlight, AtomicInteger::get)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Answers all questions of {@code input}. Returns once every item was passed to {@code sink}.
+     *
+     * @param input JSONL, not closed
+     * @param job optional name of the job, with it answers are stored and a rerun resumes
+     * @param mode evaluation mode of every question, null for 'app.chat.evaluation.mode'
+     * @param client client the questions are charged to, see {@link TokenBudget#CLIENT}
+     * @param sink gets every item's answer or error, one call at a time; if it throws, no more
+     *     questions are read, the ones in flight are still answered (and stored)
+     * @throws IllegalArgumentException if the job name is invalid, jobs are disabled or the job is
+     *     already running; nothing was passed to the sink then
+     * @throws IOException if reading the input or the job's stored answers fails
+     */
+    public JobStatus answer(
+            InputStream input,
+            String job,
+            EvaluationMode mode,
+            String client,
+            Consumer<BatchAnswer> sink)
+            throws IOException {
+        Path storePath = job == null ? null : storePath(job);
+        Map<String, String> storedAnswers =
+                storePath == null ? Map.of() : BatchAnswerStore.loadAnswers(storePath);
+
+        Progress progress = new Progress(job);
+        if (job != null) {
+            synchronized (jobs) {
+                Progress running = jobs.get(job);
+                if (running != null && running.state == JobState.RUNNING) {
+                    throw new IllegalArgumentException("Job '" + job + "' is already running");
+                }
+                jobs.remove(job);
+                jobs.put(job, progress);
+            }
+        }
+        LOGGER.info(
+                "Batch {} started: mode = {}, stored answers = {}",
+                job == null ? "(no job)" : "'" + job + "'",
+                mode,
+                storedAnswers.size());
+
+        try (Run run =
+                new Run(
+                        mode,
+                        client,
+                        sink,
+                        storePath == null ? null : new BatchAnswerStore(storePath),
+                        storedAnswers,
+                        progress)) {
+            run.read(input);
+            run.awaitInFlight();
+            progress.finish(JobState.COMPLETED);
+        } catch (IOException | RuntimeException ex) {
+            progress.finish(JobState.FAILED);
+            throw ex;
+        }
+
+        JobStatus status = progress.status();
+        LOGGER.info("Batch completed: {}", status);
+        return status;
+    }
+
+    /**
+     * @return progress of a job of this process, else counts of its stored answers
+     */
+    public Optional<JobStatus> status(String job) throws IOException {
+        synchronized (jobs) {
+            Progress progress = jobs.get(job);
+            if (progress != null) {
+                return Optional.of(progress.status());
+            }
+        }
+
+        Optional<List<BatchAnswer>> stored = storedAnswers(job);
+        if (stored.isEmpty()) {
+            return Optional.empty();
+        }
+        long failedItems = stored.get().stream().filter(item -> item.error() != null).count();
+        return Optional.of(
+                new JobStatus(
+                        job,
+                        JobState.STORED,
+                        stored.get().size(),
+                        stored.get().size() - failedItems,
+                        failedItems,
+                        0L,
+                        0L,
+                        0.0));
+    }
+
+    /**
+     * @return latest stored answer of every item of a job, in the order they were first stored;
+     *     empty if the job has none
+     */
+    public Optional<List<BatchAnswer>> storedAnswers(String job) throws IOException {
+        Path path = storePath(job);
+        if (!Files.exists(path)) {
+            return Optional.empty();
+        }
+        return Optional.of(BatchAnswerStore.load(path));
+    }
+
+    private Path storePath(String job) throws IOException {
+        if (!JOB_NAME.matcher(job).matches()) {
+            throw new IllegalArgumentException(
+                    "Invalid job name '" + job + "', expected " + JOB_NAME.pattern());
+        }
+        if (directory == null) {
+            throw new IllegalArgumentException(
+                    "Jobs need 'app.chat.batch.directory' to store their answers");
+        }
+        Files.createDirectories(directory);
+        return BatchAnswerStore.path(directory, job);
+    }
+
+    /** Error code of a failed question, the same as the problem type of a failed /ask. */
+    static String errorOf(RuntimeException ex) {
+        if (ex instanceof ConcurrencyLimitExceededException) {
+            return "overloaded";
+        }
+        if (ex instanceof CircuitBreakerOpenException
+                || ex instanceof OCIGenAiUnavailableException) {
+            return "upstream-unavailable";
+        }
+        if (ex instanceof TokenBudgetExceededException) {
+            return "rate-limited";
+        }
+        if (ex instanceof OCIGenAiException) {
+            return "upstream-error";
+        }
+        if (ex instanceof DeadlineExceededException) {
+            return "deadline-exceeded";
+        }
+        if (ex instanceof AnswerNotRelevantException) {
+            return "not-relevant";
+        }
+        return "internal";
+    }
+
+    public enum JobState {
+        RUNNING,
+        COMPLETED,
+        /** Stopped by an input or client failure, the answers of a named job are kept. */
+        FAILED,
+        /** Not run by this process, counts are those of the stored answers. */
+        STORED
+    }
+
+    /**
+     * Result of one batch item, a line of the NDJSON response.
+     *
+     * @param id id of the item, its line number (from 1) if it has none
+     * @param question null for an invalid line
+     * @param answer null if the item failed
+     * @param error null on success, else an error code: "invalid", "overloaded", "rate-limited",
+     *     "upstream-unavailable", "upstream-error", "deadline-exceeded", "not-relevant",
+     *     "interrupted" (the batch was stopped before the question was asked) or "internal"
+     * @param detail error message, null on success
+     */
+    public record BatchAnswer(
+            String id, String question, String answer, String error, String detail) {
+
+        public String toJson() {
+            var out = new StringWriter(128 + (answer == null ? 0 : answer.length()));
+            try (JsonGenerator json = JSON.createGenerator(out)) {
+                json.writeStartObject();
+                json.writeStringField("id", id);
+                if (question != null) {
+                    json.writeStringField("question", question);
+                }
+                if (answer != null) {
+                    json.writeStringField("answer", answer);
+                }
+                if (error != null) {
+                    json.writeStringField("error", error);
+                }
+                if (detail != null) {
+                    json.writeStringField("detail", detail);
+                }
+                json.writeEndObject();
+            } catch (IOException ioEx) {
+                throw new UncheckedIOException(ioEx);
+            }
+            return out.toString();
+        }
+
+        BatchAnswer withId(String otherId) {
+            return new BatchAnswer(otherId, question, answer, error, detail);
+        }
+    }
+
+    /**
+     * Progress of a batch, counts cover this run only.
+     *
+     * @param job name of the job, null for a batch without one
+     * @param items non-blank input lines read
+     * @param answered items whose question was asked in this run and answered
+     * @param failed invalid lines and items whose question was asked in this run and failed
+     * @param duplicates items that got the answer (or error) of an earlier item with the same
+     *     question
+     * @param resumed items answered from the job's stored answers
+     * @param questionsPerSecond throughput of this run in items
+     */
+    public record JobStatus(
+            String job,
+            JobState state,
+            long items,
+            long answered,
+            long failed,
+            long duplicates,
+            long resumed,
+            double questionsPerSecond) {
+
+        /** JSON object of the status, the NDJSON response's last line wraps it in "summary". */
+        public String toJson() {
+            var out = new StringWriter(256);
+            try (JsonGenerator json = JSON.createGenerator(out)) {
+                json.writeStartObject();
+                if (job != null) {
+                    json.writeStringField("job", job);
+                }
+                json.writeStringField("state", state.name().toLowerCase(Locale.ROOT));
+                json.writeNumberField("items", items);
+                json.writeNumberField("answered", answered);
+                json.writeNumberField("failed", failed);
+                json.writeNumberField("duplicates", duplicates);
+                json.writeNumberField("resumed", resumed);
+                json.writeNumberField("questions_per_second", questionsPerSecond);
+                json.writeEndObject();
+            } catch (IOException ioEx) {
+                throw new UncheckedIOException(ioEx);
+            }
+            return out.toString();
+        }
+    }
+
+    /** Counters of a batch, shared with {@link #status} while it runs. */
+    private static final class Progress {
+
+        private final String job;
+        private final long startNanos = System.nanoTime();
+
+        final AtomicLong items = new AtomicLong();
+        final AtomicLong answered = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final AtomicLong duplicates = new AtomicLong();
+        final AtomicLong resumed = new AtomicLong();
+
+        private volatile JobState state = JobState.RUNNING;
+        private volatile long endNanos;
+
+        Progress(String job) {
+            this.job = job;
+        }
+
+        void finish(JobState finalState) {
+            endNanos = System.nanoTime();
+            state = finalState;
+        }
+
+        JobStatus status() {
+            JobState current = state;
+            long elapsedNanos =
+                    (current == JobState.RUNNING ? System.nanoTime() : endNanos) - startNanos;
+            long itemCount = items.get();
+            return new JobStatus(
+                    job,
+                    current,
+                    itemCount,
+                    answered.get(),
+                    failed.get(),
+                    duplicates.get(),
+                    resumed.get(),
+                    elapsedNanos > 0 ? itemCount * 1e9 / elapsedNanos : 0.0);
+        }
+    }
+
+    /** Items waiting for the answer of the first item with the same question. */
+    private static final class Flight {
+
+        private final String key;
+        private final BatchAnswer first;
+        private final List<String> waitingIds = new ArrayList<>();
+
+        Flight(String key, BatchAnswer first) {
+            this.key = key;
+            this.first = first;
+        }
+    }
+
+    /** One batch: reading on the caller's thread, questions on virtual threads. */
+    private final class Run implements AutoCloseable {
+
+        private final EvaluationMode mode;
+        private final String client;
+        private final Consumer<BatchAnswer> sink;
+        private final Map<String, String> storedAnswers;
+        private final Progress progress;
+
+        /** Null for a batch without a job. */
+        private final BatchAnswerStore store;
+
+        private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+        /** Guards {@link #flights}, {@link #finished} and the sink. */
+        private final ReentrantLock lock = new ReentrantLock();
+
+        /** Questions being asked, by normalized question. */
+        private final Map<String, Flight> flights = new HashMap<>();
+
+        /** Results of the recently answered questions, by normalized question. */
+        private final Map<String, BatchAnswer> finished =
+                new LinkedHashMap<>(16, 0.75F, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, BatchAnswer> eldest) {
+                        return size() > MAX_FINISHED_QUESTIONS;
+                    }
+                };
+
+        /** First failure of the sink, stops reading. */
+        private volatile RuntimeException sinkFailure;
+
+        Run(
+                EvaluationMode mode,
+                String client,
+                Consumer<BatchAnswer> sink,
+                BatchAnswerStore store,
+                Map<String, String> storedAnswers,
+                Progress progress) {
+            this.mode = mode;
+            this.client = client;
+            this.sink = sink;
+            this.store = store;
+            this.storedAnswers = storedAnswers;
+            this.progress = progress;
+        }
+
+        void read(InputStream input) throws IOException {
+            var reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+            long lineNumber = 0;
+            String line;
+            while (sinkFailure == null && (line = reader.readLine()) != null) {
+                ++lineNumber;
+                if (line.isBlank()) {
+                    continue;
+                }
+                progress.items.incrementAndGet();
+                item(parse(line, lineNumber));
+            }
+        }
+
+        void awaitInFlight() {
+            executor.close();
+            if (sinkFailure != null) {
+                throw sinkFailure;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            executor.close();
+            if (store != null) {
+                store.close();
+            }
+        }
+
+        private void item(BatchAnswer item) {
+            if (item.error() != null) {
+                progress.failed.incrementAndGet();
+                failed.increment();
+                complete(item, List.of());
+                return;
+            }
+
+            String key = AnswerCache.normalize(item.question());
+            String storedAnswer = storedAnswers.get(key);
+            if (storedAnswer != null) {
+                progress.resumed.incrementAndGet();
+                resumed.increment();
+                emit(
+                        List.of(
+                                new BatchAnswer(
+                                        item.id(), item.question(), storedAnswer, null, null)));
+                return;
+            }
+
+            Flight flight;
+            lock.lock();
+            try {
+                Flight earlier = flights.get(key);
+                BatchAnswer earlierResult = earlier == null ? finished.get(key) : null;
+                if (earlier != null || earlierResult != null) {
+                    progress.duplicates.incrementAndGet();
+                    duplicates.increment();
+                    if (earlier != null) {
+                        earlier.waitingIds.add(item.id());
+                    } else {
+                        complete(earlierResult.withId(item.id()), List.of());
+                    }
+                    return;
+                }
+                flight = new Flight(key, item);
+                flights.put(key, flight);
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                permits.acquire();
+            } catch (InterruptedException interEx) {
+                Thread.currentThread().interrupt();
+                // the duplicates already waiting for it must get a result too
+                progress.failed.incrementAndGet();
+                failed.increment();
+                finish(
+                        flight,
+                        new BatchAnswer(
+                                item.id(),
+                                item.question(),
+                                null,
+                                "interrupted",
+                                "Batch stopped before the question was asked"));
+                throw new IllegalStateException(
+                        "Interrupted while waiting for a free batch slot", interEx);
+            }
+            inFlight.incrementAndGet();
+            executor.execute(() -> ask(flight));
+        }
+
+        private void ask(Flight flight) {
+            BatchAnswer first = flight.first;
+            BatchAnswer result;
+            long startNanos = System.nanoTime();
+            try {
+                Answer answer =
+                        ScopedValue.where(TokenBudget.CLIENT, client)
+                                .where(
+                                        Deadline.CURRENT,
+                                        Deadline.after(
+                                                requestTimeout.defaultTimeout(),
+                                                requestTimeout.minCallTime()))
+                                .call(
+                                        () ->
+                                                mode == null
+                                                        ? chatService.askQuestion(
+                                                                new Question(first.question()))
+                                                        : chatService.askQuestion(
+                                                                new Question(first.question()),
+                                                                mode));
+                result = new BatchAnswer(first.id(), first.question(), answer.answer(), null, null);
+                progress.answered.incrementAndGet();
+                answered.increment();
+            } catch (RuntimeException ex) {
+                LOGGER.debug("Batch question '{}' failed", first.id(), ex);
+                result =
+                        new BatchAnswer(
+                                first.id(), first.question(), null, errorOf(ex), ex.getMessage());
+                progress.failed.incrementAndGet();
+                failed.increment();
+            } finally {
+                latency.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+                inFlight.decrementAndGet();
+                permits.release();
+            }
+
+            finish(flight, result);
+        }
+
+        /** Completes the flight, later duplicates get its result while it's kept in finished. */
+        private void finish(Flight flight, BatchAnswer result) {
+            lock.lock();
+            try {
+                flights.remove(flight.key);
+                finished.put(flight.key, result);
+                complete(result, flight.waitingIds);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /** Stores and emits a result, and the same result for the items waiting for it. */
+        private void complete(BatchAnswer result, List<String> waitingIds) {
+            List<BatchAnswer> results = new ArrayList<>(1 + waitingIds.size());
+            results.add(result);
+            for (String id : waitingIds) {
+                results.add(result.withId(id));
+            }
+
+            if (store != null) {
+                for (BatchAnswer item : results) {
+                    store.append(item);
+                }
+            }
+            emit(results);
+        }
+
+        private void emit(List<BatchAnswer> results) {
+            lock.lock();
+            try {
+                for (BatchAnswer item : results) {
+                    if (sinkFailure != null) {
+                        return;
+                    }
+                    try {
+                        sink.accept(item);
+                    } catch (RuntimeException ex) {
+                        LOGGER.warn("Batch answers can't be passed on anymore, stopping", ex);
+                        sinkFailure = ex;
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private BatchAnswer parse(String line, long lineNumber) {
+            String id = null;
+            String question = null;
+            try (JsonParser parser = JSON.createParser(line)) {
+                if (parser.nextToken() == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String field = parser.currentName();
+                        JsonToken value = parser.nextToken();
+                        if (value.isScalarValue() && "id".equals(field)) {
+                            id = parser.getText();
+                        } else if (value == JsonToken.VALUE_STRING && "question".equals(field)) {
+                            question = parser.getText();
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                }
+            } catch (JsonProcessingException jsonEx) {
+                LOGGER.debug("Malformed JSONL line {}", lineNumber, jsonEx);
+            } catch (IOException ioEx) {
+                throw new UncheckedIOException(ioEx);
+            }
+
+            String itemId = id == null ? String.valueOf(lineNumber) : id;
+            if (question == null || question.isBlank() || question.length() > maxQuestionChars) {
+                return new BatchAnswer(
+                        itemId,
+                        null,
+                        null,
+                        "invalid",
+                        "Line "
+                                + lineNumber
+                                + ": expected a JSON object with a non-blank 'question' of at"
+                                + " most "
+                                + maxQuestionChars
+                                + " chars");
+            }
+            return new BatchAnswer(itemId, question, null, null, null);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.github.mstepan.demo_ai.service;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+
+import org.hibernate.validator.constraints.time.DurationMin;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+
+/** Binds properties under 'app.chat' from 'application.yaml'. */
+@ConfigurationProperties(prefix = "app.chat")
+@Validated
+public record ChatProperties(
+        @Valid @DefaultValue Hedging hedging,
+        @Valid @DefaultValue Cache cache,
+        @Valid @DefaultValue SemanticCache semanticCache,
+        @Valid @DefaultValue Coalescing coalescing,
+        @Valid @DefaultValue StreamBatching streamBatching,
+        @Valid @DefaultValue Evaluation evaluation,
+        @Valid @DefaultValue StreamEvaluation streamEvaluation,
+        @Valid @DefaultValue Budget tokenBudget,
+        @Valid @DefaultValue RequestTimeout requestTimeout,
+        @Valid @DefaultValue Batch batch,
+        @Valid @DefaultValue Jobs jobs) {
+
+    /**
+     * Speculative ("hedged") generation: several candidate answers are generated concurrently and
+     * the first one that passes the relevancy evaluation wins, the rest are cancelled.
+     *
+     * @param enabled opt-in switch, disabled by default because it multiplies OCI usage
+     * @param candidates number of concurrently generated candidate answers
+     */
+    public record Hedging(
+            @DefaultValue("false") Boolean enabled,
+            @Min(2) @Max(8) @DefaultValue("2") Integer candidates) {}
+
+    /**
+     * Exact-match answer cache in front of {@link ChatService#generateAnswer}. Only answers that
+     * passed the relevancy evaluation are stored.
+     *
+     * @param enabled opt-in switch
+     * @param maxSize max number of cached answers, least recently used ones are evicted first
+     * @param ttl time-to-live of a cached answer since it was written
+     * @param replayChunkSize chunk size (in chars) used to replay a cached answer on /ask/stream
+     */
+    public record Cache(
+            @DefaultValue("false") Boolean enabled,
+            @Min(1) @DefaultValue("10000") Integer maxSize,
+            @DurationMin(seconds = 1) @DefaultValue("10m") Duration ttl,
+            @Min(1) @DefaultValue("64") Integer replayChunkSize) {}
+
+    /**
+     * Embedding-similarity answer cache, catches paraphrased repeats the exact-match cache misses.
+     *
+     * @param enabled opt-in switch
+     * @param similarityThreshold min cosine similarity between questions to reuse an answer
+     * @param capacity max number of indexed answers; the oldest quarter is evicted when full
+     * @param ttl time-to-live of a cached answer since it was written
+     * @param snapshotPath optional file the index is saved to on shutdown and loaded from on start
+     */
+    public record SemanticCache(
+            @DefaultValue("false") Boolean enabled,
+            @DecimalMin("0.0") @DecimalMax("1.0") @DefaultValue("0.92") Double similarityThreshold,
+            @Min(16) @DefaultValue("10000") Integer capacity,
+            @DurationMin(seconds = 1) @DefaultValue("1h") Duration ttl,
+            String snapshotPath) {}
+
+    /**
+     * Request coalescing ("single-flight"): concurrent requests for the same normalized question
+     * share one upstream generation instead of each calling OCI.
+     *
+     * @param enabled on by default, identical in-flight requests can't get different answers
+     */
+    public record Coalescing(@DefaultValue("true") Boolean enabled) {}
+
+    /**
+     * Batching of /ask/stream deltas: the first delta is sent immediately, later ones are merged
+     * and flushed by size or time, whichever comes first.
+     *
+     * @param enabled on by default, disable to write every delta as its own NDJSON element
+     * @param maxBytes flush once this many (UTF-8) bytes are pending
+     * @param maxDelay flush once the oldest pending delta waited this long
+     */
+    public record StreamBatching(
+            @DefaultValue("true") Boolean enabled,
+            @Min(1) @DefaultValue("256") Integer maxBytes,
+            @DurationMin(millis = 1) @DefaultValue("20ms") Duration maxDelay) {}
+
+    /**
+     * Relevancy evaluation of generated answers.
+     *
+     * @param mode default mode of /ask, callers may override it per request
+     * @param sampleRate share of answers evaluated in {@link EvaluationMode#ASYNC} mode
+     * @param maxConcurrent max number of in-flight background evaluations, further ones are dropped
+     * @param auditLog optional JSONL file for answers that failed a background evaluation
+     */
+    public record Evaluation(
+            @DefaultValue("BLOCKING") EvaluationMode mode,
+            @DecimalMin("0.0") @DecimalMax("1.0") @DefaultValue("0.1") Double sampleRate,
+            @Min(1) @DefaultValue("64") Integer maxConcurrent,
+            String auditLog) {}
+
+    /**
+     * Relevancy evaluation of /ask/stream answers, reported as a trailing NDJSON verdict element
+     * once the stream completes, see {@link StreamRelevancyEvaluator}.
+     *
+     * @param enabled default for streams, callers may override it per request
+     * @param maxChars max number of answer chars kept for the evaluation, the rest is not evaluated
+     * @param incrementalEveryChars evaluate the partial answer in the background every time this
+     *     many new chars arrived, 0 evaluates only the complete answer
+     */
+    public record StreamEvaluation(
+            @DefaultValue("false") Boolean enabled,
+            @Min(1) @DefaultValue("16384") Integer maxChars,
+            @Min(0) @DefaultValue("0") Integer incrementalEveryChars) {}
+
+    /**
+     * Token-aware rate limit of answer generation, see {@link TokenBudget}.
+     *
+     * @param enabled opt-in switch
+     * @param clientTokensPerMinute budget of a single client (API key)
+     * @param modelTokensPerMinute budget of the model, keep it below the OCI tokens-per-minute
+     *     quota
+     * @param reservedCompletionTokens completion tokens reserved per call before the actual usage
+     *     is known, at most 'oci.genai.max_tokens' is ever generated
+     * @param maxClients number of client budgets kept, idle (full) ones are dropped beyond it
+     */
+    public record Budget(
+            @DefaultValue("false") Boolean enabled,
+            @Min(1) @DefaultValue("20000") Long clientTokensPerMinute,
+            @Min(1) @DefaultValue("200000") Long modelTokensPerMinute,
+            @Min(0) @DefaultValue("1024") Integer reservedCompletionTokens,
+            @Min(1) @DefaultValue("10000") Integer maxClients) {}
+
+    /**
+     * Deadline of /ask requests, see {@link com.github.mstepan.demo_ai.oci.Deadline}.
+     *
+     * @param defaultTimeout deadline of requests without an 'X-Request-Timeout' header
+     * @param maxTimeout upper bound of the deadline a client may ask for
+     * @param minCallTime no OCI call (generation, evaluation, retry) is started with less time
+     *     left, it would most likely not finish in time
+     */
+    public record RequestTimeout(
+            @DurationMin(seconds = 1) @DefaultValue("60s") Duration defaultTimeout,
+            @DurationMin(seconds = 1) @DefaultValue("120s") Duration maxTimeout,
+            @DurationMin(millis = 0) @DefaultValue("1s") Duration minCallTime) {}
+
+    /**
+     * Batch question answering (POST /ask/batch), see {@link BatchQuestionAnswerer}.
+     *
+     * @param concurrency max number of batch questions answered at once, over all batches
+     * @param directory optional directory of the stored answers of named jobs, jobs are rejected
+     *     without it
+     * @param maxQuestionChars longer questions are rejected as invalid items
+     */
+    public record Batch(
+            @Min(1) @Max(256) @DefaultValue("4") Integer concurrency,
+            String directory,
+            @Min(1) @DefaultValue("16384") Integer maxQuestionChars) {}
+
+    /**
+     * Asynchronous /ask jobs (POST /ask/jobs), see {@link AskJobService}.
+     *
+     * @param concurrency max number of jobs answered at once, the others wait in submission order
+     * @param maxPending max number of queued and running jobs, further submissions get 503
+     * @param maxJobs max number of finished jobs kept, the oldest ones are evicted beyond it
+     * @param ttl finished jobs are evicted this long after they finished
+     * @param eventsTimeout an /events stream without a completion event ends after this long
+     * @param directory optional directory of the job log, finished jobs then survive a restart
+     */
+    public record Jobs(
+            @Min(1) @Max(1024) @DefaultValue("16") Integer concurrency,
+            @Min(1) @DefaultValue("1000") Integer maxPending,
+            @Min(1) @DefaultValue("10000") Integer maxJobs,
+            @DurationMin(seconds = 1) @DefaultValue("15m") Duration ttl,
+            @DurationMin(seconds = 1) @DefaultValue("5m") Duration eventsTimeout,
+            String directory) {}
+}
@@ -3,20 +3,25 @@ package com.github.mstepan.demo_ai.service;
 import com.github.mstepan.demo_ai.domain.Answer;
 import com.github.mstepan.demo_ai.domain.AnswerNotRelevantException;
 import com.github.mstepan.demo_ai.domain.Question;
+import com.github.mstepan.demo_ai.oci.Deadline;
+import com.github.mstepan.demo_ai.oci.DeadlineExceededException;
+import com.github.mstepan.demo_ai.prompts.PromptTemplateRegistry;
+import com.github.mstepan.demo_ai.rag.DocumentRetriever;
+import com.github.mstepan.demo_ai.rag.ScoredChunk;
 
+import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.chat.metadata.EmptyUsage;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.evaluation.EvaluationRequest;
 import org.springframework.ai.evaluation.Evaluator;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
 import org.springframework.retry.annotation.Recover;
 import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Service;
@@ -24,72 +29,202 @@ import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 
 import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
-public class ChatService {
+public class ChatService implements DisposableBean {
 
     private static final Logger LOGGER =
             LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+    static final String SYSTEM_PROMPT = "chat/chatSystemPrompt";
+    static final String USER_PROMPT = "chat/chatUserPrompt";
+    static final String RAG_USER_PROMPT = "chat/chatRagUserPrompt";
+
     private final ChatClient chatClient;
 
     private final Evaluator evaluator;
 
-    private final Resource systemPromptTemplate;
-
-    private final Resource userPromptTemplate;
+    private final PromptTemplateRegistry prompts;
     private final MeterRegistry meterRegistry;
+    private final ChatProperties properties;
+    private final AnswerCache answerCache;
+    private final SemanticAnswerCache semanticAnswerCache;
+    private final RelevancyAuditLog auditLog;
+    private final TokenBudget tokenBudget;
+
+    /** Knowledge base of the prompts, not available without an embedder (e.g. in tests). */
+    private final ObjectProvider<DocumentRetriever> retriever;
+
+    /** Retry-advised proxy of this bean, so coalesced callers share retries and the fallback. */
+    private final ObjectProvider<ChatService> self;
+
+    private final SingleFlight<FlightKey, Answer> answerFlights;
+    private final SingleFlight<FlightKey, String> streamFlights;
+
+    private final ExecutorService hedgingExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /** Background evaluations of {@link EvaluationMode#ASYNC}, bounded by {@link #asyncPermits}. */
+    private final ExecutorService evaluationExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Semaphore asyncPermits;
+    private final Counter asyncEvaluated;
+    private final Counter asyncSkipped;
+    private final Counter asyncDropped;
 
     public ChatService(
             ChatClient.Builder chatClientBuilder,
-            @Qualifier("ociGenAIRelevancyEvaluator") Evaluator evaluator,
-            @Value("classpath:/prompts/chat/chatSystemPrompt.st") Resource systemPromptTemplate,
-            @Value("classpath:/prompts/chat/chatUserPrompt.st") Resource userPromptTemplate,
-            MeterRegistry meterRegistry) {
+            @Qualifier("relevancyEvaluator") Evaluator evaluator,
+            PromptTemplateRegistry prompts,
+            MeterRegistry meterRegistry,
+            ChatProperties properties,
+            AnswerCache answerCache,
+            SemanticAnswerCache semanticAnswerCache,
+            RelevancyAuditLog auditLog,
+            TokenBudget tokenBudget,
+            ObjectProvider<DocumentRetriever> retriever,
+            ObjectProvider<ChatService> self) {
         this.chatClient = chatClientBuilder.build();
         this.evaluator = evaluator;
-        this.systemPromptTemplate = systemPromptTemplate;
-        this.userPromptTemplate = userPromptTemplate;
+        this.prompts = prompts;
         this.meterRegistry = meterRegistry;
+        this.properties = properties;
+        this.answerCache = answerCache;
+        this.semanticAnswerCache = semanticAnswerCache;
+        this.auditLog = auditLog;
+        this.tokenBudget = tokenBudget;
+        this.retriever = retriever;
+        this.self = self;
+        this.answerFlights =
+                new SingleFlight<>(
+                        meterRegistry.counter("app_oci_chat_coalesced_total", "mode", "call"));
+        this.streamFlights =
+                new SingleFlight<>(
+                        meterRegistry.counter("app_oci_chat_coalesced_total", "mode", "stream"));
+
+        this.asyncPermits = new Semaphore(properties.evaluation().maxConcurrent());
+        this.asyncEvaluated =
+                meterRegistry.counter("app_evaluator_async_total", "result", "evaluated");
+        this.asyncSkipped = meterRegistry.counter("app_evaluator_async_total", "result", "skipped");
+        this.asyncDropped = meterRegistry.counter("app_evaluator_async_total", "result", "dropped");
+    }
+
+    /** Handles non-streaming chat requests in the configured 'app.chat.evaluation.mode'. */
+    public Answer askQuestion(Question question) {
+        return askQuestion(question, properties.evaluation().mode());
     }
 
     /**
-     * Handles non-streaming chat requests.
+     * Handles non-streaming chat requests. With 'app.chat.coalescing.enabled' concurrent requests
+     * for the same (normalized) question and evaluation mode are merged onto a single {@link
+     * #generateAnswer} call, including its retries, and every caller gets the same {@link Answer},
+     * failure or {@link #recover} fallback. A joined caller still waits no longer than its own
+     * {@link Deadline}, see {@link SingleFlight}. With the {@link TokenBudget} enabled only
+     * requests of the same client are merged, the budget of every client pays for its own calls.
+     * Metrics (Prometheus/Micrometer):
+     * - app_oci_chat_coalesced_total (Counter): calls that joined an in-flight identical request,
+     *   mode in {"call","stream"}
+     */
+    public Answer askQuestion(Question question, EvaluationMode evaluationMode) {
+        if (!Boolean.TRUE.equals(properties.coalescing().enabled())) {
+            return self.getObject().generateAnswer(question, evaluationMode);
+        }
+        return answerFlights.execute(
+                new FlightKey(
+                        AnswerCache.normalize(question.question()), evaluationMode, budgetClient()),
+                () -> self.getObject().generateAnswer(question, evaluationMode));
+    }
+
+    /**
+     * Generates (or looks up in the caches) an answer. In {@link EvaluationMode#BLOCKING} mode the
+     * answer is validated and regenerated once when it is not relevant, in {@link
+     * EvaluationMode#ASYNC} mode it is returned right away and a sample is validated in the
+     * background. Called through the proxy, see {@link #askQuestion}.
      * Metrics (Prometheus/Micrometer):
      * - app_oci_chat_latency_seconds (Timer): end-to-end latency of upstream OCI call
      * - app_oci_chat_success_total (Counter): increments on successful answer after relevancy eval
      * - app_oci_chat_failures_total (Counter): increments on failures (exceptions or invalid responses)
+     * - app_oci_chat_hedged_total (Counter): hedged requests, outcome in {"accepted","rejected"}
+     * - app_oci_chat_cache_total (Counter): answer cache lookups, result in {"hit","miss"}
+     * - app_oci_chat_semantic_cache_total (Counter): semantic cache lookups, result in {"hit",
+     *   "miss"}
+     * - app_evaluator_async_total (Counter): background evaluations, result in {"evaluated",
+     *   "skipped","dropped"}
      * Notes:
      * - Keep metric tag values low-cardinality to avoid cardinality explosions.
+     * - With 'app.chat.cache.enabled' validated answers are served from {@link AnswerCache}
+     *   without any OCI call.
+     * - With 'app.chat.semantic_cache.enabled' answers to similar (paraphrased) questions are
+     *   reused, see {@link SemanticAnswerCache}.
+     * - With 'app.chat.hedging.enabled' several candidates are generated and evaluated
+     *   concurrently, so a retry is only needed when none of them is relevant. Hedging only
+     *   applies to the blocking mode.
+     * - With 'app.chat.token_budget.enabled' every OCI call is charged to the {@link
+     *   TokenBudget}, a call that doesn't fit fails with {@link TokenBudgetExceededException}.
+     * - Answers are cached only once they passed the evaluation, so in the async mode only sampled
+     *   answers are.
+     * - With a {@link Deadline} bound, neither a generation (including the retry) nor a blocking
+     *   evaluation is started without enough time left, the request fails with {@link
+     *   DeadlineExceededException} right away instead of after the client gave up.
+     * - With 'app.rag.enabled' the chunks of the knowledge base relevant to the question are put
+     *   into the prompt, see {@link #userPrompt}.
      */
     @Retryable(retryFor = AnswerNotRelevantException.class, maxAttempts = 2)
-    public Answer askQuestion(Question question) {
+    public Answer generateAnswer(Question question, EvaluationMode evaluationMode) {
+        Optional<String> cachedAnswer = answerCache.get(question);
+        if (cachedAnswer.isPresent()) {
+            return new Answer(cachedAnswer.get());
+        }
+
+        SemanticAnswerCache.Lookup semanticLookup = semanticAnswerCache.lookup(question);
+        if (semanticLookup.answer().isPresent()) {
+            return new Answer(semanticLookup.answer().get());
+        }
+
         Timer.Sample sample = Timer.start(meterRegistry);
         try {
-            var chatResponse =
-                    chatClient
-                            .prompt()
-                            .system(systemPromptTemplate)
-                            .user(
-                                    userSpec ->
-                                            userSpec.text(userPromptTemplate)
-                                                    .param("question", question.question()))
-                            .call()
-                            .chatResponse();
-
-            if (chatResponse == null) {
+            Deadline.checkCurrent("answer generation");
+
+            String userText = userPrompt(question);
+
+            Optional<String> answerText;
+            if (evaluationMode == EvaluationMode.ASYNC) {
+                answerText = generate(userText);
+            } else {
+                answerText =
+                        Boolean.TRUE.equals(properties.hedging().enabled())
+                                ? generateHedged(question, userText)
+                                : generateAndEvaluate(question, userText);
+            }
+
+            if (answerText.isEmpty()) {
                 meterRegistry.counter("app_oci_chat_failures_total").increment();
                 return new Answer("No answer");
             }
 
-            logUsageMetadata(chatResponse);
-
-            var answerText = chatResponse.getResult().getOutput().getText();
-
-            evaluateRelevancy(question.question(), answerText);
+            if (evaluationMode == EvaluationMode.ASYNC) {
+                evaluateInBackground(question, answerText.get(), semanticLookup);
+            } else {
+                // Only relevant answers get here, non-relevant ones end up in retry/recover
+                answerCache.put(question, answerText.get());
+                semanticAnswerCache.put(semanticLookup, question, answerText.get());
+            }
 
             meterRegistry.counter("app_oci_chat_success_total").increment();
-            return new Answer(answerText);
+            return new Answer(answerText.get());
         } catch (RuntimeException ex) {
             meterRegistry.counter("app_oci_chat_failures_total").increment();
             throw ex;
@@ -98,33 +233,278 @@ public class ChatService {
         }
     }
 
-    private static void logUsageMetadata(ChatResponse chatResponse) {
-        if (chatResponse.getMetadata().getUsage() != null) {
-            var usage = chatResponse.getMetadata().getUsage();
+    /**
+     * Generates a single answer and validates it.
+     *
+     * @return answer text or empty if the model returned no response at all
+     * @throws AnswerNotRelevantException if the answer doesn't pass the relevancy evaluation
+     */
+    private Optional<String> generateAndEvaluate(Question question, String userText) {
+        Optional<String> answerText = generate(userText);
+        answerText.ifPresent(text -> evaluateRelevancy(question.question(), text));
+        return answerText;
+    }
+
+    /**
+     * Generates a single answer without validating it. The call is charged to the {@link
+     * TokenBudget} with the usage OCI reported.
+     *
+     * @return answer text or empty if the model returned no response at all
+     */
+    private Optional<String> generate(String userText) {
+        String systemText = prompts.get(SYSTEM_PROMPT).text();
+        TokenBudget.Reservation reservation = tokenBudget.reserve(systemText, userText);
+
+        ChatResponse chatResponse;
+        try {
+            chatResponse =
+                    chatClient.prompt().system(systemText).user(userText).call().chatResponse();
+        } catch (RuntimeException ex) {
+            reservation.cancel();
+            throw ex;
+        }
+
+        if (chatResponse == null) {
+            reservation.cancel();
+            return Optional.empty();
+        }
+
+        reservation.settle(chatResponse.getMetadata().getUsage());
+
+        return Optional.of(chatResponse.getResult().getOutput().getText());
+    }
+
+    /**
+     * Evaluates a sample ('app.chat.evaluation.sample_rate') of already returned answers on a
+     * virtual thread. At most 'max_concurrent' evaluations run at once, answers arriving while all
+     * permits are taken are not evaluated rather than queued without bound. Relevant answers are
+     * cached, non-relevant ones and evaluation errors are written to the {@link RelevancyAuditLog}.
+     */
+    private void evaluateInBackground(
+            Question question, String answerText, SemanticAnswerCache.Lookup semanticLookup) {
+        if (ThreadLocalRandom.current().nextDouble() >= properties.evaluation().sampleRate()) {
+            asyncSkipped.increment();
+            return;
+        }
+        if (!asyncPermits.tryAcquire()) {
+            asyncDropped.increment();
+            return;
+        }
+
+        try {
+            evaluationExecutor.execute(
+                    () -> {
+                        try {
+                            if (isRelevant(question.question(), answerText)) {
+                                answerCache.put(question, answerText);
+                                semanticAnswerCache.put(semanticLookup, question, answerText);
+                            } else {
+                                auditLog.record(
+                                        EvaluationMode.ASYNC,
+                                        question.question(),
+                                        answerText,
+                                        "not_relevant",
+                                        null);
+                            }
+                        } catch (RuntimeException ex) {
+                            LOGGER.warn("Background relevancy evaluation failed", ex);
+                            auditLog.record(
+                                    EvaluationMode.ASYNC,
+                                    question.question(),
+                                    answerText,
+                                    "error",
+                                    ex.toString());
+                        } finally {
+                            asyncPermits.release();
+                        }
+                    });
+            asyncEvaluated.increment();
+        } catch (RejectedExecutionException rejectedEx) {
+            // shutting down
+            asyncPermits.release();
+            asyncDropped.increment();
+        }
+    }
+
+    /**
+     * Speculative generation: runs N generate+evaluate candidates on virtual threads and returns
+     * the first candidate that passes the relevancy evaluation. {@link
+     * ExecutorService#invokeAny(java.util.Collection)} cancels (interrupts) the candidates that are
+     * still in flight once a winner is known, so latency is bounded by the fastest relevant
+     * candidate instead of the sum of sequential attempts. With a {@link Deadline} bound, all
+     * candidates are cancelled once it passes. Losing candidates only count in
+     * app_oci_chat_hedged_total, app_llm_retries_total counts the attempt once when none of them
+     * is relevant.
+     */
+    private Optional<String> generateHedged(Question question, String userText) {
+        int candidatesCount = properties.hedging().candidates();
 
-            if (usage instanceof EmptyUsage) {
-                LOGGER.info("Token usage: EMPTY");
-                return;
+        // Candidates run on other threads, they are charged to the caller's token budget and
+        // bounded by the caller's deadline too
+        String client = TokenBudget.CLIENT.isBound() ? TokenBudget.CLIENT.get() : null;
+        Deadline deadline = Deadline.CURRENT.isBound() ? Deadline.CURRENT.get() : null;
+
+        List<Callable<String>> candidates = new ArrayList<>(candidatesCount);
+        for (int i = 0; i < candidatesCount; ++i) {
+            Callable<String> candidate = () -> generateCandidate(question, userText);
+            if (client != null) {
+                Callable<String> unbound = candidate;
+                candidate = () -> ScopedValue.where(TokenBudget.CLIENT, client).call(unbound::call);
+            }
+            if (deadline != null) {
+                Callable<String> unbound = candidate;
+                candidate = () -> ScopedValue.where(Deadline.CURRENT, deadline).call(unbound::call);
             }
+            candidates.add(candidate);
+        }
 
-            LOGGER.info(
-                    "Token usage: prompt = {}, generation = {}, total = {}",
-                    usage.getPromptTokens(),
-                    usage.getCompletionTokens(),
-                    usage.getTotalTokens());
+        try {
+            String answerText =
+                    deadline == null
+                            ? hedgingExecutor.invokeAny(candidates)
+                            : hedgingExecutor.invokeAny(
+                                    candidates,
+                                    deadline.remaining().toNanos(),
+                                    TimeUnit.NANOSECONDS);
+            meterRegistry.counter("app_oci_chat_hedged_total", "outcome", "accepted").increment();
+            return Optional.of(answerText);
+        } catch (ExecutionException execEx) {
+            meterRegistry.counter("app_oci_chat_hedged_total", "outcome", "rejected").increment();
+
+            // No candidate passed: surface the failure of one of them (typically the last one)
+            if (execEx.getCause() instanceof NoChatResponseException) {
+                return Optional.empty();
+            }
+            if (execEx.getCause() instanceof AnswerNotRelevantException) {
+                countRetry();
+            }
+            if (execEx.getCause() instanceof RuntimeException runtimeEx) {
+                throw runtimeEx;
+            }
+            throw new IllegalStateException("Hedged answer generation failed", execEx.getCause());
+        } catch (TimeoutException timeoutEx) {
+            meterRegistry.counter("app_oci_chat_hedged_total", "outcome", "rejected").increment();
+            throw new DeadlineExceededException(
+                    "Deadline exceeded during hedged answer generation", timeoutEx);
+        } catch (InterruptedException interEx) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted during hedged answer generation", interEx);
         }
     }
 
+    /**
+     * Streams the answer chunk by chunk. A validated answer found in {@link AnswerCache} or {@link
+     * SemanticAnswerCache} is replayed as chunks instead of calling OCI. Streamed answers are not
+     * evaluated here, hence never cached, see {@link StreamRelevancyEvaluator}. With
+     * 'app.chat.coalescing.enabled' concurrent streams of the same question share one upstream
+     * stream, late subscribers get the chunks emitted so far replayed first; with the {@link
+     * TokenBudget} enabled only streams of the same client are shared, as in {@link #askQuestion}.
+     *
+     * <p>The {@link TokenBudget} is charged before the stream starts, so an exhausted budget fails
+     * the request rather than the stream. Streams carry no usage metadata, the charge is settled
+     * with the estimated size of the streamed answer. A shared upstream is charged to the caller
+     * that started it once it ends, even if that caller left earlier; the reservations of the
+     * callers that joined it are returned.
+     */
     public Flux<String> askQuestionStreaming(Question question) {
+        Optional<String> cachedAnswer = answerCache.get(question);
+        if (cachedAnswer.isPresent()) {
+            return answerCache.replay(cachedAnswer.get());
+        }
+
+        Optional<String> similarAnswer = semanticAnswerCache.lookup(question).answer();
+        if (similarAnswer.isPresent()) {
+            return answerCache.replay(similarAnswer.get());
+        }
+
+        String systemText = prompts.get(SYSTEM_PROMPT).text();
+        String userText = userPrompt(question);
+        TokenBudget.Reservation reservation = tokenBudget.reserve(systemText, userText);
+
+        if (!Boolean.TRUE.equals(properties.coalescing().enabled())) {
+            return streamAnswer(systemText, userText, reservation);
+        }
+        // Only the reservation the upstream was started with pays for it, it's settled by the
+        // upstream itself; the reservation of a caller that joined is returned once its stream
+        // is over
+        AtomicBoolean startedUpstream = new AtomicBoolean();
+        FlightKey key =
+                new FlightKey(AnswerCache.normalize(question.question()), null, budgetClient());
+        return streamFlights
+                .stream(
+                        key,
+                        () -> {
+                            startedUpstream.set(true);
+                            return streamAnswer(systemText, userText, reservation);
+                        })
+                .doFinally(
+                        signal -> {
+                            if (!startedUpstream.get()) {
+                                reservation.cancel();
+                            }
+                        });
+    }
+
+    /** The {@link TokenBudget#CLIENT} while the budget is enabled, null otherwise. */
+    private String budgetClient() {
+        return tokenBudget.isEnabled() && TokenBudget.CLIENT.isBound()
+                ? TokenBudget.CLIENT.get()
+                : null;
+    }
+
+    private Flux<String> streamAnswer(
+            String systemText, String userText, TokenBudget.Reservation reservation) {
+        AtomicLong answerChars = new AtomicLong();
         return chatClient
                 .prompt()
-                .system(systemPromptTemplate)
-                .user(
-                        userSpec ->
-                                userSpec.text(userPromptTemplate)
-                                        .param("question", question.question()))
+                .system(systemText)
+                .user(userText)
                 .stream()
-                .content();
+                .content()
+                .doOnNext(chunk -> answerChars.addAndGet(chunk.length()))
+                .doOnComplete(() -> reservation.settleEstimated(answerChars.get()))
+                .doOnError(ex -> reservation.settleEstimated(answerChars.get()))
+                .doOnCancel(() -> reservation.settleEstimated(answerChars.get()));
+    }
+
+    /**
+     * Renders the user prompt. With 'app.rag.enabled' the relevant chunks of the knowledge base
+     * are put into it as context; a question without relevant chunks gets the plain prompt, and
+     * so does one whose retrieval failed: the knowledge base must never fail a request.
+     */
+    private String userPrompt(Question question) {
+        DocumentRetriever documentRetriever = retriever.getIfAvailable();
+        if (documentRetriever != null && documentRetriever.isEnabled()) {
+            try {
+                List<ScoredChunk> chunks = documentRetriever.retrieve(question.question());
+                if (!chunks.isEmpty()) {
+                    return prompts.get(RAG_USER_PROMPT)
+                            .render(
+                                    "context",
+                                    DocumentRetriever.format(chunks),
+                                    "question",
+                                    question.question());
+                }
+            } catch (RuntimeException ex) {
+                LOGGER.warn("Document retrieval failed, answering without context", ex);
+            }
+        }
+        return prompts.get(USER_PROMPT).render("question", question.question());
+    }
+
+    /**
+     * A hedged candidate: generates and validates a single answer, like {@link
+     * #generateAndEvaluate} but without counting a non-relevant answer as a retry.
+     *
+     * @throws NoChatResponseException if the model returned no response at all
+     */
+    private String generateCandidate(Question question, String userText) {
+        String answerText = generate(userText).orElseThrow(NoChatResponseException::new);
+        Deadline.checkCurrent("relevancy evaluation");
+        if (!isRelevant(question.question(), answerText)) {
+            throw new AnswerNotRelevantException(question.question(), answerText);
+        }
+        return answerText;
     }
 
     @Recover
@@ -137,17 +517,46 @@ public class ChatService {
     }
 
     private void evaluateRelevancy(String questionText, String answerText) {
+        Deadline.checkCurrent("relevancy evaluation");
+        if (!isRelevant(questionText, answerText)) {
+            // Count a retry-triggering failure attempt
+            countRetry();
+            throw new AnswerNotRelevantException(questionText, answerText);
+        }
+    }
+
+    private void countRetry() {
+        meterRegistry
+                .counter("app_llm_retries_total", "reason", "AnswerNotRelevantException")
+                .increment();
+    }
+
+    private boolean isRelevant(String questionText, String answerText) {
         boolean pass = evaluator.evaluate(new EvaluationRequest(questionText, answerText)).isPass();
         // Bounded cardinality tag: outcome in {"yes","no"}
         meterRegistry
                 .counter("app_evaluator_relevancy_total", "outcome", pass ? "yes" : "no")
                 .increment();
-        if (!pass) {
-            // Count a retry-triggering failure attempt
-            meterRegistry
-                    .counter("app_llm_retries_total", "reason", "AnswerNotRelevantException")
-                    .increment();
-            throw new AnswerNotRelevantException(questionText, answerText);
+        return pass;
+    }
+
+    @Override
+    public void destroy() {
+        hedgingExecutor.shutdownNow();
+        evaluationExecutor.shutdownNow();
+    }
+
+    /**
+     * @param evaluationMode null for streams
+     * @param client the {@link TokenBudget#CLIENT} while the budget is enabled, null otherwise
+     */
+    private record FlightKey(
+            String normalizedQuestion, EvaluationMode evaluationMode, String client) {}
+
+    /** Signals a hedged candidate that got no chat response at all. */
+    private static final class NoChatResponseException extends RuntimeException {
+        NoChatResponseException() {
+            super("LLM returned no chat response", null, false, false);
         }
     }
 }
@@ -0,0 +1,14 @@
+package com.github.mstepan.demo_ai.service;
+
+/** When the relevancy of a generated answer is evaluated, see {@link ChatService#askQuestion}. */
+public enum EvaluationMode {
+
+    /** Evaluate before returning, non-relevant answers are regenerated once and never returned. */
+    BLOCKING,
+
+    /**
+     * Return the answer right away and evaluate a sample of answers in the background, failures
+     * are only recorded (metrics and {@link RelevancyAuditLog}).
+     */
+    ASYNC
+}
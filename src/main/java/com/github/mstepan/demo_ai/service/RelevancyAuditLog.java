@@ -0,0 +1,134 @@
+package com.github.mstepan.demo_ai.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Local audit trail of answers that were returned to a client but failed the (asynchronous)
+ * relevancy evaluation afterwards.
+ *
+ * <p>Every record is a single JSON line. With 'app.chat.evaluation.audit_log' set the lines are
+ * appended to that file, otherwise they go to the 'app.audit.relevancy' logger, so they can be
+ * routed by the logging configuration.
+ */
+@Component
+public class RelevancyAuditLog implements DisposableBean {
+
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final Logger AUDIT_LOGGER = LoggerFactory.getLogger("app.audit.relevancy");
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    /** Null when records go to the audit logger. */
+    private final Writer writer;
+
+    @Autowired
+    public RelevancyAuditLog(ChatProperties properties) {
+        this(properties.evaluation().auditLog());
+    }
+
+    RelevancyAuditLog(String auditLogPath) {
+        if (auditLogPath == null || auditLogPath.isBlank()) {
+            this.writer = null;
+            return;
+        }
+
+        try {
+            Path path = Path.of(auditLogPath);
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            this.writer =
+                    Files.newBufferedWriter(
+                            path,
+                            StandardCharsets.UTF_8,
+                            StandardOpenOption.CREATE,
+                            StandardOpenOption.APPEND);
+        } catch (IOException ioEx) {
+            throw new UncheckedIOException(ioEx);
+        }
+        LOGGER.info("Relevancy audit log: '{}'", auditLogPath);
+    }
+
+    /**
+     * @param verdict 'not_relevant' or 'error'
+     * @param detail optional detail, e.g. the evaluation failure message
+     */
+    public void record(
+            EvaluationMode mode, String question, String answer, String verdict, String detail) {
+        String line = toJsonLine(mode, question, answer, verdict, detail);
+
+        if (writer == null) {
+            AUDIT_LOGGER.warn(line);
+            return;
+        }
+
+        writeLock.lock();
+        try {
+            writer.write(line);
+            writer.write('\n');
+            writer.flush();
+        } catch (IOException ioEx) {
+            // auditing must never fail a request, fall back to the logger
+            LOGGER.error("Can't write relevancy audit record, falling back to the logger", ioEx);
+            AUDIT_LOGGER.warn(line);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        if (writer != null) {
+            writeLock.lock();
+            try {
+                writer.close();
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    private static String toJsonLine(
+            EvaluationMode mode, String question, String answer, String verdict, String detail) {
+        var out = new StringWriter(256 + question.length() + answer.length());
+        try (JsonGenerator json = JSON.createGenerator(out)) {
+            json.writeStartObject();
+            json.writeStringField("timestamp", Instant.now().toString());
+            json.writeStringField("mode", mode.name().toLowerCase(Locale.ROOT));
+            json.writeStringField("verdict", verdict);
+            json.writeStringField("question", question);
+            json.writeStringField("answer", answer);
+            if (detail != null) {
+                json.writeStringField("detail", detail);
+            }
+            json.writeEndObject();
+        } catch (IOException ioEx) {
+            throw new UncheckedIOException(ioEx);
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,451 @@
+package com.github.mstepan.demo_ai.service;
+
+import com.github.mstepan.demo_ai.domain.Question;
+import com.github.mstepan.demo_ai.embedding.Embedder;
+import com.github.mstepan.demo_ai.oci.OCIGenAiProperties;
+import com.github.mstepan.demo_ai.prompts.PromptTemplateRegistry;
+import com.github.mstepan.demo_ai.rag.DocumentRetriever;
+import com.github.mstepan.demo_ai.vector.HnswIndex;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Embedding-similarity cache of validated answers, so paraphrased repeats of a question reuse an
+ * earlier answer.
+ *
+ * <p>Questions are embedded with the configured {@link Embedder} and looked up in an in-process
+ * {@link HnswIndex}. A cached answer is returned when the closest question is at least {@code
+ * similarity_threshold} similar and not older than {@code ttl}. When the index is full it is
+ * rebuilt from the newest three quarters of the live entries. The index can be persisted to
+ * {@code snapshot_path} on shutdown and is restored from there on startup.
+ *
+ * <p>Like the {@link AnswerCache}, an entry is only reused with the model, temperature and prompt
+ * templates it was generated with and, with 'app.rag.enabled', the same version of the knowledge
+ * base: ingesting or deleting a document makes the older entries stale. A snapshot taken with
+ * another model, temperature, prompts or embedding dimension is discarded, and so is every
+ * snapshot with 'app.rag.enabled': the knowledge base may have changed while the application was
+ * down.
+ *
+ * <p>Metrics (Prometheus/Micrometer):
+ *
+ * <ul>
+ *   <li>app_oci_chat_semantic_cache_total (Counter): lookups, result in {"hit","miss"}
+ *   <li>app_oci_chat_semantic_cache_evictions_total (Counter): entries evicted by TTL or capacity
+ *   <li>app_oci_chat_semantic_cache_size (Gauge): number of live cached answers
+ *   <li>app_oci_chat_semantic_cache_lookup_seconds (Timer): embedding + index search latency
+ * </ul>
+ */
+@Component
+public class SemanticAnswerCache implements DisposableBean {
+
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final int SNAPSHOT_MAGIC = 0x53434348; // "SCCH"
+    private static final int SNAPSHOT_VERSION = 2;
+
+    /** Nearest questions inspected per lookup, a few in case the closest ones have expired. */
+    private static final int LOOKUP_CANDIDATES = 4;
+
+    private final ChatProperties.SemanticCache settings;
+    private final boolean enabled;
+    private final Supplier<Embedder> embedder;
+    private final IntSupplier answerFingerprint;
+    private final LongSupplier knowledgeBaseVersion;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    private final Timer lookupTimer;
+
+    private final Object writeLock = new Object();
+
+    /** Index and payloads are swapped together on compaction. */
+    private volatile Generation generation;
+
+    @Autowired
+    public SemanticAnswerCache(
+            ChatProperties chatProperties,
+            OCIGenAiProperties ociProperties,
+            ObjectProvider<Embedder> embedderProvider,
+            PromptTemplateRegistry prompts,
+            ObjectProvider<DocumentRetriever> retriever,
+            MeterRegistry meterRegistry) {
+        this(
+                chatProperties.semanticCache(),
+                embedderProvider::getObject,
+                () ->
+                        Objects.hash(
+                                ociProperties.model(),
+                                ociProperties.temperature(),
+                                AnswerCache.promptsFingerprint(prompts, retriever)),
+                () -> AnswerCache.knowledgeBaseVersion(retriever),
+                meterRegistry);
+    }
+
+    /**
+     * @param answerFingerprint fingerprint of the model, temperature and prompt templates
+     * @param knowledgeBaseVersion -1 without 'app.rag.enabled'
+     */
+    SemanticAnswerCache(
+            ChatProperties.SemanticCache settings,
+            Supplier<Embedder> embedder,
+            IntSupplier answerFingerprint,
+            LongSupplier knowledgeBaseVersion,
+            MeterRegistry meterRegistry) {
+        this.settings = settings;
+        this.enabled = Boolean.TRUE.equals(settings.enabled());
+        this.embedder = embedder;
+        this.answerFingerprint = answerFingerprint;
+        this.knowledgeBaseVersion = knowledgeBaseVersion;
+
+        this.hits = meterRegistry.counter("app_oci_chat_semantic_cache_total", "result", "hit");
+        this.misses = meterRegistry.counter("app_oci_chat_semantic_cache_total", "result", "miss");
+        this.evictions = meterRegistry.counter("app_oci_chat_semantic_cache_evictions_total");
+        this.lookupTimer =
+                Timer.builder("app_oci_chat_semantic_cache_lookup_seconds")
+                        .register(meterRegistry);
+        Gauge.builder("app_oci_chat_semantic_cache_size", this, SemanticAnswerCache::liveSize)
+                .register(meterRegistry);
+
+        if (enabled) {
+            snapshotPath().ifPresent(this::loadSnapshot);
+        }
+    }
+
+    /**
+     * Embeds the question and looks for a similar, already answered one. The returned {@link
+     * Lookup} carries the embedding so a later {@link #put} doesn't embed the question again.
+     * Embedding failures are logged and treated as a miss, the cache must never fail a request.
+     */
+    public Lookup lookup(Question question) {
+        if (!enabled) {
+            return Lookup.DISABLED;
+        }
+
+        long startNanos = System.nanoTime();
+        try {
+            float[] embedding = embedder.get().embed(AnswerCache.normalize(question.question()));
+
+            Generation current = generation;
+            if (current != null) {
+                int fingerprint = answerFingerprint.getAsInt();
+                long version = knowledgeBaseVersion.getAsLong();
+                long minCreatedAt = System.currentTimeMillis() - settings.ttl().toMillis();
+                for (HnswIndex.Neighbor neighbor :
+                        current.index().search(embedding, LOOKUP_CANDIDATES)) {
+                    if (neighbor.similarity() < settings.similarityThreshold()) {
+                        break;
+                    }
+
+                    Entry entry = current.entries().get(neighbor.node());
+                    if (entry == null) {
+                        continue;
+                    }
+                    if (entry.createdAtMillis() < minCreatedAt
+                            || entry.answerFingerprint() != fingerprint
+                            || entry.knowledgeBaseVersion() != version) {
+                        expire(current, neighbor.node(), entry);
+                        continue;
+                    }
+
+                    hits.increment();
+                    return new Lookup(Optional.of(entry.answer()), embedding);
+                }
+            }
+
+            misses.increment();
+            return new Lookup(Optional.empty(), embedding);
+        } catch (RuntimeException ex) {
+            LOGGER.warn("Semantic cache lookup failed, treating as a miss", ex);
+            misses.increment();
+            return Lookup.DISABLED;
+        } finally {
+            lookupTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /** Stores an answer; callers must only pass answers that passed the relevancy evaluation. */
+    public void put(Lookup lookup, Question question, String answer) {
+        if (!enabled || lookup.embedding() == null) {
+            return;
+        }
+
+        synchronized (writeLock) {
+            add(
+                    writableGeneration(lookup.embedding().length),
+                    lookup.embedding(),
+                    new Entry(
+                            question.question(),
+                            answer,
+                            System.currentTimeMillis(),
+                            answerFingerprint.getAsInt(),
+                            knowledgeBaseVersion.getAsLong()));
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (enabled) {
+            snapshotPath().ifPresent(this::saveSnapshot);
+        }
+    }
+
+    private double liveSize() {
+        Generation current = generation;
+        return current == null ? 0.0 : current.index().liveSize();
+    }
+
+    private void expire(Generation current, int node, Entry entry) {
+        if (current.entries().compareAndSet(node, entry, null)) {
+            current.index().remove(node);
+            evictions.increment();
+        }
+    }
+
+    /** Must be called under {@link #writeLock}. */
+    private Generation writableGeneration(int dimensions) {
+        Generation current = generation;
+        if (current == null) {
+            current = new Generation(settings.capacity(), dimensions);
+            generation = current;
+        } else if (current.index().size() == current.index().capacity()) {
+            current = compact(current);
+            generation = current;
+        }
+        return current;
+    }
+
+    /** Must be called under {@link #writeLock}. */
+    private static void add(Generation target, float[] embedding, Entry entry) {
+        int node = target.index().add(embedding);
+        target.entries().set(node, entry);
+    }
+
+    /** Rebuilds the index from the newest live entries, keeping 3/4 of the capacity. */
+    private Generation compact(Generation current) {
+        long minCreatedAt = System.currentTimeMillis() - settings.ttl().toMillis();
+        int fingerprint = answerFingerprint.getAsInt();
+        long version = knowledgeBaseVersion.getAsLong();
+
+        List<Integer> liveNodes = new ArrayList<>();
+        for (int node = 0; node < current.index().size(); ++node) {
+            Entry entry = current.entries().get(node);
+            if (entry != null
+                    && entry.createdAtMillis() >= minCreatedAt
+                    && entry.answerFingerprint() == fingerprint
+                    && entry.knowledgeBaseVersion() == version) {
+                liveNodes.add(node);
+            }
+        }
+        liveNodes.sort(
+                Comparator.comparingLong(
+                                (Integer node) -> current.entries().get(node).createdAtMillis())
+                        .reversed());
+
+        int keep = Math.min(liveNodes.size(), settings.capacity() * 3 / 4);
+        Generation compacted =
+                new Generation(current.index().capacity(), current.index().dimensions());
+        // re-insert oldest first so insertion order matches creation order again
+        for (int i = keep - 1; i >= 0; --i) {
+            int node = liveNodes.get(i);
+            add(compacted, current.index().vector(node), current.entries().get(node));
+        }
+
+        int evicted = current.index().liveSize() - keep;
+        if (evicted > 0) {
+            evictions.increment(evicted);
+        }
+        LOGGER.info("Semantic cache compacted: kept {}, evicted {}", keep, evicted);
+        return compacted;
+    }
+
+    private Optional<Path> snapshotPath() {
+        String path = settings.snapshotPath();
+        return (path == null || path.isBlank()) ? Optional.empty() : Optional.of(Path.of(path));
+    }
+
+    private void saveSnapshot(Path path) {
+        Generation current = generation;
+        if (current == null) {
+            return;
+        }
+
+        synchronized (writeLock) {
+            try {
+                Path parent = path.toAbsolutePath().getParent();
+                if (parent != null) {
+                    Files.createDirectories(parent);
+                }
+                Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+
+                List<Integer> liveNodes = new ArrayList<>();
+                int fingerprint = answerFingerprint.getAsInt();
+                for (int node = 0; node < current.index().size(); ++node) {
+                    Entry entry = current.entries().get(node);
+                    if (entry != null && entry.answerFingerprint() == fingerprint) {
+                        liveNodes.add(node);
+                    }
+                }
+
+                try (DataOutputStream out =
+                        new DataOutputStream(
+                                new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                    out.writeInt(SNAPSHOT_MAGIC);
+                    out.writeInt(SNAPSHOT_VERSION);
+                    out.writeInt(current.index().dimensions());
+                    out.writeInt(answerFingerprint.getAsInt());
+                    out.writeInt(liveNodes.size());
+
+                    for (int node : liveNodes) {
+                        Entry entry = current.entries().get(node);
+                        out.writeLong(entry.createdAtMillis());
+                        writeString(out, entry.question());
+                        writeString(out, entry.answer());
+                        for (float value : current.index().vector(node)) {
+                            out.writeFloat(value);
+                        }
+                    }
+                }
+
+                Files.move(
+                        tmp,
+                        path,
+                        StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+                LOGGER.info(
+                        "Semantic cache snapshot saved: {} entries -> {}", liveNodes.size(), path);
+            } catch (IOException ioEx) {
+                LOGGER.warn("Failed to save semantic cache snapshot to {}", path, ioEx);
+            }
+        }
+    }
+
+    private void loadSnapshot(Path path) {
+        if (!Files.isReadable(path)) {
+            return;
+        }
+        long version = knowledgeBaseVersion.getAsLong();
+        if (version >= 0L) {
+            LOGGER.info("Not restoring semantic cache snapshot {} with 'app.rag.enabled'", path);
+            return;
+        }
+
+        try (DataInputStream in =
+                new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                LOGGER.warn("Ignoring semantic cache snapshot with unknown format: {}", path);
+                return;
+            }
+
+            int dimensions = in.readInt();
+            if (dimensions != embedder.get().dimensions()) {
+                LOGGER.warn(
+                        "Discarding semantic cache snapshot {} with {} dimensions, the embedder"
+                                + " has {}",
+                        path,
+                        dimensions,
+                        embedder.get().dimensions());
+                return;
+            }
+            int fingerprint = in.readInt();
+            if (fingerprint != answerFingerprint.getAsInt()) {
+                LOGGER.warn(
+                        "Discarding semantic cache snapshot {} of another model, temperature or"
+                                + " prompts",
+                        path);
+                return;
+            }
+            int count = in.readInt();
+            long minCreatedAt = System.currentTimeMillis() - settings.ttl().toMillis();
+
+            synchronized (writeLock) {
+                int loaded = 0;
+                for (int i = 0; i < count; ++i) {
+                    long createdAt = in.readLong();
+                    String question = readString(in);
+                    String answer = readString(in);
+                    float[] vector = new float[dimensions];
+                    for (int d = 0; d < dimensions; ++d) {
+                        vector[d] = in.readFloat();
+                    }
+
+                    if (createdAt >= minCreatedAt) {
+                        add(
+                                writableGeneration(dimensions),
+                                vector,
+                                new Entry(question, answer, createdAt, fingerprint, version));
+                        ++loaded;
+                    }
+                }
+                LOGGER.info("Semantic cache snapshot loaded: {} entries <- {}", loaded, path);
+            }
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.warn("Failed to load semantic cache snapshot from {}", path, ex);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return new String(in.readNBytes(in.readInt()), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Result of {@link #lookup(Question)}.
+     *
+     * @param answer cached answer for a similar question, if any
+     * @param embedding embedding of the looked up question, null if the cache is disabled
+     */
+    public record Lookup(Optional<String> answer, float[] embedding) {
+        static final Lookup DISABLED = new Lookup(Optional.empty(), null);
+    }
+
+    private record Entry(
+            String question,
+            String answer,
+            long createdAtMillis,
+            int answerFingerprint,
+            long knowledgeBaseVersion) {}
+
+    private record Generation(HnswIndex index, AtomicReferenceArray<Entry> entries) {
+        Generation(int capacity, int dimensions) {
+            this(new HnswIndex(dimensions, capacity), new AtomicReferenceArray<>(capacity));
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.github.mstepan.demo_ai.service;
+
+import com.github.mstepan.demo_ai.oci.Deadline;
+import com.github.mstepan.demo_ai.oci.DeadlineExceededException;
+
+import io.micrometer.core.instrument.Counter;
+
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Merges concurrent identical requests ("single-flight"): while a call for a key is in flight,
+ * callers with the same key wait for it and get its result (or its failure) instead of starting
+ * their own. Once the call completes the key is released, so later requests start a fresh call;
+ * this is not a cache.
+ *
+ * <p>A waiting caller is bounded by its own {@link Deadline#CURRENT}, not by the one of the caller
+ * running the call: it fails alone with {@link DeadlineExceededException} once its deadline
+ * passes, and when the running call fails because <em>its</em> deadline passed, a waiting caller
+ * with time left starts a call of its own instead of sharing that failure.
+ *
+ * <p>{@link #execute} is for blocking calls, {@link #stream} for {@link Flux} results: late
+ * subscribers join the shared stream and first get the elements emitted so far replayed.
+ */
+final class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> calls = new ConcurrentHashMap<>();
+    private final ConcurrentMap<K, Flux<V>> streams = new ConcurrentHashMap<>();
+
+    private final Counter coalesced;
+
+    SingleFlight(Counter coalesced) {
+        this.coalesced = coalesced;
+    }
+
+    V execute(K key, Supplier<V> call) {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> existing;
+        while ((existing = calls.putIfAbsent(key, created)) != null) {
+            coalesced.increment();
+            try {
+                return await(existing);
+            } catch (DeadlineExceededException deadlineEx) {
+                if (existing.isCompletedExceptionally() && hasTimeLeft()) {
+                    // the deadline of the caller that ran it, not ours: run it again
+                    calls.remove(key, existing);
+                    continue;
+                }
+                throw deadlineEx;
+            }
+        }
+
+        try {
+            V value = call.get();
+            created.complete(value);
+            return value;
+        } catch (RuntimeException | Error ex) {
+            created.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            calls.remove(key, created);
+        }
+    }
+
+    Flux<V> stream(K key, Supplier<Flux<V>> stream) {
+        return Flux.defer(
+                () -> {
+                    Flux<V> existing = streams.get(key);
+                    if (existing != null) {
+                        coalesced.increment();
+                        return existing;
+                    }
+
+                    // The entry is released when the upstream terminates or when every
+                    // subscriber has cancelled (refCount drops to zero and cancels upstream).
+                    AtomicReference<Flux<V>> self = new AtomicReference<>();
+                    Flux<V> shared =
+                            Flux.defer(stream)
+                                    .doFinally(signal -> streams.remove(key, self.get()))
+                                    .replay()
+                                    .refCount(1);
+                    self.set(shared);
+
+                    existing = streams.putIfAbsent(key, shared);
+                    if (existing != null) {
+                        coalesced.increment();
+                        return existing;
+                    }
+                    return shared;
+                });
+    }
+
+    private static boolean hasTimeLeft() {
+        return !Deadline.CURRENT.isBound() || Deadline.CURRENT.get().allowsCall();
+    }
+
+    private static <V> V await(CompletableFuture<V> inFlight) {
+        try {
+            if (!Deadline.CURRENT.isBound()) {
+                return inFlight.get();
+            }
+            Duration remaining = Deadline.CURRENT.get().remaining();
+            return inFlight.get(remaining.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException timeoutEx) {
+            throw new DeadlineExceededException(
+                    "Deadline exceeded waiting for a coalesced call", timeoutEx);
+        } catch (ExecutionException execEx) {
+            if (execEx.getCause() instanceof RuntimeException runtimeEx) {
+                throw runtimeEx;
+            }
+            if (execEx.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException("Coalesced call failed", execEx.getCause());
+        } catch (InterruptedException interEx) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for a coalesced call", interEx);
+        }
+    }
+}
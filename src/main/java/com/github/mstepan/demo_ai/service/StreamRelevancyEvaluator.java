@@ -0,0 +1,314 @@
+package com.github.mstepan.demo_ai.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.github.mstepan.demo_ai.domain.Question;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.evaluation.EvaluationRequest;
+import org.springframework.ai.evaluation.Evaluator;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Relevancy evaluation of streamed answers. The chunks are passed through untouched and teed into
+ * a bounded buffer; once the stream completes the buffered answer is evaluated and the verdict is
+ * emitted as one extra, final NDJSON element:
+ *
+ * <pre>{"verdict":{"relevant":true,"evaluated_chars":1234,"truncated":false}}</pre>
+ *
+ * <p>Nothing is evaluated on the hot path, so time-to-first-token is unaffected. At most
+ * 'app.chat.stream_evaluation.max_chars' chars of an answer are buffered, a longer answer is
+ * evaluated by its prefix ('truncated' is true) and that evaluation starts as soon as the buffer
+ * is full instead of when the stream completes.
+ *
+ * <p>With 'incremental_every_chars' set, the partial answer is also evaluated in the background
+ * while it streams, one evaluation per stream at a time and at most
+ * 'app.chat.evaluation.max_concurrent' across all streams. When the latest partial evaluation
+ * already covers the whole buffered answer, its verdict is reused for the trailer instead of
+ * evaluating once more.
+ *
+ * <p>A failed evaluation still yields a trailer, with 'relevant' null and an 'error' message; the
+ * response status is already sent at that point.
+ *
+ * <p>Metrics (Prometheus/Micrometer):
+ *
+ * <ul>
+ *   <li>app_evaluator_stream_total (Counter): evaluations of streamed answers, phase in
+ *       {"incremental","final","reused"}
+ *   <li>app_evaluator_relevancy_total (Counter): outcome in {"yes","no"}, shared with {@link
+ *       ChatService}
+ * </ul>
+ */
+@Component
+public class StreamRelevancyEvaluator implements DisposableBean {
+
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    /** Initial buffer capacity, grown up to 'max_chars' only for answers that long. */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final Evaluator evaluator;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int maxChars;
+    private final int incrementalEveryChars;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore incrementalPermits;
+
+    private final Counter incrementalEvaluations;
+    private final Counter finalEvaluations;
+    private final Counter reusedEvaluations;
+
+    @Autowired
+    public StreamRelevancyEvaluator(
+            ChatProperties properties,
+            @Qualifier("relevancyEvaluator") Evaluator evaluator,
+            MeterRegistry meterRegistry) {
+        this(
+                properties.streamEvaluation(),
+                properties.evaluation().maxConcurrent(),
+                evaluator,
+                meterRegistry);
+    }
+
+    /**
+     * @param maxConcurrent max number of in-flight incremental evaluations, see
+     *     'app.chat.evaluation.max_concurrent'
+     */
+    public StreamRelevancyEvaluator(
+            ChatProperties.StreamEvaluation settings,
+            int maxConcurrent,
+            Evaluator evaluator,
+            MeterRegistry meterRegistry) {
+        this.evaluator = evaluator;
+        this.meterRegistry = meterRegistry;
+        this.enabled = Boolean.TRUE.equals(settings.enabled());
+        this.maxChars = settings.maxChars();
+        this.incrementalEveryChars = settings.incrementalEveryChars();
+        this.incrementalPermits = new Semaphore(maxConcurrent);
+
+        this.incrementalEvaluations =
+                meterRegistry.counter("app_evaluator_stream_total", "phase", "incremental");
+        this.finalEvaluations =
+                meterRegistry.counter("app_evaluator_stream_total", "phase", "final");
+        this.reusedEvaluations =
+                meterRegistry.counter("app_evaluator_stream_total", "phase", "reused");
+    }
+
+    /** Whether streams get a verdict unless the caller asks otherwise. */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the chunks as they are, followed by the JSON verdict trailer once they complete; no
+     *     trailer when the chunks fail or the subscriber cancels
+     */
+    public Flux<String> withVerdict(Question question, Flux<String> chunks) {
+        return Flux.defer(
+                () -> {
+                    var tee = new Tee(question.question());
+                    return chunks.doOnNext(tee::append)
+                            .concatWith(Mono.defer(tee::verdict).map(StreamVerdict::toJson))
+                            .doFinally(signal -> tee.cancel());
+                });
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private StreamVerdict evaluate(String questionText, String answerText, boolean truncated) {
+        try {
+            boolean pass =
+                    evaluator.evaluate(new EvaluationRequest(questionText, answerText)).isPass();
+            meterRegistry
+                    .counter("app_evaluator_relevancy_total", "outcome", pass ? "yes" : "no")
+                    .increment();
+            return new StreamVerdict(pass, answerText.length(), truncated, null);
+        } catch (RuntimeException ex) {
+            if (Thread.currentThread().isInterrupted()) {
+                // the stream was cancelled, nobody waits for the verdict
+                LOGGER.debug("Streamed answer relevancy evaluation cancelled", ex);
+            } else {
+                LOGGER.warn("Streamed answer relevancy evaluation failed", ex);
+            }
+            return new StreamVerdict(null, answerText.length(), truncated, ex.toString());
+        }
+    }
+
+    /**
+     * Verdict on a streamed answer.
+     *
+     * @param relevant null when the evaluation failed
+     * @param evaluatedChars length of the evaluated (prefix of the) answer
+     * @param truncated true if the answer was longer than 'max_chars' and only a prefix was
+     *     evaluated
+     * @param error evaluation failure, null on success
+     */
+    public record StreamVerdict(
+            Boolean relevant, int evaluatedChars, boolean truncated, String error) {
+
+        String toJson() {
+            var out = new StringWriter(128);
+            try (JsonGenerator json = JSON.createGenerator(out)) {
+                json.writeStartObject();
+                json.writeObjectFieldStart("verdict");
+                if (relevant == null) {
+                    json.writeNullField("relevant");
+                } else {
+                    json.writeBooleanField("relevant", relevant);
+                }
+                json.writeNumberField("evaluated_chars", evaluatedChars);
+                json.writeBooleanField("truncated", truncated);
+                if (error != null) {
+                    json.writeStringField("error", error);
+                }
+                json.writeEndObject();
+                json.writeEndObject();
+            } catch (IOException ioEx) {
+                throw new UncheckedIOException(ioEx);
+            }
+            return out.toString();
+        }
+    }
+
+    /**
+     * Per-stream state. {@link #append} and {@link #verdict} are called serially by the stream's
+     * signals, only {@link #cancel} may come from another thread.
+     */
+    private final class Tee {
+
+        private final String questionText;
+        private final StringBuilder buffer;
+        private boolean truncated;
+        private int lastEvaluatedLength;
+
+        /** Latest started evaluation, read by {@link #cancel}. */
+        private volatile Evaluation latest;
+
+        Tee(String questionText) {
+            this.questionText = questionText;
+            this.buffer = new StringBuilder(Math.min(maxChars, INITIAL_CAPACITY));
+        }
+
+        void append(String chunk) {
+            if (truncated) {
+                return;
+            }
+
+            int room = maxChars - buffer.length();
+            if (chunk.length() <= room) {
+                buffer.append(chunk);
+                if (incrementalEveryChars > 0
+                        && buffer.length() - lastEvaluatedLength >= incrementalEveryChars) {
+                    startIncremental();
+                }
+                return;
+            }
+
+            // don't cut a surrogate pair in half
+            int end = room;
+            if (end > 0 && Character.isHighSurrogate(chunk.charAt(end - 1))) {
+                --end;
+            }
+            buffer.append(chunk, 0, end);
+            truncated = true;
+
+            // nothing more will be evaluated, so the verdict can be computed right away
+            latest = start(finalEvaluations);
+        }
+
+        Mono<StreamVerdict> verdict() {
+            Evaluation current = latest;
+            if (current != null && current.length() == buffer.length()) {
+                if (current.counter() != finalEvaluations) {
+                    reusedEvaluations.increment();
+                }
+            } else {
+                current = start(finalEvaluations);
+                latest = current;
+            }
+            return Mono.fromFuture(current.verdict());
+        }
+
+        void cancel() {
+            Evaluation current = latest;
+            if (current != null) {
+                // interrupts the judge call, the verdict is cancelled too in case it never ran
+                current.task().cancel(true);
+                current.verdict().cancel(false);
+            }
+        }
+
+        private void startIncremental() {
+            Evaluation current = latest;
+            if (current != null && !current.verdict().isDone()) {
+                return;
+            }
+            if (!incrementalPermits.tryAcquire()) {
+                return;
+            }
+
+            try {
+                Evaluation evaluation = start(incrementalEvaluations);
+                evaluation.verdict().whenComplete((verdict, ex) -> incrementalPermits.release());
+                latest = evaluation;
+            } catch (RejectedExecutionException rejectedEx) {
+                // shutting down
+                incrementalPermits.release();
+            }
+        }
+
+        private Evaluation start(Counter counter) {
+            String answerText = buffer.toString();
+            boolean answerTruncated = truncated;
+            lastEvaluatedLength = answerText.length();
+
+            counter.increment();
+            CompletableFuture<StreamVerdict> verdict = new CompletableFuture<>();
+            Future<?> task =
+                    executor.submit(
+                            () ->
+                                    verdict.complete(
+                                            evaluate(questionText, answerText, answerTruncated)));
+            return new Evaluation(answerText.length(), counter, verdict, task);
+        }
+    }
+
+    /**
+     * @param task the running evaluation, cancelling it interrupts the judge call; {@link
+     *     CompletableFuture#cancel} wouldn't
+     */
+    private record Evaluation(
+            int length,
+            Counter counter,
+            CompletableFuture<StreamVerdict> verdict,
+            Future<?> task) {}
+}
@@ -0,0 +1,304 @@
+package com.github.mstepan.demo_ai.service;
+
+import com.github.mstepan.demo_ai.oci.OCIGenAiProperties;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.springframework.ai.chat.metadata.EmptyUsage;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token-aware rate limit of answer generation, per client (API key) and per model.
+ *
+ * <p>Every OCI chat call first reserves its estimated cost, the prompt size plus
+ * 'app.chat.token_budget.reserved_completion_tokens'. The reservation is settled with the actual
+ * usage reported by OCI once the call is over: unused tokens go back to the budget, an
+ * underestimate is charged. A call that doesn't fit into the client's or the model's budget fails
+ * right away with {@link TokenBudgetExceededException}, mapped to 429 by the web layer, instead of
+ * being sent upstream only to be throttled there.
+ *
+ * <p>A budget is a token bucket holding one minute worth of tokens that refills continuously. It
+ * is kept as a single "theoretical full-at" timestamp updated with CAS (GCRA), so budgets need no
+ * locks and no refill thread. The client is taken from {@link #CLIENT}, bound by the web layer
+ * from the 'X-API-Key' header; calls without a bound client (background evaluations) only count
+ * against the model budget. Relevancy judge calls are not budgeted, they are bounded by the
+ * evaluation settings.
+ *
+ * <p>Metrics (Prometheus/Micrometer):
+ *
+ * <ul>
+ *   <li>app_oci_chat_tokens_total (Counter): tokens used by answer generation, type in {"prompt",
+ *       "completion"}
+ *   <li>app_token_budget_remaining (Gauge): tokens left in the model budget, per-client budgets
+ *       are not exposed to keep the cardinality bounded
+ *   <li>app_token_budget_rejected_total (Counter): rejected calls, scope in {"client","model"}
+ * </ul>
+ */
+@Component
+public class TokenBudget {
+
+    /** Client (API key) the current request is made for, unbound for internal calls. */
+    public static final ScopedValue<String> CLIENT = ScopedValue.newInstance();
+
+    /** Client of requests without an API key, they share a single budget. */
+    public static final String ANONYMOUS = "anonymous";
+
+    /** Rough chars-per-token ratio of English text, only used for the reservation. */
+    private static final int CHARS_PER_TOKEN = 4;
+
+    private static final long NANOS_PER_MINUTE = TimeUnit.MINUTES.toNanos(1L);
+
+    private final boolean enabled;
+    private final long clientTokensPerMinute;
+    private final int reservedCompletionTokens;
+    private final int maxClients;
+
+    private final Bucket modelBucket;
+    private final ConcurrentMap<String, Bucket> clientBuckets = new ConcurrentHashMap<>();
+
+    private final Counter promptTokens;
+    private final Counter completionTokens;
+    private final Counter rejectedClient;
+    private final Counter rejectedModel;
+
+    @Autowired
+    public TokenBudget(
+            ChatProperties properties,
+            OCIGenAiProperties ociProperties,
+            MeterRegistry meterRegistry) {
+        this(properties.tokenBudget(), ociProperties.model(), meterRegistry);
+    }
+
+    TokenBudget(ChatProperties.Budget settings, String model, MeterRegistry meterRegistry) {
+        this.enabled = Boolean.TRUE.equals(settings.enabled());
+        this.clientTokensPerMinute = settings.clientTokensPerMinute();
+        this.reservedCompletionTokens = settings.reservedCompletionTokens();
+        this.maxClients = settings.maxClients();
+        this.modelBucket = new Bucket(settings.modelTokensPerMinute());
+
+        this.promptTokens = meterRegistry.counter("app_oci_chat_tokens_total", "type", "prompt");
+        this.completionTokens =
+                meterRegistry.counter("app_oci_chat_tokens_total", "type", "completion");
+        this.rejectedClient =
+                meterRegistry.counter("app_token_budget_rejected_total", "scope", "client");
+        this.rejectedModel =
+                meterRegistry.counter("app_token_budget_rejected_total", "scope", "model");
+        Gauge.builder("app_token_budget_remaining", modelBucket, Bucket::remaining)
+                .tag("model", model)
+                .register(meterRegistry);
+    }
+
+    /** Whether calls are budgeted at all, see 'app.chat.token_budget.enabled'. */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Reserves the estimated cost of a call with the given prompt for the current {@link #CLIENT}.
+     *
+     * @throws TokenBudgetExceededException if the client's or the model's budget can't cover it
+     */
+    public Reservation reserve(String... promptParts) {
+        long promptEstimate = 0L;
+        for (String part : promptParts) {
+            promptEstimate += estimateTokens(part);
+        }
+        if (!enabled) {
+            return new Reservation(null, promptEstimate, 0L);
+        }
+
+        long estimate = promptEstimate + reservedCompletionTokens;
+
+        Bucket clientBucket = CLIENT.isBound() ? clientBucket(CLIENT.get()) : null;
+        if (clientBucket != null) {
+            long waitNanos = clientBucket.tryTake(estimate);
+            if (waitNanos > 0L) {
+                rejectedClient.increment();
+                throw new TokenBudgetExceededException(
+                        "Client token budget exhausted", "client", Duration.ofNanos(waitNanos));
+            }
+        }
+
+        long waitNanos = modelBucket.tryTake(estimate);
+        if (waitNanos > 0L) {
+            if (clientBucket != null) {
+                clientBucket.giveBack(estimate);
+            }
+            rejectedModel.increment();
+            throw new TokenBudgetExceededException(
+                    "Model token budget exhausted", "model", Duration.ofNanos(waitNanos));
+        }
+
+        return new Reservation(clientBucket, promptEstimate, estimate);
+    }
+
+    /** Estimated token count of the text, rounded up. */
+    static long estimateTokens(String text) {
+        return text == null ? 0L : estimateTokens(text.length());
+    }
+
+    static long estimateTokens(long chars) {
+        return (chars + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    private Bucket clientBucket(String client) {
+        Bucket bucket = clientBuckets.get(client);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (clientBuckets.size() >= maxClients) {
+            // a full bucket carries no state, dropping it is the same as keeping it
+            clientBuckets.values().removeIf(Bucket::isFull);
+        }
+        return clientBuckets.computeIfAbsent(client, unused -> new Bucket(clientTokensPerMinute));
+    }
+
+    int trackedClients() {
+        return clientBuckets.size();
+    }
+
+    long modelRemaining() {
+        return modelBucket.remaining();
+    }
+
+    /**
+     * Estimated tokens taken from the budgets, to be settled once the call is over. Only the first
+     * settlement counts, later ones are ignored.
+     */
+    public final class Reservation {
+
+        private final Bucket clientBucket;
+        private final long promptEstimate;
+        private final long reserved;
+        private final AtomicBoolean settled = new AtomicBoolean();
+
+        private Reservation(Bucket clientBucket, long promptEstimate, long reserved) {
+            this.clientBucket = clientBucket;
+            this.promptEstimate = promptEstimate;
+            this.reserved = reserved;
+        }
+
+        /**
+         * Settles the reservation with the usage OCI reported. Without usage (empty or missing
+         * metadata) the estimate is kept.
+         */
+        public void settle(Usage usage) {
+            if (!settled.compareAndSet(false, true)) {
+                return;
+            }
+            if (usage == null || usage instanceof EmptyUsage) {
+                return;
+            }
+
+            long prompt = toLong(usage.getPromptTokens());
+            long completion = toLong(usage.getCompletionTokens());
+            promptTokens.increment(prompt);
+            completionTokens.increment(completion);
+            adjust(prompt + completion);
+        }
+
+        /** Settles the reservation of a call without usage metadata, e.g. a stream. */
+        public void settleEstimated(long answerChars) {
+            if (!settled.compareAndSet(false, true)) {
+                return;
+            }
+
+            long completion = estimateTokens(answerChars);
+            promptTokens.increment(promptEstimate);
+            completionTokens.increment(completion);
+            adjust(promptEstimate + completion);
+        }
+
+        /** Returns the whole reservation, e.g. when the call failed or never reached OCI. */
+        public void cancel() {
+            if (settled.compareAndSet(false, true)) {
+                adjust(0L);
+            }
+        }
+
+        private void adjust(long actual) {
+            long delta = actual - reserved;
+            if (reserved == 0L || delta == 0L) {
+                // budgets are disabled or the estimate was exact
+                return;
+            }
+            modelBucket.adjust(delta);
+            if (clientBucket != null) {
+                clientBucket.adjust(delta);
+            }
+        }
+
+        private static long toLong(Integer tokens) {
+            return tokens == null ? 0L : tokens;
+        }
+    }
+
+    /**
+     * Token bucket of one minute worth of tokens as GCRA: {@code fullAt} is the time at which the
+     * bucket would be full again, every token taken moves it by {@code nanosPerToken}. The bucket
+     * can't hold more than a minute of tokens, so a call is admitted while {@code fullAt} stays
+     * within a minute from now.
+     */
+    private static final class Bucket {
+
+        private final long nanosPerToken;
+        private final AtomicLong fullAt;
+
+        Bucket(long tokensPerMinute) {
+            this.nanosPerToken = Math.max(1L, NANOS_PER_MINUTE / tokensPerMinute);
+            this.fullAt = new AtomicLong(System.nanoTime());
+        }
+
+        /**
+         * Takes the tokens if the bucket holds them.
+         *
+         * @return 0 if taken, otherwise the nanos until the bucket would hold them
+         */
+        long tryTake(long tokens) {
+            long cost = tokens * nanosPerToken;
+            while (true) {
+                long now = System.nanoTime();
+                long current = fullAt.get();
+                long next = Math.max(current, now) + cost;
+                long overflow = next - now - NANOS_PER_MINUTE;
+                if (overflow > 0L) {
+                    return overflow;
+                }
+                if (fullAt.compareAndSet(current, next)) {
+                    return 0L;
+                }
+            }
+        }
+
+        /** Takes (positive) or returns (negative) tokens without an admission check. */
+        void adjust(long tokens) {
+            long delta = tokens * nanosPerToken;
+            fullAt.accumulateAndGet(
+                    delta, (current, change) -> Math.max(current, System.nanoTime()) + change);
+        }
+
+        void giveBack(long tokens) {
+            adjust(-tokens);
+        }
+
+        boolean isFull() {
+            return fullAt.get() - System.nanoTime() <= 0L;
+        }
+
+        long remaining() {
+            long used = Math.max(0L, fullAt.get() - System.nanoTime());
+            return Math.max(0L, NANOS_PER_MINUTE - used) / nanosPerToken;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.github.mstepan.demo_ai.service;
+
+import java.time.Duration;
+
+/**
+ * Thrown when a call doesn't fit into the client's or the model's {@link TokenBudget}, before
+ * anything is sent to OCI.
+ */
+public final class TokenBudgetExceededException extends RuntimeException {
+
+    private final String scope;
+    private final Duration retryAfter;
+
+    public TokenBudgetExceededException(String message, String scope, Duration retryAfter) {
+        super(message);
+        this.scope = scope;
+        this.retryAfter = retryAfter;
+    }
+
+    /** Exhausted budget, "client" or "model". */
+    public String scope() {
+        return scope;
+    }
+
+    /** Time until the budget would cover the rejected call. */
+    public Duration retryAfter() {
+        return retryAfter;
+    }
+}
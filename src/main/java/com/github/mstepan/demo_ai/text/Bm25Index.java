@@ -0,0 +1,454 @@
+package com.github.mstepan.demo_ai.text;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * In-process inverted index ranking documents by BM25 (Robertson &amp; Zaragoza, k1 = 1.2, b =
+ * 0.75) over {@link Tokenizer} tokens.
+ *
+ * <p>The postings of a term are (doc id delta, term frequency) pairs, varint-encoded into a chain
+ * of slices carved from 1 MiB off-heap slabs: a term starts with a 16 byte slice and each next
+ * slice is twice as large, up to 4 KiB, so rare terms waste little and frequent terms need few
+ * jumps. Most postings take 2 bytes and nothing of them is on the GC-managed heap; doc lengths and
+ * per-term state are kept in primitive arrays. Documents are addressed by dense ids assigned on
+ * {@link #add(String)}, callers keep their payload in a parallel structure indexed by the same id.
+ *
+ * <p>Removal is a tombstone: the postings stay, the document is skipped by searches and no longer
+ * counts for the collection statistics. {@link #compact()} rewrites the postings without the
+ * removed documents and renumbers the rest, callers decide when it's worth it.
+ *
+ * <p>Not thread-safe: searches may run concurrently with each other, but not with writes.
+ */
+public final class Bm25Index {
+
+    private static final float K1 = 1.2F;
+    private static final float B = 0.75F;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** Document removed, only valid in the id mapping returned by {@link #compact()}. */
+    public static final int REMOVED = -1;
+
+    private final Map<String, Integer> termIds = new HashMap<>();
+    private Postings postings = new Postings(INITIAL_CAPACITY);
+
+    private int[] docLengths = new int[INITIAL_CAPACITY];
+    private final BitSet removed = new BitSet();
+
+    private int size;
+    private int liveSize;
+    private long liveTokens;
+
+    /**
+     * Indexes a document.
+     *
+     * @return id of the new document
+     */
+    public int add(String text) {
+        List<String> tokens = Tokenizer.tokenize(text);
+
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String token : tokens) {
+            frequencies.merge(token, 1, Integer::sum);
+        }
+
+        int doc = size;
+        if (doc == docLengths.length) {
+            docLengths = Arrays.copyOf(docLengths, doc * 2);
+        }
+        docLengths[doc] = tokens.size();
+        ++size;
+        ++liveSize;
+        liveTokens += tokens.size();
+
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+            int term = termIds.computeIfAbsent(entry.getKey(), key -> termIds.size());
+            postings.append(term, doc, entry.getValue());
+        }
+        return doc;
+    }
+
+    /** Marks a document as removed, it won't be returned by {@link #search} anymore. */
+    public void remove(int doc) {
+        if (doc >= 0 && doc < size && !removed.get(doc)) {
+            removed.set(doc);
+            --liveSize;
+            liveTokens -= docLengths[doc];
+        }
+    }
+
+    /**
+     * Finds up to {@code topK} live documents containing query terms, by decreasing BM25 score.
+     *
+     * @param minCoverage min share of the query terms (distinct, weighted by their IDF) a document
+     *     must contain, from 0 to 1; query terms unknown to the index count too, with the highest
+     *     IDF, so a question about something else entirely matches nothing
+     */
+    public List<Hit> search(String query, int topK, double minCoverage) {
+        Set<String> terms = new LinkedHashSet<>(Tokenizer.tokenize(query));
+        if (terms.isEmpty() || liveSize == 0 || topK <= 0) {
+            return List.of();
+        }
+
+        float averageLength = Math.max(1.0F, (float) ((double) liveTokens / liveSize));
+        Accumulator accumulator = new Accumulator();
+        double totalIdf = 0.0;
+
+        for (String token : terms) {
+            Integer term = termIds.get(token);
+            int docFrequency = term == null ? 0 : postings.docFrequency(term);
+            // frequency counts removed documents until compaction, never let it exceed N
+            float idf = idf(Math.min(docFrequency, liveSize));
+            totalIdf += idf;
+            if (docFrequency == 0) {
+                continue;
+            }
+
+            postings.forEach(
+                    term,
+                    (doc, frequency) -> {
+                        if (!removed.get(doc)) {
+                            float norm = K1 * (1.0F - B + B * docLengths[doc] / averageLength);
+                            accumulator.add(
+                                    doc, idf * frequency * (K1 + 1.0F) / (frequency + norm), idf);
+                        }
+                    });
+        }
+
+        // a little below the exact share, so float rounding never drops a document at 100%
+        float minIdf = (float) (minCoverage * totalIdf * 0.9999);
+        PriorityQueue<Hit> best =
+                new PriorityQueue<>(topK + 1, (a, b) -> Float.compare(a.score(), b.score()));
+        for (int slot = 0; slot < accumulator.docs.length; ++slot) {
+            int doc = accumulator.docs[slot];
+            if (doc == Accumulator.EMPTY || accumulator.coverage[slot] < minIdf) {
+                continue;
+            }
+            float score = accumulator.scores[slot];
+            if (best.size() < topK) {
+                best.add(new Hit(doc, score));
+            } else if (score > best.peek().score()) {
+                best.poll();
+                best.add(new Hit(doc, score));
+            }
+        }
+
+        List<Hit> sorted = new ArrayList<>(best);
+        sorted.sort((a, b) -> Float.compare(b.score(), a.score()));
+        return sorted;
+    }
+
+    /**
+     * Drops the postings of removed documents and renumbers the live ones, in the same order.
+     *
+     * @return new id of every old id, {@link #REMOVED} for a removed document
+     */
+    public int[] compact() {
+        int[] newIds = new int[size];
+        int[] compactedLengths = new int[Math.max(INITIAL_CAPACITY, liveSize)];
+        int next = 0;
+        for (int doc = 0; doc < size; ++doc) {
+            if (removed.get(doc)) {
+                newIds[doc] = REMOVED;
+            } else {
+                compactedLengths[next] = docLengths[doc];
+                newIds[doc] = next++;
+            }
+        }
+
+        Postings compacted = new Postings(termIds.size());
+        for (int term = 0; term < termIds.size(); ++term) {
+            int current = term;
+            postings.forEach(
+                    term,
+                    (doc, frequency) -> {
+                        if (newIds[doc] != REMOVED) {
+                            compacted.append(current, newIds[doc], frequency);
+                        }
+                    });
+        }
+
+        postings.release();
+        postings = compacted;
+        docLengths = compactedLengths;
+        removed.clear();
+        size = next;
+        return newIds;
+    }
+
+    /** Number of documents ever added since the last compaction, including removed ones. */
+    public int size() {
+        return size;
+    }
+
+    /** Number of documents that are not removed. */
+    public int liveSize() {
+        return liveSize;
+    }
+
+    /** Number of distinct terms ever indexed. */
+    public int terms() {
+        return termIds.size();
+    }
+
+    /** Off-heap bytes allocated for postings. */
+    public long postingsBytes() {
+        return postings.allocatedBytes();
+    }
+
+    private float idf(int docFrequency) {
+        return (float) Math.log(1.0 + (liveSize - docFrequency + 0.5) / (docFrequency + 0.5));
+    }
+
+    /** A search hit: document id and its BM25 score. */
+    public record Hit(int doc, float score) {}
+
+    @FunctionalInterface
+    private interface PostingVisitor {
+        void visit(int doc, int frequency);
+    }
+
+    /**
+     * Slab-allocated, varint-encoded postings of all terms. An address is slab * SLAB_BYTES +
+     * offset, a slice never crosses slabs. The last 4 bytes of a full slice hold the address of
+     * the next one.
+     */
+    private static final class Postings {
+
+        private static final int SLAB_SHIFT = 20;
+        private static final int SLAB_BYTES = 1 << SLAB_SHIFT;
+        private static final int MAX_SLABS = Integer.MAX_VALUE / SLAB_BYTES;
+        private static final int[] SLICE_BYTES = {16, 32, 64, 128, 256, 512, 1024, 2048, 4096};
+        private static final int LINK_BYTES = Integer.BYTES;
+
+        private ByteBuffer[] slabs = new ByteBuffer[4];
+        private int slabCount;
+        private int slabOffset = SLAB_BYTES;
+
+        // per term, indexed by term id
+        private int[] firstSlice;
+        private int[] writeAddress;
+        private int[] sliceEnd;
+        private byte[] sliceLevel;
+        private int[] docFrequencies;
+        private int[] lastDoc;
+
+        Postings(int terms) {
+            int capacity = Math.max(INITIAL_CAPACITY, terms);
+            firstSlice = new int[capacity];
+            writeAddress = new int[capacity];
+            sliceEnd = new int[capacity];
+            sliceLevel = new byte[capacity];
+            docFrequencies = new int[capacity];
+            lastDoc = new int[capacity];
+        }
+
+        /** Appends a posting, {@code doc} must be greater than the last one of the term. */
+        void append(int term, int doc, int frequency) {
+            if (term >= firstSlice.length) {
+                grow(term);
+            }
+            if (docFrequencies[term] == 0) {
+                int slice = allocate(SLICE_BYTES[0]);
+                firstSlice[term] = slice;
+                writeAddress[term] = slice;
+                sliceEnd[term] = slice + SLICE_BYTES[0] - LINK_BYTES;
+                sliceLevel[term] = 0;
+                lastDoc[term] = 0;
+            }
+
+            writeVarInt(term, doc - lastDoc[term]);
+            writeVarInt(term, frequency);
+            lastDoc[term] = doc;
+            ++docFrequencies[term];
+        }
+
+        int docFrequency(int term) {
+            return term < docFrequencies.length ? docFrequencies[term] : 0;
+        }
+
+        void forEach(int term, PostingVisitor visitor) {
+            int remaining = docFrequency(term);
+            if (remaining == 0) {
+                return;
+            }
+
+            Cursor cursor = new Cursor(firstSlice[term]);
+            int doc = 0;
+            for (; remaining > 0; --remaining) {
+                doc += readVarInt(cursor);
+                visitor.visit(doc, readVarInt(cursor));
+            }
+        }
+
+        long allocatedBytes() {
+            return (long) slabCount * SLAB_BYTES;
+        }
+
+        /** Drops the slabs, direct buffers are freed once unreachable. */
+        void release() {
+            Arrays.fill(slabs, null);
+            slabCount = 0;
+        }
+
+        private void writeVarInt(int term, int value) {
+            int remaining = value;
+            while ((remaining & ~0x7F) != 0) {
+                writeByte(term, (byte) ((remaining & 0x7F) | 0x80));
+                remaining >>>= 7;
+            }
+            writeByte(term, (byte) remaining);
+        }
+
+        private void writeByte(int term, byte value) {
+            int address = writeAddress[term];
+            if (address == sliceEnd[term]) {
+                int level = Math.min(sliceLevel[term] + 1, SLICE_BYTES.length - 1);
+                int next = allocate(SLICE_BYTES[level]);
+                slab(address).putInt(offset(address), next);
+                sliceLevel[term] = (byte) level;
+                sliceEnd[term] = next + SLICE_BYTES[level] - LINK_BYTES;
+                address = next;
+            }
+            slab(address).put(offset(address), value);
+            writeAddress[term] = address + 1;
+        }
+
+        private int readVarInt(Cursor cursor) {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte next = readByte(cursor);
+                value |= (next & 0x7F) << shift;
+                if (next >= 0) {
+                    return value;
+                }
+            }
+        }
+
+        private byte readByte(Cursor cursor) {
+            if (cursor.address == cursor.sliceEnd) {
+                int next = slab(cursor.address).getInt(offset(cursor.address));
+                cursor.level = Math.min(cursor.level + 1, SLICE_BYTES.length - 1);
+                cursor.address = next;
+                cursor.sliceEnd = next + SLICE_BYTES[cursor.level] - LINK_BYTES;
+            }
+            byte value = slab(cursor.address).get(offset(cursor.address));
+            ++cursor.address;
+            return value;
+        }
+
+        private int allocate(int bytes) {
+            if (slabOffset + bytes > SLAB_BYTES) {
+                if (slabCount == MAX_SLABS) {
+                    throw new IllegalStateException(
+                            "BM25 postings exceed " + (long) MAX_SLABS * SLAB_BYTES + " bytes");
+                }
+                if (slabCount == slabs.length) {
+                    slabs = Arrays.copyOf(slabs, slabCount * 2);
+                }
+                slabs[slabCount++] = ByteBuffer.allocateDirect(SLAB_BYTES);
+                slabOffset = 0;
+            }
+            int address = ((slabCount - 1) << SLAB_SHIFT) | slabOffset;
+            slabOffset += bytes;
+            return address;
+        }
+
+        private ByteBuffer slab(int address) {
+            return slabs[address >>> SLAB_SHIFT];
+        }
+
+        private static int offset(int address) {
+            return address & (SLAB_BYTES - 1);
+        }
+
+        private void grow(int term) {
+            int capacity = Math.max(term + 1, firstSlice.length * 2);
+            firstSlice = Arrays.copyOf(firstSlice, capacity);
+            writeAddress = Arrays.copyOf(writeAddress, capacity);
+            sliceEnd = Arrays.copyOf(sliceEnd, capacity);
+            sliceLevel = Arrays.copyOf(sliceLevel, capacity);
+            docFrequencies = Arrays.copyOf(docFrequencies, capacity);
+            lastDoc = Arrays.copyOf(lastDoc, capacity);
+        }
+
+        /** Read position in the slice chain of a term. */
+        private static final class Cursor {
+            int address;
+            int sliceEnd;
+            int level;
+
+            Cursor(int firstSlice) {
+                this.address = firstSlice;
+                this.sliceEnd = firstSlice + SLICE_BYTES[0] - LINK_BYTES;
+            }
+        }
+    }
+
+    /** Open-addressing doc id -&gt; (score, covered IDF) map, no boxing per matching document. */
+    private static final class Accumulator {
+
+        static final int EMPTY = -1;
+
+        int[] docs = newDocs(64);
+        float[] scores = new float[64];
+        float[] coverage = new float[64];
+        private int count;
+
+        void add(int doc, float score, float idf) {
+            if (2 * (count + 1) > docs.length) {
+                rehash();
+            }
+            int slot = slot(docs, doc);
+            if (docs[slot] == EMPTY) {
+                docs[slot] = doc;
+                ++count;
+            }
+            scores[slot] += score;
+            coverage[slot] += idf;
+        }
+
+        private void rehash() {
+            int[] oldDocs = docs;
+            float[] oldScores = scores;
+            float[] oldCoverage = coverage;
+
+            docs = newDocs(oldDocs.length * 2);
+            scores = new float[docs.length];
+            coverage = new float[docs.length];
+            for (int i = 0; i < oldDocs.length; ++i) {
+                if (oldDocs[i] != EMPTY) {
+                    int slot = slot(docs, oldDocs[i]);
+                    docs[slot] = oldDocs[i];
+                    scores[slot] = oldScores[i];
+                    coverage[slot] = oldCoverage[i];
+                }
+            }
+        }
+
+        private static int slot(int[] docs, int doc) {
+            int mask = docs.length - 1;
+            int hash = doc * 0x9E3779B9;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (docs[slot] != EMPTY && docs[slot] != doc) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private static int[] newDocs(int capacity) {
+            int[] docs = new int[capacity];
+            Arrays.fill(docs, EMPTY);
+            return docs;
+        }
+    }
+}
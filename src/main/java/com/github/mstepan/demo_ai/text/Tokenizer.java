@@ -0,0 +1,42 @@
+package com.github.mstepan.demo_ai.text;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Minimal, allocation-light word tokenizer shared by the local (non-LLM) text features.
+ *
+ * <p>Splits on anything that is not a letter or digit and lower-cases tokens. No stemming or stop
+ * word removal, callers decide what to do with short/common tokens.
+ */
+public final class Tokenizer {
+
+    private Tokenizer() {
+        throw new AssertionError("Can't instantiate utility-only class");
+    }
+
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+
+        int start = -1;
+        for (int i = 0; i < text.length(); ++i) {
+            if (Character.isLetterOrDigit(text.charAt(i))) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+
+        if (start >= 0) {
+            tokens.add(text.substring(start).toLowerCase(Locale.ROOT));
+        }
+        return tokens;
+    }
+}
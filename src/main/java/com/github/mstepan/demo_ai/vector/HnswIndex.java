@@ -0,0 +1,389 @@
+package com.github.mstepan.demo_ai.vector;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process approximate nearest neighbour index (HNSW, Malkov &amp; Yashunin) over cosine
+ * similarity.
+ *
+ * <p>Vectors are L2-normalized on insert and stored in a single off-heap {@link FloatBuffer}, so a
+ * large index adds almost nothing to the GC-managed heap; the graph itself is kept in primitive
+ * {@code int} arrays. Nodes are addressed by dense ids assigned on {@link #add(float[])}, callers
+ * keep their payload in a parallel structure indexed by the same id.
+ *
+ * <p>Removal is a tombstone: the node keeps routing searches but is never returned. Capacity is
+ * fixed, callers compact by rebuilding a fresh index from the live nodes.
+ *
+ * <p>Thread-safe: searches run concurrently under a read lock, inserts are serialized.
+ */
+public final class HnswIndex {
+
+    private static final int DEFAULT_M = 16;
+    private static final int DEFAULT_EF_CONSTRUCTION = 100;
+    private static final int DEFAULT_EF_SEARCH = 64;
+    private static final int MAX_LEVEL = 16;
+
+    private static final Comparator<Neighbor> BY_SIMILARITY_DESC =
+            Comparator.comparingDouble(Neighbor::similarity).reversed();
+    private static final Comparator<Neighbor> BY_SIMILARITY_ASC =
+            Comparator.comparingDouble(Neighbor::similarity);
+
+    private final int dimensions;
+    private final int capacity;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    private final double levelMultiplier;
+
+    private final FloatBuffer vectors;
+
+    /** links[node][layer] = {count, neighbour_1, ..., neighbour_max} */
+    private final int[][][] links;
+
+    private final BitSet deleted = new BitSet();
+    private final SplittableRandom random = new SplittableRandom(42L);
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int size;
+    private int liveSize;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    public HnswIndex(int dimensions, int capacity) {
+        this(dimensions, capacity, DEFAULT_M, DEFAULT_EF_CONSTRUCTION, DEFAULT_EF_SEARCH);
+    }
+
+    public HnswIndex(int dimensions, int capacity, int m, int efConstruction, int efSearch) {
+        if (dimensions <= 0 || capacity <= 0 || m < 2) {
+            throw new IllegalArgumentException(
+                    String.format(
+                            "Invalid HNSW parameters: dimensions = %d, capacity = %d, m = %d",
+                            dimensions, capacity, m));
+        }
+
+        long bytes = (long) dimensions * capacity * Float.BYTES;
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(
+                    "HNSW index too large for a single buffer: " + bytes + " bytes");
+        }
+
+        this.dimensions = dimensions;
+        this.capacity = capacity;
+        this.m = m;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.efSearch = efSearch;
+        this.levelMultiplier = 1.0 / Math.log(m);
+        this.vectors =
+                ByteBuffer.allocateDirect((int) bytes)
+                        .order(ByteOrder.nativeOrder())
+                        .asFloatBuffer();
+        this.links = new int[capacity][][];
+    }
+
+    /**
+     * Inserts a vector.
+     *
+     * @return id of the new node
+     * @throws IllegalStateException if the index is full
+     */
+    public int add(float[] vector) {
+        float[] normalized = normalize(checkDimensions(vector));
+
+        lock.writeLock().lock();
+        try {
+            if (size == capacity) {
+                throw new IllegalStateException("HNSW index is full, capacity = " + capacity);
+            }
+
+            int node = size;
+            vectors.put(node * dimensions, normalized);
+
+            int level = randomLevel();
+            links[node] = new int[level + 1][];
+            for (int layer = 0; layer <= level; ++layer) {
+                links[node][layer] = new int[maxLinks(layer) + 1];
+            }
+            ++size;
+            ++liveSize;
+
+            if (entryPoint < 0) {
+                entryPoint = node;
+                maxLevel = level;
+                return node;
+            }
+
+            int closest = entryPoint;
+            for (int layer = maxLevel; layer > level; --layer) {
+                closest = greedyClosest(normalized, closest, layer);
+            }
+
+            for (int layer = Math.min(level, maxLevel); layer >= 0; --layer) {
+                List<Neighbor> candidates =
+                        searchLayer(normalized, closest, efConstruction, layer);
+                int linksCount = Math.min(m, candidates.size());
+                for (int i = 0; i < linksCount; ++i) {
+                    int neighbour = candidates.get(i).node();
+                    addLink(node, neighbour, layer);
+                    addLink(neighbour, node, layer);
+                }
+                closest = candidates.getFirst().node();
+            }
+
+            if (level > maxLevel) {
+                maxLevel = level;
+                entryPoint = node;
+            }
+            return node;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds up to {@code k} live nodes most similar to the query.
+     *
+     * @return neighbours ordered by decreasing cosine similarity
+     */
+    public List<Neighbor> search(float[] query, int k) {
+        float[] normalized = normalize(checkDimensions(query));
+
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0 || liveSize == 0) {
+                return List.of();
+            }
+
+            int closest = entryPoint;
+            for (int layer = maxLevel; layer > 0; --layer) {
+                closest = greedyClosest(normalized, closest, layer);
+            }
+
+            List<Neighbor> found = searchLayer(normalized, closest, Math.max(efSearch, k), 0);
+
+            List<Neighbor> result = new ArrayList<>(Math.min(k, found.size()));
+            for (Neighbor neighbor : found) {
+                if (!deleted.get(neighbor.node())) {
+                    result.add(neighbor);
+                    if (result.size() == k) {
+                        break;
+                    }
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Marks a node as deleted, it won't be returned by {@link #search(float[], int)} anymore. */
+    public void remove(int node) {
+        lock.writeLock().lock();
+        try {
+            if (node >= 0 && node < size && !deleted.get(node)) {
+                deleted.set(node);
+                --liveSize;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isDeleted(int node) {
+        lock.readLock().lock();
+        try {
+            return deleted.get(node);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Copy of the (normalized) vector stored for a node. */
+    public float[] vector(int node) {
+        float[] copy = new float[dimensions];
+        lock.readLock().lock();
+        try {
+            vectors.get(node * dimensions, copy);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return copy;
+    }
+
+    public int dimensions() {
+        return dimensions;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /** Number of nodes ever added, including deleted ones. */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Number of nodes that are not deleted. */
+    public int liveSize() {
+        lock.readLock().lock();
+        try {
+            return liveSize;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int greedyClosest(float[] query, int start, int layer) {
+        int best = start;
+        float bestSimilarity = similarity(query, best);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int[] neighbours = links[best][layer];
+            for (int i = 1; i <= neighbours[0]; ++i) {
+                float sim = similarity(query, neighbours[i]);
+                if (sim > bestSimilarity) {
+                    bestSimilarity = sim;
+                    best = neighbours[i];
+                    changed = true;
+                }
+            }
+        }
+        return best;
+    }
+
+    /** Beam search within a single layer, returns at most {@code ef} nodes, best first. */
+    private List<Neighbor> searchLayer(float[] query, int start, int ef, int layer) {
+        BitSet visited = new BitSet(size);
+        PriorityQueue<Neighbor> candidates = new PriorityQueue<>(BY_SIMILARITY_DESC);
+        PriorityQueue<Neighbor> results = new PriorityQueue<>(BY_SIMILARITY_ASC);
+
+        Neighbor first = new Neighbor(start, similarity(query, start));
+        visited.set(start);
+        candidates.add(first);
+        results.add(first);
+
+        while (!candidates.isEmpty()) {
+            Neighbor current = candidates.poll();
+            if (results.size() >= ef && current.similarity() < results.peek().similarity()) {
+                break;
+            }
+
+            int[] neighbours = links[current.node()][layer];
+            for (int i = 1; i <= neighbours[0]; ++i) {
+                int next = neighbours[i];
+                if (visited.get(next)) {
+                    continue;
+                }
+                visited.set(next);
+
+                float sim = similarity(query, next);
+                if (results.size() < ef || sim > results.peek().similarity()) {
+                    Neighbor neighbor = new Neighbor(next, sim);
+                    candidates.add(neighbor);
+                    results.add(neighbor);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+
+        List<Neighbor> sorted = new ArrayList<>(results);
+        sorted.sort(BY_SIMILARITY_DESC);
+        return sorted;
+    }
+
+    private void addLink(int from, int to, int layer) {
+        int[] neighbours = links[from][layer];
+        int count = neighbours[0];
+        int maxLinks = neighbours.length - 1;
+
+        if (count < maxLinks) {
+            neighbours[count + 1] = to;
+            neighbours[0] = count + 1;
+            return;
+        }
+
+        // Overflow: keep the 'maxLinks' neighbours closest to 'from'
+        List<Neighbor> all = new ArrayList<>(maxLinks + 1);
+        for (int i = 1; i <= count; ++i) {
+            all.add(new Neighbor(neighbours[i], similarity(from, neighbours[i])));
+        }
+        all.add(new Neighbor(to, similarity(from, to)));
+        all.sort(BY_SIMILARITY_DESC);
+        for (int i = 0; i < maxLinks; ++i) {
+            neighbours[i + 1] = all.get(i).node();
+        }
+    }
+
+    private float similarity(float[] query, int node) {
+        int base = node * dimensions;
+        float dot = 0.0F;
+        for (int i = 0; i < dimensions; ++i) {
+            dot += query[i] * vectors.get(base + i);
+        }
+        return dot;
+    }
+
+    private float similarity(int first, int second) {
+        int firstBase = first * dimensions;
+        int secondBase = second * dimensions;
+        float dot = 0.0F;
+        for (int i = 0; i < dimensions; ++i) {
+            dot += vectors.get(firstBase + i) * vectors.get(secondBase + i);
+        }
+        return dot;
+    }
+
+    private int maxLinks(int layer) {
+        return layer == 0 ? 2 * m : m;
+    }
+
+    private int randomLevel() {
+        double level = -Math.log(1.0 - random.nextDouble()) * levelMultiplier;
+        return Math.min((int) level, MAX_LEVEL);
+    }
+
+    private float[] checkDimensions(float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException(
+                    String.format(
+                            "Vector has %d dimensions, index expects %d",
+                            vector.length, dimensions));
+        }
+        return vector;
+    }
+
+    private static float[] normalize(float[] vector) {
+        double sumOfSquares = 0.0;
+        for (float value : vector) {
+            sumOfSquares += value * value;
+        }
+
+        float[] normalized = vector.clone();
+        if (sumOfSquares > 0.0) {
+            float invNorm = (float) (1.0 / Math.sqrt(sumOfSquares));
+            for (int i = 0; i < normalized.length; ++i) {
+                normalized[i] *= invNorm;
+            }
+        }
+        return normalized;
+    }
+
+    /** A search hit: node id and its cosine similarity to the query. */
+    public record Neighbor(int node, float similarity) {}
+}
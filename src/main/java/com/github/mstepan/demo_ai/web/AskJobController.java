@@ -0,0 +1,125 @@
+package com.github.mstepan.demo_ai.web;
+
+import static com.github.mstepan.demo_ai.web.ChatController.API_KEY_HEADER;
+import static com.github.mstepan.demo_ai.web.ChatController.REQUEST_TIMEOUT_HEADER;
+
+import com.github.mstepan.demo_ai.domain.Question;
+import com.github.mstepan.demo_ai.service.AskJob;
+import com.github.mstepan.demo_ai.service.AskJobService;
+import com.github.mstepan.demo_ai.service.ChatProperties;
+import com.github.mstepan.demo_ai.service.EvaluationMode;
+
+import jakarta.validation.Valid;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous /ask, see {@link AskJobService}: a submission returns a job id right away, the
+ * answer is polled or awaited as a server-sent event. Neither holds a connection (or a load
+ * balancer timeout) for the whole generation.
+ */
+@RestController
+@RequestMapping("/ask/jobs")
+public class AskJobController {
+
+    /** Seconds a client should wait before polling a pending job again. */
+    private static final String POLL_AFTER_SECONDS = "1";
+
+    private final AskJobService jobService;
+    private final ChatProperties.RequestTimeout requestTimeout;
+    private final Duration eventsTimeout;
+
+    public AskJobController(AskJobService jobService, ChatProperties properties) {
+        this.jobService = jobService;
+        this.requestTimeout = properties.requestTimeout();
+        this.eventsTimeout = properties.jobs().eventsTimeout();
+    }
+
+    /**
+     * Queues a question, answers 202 with the queued job and its URL in 'Location'.
+     *
+     * @param evaluation optional override of 'app.chat.evaluation.mode'
+     * @param apiKey optional client id, the job is charged to its token budget when it runs
+     * @param timeout optional deadline of the job once it runs, same as for /ask
+     */
+    @PostMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> submit(
+            @Valid @RequestBody Question question,
+            @RequestParam(name = "evaluation", required = false) EvaluationMode evaluation,
+            @RequestHeader(name = API_KEY_HEADER, required = false) String apiKey,
+            @RequestHeader(name = REQUEST_TIMEOUT_HEADER, required = false) String timeout) {
+        AskJob job =
+                jobService.submit(
+                        question,
+                        evaluation,
+                        ChatController.clientOf(apiKey),
+                        ChatController.timeoutOf(timeout, requestTimeout));
+        return ResponseEntity.accepted()
+                .location(URI.create("/ask/jobs/" + job.id()))
+                .header(HttpHeaders.RETRY_AFTER, POLL_AFTER_SECONDS)
+                .body(job.toJson());
+    }
+
+    /** Current state of a job, with a 'Retry-After' poll hint while it's pending. */
+    @GetMapping(path = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> get(@PathVariable("id") String id) {
+        AskJob job = jobService.find(id).orElseThrow(() -> unknownJob(id));
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (!job.state().isFinished()) {
+            response.header(HttpHeaders.RETRY_AFTER, POLL_AFTER_SECONDS);
+        }
+        return response.body(job.toJson());
+    }
+
+    /**
+     * Server-sent completion of a job: a single "completed" or "failed" event with the job, sent
+     * right away for a finished job. The stream ends after the event, or without one after
+     * 'app.chat.jobs.events_timeout'; the client then reconnects or polls.
+     */
+    @GetMapping(path = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter events(@PathVariable("id") String id) {
+        CompletableFuture<AskJob> completion =
+                jobService.completion(id).orElseThrow(() -> unknownJob(id));
+
+        var emitter = new SseEmitter(eventsTimeout.toMillis());
+        emitter.onTimeout(emitter::complete);
+        completion.thenAccept(
+                job -> {
+                    try {
+                        emitter.send(
+                                SseEmitter.event()
+                                        .id(job.id())
+                                        .name(job.state().name().toLowerCase(Locale.ROOT))
+                                        .data(job.toJson(), MediaType.APPLICATION_JSON));
+                        emitter.complete();
+                    } catch (IOException | IllegalStateException ex) {
+                        // the client is gone or the stream timed out, it can poll
+                        emitter.completeWithError(ex);
+                    }
+                });
+        return emitter;
+    }
+
+    private static ResponseStatusException unknownJob(String id) {
+        return new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown job '" + id + "'");
+    }
+}
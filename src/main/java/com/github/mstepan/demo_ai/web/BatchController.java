@@ -0,0 +1,135 @@
+package com.github.mstepan.demo_ai.web;
+
+import static com.github.mstepan.demo_ai.web.ChatController.API_KEY_HEADER;
+
+import com.github.mstepan.demo_ai.service.BatchQuestionAnswerer;
+import com.github.mstepan.demo_ai.service.BatchQuestionAnswerer.BatchAnswer;
+import com.github.mstepan.demo_ai.service.BatchQuestionAnswerer.JobStatus;
+import com.github.mstepan.demo_ai.service.EvaluationMode;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Batch question answering, see {@link BatchQuestionAnswerer}.
+ *
+ * <p>Responses are written straight to the servlet response, a line per answer as soon as it's
+ * known: requests run on virtual threads, so a batch that takes hours holds no platform thread and
+ * hits no async request timeout.
+ */
+@RestController
+@RequestMapping("/ask/batch")
+public class BatchController {
+
+    private final BatchQuestionAnswerer answerer;
+
+    public BatchController(BatchQuestionAnswerer answerer) {
+        this.answerer = answerer;
+    }
+
+    /**
+     * Answers JSONL questions, one {"id": ..., "question": ...} object per line. The response is
+     * NDJSON: a line per item in completion order, with an "answer" or an "error", and a last
+     * {"summary": ...} line with the counts of the batch.
+     *
+     * @param job optional job name; its answers are stored and posting the same body again after a
+     *     disconnect asks only the questions without a stored answer
+     * @param evaluation optional override of 'app.chat.evaluation.mode' for all questions
+     * @param apiKey optional client id, the questions are charged to its token budget
+     */
+    @PostMapping(
+            consumes = {MediaType.APPLICATION_NDJSON_VALUE, "application/jsonl"},
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void askBatch(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            @RequestParam(name = "job", required = false) String job,
+            @RequestParam(name = "evaluation", required = false) EvaluationMode evaluation,
+            @RequestHeader(name = API_KEY_HEADER, required = false) String apiKey)
+            throws IOException {
+        Writer out = ndjson(response);
+        JobStatus summary;
+        try {
+            summary =
+                    answerer.answer(
+                            request.getInputStream(),
+                            job,
+                            evaluation,
+                            ChatController.clientOf(apiKey),
+                            item -> writeLine(out, item.toJson()));
+        } catch (IllegalArgumentException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage(), ex);
+        }
+        writeLine(out, "{\"summary\":" + summary.toJson() + "}");
+    }
+
+    /** Progress of a running job, or the final counts of a finished or stored one. */
+    @GetMapping(path = "/{job}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public String status(@PathVariable("job") String job) throws IOException {
+        try {
+            return answerer.status(job)
+                    .map(JobStatus::toJson)
+                    .orElseThrow(() -> unknownJob(job));
+        } catch (IllegalArgumentException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage(), ex);
+        }
+    }
+
+    /** Stored answers of a job as NDJSON, the latest one of every item. */
+    @GetMapping(path = "/{job}/results", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void results(@PathVariable("job") String job, HttpServletResponse response)
+            throws IOException {
+        List<BatchAnswer> answers;
+        try {
+            answers = answerer.storedAnswers(job).orElseThrow(() -> unknownJob(job));
+        } catch (IllegalArgumentException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage(), ex);
+        }
+
+        Writer out = ndjson(response);
+        for (BatchAnswer item : answers) {
+            out.write(item.toJson());
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    private static ResponseStatusException unknownJob(String job) {
+        return new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown job '" + job + "'");
+    }
+
+    /** The response is committed by the first flush, not before. */
+    private static Writer ndjson(HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        return new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8);
+    }
+
+    private static void writeLine(Writer out, String line) {
+        try {
+            out.write(line);
+            out.write('\n');
+            out.flush();
+        } catch (IOException ioEx) {
+            throw new UncheckedIOException(ioEx);
+        }
+    }
+}
@@ -2,32 +2,123 @@ package com.github.mstepan.demo_ai.web;
 
 import com.github.mstepan.demo_ai.domain.Answer;
 import com.github.mstepan.demo_ai.domain.Question;
+import com.github.mstepan.demo_ai.oci.Deadline;
+import com.github.mstepan.demo_ai.service.ChatProperties;
 import com.github.mstepan.demo_ai.service.ChatService;
+import com.github.mstepan.demo_ai.service.EvaluationMode;
+import com.github.mstepan.demo_ai.service.StreamRelevancyEvaluator;
+import com.github.mstepan.demo_ai.service.TokenBudget;
 
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
 import reactor.core.publisher.Flux;
 
+import java.time.Duration;
+
 import javax.validation.Valid;
 
 @RestController
 @RequestMapping("/ask")
 public class ChatController {
 
+    /** Identifies the client whose {@link TokenBudget} a request is charged to. */
+    static final String API_KEY_HEADER = "X-API-Key";
+
+    /** Time the client waits for the answer, e.g. '5s' or '1500ms', see {@link Deadline}. */
+    static final String REQUEST_TIMEOUT_HEADER = "X-Request-Timeout";
+
     private final ChatService chatService;
+    private final StreamChunkCoalescer chunkCoalescer;
+    private final StreamRelevancyEvaluator streamEvaluator;
+    private final ChatProperties.RequestTimeout requestTimeout;
 
-    public ChatController(ChatService chatService) {
+    public ChatController(
+            ChatService chatService,
+            StreamChunkCoalescer chunkCoalescer,
+            StreamRelevancyEvaluator streamEvaluator,
+            ChatProperties properties) {
         this.chatService = chatService;
+        this.chunkCoalescer = chunkCoalescer;
+        this.streamEvaluator = streamEvaluator;
+        this.requestTimeout = properties.requestTimeout();
     }
 
+    /**
+     * @param evaluation optional override of 'app.chat.evaluation.mode', e.g. BLOCKING for clients
+     *     that must never get an unvalidated answer
+     * @param apiKey optional client id, requests without one share the anonymous token budget
+     * @param timeout optional deadline of the request, defaults to
+     *     'app.chat.request_timeout.default_timeout' and is capped by 'max_timeout'
+     */
     @PostMapping(produces = MediaType.APPLICATION_JSON_VALUE)
-    public Answer ask(@Valid @RequestBody Question question) {
-        return chatService.askQuestion(question);
+    public Answer ask(
+            @Valid @RequestBody Question question,
+            @RequestParam(name = "evaluation", required = false) EvaluationMode evaluation,
+            @RequestHeader(name = API_KEY_HEADER, required = false) String apiKey,
+            @RequestHeader(name = REQUEST_TIMEOUT_HEADER, required = false) String timeout) {
+        return ScopedValue.where(TokenBudget.CLIENT, clientOf(apiKey))
+                .where(Deadline.CURRENT, deadlineOf(timeout))
+                .call(
+                        () ->
+                                evaluation == null
+                                        ? chatService.askQuestion(question)
+                                        : chatService.askQuestion(question, evaluation));
     }
 
+    /**
+     * Streams have no {@link Deadline}: the answer is delivered as it is generated and a client
+     * that gives up cancels the upstream stream by disconnecting.
+     *
+     * @param evaluate optional override of 'app.chat.stream_evaluation.enabled', when on the last
+     *     NDJSON element is the relevancy verdict of the streamed answer
+     * @param apiKey optional client id, requests without one share the anonymous token budget
+     */
     @PostMapping(path = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
-    public Flux<String> askStream(@Valid @RequestBody Question question) {
-        return chatService.askQuestionStreaming(question).map(chunk -> chunk);
+    public Flux<String> askStream(
+            @Valid @RequestBody Question question,
+            @RequestParam(name = "evaluate", required = false) Boolean evaluate,
+            @RequestHeader(name = API_KEY_HEADER, required = false) String apiKey) {
+        // The budget is charged right here, before the response is committed
+        Flux<String> answer =
+                ScopedValue.where(TokenBudget.CLIENT, clientOf(apiKey))
+                        .call(() -> chatService.askQuestionStreaming(question));
+        Flux<String> chunks = chunkCoalescer.coalesce(answer);
+
+        boolean withVerdict = evaluate != null ? evaluate : streamEvaluator.isEnabled();
+        return withVerdict ? streamEvaluator.withVerdict(question, chunks) : chunks;
+    }
+
+    private Deadline deadlineOf(String timeoutHeader) {
+        return Deadline.after(
+                timeoutOf(timeoutHeader, requestTimeout), requestTimeout.minCallTime());
+    }
+
+    /** Timeout of an 'X-Request-Timeout' header, capped by 'max_timeout'. */
+    static Duration timeoutOf(String timeoutHeader, ChatProperties.RequestTimeout requestTimeout) {
+        Duration timeout = requestTimeout.defaultTimeout();
+        if (timeoutHeader != null && !timeoutHeader.isBlank()) {
+            try {
+                timeout = DurationStyle.detectAndParse(timeoutHeader.strip());
+            } catch (IllegalArgumentException ex) {
+                throw new ResponseStatusException(
+                        HttpStatus.BAD_REQUEST, "Invalid " + REQUEST_TIMEOUT_HEADER + " header");
+            }
+            if (timeout.isNegative() || timeout.isZero()) {
+                throw new ResponseStatusException(
+                        HttpStatus.BAD_REQUEST, REQUEST_TIMEOUT_HEADER + " must be positive");
+            }
+        }
+        if (timeout.compareTo(requestTimeout.maxTimeout()) > 0) {
+            timeout = requestTimeout.maxTimeout();
+        }
+        return timeout;
+    }
+
+    static String clientOf(String apiKey) {
+        return apiKey == null || apiKey.isBlank() ? TokenBudget.ANONYMOUS : apiKey;
     }
 }
@@ -0,0 +1,83 @@
+package com.github.mstepan.demo_ai.web;
+
+import com.github.mstepan.demo_ai.domain.BulkIngestionResult;
+import com.github.mstepan.demo_ai.domain.Document;
+import com.github.mstepan.demo_ai.domain.IngestionResult;
+import com.github.mstepan.demo_ai.rag.BulkIngestor;
+import com.github.mstepan.demo_ai.rag.DocumentIngestor;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+/** Knowledge base of retrieval-augmented generation, see {@link DocumentIngestor}. */
+@RestController
+@RequestMapping("/documents")
+public class DocumentController {
+
+    private final DocumentIngestor ingestor;
+    private final BulkIngestor bulkIngestor;
+
+    public DocumentController(DocumentIngestor ingestor, BulkIngestor bulkIngestor) {
+        this.ingestor = ingestor;
+        this.bulkIngestor = bulkIngestor;
+    }
+
+    /** Ingests a document, an earlier version with the same 'source' is replaced. */
+    @PostMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public IngestionResult ingest(@Valid @RequestBody Document document) {
+        return new IngestionResult(
+                document.source(), ingestor.ingest(document.source(), document.text()));
+    }
+
+    /**
+     * Streams a large upload into the knowledge base, see {@link BulkIngestor}: JSONL (one
+     * document per line) or, with Content-Type 'text/plain', the text of one document.
+     *
+     * @param source id of a text/plain document, ignored for JSONL
+     * @param job optional job name; a failed job resumes from its checkpoint when the same body is
+     *     posted again
+     */
+    @PostMapping(
+            path = "/bulk",
+            consumes = {
+                MediaType.APPLICATION_NDJSON_VALUE,
+                "application/jsonl",
+                MediaType.TEXT_PLAIN_VALUE
+            },
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public BulkIngestionResult bulkIngest(
+            HttpServletRequest request,
+            @RequestParam(name = "source", required = false) String source,
+            @RequestParam(name = "job", required = false) String job)
+            throws IOException {
+        MediaType contentType = MediaType.parseMediaType(request.getContentType());
+        BulkIngestor.Format format =
+                MediaType.TEXT_PLAIN.isCompatibleWith(contentType)
+                        ? BulkIngestor.Format.TEXT
+                        : BulkIngestor.Format.JSONL;
+        try {
+            return bulkIngestor.ingest(
+                    Channels.newChannel(request.getInputStream()), format, source, job);
+        } catch (IllegalArgumentException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage(), ex);
+        }
+    }
+
+    @DeleteMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public IngestionResult delete(@RequestParam("source") String source) {
+        return new IngestionResult(source, ingestor.delete(source));
+    }
+}
@@ -1,8 +1,18 @@
 package com.github.mstepan.demo_ai.web;
 
+import com.github.mstepan.demo_ai.oci.CircuitBreakerOpenException;
+import com.github.mstepan.demo_ai.oci.ConcurrencyLimitExceededException;
+import com.github.mstepan.demo_ai.oci.DeadlineExceededException;
+import com.github.mstepan.demo_ai.oci.OCIGenAiException;
+import com.github.mstepan.demo_ai.oci.OCIGenAiUnavailableException;
+import com.github.mstepan.demo_ai.service.AskJobQueueFullException;
+import com.github.mstepan.demo_ai.service.TokenBudgetExceededException;
+
 import org.springframework.context.MessageSourceResolvable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
@@ -16,6 +26,8 @@ import java.net.URI;
 @RestControllerAdvice
 public class ExceptionHandlerAdvice {
 
+    private static final String RETRY_AFTER_SECONDS = "1";
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ProblemDetail handleValidationExceptions(MethodArgumentNotValidException ex) {
 
@@ -32,4 +44,127 @@ public class ExceptionHandlerAdvice {
         problemDetail.setProperty("invalid-params", validationMessages);
         return problemDetail;
     }
+
+    /**
+     * Outbound OCI calls are at their concurrency limit and the request couldn't get a permit in
+     * time: fail fast with 503 and let the client retry shortly.
+     */
+    @ExceptionHandler(ConcurrencyLimitExceededException.class)
+    public ResponseEntity<ProblemDetail> handleConcurrencyLimitExceeded(
+            ConcurrencyLimitExceededException ex) {
+
+        var problemDetail =
+                ProblemDetail.forStatusAndDetail(
+                        HttpStatus.SERVICE_UNAVAILABLE,
+                        "Too many concurrent requests, retry later");
+
+        problemDetail.setType(URI.create("demo-ai:overloaded"));
+        problemDetail.setProperty("concurrency-limit", ex.limit());
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                .body(problemDetail);
+    }
+
+    /** Too many asynchronous /ask jobs are pending: reject the submission with 503. */
+    @ExceptionHandler(AskJobQueueFullException.class)
+    public ResponseEntity<ProblemDetail> handleAskJobQueueFull(AskJobQueueFullException ex) {
+
+        var problemDetail =
+                ProblemDetail.forStatusAndDetail(
+                        HttpStatus.SERVICE_UNAVAILABLE, "Too many pending jobs, retry later");
+
+        problemDetail.setType(URI.create("demo-ai:overloaded"));
+        problemDetail.setProperty("max-pending", ex.maxPending());
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                .body(problemDetail);
+    }
+
+    /**
+     * The client's or the model's token budget can't cover the request: reject it with 429 before
+     * anything is sent to OCI, Retry-After tells when the budget would cover it.
+     */
+    @ExceptionHandler(TokenBudgetExceededException.class)
+    public ResponseEntity<ProblemDetail> handleTokenBudgetExceeded(
+            TokenBudgetExceededException ex) {
+
+        var problemDetail =
+                ProblemDetail.forStatusAndDetail(
+                        HttpStatus.TOO_MANY_REQUESTS, "Token budget exhausted, retry later");
+
+        problemDetail.setType(URI.create("demo-ai:rate-limited"));
+        problemDetail.setProperty("budget", ex.scope());
+
+        // rounded up, a zero Retry-After would invite an immediate retry
+        long retryAfterSeconds = ex.retryAfter().toSeconds() + 1L;
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(problemDetail);
+    }
+
+    /**
+     * OCI recently failed too often and the circuit breaker is open: fail fast with 503 until the
+     * breaker lets trial calls through again.
+     */
+    @ExceptionHandler(CircuitBreakerOpenException.class)
+    public ResponseEntity<ProblemDetail> handleCircuitBreakerOpen(CircuitBreakerOpenException ex) {
+
+        var problemDetail =
+                ProblemDetail.forStatusAndDetail(
+                        HttpStatus.SERVICE_UNAVAILABLE, "OCI GenAI is unavailable, retry later");
+
+        problemDetail.setType(URI.create("demo-ai:upstream-unavailable"));
+
+        long retryAfterSeconds = ex.retryAfter().toSeconds() + 1L;
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(problemDetail);
+    }
+
+    /** OCI still failed transiently (timeout, 429, 5xx) after all retries. */
+    @ExceptionHandler(OCIGenAiUnavailableException.class)
+    public ResponseEntity<ProblemDetail> handleOCIGenAiUnavailable(
+            OCIGenAiUnavailableException ex) {
+
+        var problemDetail =
+                ProblemDetail.forStatusAndDetail(
+                        HttpStatus.SERVICE_UNAVAILABLE, "OCI GenAI is unavailable, retry later");
+
+        problemDetail.setType(URI.create("demo-ai:upstream-unavailable"));
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                .body(problemDetail);
+    }
+
+    /** OCI rejected the call, retrying it won't help. */
+    @ExceptionHandler(OCIGenAiException.class)
+    public ProblemDetail handleOCIGenAiException(OCIGenAiException ex) {
+
+        var problemDetail =
+                ProblemDetail.forStatusAndDetail(HttpStatus.BAD_GATEWAY, "OCI GenAI call failed");
+
+        problemDetail.setType(URI.create("demo-ai:upstream-error"));
+        if (ex.statusCode() != OCIGenAiException.NO_STATUS) {
+            problemDetail.setProperty("upstream-status", ex.statusCode());
+        }
+        return problemDetail;
+    }
+
+    /**
+     * The request's deadline passed, or left too little time for the next OCI call: the client
+     * has most likely given up already, answer with 504 right away.
+     */
+    @ExceptionHandler(DeadlineExceededException.class)
+    public ProblemDetail handleDeadlineExceeded(DeadlineExceededException ex) {
+
+        var problemDetail =
+                ProblemDetail.forStatusAndDetail(
+                        HttpStatus.GATEWAY_TIMEOUT, "Request deadline exceeded");
+
+        problemDetail.setType(URI.create("demo-ai:deadline-exceeded"));
+        return problemDetail;
+    }
 }
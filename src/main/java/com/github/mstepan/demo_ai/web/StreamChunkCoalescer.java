@@ -0,0 +1,271 @@
+package com.github.mstepan.demo_ai.web;
+
+import com.github.mstepan.demo_ai.service.ChatProperties;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.reactivestreams.Subscription;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Batches streamed answer deltas before they are written to the client, so a stream of one- or
+ * two-token deltas turns into far fewer NDJSON elements, servlet writes and flushes.
+ *
+ * <p>The first delta is passed through immediately to keep time-to-first-token low. After that
+ * deltas are accumulated and flushed once 'app.chat.stream_batching.max_bytes' (UTF-8) are
+ * pending or 'max_delay' has passed since the first pending delta, whichever comes first.
+ *
+ * <p>Backpressure: a batch is only emitted when the client has demand. While it has none, deltas
+ * keep accumulating until 'max_bytes' are pending, then no more are requested upstream.
+ *
+ * <p>Metrics (Prometheus/Micrometer):
+ *
+ * <ul>
+ *   <li>app_stream_flushes_total (Counter): emitted batches, trigger in
+ *       {"first","size","time","complete"}
+ *   <li>app_stream_batch_bytes (DistributionSummary): size of emitted batches in UTF-8 bytes
+ * </ul>
+ */
+@Component
+public class StreamChunkCoalescer {
+
+    private final boolean enabled;
+    private final int maxBytes;
+    private final long maxDelayNanos;
+    private final Scheduler scheduler;
+
+    private final Counter firstFlushes;
+    private final Counter sizeFlushes;
+    private final Counter timeFlushes;
+    private final Counter completeFlushes;
+    private final DistributionSummary batchBytes;
+
+    @Autowired
+    public StreamChunkCoalescer(ChatProperties properties, MeterRegistry meterRegistry) {
+        this(properties.streamBatching(), meterRegistry);
+    }
+
+    public StreamChunkCoalescer(
+            ChatProperties.StreamBatching settings, MeterRegistry meterRegistry) {
+        this.enabled = Boolean.TRUE.equals(settings.enabled());
+        this.maxBytes = settings.maxBytes();
+        this.maxDelayNanos = settings.maxDelay().toNanos();
+        this.scheduler = Schedulers.parallel();
+
+        this.firstFlushes = meterRegistry.counter("app_stream_flushes_total", "trigger", "first");
+        this.sizeFlushes = meterRegistry.counter("app_stream_flushes_total", "trigger", "size");
+        this.timeFlushes = meterRegistry.counter("app_stream_flushes_total", "trigger", "time");
+        this.completeFlushes =
+                meterRegistry.counter("app_stream_flushes_total", "trigger", "complete");
+        this.batchBytes =
+                DistributionSummary.builder("app_stream_batch_bytes")
+                        .baseUnit("bytes")
+                        .register(meterRegistry);
+    }
+
+    public Flux<String> coalesce(Flux<String> chunks) {
+        if (!enabled) {
+            return chunks;
+        }
+        return Flux.create(sink -> new Batcher(sink).start(chunks));
+    }
+
+    /**
+     * Per-stream state. All state changes happen under the monitor, while emission, upstream
+     * requests and termination are serialized by the {@link #drain()} loop, so a synchronous
+     * upstream can't recurse into it.
+     */
+    private final class Batcher extends BaseSubscriber<String> {
+
+        private final FluxSink<String> sink;
+        private final AtomicInteger wip = new AtomicInteger();
+
+        private final StringBuilder pending = new StringBuilder();
+        private int pendingBytes;
+        private Counter flushTrigger;
+        private boolean firstEmitted;
+
+        private boolean upstreamRequested;
+        private boolean upstreamDone;
+        private Throwable upstreamError;
+        private boolean terminated;
+
+        private Disposable timer;
+
+        Batcher(FluxSink<String> sink) {
+            this.sink = sink;
+        }
+
+        void start(Flux<String> chunks) {
+            sink.onRequest(ignored -> drain());
+            sink.onCancel(this::stop);
+            chunks.subscribe(this);
+        }
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+            drain();
+        }
+
+        @Override
+        protected void hookOnNext(String chunk) {
+            synchronized (this) {
+                upstreamRequested = false;
+                pending.append(chunk);
+                pendingBytes += utf8Length(chunk);
+
+                if (!firstEmitted) {
+                    flushTrigger = firstFlushes;
+                } else if (pendingBytes >= maxBytes) {
+                    flushTrigger = sizeFlushes;
+                } else if (timer == null && flushTrigger == null) {
+                    timer = scheduler.schedule(this::onTimer, maxDelayNanos, TimeUnit.NANOSECONDS);
+                }
+            }
+            drain();
+        }
+
+        @Override
+        protected void hookOnComplete() {
+            synchronized (this) {
+                upstreamDone = true;
+            }
+            drain();
+        }
+
+        @Override
+        protected void hookOnError(Throwable throwable) {
+            synchronized (this) {
+                upstreamDone = true;
+                upstreamError = throwable;
+            }
+            drain();
+        }
+
+        private void onTimer() {
+            synchronized (this) {
+                timer = null;
+                if (flushTrigger == null && !pending.isEmpty()) {
+                    flushTrigger = timeFlushes;
+                }
+            }
+            drain();
+        }
+
+        private void stop() {
+            synchronized (this) {
+                terminated = true;
+                cancelTimer();
+            }
+            cancel();
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+
+            int missed = 1;
+            do {
+                drainOnce();
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drainOnce() {
+            String batch = null;
+            Counter trigger = null;
+            boolean complete = false;
+            Throwable error = null;
+            boolean requestMore = false;
+
+            synchronized (this) {
+                if (terminated) {
+                    return;
+                }
+
+                if (upstreamDone && flushTrigger == null && !pending.isEmpty()) {
+                    flushTrigger = completeFlushes;
+                }
+
+                if (flushTrigger != null
+                        && !pending.isEmpty()
+                        && sink.requestedFromDownstream() > 0L) {
+                    batch = pending.toString();
+                    trigger = flushTrigger;
+                    batchBytes.record(pendingBytes);
+
+                    pending.setLength(0);
+                    pendingBytes = 0;
+                    flushTrigger = null;
+                    firstEmitted = true;
+                    cancelTimer();
+                }
+
+                if (upstreamDone && pending.isEmpty()) {
+                    terminated = true;
+                    complete = upstreamError == null;
+                    error = upstreamError;
+                    cancelTimer();
+                } else if (!upstreamDone
+                        && !upstreamRequested
+                        && flushTrigger == null
+                        && pendingBytes < maxBytes) {
+                    upstreamRequested = true;
+                    requestMore = true;
+                }
+            }
+
+            if (batch != null) {
+                trigger.increment();
+                sink.next(batch);
+            }
+            if (complete) {
+                sink.complete();
+            } else if (error != null) {
+                sink.error(error);
+            }
+            if (requestMore) {
+                request(1);
+            }
+        }
+
+        /** Must be called under the monitor. */
+        private void cancelTimer() {
+            if (timer != null) {
+                timer.dispose();
+                timer = null;
+            }
+        }
+    }
+
+    static int utf8Length(CharSequence text) {
+        int bytes = 0;
+        for (int i = 0; i < text.length(); ++i) {
+            char ch = text.charAt(i);
+            if (ch < 0x80) {
+                bytes += 1;
+            } else if (ch < 0x800) {
+                bytes += 2;
+            } else if (Character.isSurrogate(ch)) {
+                bytes += 2; // a surrogate pair is 4 bytes in total
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.mstepan.demo_ai.embedding;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.data.Offset.offset;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+class HashingEmbedderTest {
+
+    private final HashingEmbedder embedder = new HashingEmbedder(384);
+
+    @Test
+    void vectorHasConfiguredDimensions() {
+        assertThat(embedder.dimensions()).isEqualTo(384);
+        assertThat(embedder.embed("Why is the sky blue?")).hasSize(384);
+    }
+
+    @Test
+    void sameTextGetsSameVector() {
+        assertThat(new HashingEmbedder(384).embed("Why is the sky blue?"))
+                .isEqualTo(embedder.embed("Why is the sky blue?"));
+    }
+
+    @Test
+    void vectorIsNormalized() {
+        assertThat(norm(embedder.embed("What is the capital city of France?")))
+                .isCloseTo(1.0, offset(1e-5));
+    }
+
+    @Test
+    void textWithoutWordsGetsZeroVector() {
+        assertThat(embedder.embed("")).containsOnly(0.0F);
+    }
+
+    @Test
+    void paraphraseIsCloserThanUnrelatedText() {
+        float[] question = embedder.embed("What is the capital city of France?");
+
+        double paraphrase = dot(question, embedder.embed("what's the capital of France"));
+        double unrelated = dot(question, embedder.embed("How do I bake sourdough bread?"));
+
+        assertThat(paraphrase).isGreaterThan(unrelated);
+    }
+
+    @Test
+    void embedAllKeepsTheOrderOfTheTexts() {
+        List<float[]> vectors = embedder.embedAll(List.of("first text", "second text"));
+
+        assertThat(vectors).hasSize(2);
+        assertThat(vectors.get(0)).isEqualTo(embedder.embed("first text"));
+        assertThat(vectors.get(1)).isEqualTo(embedder.embed("second text"));
+        assertThat(embedder.maxBatchSize()).isEqualTo(Integer.MAX_VALUE);
+    }
+
+    private static double dot(float[] left, float[] right) {
+        double sum = 0.0;
+        for (int i = 0; i < left.length; ++i) {
+            sum += left[i] * right[i];
+        }
+        return sum;
+    }
+
+    private static double norm(float[] vector) {
+        return Math.sqrt(dot(vector, vector));
+    }
+}
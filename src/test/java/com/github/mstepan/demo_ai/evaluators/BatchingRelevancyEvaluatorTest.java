@@ -0,0 +1,192 @@
+package com.github.mstepan.demo_ai.evaluators;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.github.mstepan.demo_ai.domain.BatchEvaluationResult;
+import com.github.mstepan.demo_ai.prompts.PromptProperties;
+import com.github.mstepan.demo_ai.prompts.PromptTemplateRegistry;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.evaluation.EvaluationRequest;
+import org.springframework.ai.evaluation.EvaluationResponse;
+import org.springframework.ai.evaluation.Evaluator;
+import org.springframework.core.ParameterizedTypeReference;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+class BatchingRelevancyEvaluatorTest {
+
+    private final ChatClient.Builder injectedBuilder = mock(ChatClient.Builder.class);
+    private final ChatClient.Builder clonedBuilder = mock(ChatClient.Builder.class);
+    private final ChatClient chatClient = mock(ChatClient.class, RETURNS_DEEP_STUBS);
+    private final Evaluator singleEvaluator = mock(Evaluator.class);
+
+    private PromptTemplateRegistry prompts;
+    private SimpleMeterRegistry meterRegistry;
+    private BatchingRelevancyEvaluator evaluator;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        prompts = new PromptTemplateRegistry(new PromptProperties(null), meterRegistry);
+
+        when(injectedBuilder.clone()).thenReturn(clonedBuilder);
+        when(clonedBuilder.defaultSystem(anyString())).thenReturn(clonedBuilder);
+        when(clonedBuilder.build()).thenReturn(chatClient);
+
+        when(singleEvaluator.evaluate(any()))
+                .thenReturn(new EvaluationResponse(true, 1.0F, "", Collections.emptyMap()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (evaluator != null) {
+            evaluator.destroy();
+        }
+    }
+
+    @Test
+    void fullBatchIsJudgedWithOneCall() throws Exception {
+        evaluator = evaluator(true, 3, Duration.ofSeconds(30), true);
+        replyWith(
+                List.of(
+                        new BatchEvaluationResult(2, true),
+                        new BatchEvaluationResult(0, true),
+                        new BatchEvaluationResult(1, false)));
+
+        var paris = evaluator.evaluateAsync(new EvaluationRequest("Capital of France?", "Paris."));
+        var pizza = evaluator.evaluateAsync(new EvaluationRequest("Why is sky blue?", "Pizza."));
+        var blue = evaluator.evaluateAsync(new EvaluationRequest("Why is sky blue?", "Rayleigh."));
+
+        assertThat(verdict(paris).isPass()).isTrue();
+        assertThat(verdict(pizza).isPass()).isFalse();
+        assertThat(verdict(blue).isPass()).isTrue();
+
+        verify(chatClient.prompt().user(anyString()).call(), times(1))
+                .entity(any(ParameterizedTypeReference.class));
+
+        ArgumentCaptor<String> userText = ArgumentCaptor.forClass(String.class);
+        verify(chatClient.prompt(), atLeastOnce()).user(userText.capture());
+        assertThat(userText.getAllValues())
+                .anySatisfy(
+                        text ->
+                                assertThat(text)
+                                        .contains(
+                                                "{\"id\":1,\"question\":\"Why is sky blue?\","
+                                                        + "\"answer\":\"Pizza.\"}"));
+        verify(singleEvaluator, never()).evaluate(any());
+        assertThat(meterRegistry.get("app_evaluator_batch_size").summary().mean()).isEqualTo(3.0);
+    }
+
+    @Test
+    void partialBatchIsSentAfterMaxWait() throws Exception {
+        evaluator = evaluator(true, 16, Duration.ofMillis(20), true);
+        replyWith(List.of(new BatchEvaluationResult(0, false), new BatchEvaluationResult(1, true)));
+
+        var first = evaluator.evaluateAsync(new EvaluationRequest("Why?", "Pizza."));
+        var second = evaluator.evaluateAsync(new EvaluationRequest("Why?", "Because."));
+
+        assertThat(verdict(first).isPass()).isFalse();
+        assertThat(verdict(second).isPass()).isTrue();
+        assertThat(batches("success")).isEqualTo(1.0);
+    }
+
+    @Test
+    void unparsableReplyFallsBackToSingleEvaluations() throws Exception {
+        evaluator = evaluator(true, 2, Duration.ofSeconds(30), true);
+        when(chatClient
+                        .prompt()
+                        .user(anyString())
+                        .call()
+                        .entity(any(ParameterizedTypeReference.class)))
+                .thenThrow(new IllegalStateException("not JSON"));
+
+        var first = evaluator.evaluateAsync(new EvaluationRequest("Why?", "Because."));
+        var second = evaluator.evaluateAsync(new EvaluationRequest("How?", "Somehow."));
+
+        assertThat(verdict(first).isPass()).isTrue();
+        assertThat(verdict(second).isPass()).isTrue();
+        verify(singleEvaluator, times(2)).evaluate(any());
+        assertThat(batches("fallback")).isEqualTo(1.0);
+    }
+
+    @Test
+    void missingVerdictFailsOnlyThatCallerWithoutFallback() throws Exception {
+        evaluator = evaluator(true, 2, Duration.ofSeconds(30), false);
+        replyWith(List.of(new BatchEvaluationResult(0, true)));
+
+        var first = evaluator.evaluateAsync(new EvaluationRequest("Why?", "Because."));
+        var second = evaluator.evaluateAsync(new EvaluationRequest("How?", "Somehow."));
+
+        assertThat(verdict(first).isPass()).isTrue();
+        assertThatThrownBy(() -> verdict(second))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+        verify(singleEvaluator, never()).evaluate(any());
+        assertThat(batches("failure")).isEqualTo(1.0);
+    }
+
+    @Test
+    void disabledBatchingDelegatesToSingleEvaluator() {
+        evaluator = evaluator(false, 16, Duration.ofMillis(10), true);
+
+        var response = evaluator.evaluate(new EvaluationRequest("Why?", "Because."));
+
+        assertThat(response.isPass()).isTrue();
+        verify(singleEvaluator, times(1)).evaluate(any());
+    }
+
+    private BatchingRelevancyEvaluator evaluator(
+            boolean enabled, int maxBatchSize, Duration maxWait, boolean fallbackToSingle) {
+        return new BatchingRelevancyEvaluator(
+                injectedBuilder,
+                prompts,
+                singleEvaluator,
+                new EvaluationProperties.Batching(enabled, maxBatchSize, maxWait, fallbackToSingle),
+                meterRegistry);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void replyWith(List<BatchEvaluationResult> verdicts) {
+        when(chatClient
+                        .prompt()
+                        .user(anyString())
+                        .call()
+                        .entity(any(ParameterizedTypeReference.class)))
+                .thenReturn(verdicts);
+    }
+
+    private static EvaluationResponse verdict(CompletableFuture<EvaluationResponse> future)
+            throws Exception {
+        return future.get(5, TimeUnit.SECONDS);
+    }
+
+    private double batches(String result) {
+        return meterRegistry
+                .get("app_evaluator_batch_total")
+                .tag("result", result)
+                .counter()
+                .count();
+    }
+}
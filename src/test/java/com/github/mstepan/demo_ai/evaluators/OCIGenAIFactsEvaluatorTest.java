@@ -0,0 +1,85 @@
+package com.github.mstepan.demo_ai.evaluators;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.github.mstepan.demo_ai.domain.EvaluationResult;
+import com.github.mstepan.demo_ai.embedding.HashingEmbedder;
+import com.github.mstepan.demo_ai.prompts.PromptProperties;
+import com.github.mstepan.demo_ai.prompts.PromptTemplateRegistry;
+import com.github.mstepan.demo_ai.rag.DocumentIngestor;
+import com.github.mstepan.demo_ai.rag.DocumentRetriever;
+import com.github.mstepan.demo_ai.rag.InMemoryDocumentStore;
+import com.github.mstepan.demo_ai.rag.RagProperties;
+import com.github.mstepan.demo_ai.rag.TextChunker;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.evaluation.EvaluationRequest;
+
+class OCIGenAIFactsEvaluatorTest {
+
+    private final ChatClient.Builder builder = mock(ChatClient.Builder.class);
+    private final ChatClient chatClient = mock(ChatClient.class, RETURNS_DEEP_STUBS);
+
+    private DocumentIngestor ingestor;
+    private OCIGenAIFactsEvaluator evaluator;
+
+    @BeforeEach
+    void setUp() {
+        when(builder.clone()).thenReturn(builder);
+        when(builder.defaultSystem(anyString())).thenReturn(builder);
+        when(builder.build()).thenReturn(chatClient);
+
+        var embedder = new HashingEmbedder(384);
+        var store = new InMemoryDocumentStore(64);
+        ingestor =
+                new DocumentIngestor(
+                        new TextChunker(200, 0), 16, embedder, store, new SimpleMeterRegistry());
+        var retriever =
+                new DocumentRetriever(
+                        true,
+                        new RagProperties.Retrieval(
+                                4, 0.25, 6000, new RagProperties.Hybrid(true, 20, 60, 0.3)),
+                        embedder,
+                        store,
+                        new SimpleMeterRegistry());
+
+        evaluator =
+                new OCIGenAIFactsEvaluator(
+                        builder,
+                        new PromptTemplateRegistry(
+                                new PromptProperties(null), new SimpleMeterRegistry()),
+                        retriever);
+    }
+
+    @Test
+    void claimIsJudgedAgainstRetrievedChunks() {
+        ingestor.ingest("pirates", "Captain Krael, called The Kraken, sank three navy ships.");
+        when(chatClient.prompt().user(anyString()).call().entity(EvaluationResult.class))
+                .thenReturn(new EvaluationResult(true));
+
+        var response = evaluator.evaluate(new EvaluationRequest("Captain Krael sank ships", ""));
+
+        assertThat(response.isPass()).isTrue();
+        verify(chatClient.prompt()).user(contains("Captain Krael, called The Kraken"));
+    }
+
+    @Test
+    void claimWithoutDocumentFailsWithoutCallingTheModel() {
+        var response = evaluator.evaluate(new EvaluationRequest("Captain Krael sank ships", ""));
+
+        assertThat(response.isPass()).isFalse();
+        assertThat(response.getFeedback()).isEqualTo(OCIGenAIFactsEvaluator.NO_DOCUMENT_REASON);
+        verify(chatClient.prompt(), never()).user(anyString());
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.mstepan.demo_ai.evaluators;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.github.mstepan.demo_ai.domain.EvaluationResult;
+import com.github.mstepan.demo_ai.prompts.PromptProperties;
+import com.github.mstepan.demo_ai.prompts.PromptTemplateRegistry;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.evaluation.EvaluationRequest;
+
+class OCIGenAIRelevancyEvaluatorTest {
+
+    private final ChatClient.Builder injectedBuilder = mock(ChatClient.Builder.class);
+    private final ChatClient.Builder clonedBuilder = mock(ChatClient.Builder.class);
+    private final ChatClient chatClient = mock(ChatClient.class, RETURNS_DEEP_STUBS);
+
+    private PromptTemplateRegistry prompts;
+
+    @BeforeEach
+    void setUp() {
+        prompts = new PromptTemplateRegistry(new PromptProperties(null), new SimpleMeterRegistry());
+
+        when(injectedBuilder.clone()).thenReturn(clonedBuilder);
+        when(clonedBuilder.defaultSystem(anyString())).thenReturn(clonedBuilder);
+        when(clonedBuilder.build()).thenReturn(chatClient);
+    }
+
+    @Test
+    void chatClientIsBuiltOnceWithTheSystemPromptBound() {
+        when(chatClient.prompt().user(anyString()).call().entity(EvaluationResult.class))
+                .thenReturn(new EvaluationResult(true), new EvaluationResult(false));
+
+        var evaluator = new OCIGenAIRelevancyEvaluator(injectedBuilder, prompts);
+
+        var first = evaluator.evaluate(new EvaluationRequest("Why?", "Because."));
+        var second = evaluator.evaluate(new EvaluationRequest("Why?", "Pizza."));
+
+        assertThat(first.isPass()).isTrue();
+        assertThat(first.getScore()).isEqualTo(1.0F);
+        assertThat(second.isPass()).isFalse();
+        assertThat(second.getScore()).isEqualTo(0.0F);
+
+        verify(injectedBuilder, times(1)).clone();
+        verify(clonedBuilder, times(1))
+                .defaultSystem(prompts.get(OCIGenAIRelevancyEvaluator.SYSTEM_PROMPT).text());
+        verify(clonedBuilder, times(1)).build();
+    }
+}
@@ -0,0 +1,119 @@
+package com.github.mstepan.demo_ai.evaluators;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import com.github.mstepan.demo_ai.embedding.HashingEmbedder;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.evaluation.EvaluationRequest;
+import org.springframework.ai.evaluation.EvaluationResponse;
+import org.springframework.ai.evaluation.Evaluator;
+
+import java.util.Collections;
+
+class TieredRelevancyEvaluatorTest {
+
+    private final Evaluator judge = mock(Evaluator.class);
+
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        when(judge.evaluate(any(EvaluationRequest.class)))
+                .thenReturn(new EvaluationResponse(true, 1.0F, "", Collections.emptyMap()));
+    }
+
+    @Test
+    void clearlyOnTopicAnswerIsAcceptedLocally() {
+        var evaluator = evaluator(true);
+
+        var response =
+                evaluator.evaluate(
+                        new EvaluationRequest(
+                                "What is the capital of France?",
+                                "The capital of France is Paris."));
+
+        assertThat(response.isPass()).isTrue();
+        assertThat(tierCount("local", "pass")).isEqualTo(1.0);
+        verifyNoInteractions(judge);
+    }
+
+    @Test
+    void blankOrUnrelatedAnswerIsRejectedLocally() {
+        var evaluator = evaluator(true);
+
+        assertThat(evaluator.evaluate(new EvaluationRequest("Capital of France?", " ")).isPass())
+                .isFalse();
+        assertThat(
+                        evaluator
+                                .evaluate(
+                                        new EvaluationRequest(
+                                                "What is the capital of France?",
+                                                "Bananas grow quickly in tropical climates."))
+                                .isPass())
+                .isFalse();
+
+        assertThat(tierCount("local", "fail")).isEqualTo(2.0);
+        verifyNoInteractions(judge);
+    }
+
+    @Test
+    void uncertainAnswersGoToTheJudge() {
+        var evaluator = evaluator(true);
+        var partialOverlap =
+                new EvaluationRequest(
+                        "Why is the sky blue?",
+                        "Rayleigh scattering makes the daytime sky look that way.");
+        var noSharedWords =
+                new EvaluationRequest(
+                        "Why is the sky blue?",
+                        "Rayleigh scattering affects shorter wavelengths of sunlight more.");
+
+        assertThat(evaluator.evaluate(partialOverlap).isPass()).isTrue();
+        assertThat(evaluator.evaluate(noSharedWords).isPass()).isTrue();
+
+        verify(judge).evaluate(partialOverlap);
+        verify(judge).evaluate(noSharedWords);
+        assertThat(tierCount("llm", "pass")).isEqualTo(2.0);
+    }
+
+    @Test
+    void disabledPreFilterAlwaysAsksTheJudge() {
+        var evaluator = evaluator(false);
+        var request =
+                new EvaluationRequest(
+                        "What is the capital of France?", "The capital of France is Paris.");
+
+        evaluator.evaluate(request);
+
+        verify(judge).evaluate(request);
+        assertThat(tierCount("local", "pass")).isZero();
+    }
+
+    private TieredRelevancyEvaluator evaluator(boolean enabled) {
+        return new TieredRelevancyEvaluator(
+                judge,
+                new EvaluationProperties.PreFilter(enabled, 0.6, 0.5, 0.0),
+                new HashingEmbedder(384),
+                meterRegistry);
+    }
+
+    private double tierCount(String tier, String outcome) {
+        return meterRegistry
+                .get("app_evaluator_tier_total")
+                .tag("tier", tier)
+                .tag("outcome", outcome)
+                .counter()
+                .count();
+    }
+}
@@ -36,7 +36,7 @@ class ObservabilityRetryMetricsWireMockTest {
 
     @org.springframework.boot.test.context.TestConfiguration
     public static class OverrideEvaluatorConfig {
-        @org.springframework.context.annotation.Bean(name = "ociGenAIRelevancyEvaluator")
+        @org.springframework.context.annotation.Bean(name = "relevancyEvaluator")
         @org.springframework.context.annotation.Primary
         public org.springframework.ai.evaluation.Evaluator evaluatorOverride() {
             return request ->
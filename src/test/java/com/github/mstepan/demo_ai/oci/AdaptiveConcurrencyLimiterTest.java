@@ -0,0 +1,188 @@
+package com.github.mstepan.demo_ai.oci;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.oracle.bmc.model.BmcException;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void callerBeyondLimitIsRejectedAfterQueueTimeout() {
+        var limiter = newLimiter(1, 1, 4, Duration.ofSeconds(30), 8, Duration.ofMillis(20));
+
+        try (var ignored = limiter.acquire()) {
+            assertThatThrownBy(limiter::acquire)
+                    .isInstanceOf(ConcurrencyLimitExceededException.class)
+                    .hasMessageContaining("No OCI call permit within 20 ms");
+        }
+
+        assertThat(rejected("queue_timeout")).isEqualTo(1.0);
+        assertThat(limiter.inFlight()).isZero();
+    }
+
+    @Test
+    void callerIsRejectedRightAwayWhenQueueIsFull() {
+        var limiter = newLimiter(1, 1, 4, Duration.ofSeconds(30), 0, Duration.ofSeconds(10));
+
+        try (var ignored = limiter.acquire()) {
+            assertThatThrownBy(limiter::acquire)
+                    .isInstanceOf(ConcurrencyLimitExceededException.class)
+                    .hasMessageContaining("Too many concurrent OCI calls");
+        }
+
+        assertThat(rejected("queue_full")).isEqualTo(1.0);
+    }
+
+    @Test
+    void queuedCallerGetsPermitOnceOneIsReleased() throws Exception {
+        var limiter = newLimiter(1, 1, 1, Duration.ofSeconds(30), 8, Duration.ofSeconds(5));
+
+        var holder = limiter.acquire();
+        CompletableFuture<AdaptiveConcurrencyLimiter.Permit> waiter =
+                CompletableFuture.supplyAsync(limiter::acquire);
+
+        Thread.sleep(50L);
+        assertThat(waiter).isNotDone();
+        assertThat(meterRegistry.get("app_oci_limiter_queued").gauge().value()).isEqualTo(1.0);
+
+        holder.close();
+        try (var permit = waiter.get(5, TimeUnit.SECONDS)) {
+            assertThat(limiter.inFlight()).isEqualTo(1);
+        }
+        assertThat(limiter.inFlight()).isZero();
+    }
+
+    @Test
+    void limitGrowsAdditivelyAndShrinksMultiplicatively() {
+        var limiter = newLimiter(4, 1, 5, Duration.ofSeconds(30), 8, Duration.ofMillis(20));
+
+        // 2 of 4 permits in use: the limit is used enough to grow
+        var first = limiter.acquire();
+        var second = limiter.acquire();
+        second.close();
+        first.close();
+        assertThat(limiter.limit()).isEqualTo(5);
+
+        // never above max_limit
+        try (var a = limiter.acquire();
+                var b = limiter.acquire();
+                var c = limiter.acquire()) {
+            // hold three permits
+        }
+        assertThat(limiter.limit()).isEqualTo(5);
+
+        try (var permit = limiter.acquire()) {
+            permit.dropped();
+        }
+        assertThat(limiter.limit()).isEqualTo(2);
+        assertThat(meterRegistry.get("app_oci_limiter_limit").gauge().value()).isEqualTo(2.0);
+    }
+
+    @Test
+    void singleCallDoesNotGrowAnUnderusedLimit() {
+        var limiter = newLimiter(8, 1, 16, Duration.ofSeconds(30), 8, Duration.ofMillis(20));
+
+        limiter.acquire().close();
+
+        assertThat(limiter.limit()).isEqualTo(8);
+    }
+
+    @Test
+    void slowCallShrinksLimitButNotBelowMin() throws Exception {
+        var limiter = newLimiter(2, 2, 8, Duration.ofMillis(1), 8, Duration.ofMillis(20));
+
+        try (var ignored = limiter.acquire()) {
+            Thread.sleep(10L);
+        }
+
+        assertThat(limiter.limit()).isEqualTo(2);
+    }
+
+    @Test
+    void latencyRecordedEarlyIgnoresTheRestOfTheCall() throws Exception {
+        var limiter = newLimiter(2, 1, 8, Duration.ofMillis(200), 8, Duration.ofMillis(20));
+
+        try (var permit = limiter.acquire()) {
+            permit.recordLatency();
+            Thread.sleep(300L);
+        }
+
+        assertThat(limiter.limit()).isEqualTo(3);
+    }
+
+    @Test
+    void disabledLimiterNeverRejects() {
+        var limiter =
+                new AdaptiveConcurrencyLimiter(
+                        new OCIGenAiProperties.Limiter(
+                                false, 1, 1, 1, 0.9, Duration.ofSeconds(30), 0, Duration.ZERO),
+                        meterRegistry);
+
+        try (var first = limiter.acquire();
+                var second = limiter.acquire()) {
+            assertThat(limiter.inFlight()).isZero();
+        }
+    }
+
+    @Test
+    void throttlingAndServerErrorsAreOverloadSignals() {
+        assertThat(AdaptiveConcurrencyLimiter.isOverload(bmcException(429))).isTrue();
+        assertThat(AdaptiveConcurrencyLimiter.isOverload(bmcException(503))).isTrue();
+        assertThat(
+                        AdaptiveConcurrencyLimiter.isOverload(
+                                new IllegalStateException("wrapped", bmcException(504))))
+                .isTrue();
+        assertThat(AdaptiveConcurrencyLimiter.isOverload(bmcException(400))).isFalse();
+        assertThat(AdaptiveConcurrencyLimiter.isOverload(new IllegalStateException())).isFalse();
+    }
+
+    private AdaptiveConcurrencyLimiter newLimiter(
+            int initialLimit,
+            int minLimit,
+            int maxLimit,
+            Duration latencyThreshold,
+            int maxQueueSize,
+            Duration queueTimeout) {
+        return new AdaptiveConcurrencyLimiter(
+                new OCIGenAiProperties.Limiter(
+                        true,
+                        initialLimit,
+                        minLimit,
+                        maxLimit,
+                        0.5,
+                        latencyThreshold,
+                        maxQueueSize,
+                        queueTimeout),
+                meterRegistry);
+    }
+
+    private double rejected(String reason) {
+        return meterRegistry
+                .get("app_oci_limiter_rejected_total")
+                .tag("reason", reason)
+                .counter()
+                .count();
+    }
+
+    private static BmcException bmcException(int statusCode) {
+        return new BmcException(statusCode, "service", "message", "request-id");
+    }
+}
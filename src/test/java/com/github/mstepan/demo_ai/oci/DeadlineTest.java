@@ -0,0 +1,80 @@
+package com.github.mstepan.demo_ai.oci;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+class DeadlineTest {
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+
+    @AfterEach
+    void tearDown() {
+        timer.shutdownNow();
+    }
+
+    @Test
+    void callsAreOnlyAllowedWithEnoughTimeLeft() {
+        var deadline = Deadline.after(Duration.ofSeconds(10), Duration.ofSeconds(1));
+        assertThat(deadline.allowsCall()).isTrue();
+        assertThat(deadline.remaining()).isBetween(Duration.ofSeconds(9), Duration.ofSeconds(10));
+
+        var tooClose = Deadline.after(Duration.ofMillis(500), Duration.ofSeconds(1));
+        assertThat(tooClose.allowsCall()).isFalse();
+        assertThatThrownBy(() -> tooClose.checkCall("answer generation"))
+                .isInstanceOf(DeadlineExceededException.class)
+                .hasMessageContaining("answer generation");
+    }
+
+    @Test
+    void remainingIsNeverNegative() {
+        var passed = Deadline.after(Duration.ofMillis(-100), Duration.ZERO);
+
+        assertThat(passed.remaining()).isZero();
+        assertThat(passed.allowsCall()).isFalse();
+    }
+
+    @Test
+    void checkCurrentOnlyChecksBoundDeadline() {
+        assertThatCode(() -> Deadline.checkCurrent("call")).doesNotThrowAnyException();
+
+        var passed = Deadline.after(Duration.ZERO, Duration.ofSeconds(1));
+        assertThatThrownBy(
+                        () ->
+                                ScopedValue.where(Deadline.CURRENT, passed)
+                                        .run(() -> Deadline.checkCurrent("call")))
+                .isInstanceOf(DeadlineExceededException.class);
+    }
+
+    @Test
+    void expiredWatchInterruptsBlockedThread() throws Exception {
+        var deadline = Deadline.after(Duration.ofMillis(50), Duration.ZERO);
+
+        Deadline.Watch watch = deadline.interruptOnExpiry(timer);
+        try {
+            assertThatThrownBy(() -> Thread.sleep(10_000L))
+                    .isInstanceOf(InterruptedException.class);
+            assertThat(watch.expired()).isTrue();
+        } finally {
+            watch.close();
+        }
+        assertThat(Thread.currentThread().isInterrupted()).isFalse();
+    }
+
+    @Test
+    void closedWatchNeverInterrupts() throws Exception {
+        var deadline = Deadline.after(Duration.ofMillis(20), Duration.ZERO);
+
+        deadline.interruptOnExpiry(timer).close();
+        Thread.sleep(100L);
+
+        assertThat(Thread.currentThread().isInterrupted()).isFalse();
+    }
+}
@@ -0,0 +1,129 @@
+package com.github.mstepan.demo_ai.oci;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+class OCICircuitBreakerTest {
+
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void opensOnceFailureRateReachesThreshold() {
+        var breaker = breaker(true, Duration.ofMinutes(1));
+
+        for (int i = 0; i < 3; ++i) {
+            call(breaker, false);
+        }
+        assertThat(breaker.state()).isEqualTo(OCICircuitBreaker.State.CLOSED);
+
+        call(breaker, true);
+        assertThat(breaker.state()).isEqualTo(OCICircuitBreaker.State.OPEN);
+
+        assertThatThrownBy(breaker::acquirePermission)
+                .isInstanceOf(CircuitBreakerOpenException.class)
+                .satisfies(
+                        ex ->
+                                assertThat(((CircuitBreakerOpenException) ex).retryAfter())
+                                        .isPositive());
+        assertThat(meterRegistry.get("app_oci_circuit_rejected_total").counter().count())
+                .isEqualTo(1.0);
+        assertThat(meterRegistry.get("app_oci_circuit_state").gauge().value()).isEqualTo(2.0);
+    }
+
+    @Test
+    void successfulTrialCallsCloseTheBreaker() {
+        var breaker = openBreaker();
+
+        breaker.acquirePermission();
+        breaker.acquirePermission();
+        assertThat(breaker.state()).isEqualTo(OCICircuitBreaker.State.HALF_OPEN);
+
+        // both trial calls are in flight
+        assertThatThrownBy(breaker::acquirePermission)
+                .isInstanceOf(CircuitBreakerOpenException.class);
+
+        breaker.onSuccess();
+        breaker.onSuccess();
+        assertThat(breaker.state()).isEqualTo(OCICircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void failedTrialCallReopensTheBreaker() {
+        var breaker = openBreaker();
+
+        breaker.acquirePermission();
+        breaker.onFailure();
+
+        assertThat(breaker.state()).isEqualTo(OCICircuitBreaker.State.OPEN);
+        assertThat(
+                        meterRegistry
+                                .get("app_oci_circuit_transitions_total")
+                                .tag("state", "open")
+                                .counter()
+                                .count())
+                .isEqualTo(2.0);
+    }
+
+    @Test
+    void ignoredTrialCallFreesItsSlot() {
+        var breaker = openBreaker();
+
+        breaker.acquirePermission();
+        breaker.acquirePermission();
+        breaker.onIgnored();
+
+        breaker.acquirePermission();
+        assertThat(breaker.state()).isEqualTo(OCICircuitBreaker.State.HALF_OPEN);
+    }
+
+    @Test
+    void disabledBreakerNeverOpens() {
+        var breaker = breaker(false, Duration.ofMinutes(1));
+
+        for (int i = 0; i < 10; ++i) {
+            call(breaker, true);
+        }
+
+        assertThat(breaker.state()).isEqualTo(OCICircuitBreaker.State.CLOSED);
+    }
+
+    /** Breaker that opened and whose open duration is already over. */
+    private OCICircuitBreaker openBreaker() {
+        var breaker = breaker(true, Duration.ZERO);
+        for (int i = 0; i < 4; ++i) {
+            call(breaker, true);
+        }
+        assertThat(breaker.state()).isEqualTo(OCICircuitBreaker.State.OPEN);
+        return breaker;
+    }
+
+    private static void call(OCICircuitBreaker breaker, boolean failure) {
+        breaker.acquirePermission();
+        if (failure) {
+            breaker.onFailure();
+        } else {
+            breaker.onSuccess();
+        }
+    }
+
+    /** Window of 4 calls, opens at 25% failures. */
+    private OCICircuitBreaker breaker(boolean enabled, Duration openDuration) {
+        return new OCICircuitBreaker(
+                new OCIGenAiProperties.CircuitBreaker(enabled, 4, 4, 0.25, openDuration, 2),
+                "test",
+                meterRegistry);
+    }
+}
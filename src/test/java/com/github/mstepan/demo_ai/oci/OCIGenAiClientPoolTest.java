@@ -0,0 +1,109 @@
+package com.github.mstepan.demo_ai.oci;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import com.oracle.bmc.generativeaiinference.GenerativeAiInferenceClient;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class OCIGenAiClientPoolTest {
+
+    private final AtomicInteger createdClients = new AtomicInteger();
+
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        createdClients.set(0);
+    }
+
+    @Test
+    void clientIsReusedAcrossLeases() {
+        var pool = newPool(2, Duration.ofMillis(50));
+
+        GenerativeAiInferenceClient first;
+        try (var lease = pool.acquire()) {
+            first = lease.client();
+        }
+
+        try (var lease = pool.acquire()) {
+            assertThat(lease.client()).isSameAs(first);
+        }
+
+        assertThat(createdClients.get()).isEqualTo(1);
+        assertThat(meterRegistry.get("app_oci_client_pool_size").gauge().value()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("app_oci_client_pool_active").gauge().value()).isZero();
+    }
+
+    @Test
+    void acquireFailsWhenAllClientsAreLeased() {
+        var pool = newPool(1, Duration.ofMillis(20));
+
+        try (var ignored = pool.acquire()) {
+            assertThatThrownBy(pool::acquire)
+                    .isInstanceOf(ConcurrencyLimitExceededException.class)
+                    .hasMessageContaining("No OCI GenAI client available");
+        }
+
+        assertThat(meterRegistry.get("app_oci_client_pool_acquire_seconds").timer().count())
+                .isEqualTo(2);
+    }
+
+    @Test
+    void closingLeaseTwiceReleasesOnlyOnce() {
+        var pool = newPool(1, Duration.ofMillis(20));
+
+        var lease = pool.acquire();
+        lease.close();
+        lease.close();
+
+        try (var ignored = pool.acquire()) {
+            assertThatThrownBy(pool::acquire)
+                    .isInstanceOf(ConcurrencyLimitExceededException.class);
+        }
+    }
+
+    @Test
+    void closeShutsDownIdleAndReturnedClients() {
+        var pool = newPool(2, Duration.ofMillis(20));
+
+        var idleLease = pool.acquire();
+        var busyLease = pool.acquire();
+        var idleClient = idleLease.client();
+        var busyClient = busyLease.client();
+        idleLease.close();
+
+        pool.close();
+
+        verify(idleClient).close();
+        verify(busyClient, never()).close();
+
+        busyLease.close();
+        verify(busyClient).close();
+
+        assertThatThrownBy(pool::acquire).isInstanceOf(IllegalStateException.class);
+    }
+
+    private OCIGenAiClientPool newPool(int maxConnections, Duration acquireTimeout) {
+        return new OCIGenAiClientPool(
+                () -> {
+                    createdClients.incrementAndGet();
+                    return mock(GenerativeAiInferenceClient.class);
+                },
+                new OCIGenAiProperties.Pool(maxConnections, acquireTimeout, Duration.ofMinutes(15)),
+                "test",
+                meterRegistry);
+    }
+}
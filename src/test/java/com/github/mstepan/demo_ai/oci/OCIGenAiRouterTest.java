@@ -0,0 +1,147 @@
+package com.github.mstepan.demo_ai.oci;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+import com.oracle.bmc.generativeaiinference.GenerativeAiInferenceClient;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+class OCIGenAiRouterTest {
+
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void prefersTheCheaperEndpoint() {
+        var router = router(4);
+
+        // endpoints not called yet cost nothing, so both are tried first
+        Set<String> tried = new HashSet<>();
+        while (tried.size() < 2) {
+            var route = router.route();
+            if (tried.add(route.endpoint()) && route.endpoint().equals("slow")) {
+                route.onFailure();
+            } else {
+                route.onSuccess();
+            }
+        }
+        assertThat(router.cost("slow")).isGreaterThan(router.cost("fast"));
+
+        for (int i = 0; i < 20; ++i) {
+            var route = router.route();
+            assertThat(route.endpoint()).isEqualTo("fast");
+            route.onSuccess();
+        }
+        assertThat(
+                        meterRegistry
+                                .get("app_oci_endpoint_failures_total")
+                                .tag("endpoint", "slow")
+                                .counter()
+                                .count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void failsOverWhileTheBreakerOfAnEndpointIsOpen() {
+        var router = router(1);
+
+        // a single failure opens the breaker of 'slow'
+        boolean failed = false;
+        while (!failed) {
+            var route = router.route();
+            failed = route.endpoint().equals("slow");
+            if (failed) {
+                route.onFailure();
+            } else {
+                route.onSuccess();
+            }
+        }
+
+        for (int i = 0; i < 20; ++i) {
+            var route = router.route();
+            assertThat(route.endpoint()).isEqualTo("fast");
+            route.onIgnored();
+        }
+    }
+
+    @Test
+    void rejectsCallsWhileTheBreakersOfAllEndpointsAreOpen() {
+        var router = router(1);
+
+        router.route().onFailure();
+        router.route().onFailure();
+
+        assertThatThrownBy(router::route)
+                .isInstanceOf(CircuitBreakerOpenException.class)
+                .satisfies(
+                        ex ->
+                                assertThat(((CircuitBreakerOpenException) ex).retryAfter())
+                                        .isPositive());
+    }
+
+    @Test
+    void onlyTheFirstOutcomeIsReported() {
+        var router = router(1);
+
+        var route = router.route();
+        route.onSuccess();
+        route.onFailure();
+
+        assertThat(
+                        meterRegistry
+                                .get("app_oci_endpoint_failures_total")
+                                .tag("endpoint", route.endpoint())
+                                .counter()
+                                .count())
+                .isZero();
+    }
+
+    @Test
+    void namesEndpointsByRegion() {
+        assertThat(
+                        OCIGenAiRouter.nameOf(
+                                "https://inference.generativeai.us-chicago-1.oci.oraclecloud.com"))
+                .isEqualTo("us-chicago-1");
+        assertThat(OCIGenAiRouter.nameOf("http://localhost:8080")).isEqualTo("localhost:8080");
+    }
+
+    /** Endpoints 'fast' and 'slow', their breakers open after 'windowSize' failed calls. */
+    private OCIGenAiRouter router(int windowSize) {
+        return new OCIGenAiRouter(
+                List.of(endpoint("fast", windowSize), endpoint("slow", windowSize)),
+                Duration.ofSeconds(10),
+                Duration.ofSeconds(1),
+                meterRegistry);
+    }
+
+    private OCIGenAiRouter.Endpoint endpoint(String name, int windowSize) {
+        return new OCIGenAiRouter.Endpoint(
+                name,
+                new OCIGenAiClientPool(
+                        () -> mock(GenerativeAiInferenceClient.class),
+                        new OCIGenAiProperties.Pool(
+                                2, Duration.ofMillis(50), Duration.ofMinutes(15)),
+                        name,
+                        meterRegistry),
+                new OCICircuitBreaker(
+                        new OCIGenAiProperties.CircuitBreaker(
+                                true, windowSize, windowSize, 1.0, Duration.ofMinutes(1), 1),
+                        name,
+                        meterRegistry));
+    }
+}
@@ -0,0 +1,254 @@
+package com.github.mstepan.demo_ai.oci;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.oracle.bmc.generativeaiinference.GenerativeAiInferenceClient;
+import com.oracle.bmc.generativeaiinference.requests.ChatRequest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+class OCIGenAiStreamingSinkFactoryTest {
+
+    private static final int EVENTS = 5_000;
+
+    private final GenerativeAiInferenceClient client = mock(GenerativeAiInferenceClient.class);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private OCIGenAiClientPool clientPool;
+    private OCICircuitBreaker circuitBreaker;
+    private OCIGenAiStreamingSinkFactory sinkFactory;
+
+    private final Prompt prompt =
+            new Prompt(List.of(new SystemMessage("system"), new UserMessage("user")));
+
+    @BeforeEach
+    void setUp() {
+        var properties =
+                new OCIGenAiProperties(
+                        "http://localhost:8080",
+                        "DEFAULT",
+                        "ocid1.compartment.oc1..aaaaaaaatest",
+                        "test-model",
+                        0.7,
+                        2048,
+                        Duration.ofSeconds(10),
+                        Duration.ofSeconds(60),
+                        new OCIGenAiProperties.Pool(
+                                1, Duration.ofSeconds(1), Duration.ofMinutes(15)),
+                        new OCIGenAiProperties.Embedding("embed-model", 1024, 96),
+                        new OCIGenAiProperties.Limiter(
+                                true,
+                                8,
+                                1,
+                                16,
+                                0.9,
+                                Duration.ofSeconds(30),
+                                128,
+                                Duration.ofSeconds(1)),
+                        new OCIGenAiProperties.Retry(
+                                3,
+                                Duration.ofMillis(200),
+                                2.0,
+                                Duration.ofSeconds(2),
+                                Duration.ofSeconds(20)),
+                        new OCIGenAiProperties.CircuitBreaker(
+                                true, 20, 10, 0.5, Duration.ofSeconds(30), 2),
+                        new OCIGenAiProperties.Routing(List.of(), Duration.ofSeconds(10)));
+
+        clientPool =
+                new OCIGenAiClientPool(
+                        () -> client, properties.pool(), "test", new SimpleMeterRegistry());
+        circuitBreaker =
+                new OCICircuitBreaker(properties.circuitBreaker(), "test", meterRegistry);
+        var router =
+                new OCIGenAiRouter(
+                        List.of(new OCIGenAiRouter.Endpoint("test", clientPool, circuitBreaker)),
+                        properties.routing().decayTime(),
+                        properties.readTimeout(),
+                        meterRegistry);
+        sinkFactory =
+                new OCIGenAiStreamingSinkFactory(
+                        router,
+                        new AdaptiveConcurrencyLimiter(properties.limiter(), meterRegistry),
+                        new OCILogService(),
+                        properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        clientPool.close();
+    }
+
+    @Test
+    void streamsDeltasUntilDone() {
+        respondWith(new ByteArrayInputStream(events(3)));
+
+        List<String> deltas =
+                Flux.create(sinkFactory.newInstance(prompt))
+                        .map(response -> response.getResult().getOutput().getText())
+                        .collectList()
+                        .block(Duration.ofSeconds(5));
+
+        assertThat(deltas).containsExactly("t0", "t1", "t2");
+    }
+
+    @Test
+    void readingPausesWithoutDemandAndStopsOnCancel() throws Exception {
+        byte[] payload = events(EVENTS);
+        var eventStream = new TrackingInputStream(payload);
+        respondWith(eventStream);
+
+        var subscriber = new OneByOneSubscriber();
+        Flux.create(sinkFactory.newInstance(prompt)).subscribe(subscriber);
+
+        assertThat(subscriber.firstReceived.await(5, TimeUnit.SECONDS)).isTrue();
+        Thread.sleep(200L);
+
+        // only a single read buffer was consumed while the subscriber had no demand
+        assertThat(subscriber.received).hasSize(1);
+        assertThat(eventStream.bytesRead.get()).isLessThan(payload.length);
+        // a stream waiting for its subscriber holds no limiter permit
+        assertThat(meterRegistry.get("app_oci_limiter_inflight").gauge().value()).isZero();
+
+        subscriber.cancel();
+
+        assertThat(eventStream.closed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(eventStream.bytesRead.get()).isLessThan(payload.length);
+        assertThat(subscriber.completed).isFalse();
+    }
+
+    @Test
+    void cancelWhileStartingIsNoEndpointFailure() throws Exception {
+        // interrupting a virtual thread closes its socket, so the call fails with a
+        // SocketException
+        CountDownLatch calling = new CountDownLatch(1);
+        CountDownLatch failed = new CountDownLatch(1);
+        when(client.chat(any(ChatRequest.class)))
+                .thenAnswer(
+                        invocation -> {
+                            calling.countDown();
+                            try {
+                                Thread.sleep(10_000L);
+                            } catch (InterruptedException interEx) {
+                                Thread.currentThread().interrupt();
+                            }
+                            failed.countDown();
+                            throw new IllegalStateException(
+                                    new SocketException("Closed by interrupt"));
+                        });
+
+        var subscriber = new OneByOneSubscriber();
+        Flux.create(sinkFactory.newInstance(prompt)).subscribe(subscriber);
+        assertThat(calling.await(5, TimeUnit.SECONDS)).isTrue();
+
+        subscriber.cancel();
+
+        assertThat(failed.await(5, TimeUnit.SECONDS)).isTrue();
+        // the outcome is reported right after the call failed
+        Thread.sleep(100L);
+        assertThat(circuitBreaker.state()).isEqualTo(OCICircuitBreaker.State.CLOSED);
+        assertThat(
+                        meterRegistry
+                                .get("app_oci_endpoint_failures_total")
+                                .tag("endpoint", "test")
+                                .counter()
+                                .count())
+                .isZero();
+    }
+
+    private void respondWith(InputStream eventStream) {
+        when(client.chat(any(ChatRequest.class)))
+                .thenReturn(
+                        com.oracle.bmc.generativeaiinference.responses.ChatResponse.builder()
+                                .eventStream(eventStream)
+                                .build());
+    }
+
+    private static byte[] events(int count) {
+        StringBuilder sse = new StringBuilder();
+        for (int i = 0; i < count; ++i) {
+            sse.append("data: {\"message\":{\"content\":[{\"type\":\"TEXT\",\"text\":\"t")
+                    .append(i)
+                    .append("\"}]}}\n\n");
+        }
+        sse.append("data: [DONE]\n\n");
+        return sse.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static final class OneByOneSubscriber extends BaseSubscriber<ChatResponse> {
+
+        private final List<ChatResponse> received = new CopyOnWriteArrayList<>();
+        private final CountDownLatch firstReceived = new CountDownLatch(1);
+        private volatile boolean completed;
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+            request(1);
+        }
+
+        @Override
+        protected void hookOnNext(ChatResponse value) {
+            received.add(value);
+            firstReceived.countDown();
+        }
+
+        @Override
+        protected void hookOnComplete() {
+            completed = true;
+        }
+    }
+
+    private static final class TrackingInputStream extends FilterInputStream {
+
+        private final AtomicLong bytesRead = new AtomicLong();
+        private final CountDownLatch closed = new CountDownLatch(1);
+
+        TrackingInputStream(byte[] payload) {
+            super(new ByteArrayInputStream(payload));
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                bytesRead.addAndGet(read);
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            closed.countDown();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.github.mstepan.demo_ai.oci;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+class SseEventDecoderTest {
+
+    @Test
+    void singleLineEvents() throws IOException {
+        List<String> events = decodeAll("data: {\"a\":1}\n\ndata: {\"b\":2}\n\n", 8192);
+
+        assertThat(events).containsExactly("{\"a\":1}", "{\"b\":2}");
+    }
+
+    @Test
+    void multiLineDataIsJoinedWithLineFeed() throws IOException {
+        List<String> events = decodeAll("data: first\ndata: second\ndata:third\n\n", 8192);
+
+        assertThat(events).containsExactly("first\nsecond\nthird");
+    }
+
+    @Test
+    void eventAndIdFieldsAreTracked() throws IOException {
+        var decoder =
+                decoder(
+                        ": comment\nid: 42\nevent: delta\nretry: 1000\ndata: x\n\ndata: y\n\n",
+                        8192);
+
+        assertThat(decoder.next()).isTrue();
+        assertThat(decoder.dataAsString()).isEqualTo("x");
+        assertThat(decoder.eventType()).isEqualTo("delta");
+        assertThat(decoder.lastEventId()).isEqualTo("42");
+
+        assertThat(decoder.next()).isTrue();
+        assertThat(decoder.dataAsString()).isEqualTo("y");
+        assertThat(decoder.eventType()).isNull();
+        assertThat(decoder.lastEventId()).isEqualTo("42");
+
+        assertThat(decoder.next()).isFalse();
+    }
+
+    @Test
+    void eventsWithoutDataAreSkipped() throws IOException {
+        List<String> events = decodeAll("event: ping\n\n:keep-alive\n\ndata: x\n\n", 8192);
+
+        assertThat(events).containsExactly("x");
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 3, 5, 7, 8192})
+    void linesSpanningReadsAndAllLineTerminators(int bufferSize) throws IOException {
+        String stream =
+                "\uFEFFdata: {\"text\":\"Привет, мир\"}\r\n\r\n"
+                        + "data: crlf\r\ndata: cr\r\r"
+                        + "data: lf\n\n"
+                        + "data: " + "x".repeat(1000) + "\n\n";
+
+        List<String> events = decodeAll(stream, bufferSize);
+
+        assertThat(events)
+                .containsExactly(
+                        "{\"text\":\"Привет, мир\"}", "crlf\ncr", "lf", "x".repeat(1000));
+    }
+
+    @Test
+    void trailingEventWithoutBlankLineIsDispatched() throws IOException {
+        List<String> events = decodeAll("data: a\n\ndata: b", 8192);
+
+        assertThat(events).containsExactly("a", "b");
+    }
+
+    @Test
+    void doneMarkerIsRecognized() throws IOException {
+        var decoder = decoder("data: {\"text\":\"a\"}\n\ndata:  [done] \n\n", 8192);
+
+        assertThat(decoder.next()).isTrue();
+        assertThat(decoder.isDone()).isFalse();
+        assertThat(decoder.next()).isTrue();
+        assertThat(decoder.isDone()).isTrue();
+    }
+
+    private static List<String> decodeAll(String stream, int bufferSize) throws IOException {
+        var decoder = decoder(stream, bufferSize);
+        List<String> events = new ArrayList<>();
+        while (decoder.next()) {
+            events.add(decoder.dataAsString());
+        }
+        return events;
+    }
+
+    private static SseEventDecoder decoder(String stream, int bufferSize) {
+        return new SseEventDecoder(
+                new ByteArrayInputStream(stream.getBytes(StandardCharsets.UTF_8)), bufferSize);
+    }
+}
@@ -0,0 +1,53 @@
+package com.github.mstepan.demo_ai.oci;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+class TextDeltaExtractorTest {
+
+    @Test
+    void extractsNestedTextOfGenericChatEvent() throws IOException {
+        String event =
+                """
+                {"index":0,"message":{"role":"ASSISTANT",\
+                "content":[{"type":"TEXT","text":"Hello \\"pirate\\""}]},"pad":"aaa"}""";
+
+        assertThat(extract(event)).isEqualTo("Hello \"pirate\"");
+    }
+
+    @Test
+    void extractsTopLevelTextOfCohereEvent() throws IOException {
+        assertThat(extract("{\"apiFormat\":\"COHERE\",\"Text\":\"Ahoy\"}")).isEqualTo("Ahoy");
+    }
+
+    @Test
+    void firstTextInDocumentOrderWins() throws IOException {
+        String event =
+                "{\"text\":{\"nested\":true,\"text\":\"inner\"},\"other\":{\"text\":\"later\"}}";
+
+        assertThat(extract(event)).isEqualTo("inner");
+    }
+
+    @Test
+    void eventWithoutTextReturnsNull() throws IOException {
+        assertThat(extract("{\"finishReason\":\"STOP\",\"text\":null}")).isNull();
+    }
+
+    @Test
+    void malformedJsonFails() {
+        assertThatThrownBy(() -> extract("{\"text\": ")).isInstanceOf(IOException.class);
+    }
+
+    private static String extract(String json) throws IOException {
+        // surround with garbage to check that offset/length are honoured
+        byte[] jsonBytes = json.getBytes(StandardCharsets.UTF_8);
+        byte[] padded = new byte[jsonBytes.length + 4];
+        System.arraycopy(jsonBytes, 0, padded, 2, jsonBytes.length);
+        return TextDeltaExtractor.extract(padded, 2, jsonBytes.length);
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.mstepan.demo_ai.prompts;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.function.BooleanSupplier;
+
+class PromptTemplateRegistryTest {
+
+    private static final String CHAT_USER = "chat/chatUserPrompt";
+
+    @TempDir Path reloadDir;
+
+    private PromptTemplateRegistry registry;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (registry != null) {
+            registry.destroy();
+        }
+    }
+
+    @Test
+    void bundledTemplatesAreCompiledAtStartup() {
+        registry =
+                new PromptTemplateRegistry(new PromptProperties(null), new SimpleMeterRegistry());
+
+        assertThat(registry.get("chat/chatSystemPrompt").isStatic()).isTrue();
+        assertThat(registry.get(CHAT_USER).render("question", "Why is the sky blue?"))
+                .contains("Why is the sky blue?");
+        assertThat(registry.get("relevanceEvaluator/relevanceEvaluatorUserPrompt").isStatic())
+                .isFalse();
+        assertThatThrownBy(() -> registry.get("no/such/template"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void overridesAreHotReloadedAndRevertedOnDelete() throws Exception {
+        Path chatDir = Files.createDirectories(reloadDir.resolve("chat"));
+        Path override = chatDir.resolve("chatUserPrompt.st");
+        Files.writeString(override, "v1: {question}");
+
+        registry =
+                new PromptTemplateRegistry(
+                        new PromptProperties(reloadDir.toString()), new SimpleMeterRegistry());
+        int bundledFingerprint =
+                new PromptTemplateRegistry(new PromptProperties(null), new SimpleMeterRegistry())
+                        .get(CHAT_USER)
+                        .fingerprint();
+
+        assertThat(registry.get(CHAT_USER).render("question", "q")).isEqualTo("v1: q");
+
+        Files.writeString(override, "v2: {question}");
+        await(() -> registry.get(CHAT_USER).render("question", "q").equals("v2: q"));
+
+        // a broken edit keeps the previous version
+        Files.writeString(override, "v3: {question");
+        Thread.sleep(500L);
+        assertThat(registry.get(CHAT_USER).render("question", "q")).isEqualTo("v2: q");
+
+        Files.delete(override);
+        await(() -> registry.get(CHAT_USER).fingerprint() == bundledFingerprint);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        // WatchService may fall back to polling (e.g. on macOS), give it enough time
+        long deadline = System.nanoTime() + Duration.ofSeconds(15).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition not met in time").isLessThan(deadline);
+            Thread.sleep(50L);
+        }
+    }
+}
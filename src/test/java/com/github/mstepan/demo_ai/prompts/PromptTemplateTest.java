@@ -0,0 +1,73 @@
+package com.github.mstepan.demo_ai.prompts;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+class PromptTemplateTest {
+
+    @Test
+    void templateWithoutPlaceholdersIsPreRendered() {
+        PromptTemplate template = PromptTemplate.compile("system", "You are helpful.\n");
+
+        assertThat(template.isStatic()).isTrue();
+        assertThat(template.text()).isEqualTo("You are helpful.\n");
+        assertThat(template.render("question", "ignored")).isSameAs(template.text());
+    }
+
+    @Test
+    void placeholdersAreSubstituted() {
+        PromptTemplate template =
+                PromptTemplate.compile("user", "Question:\n{question}\n\nAnswer:\n{ answer }");
+
+        assertThat(template.isStatic()).isFalse();
+        assertThat(template.render("question", "Why?", "answer", "Because."))
+                .isEqualTo("Question:\nWhy?\n\nAnswer:\nBecause.");
+        assertThat(template.render(Map.of("answer", "B", "question", "A")))
+                .isEqualTo("Question:\nA\n\nAnswer:\nB");
+    }
+
+    @Test
+    void repeatedPlaceholderGetsTheSameValue() {
+        PromptTemplate template = PromptTemplate.compile("user", "{q} and again {q}");
+
+        assertThat(template.render("q", "x")).isEqualTo("x and again x");
+    }
+
+    @Test
+    void escapedBracesAreLiterals() {
+        PromptTemplate template =
+                PromptTemplate.compile("user", "Reply with \\{\"relevant\": true\\} for {q}");
+
+        assertThat(template.render("q", "x")).isEqualTo("Reply with {\"relevant\": true} for x");
+    }
+
+    @Test
+    void missingValueFailsRendering() {
+        PromptTemplate template = PromptTemplate.compile("user", "{claim} / {document}");
+
+        assertThatThrownBy(() -> template.render("claim", "c"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("document");
+    }
+
+    @Test
+    void unsupportedSyntaxIsRejectedAtCompileTime() {
+        assertThatThrownBy(() -> PromptTemplate.compile("t", "{if(x)}yes{endif}"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> PromptTemplate.compile("t", "{unterminated"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> PromptTemplate.compile("t", "stray }"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void fingerprintFollowsTheSource() {
+        assertThat(PromptTemplate.compile("a", "{q}").fingerprint())
+                .isEqualTo(PromptTemplate.compile("b", "{q}").fingerprint())
+                .isNotEqualTo(PromptTemplate.compile("a", "{q}!").fingerprint());
+    }
+}
@@ -0,0 +1,279 @@
+package com.github.mstepan.demo_ai.rag;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.github.mstepan.demo_ai.domain.BulkIngestionResult;
+import com.github.mstepan.demo_ai.embedding.Embedder;
+import com.github.mstepan.demo_ai.embedding.HashingEmbedder;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class BulkIngestorTest {
+
+    private static final TextChunker CHUNKER = new TextChunker(100, 0);
+
+    @TempDir Path checkpoints;
+
+    private final MapDocumentStore store = new MapDocumentStore();
+
+    @Test
+    void jsonlDocumentsAreStoredInBatchesOfTheEmbedderMaxBatchSize() throws IOException {
+        StringBuilder jsonl = new StringBuilder();
+        for (int i = 0; i < 10; ++i) {
+            String text = i == 3 ? longText(250) : "Pirate fact number " + i + ".";
+            jsonl.append(line("doc-" + i, text));
+        }
+        BatchEmbedder embedder = new BatchEmbedder(3, -1);
+
+        BulkIngestionResult result = ingest(bulkIngestor(embedder, 2), jsonl.toString(), null);
+
+        int chunks = 9 + CHUNKER.split(longText(250)).size();
+        assertThat(result.documents()).isEqualTo(10);
+        assertThat(result.chunks()).isEqualTo(chunks);
+        assertThat(result.skipped()).isZero();
+        assertThat(result.bytes())
+                .isEqualTo(jsonl.toString().getBytes(StandardCharsets.UTF_8).length);
+        assertThat(store.size()).isEqualTo(chunks);
+        assertThat(embedder.batchSizes).allMatch(size -> size <= 3);
+        assertThat(embedder.batchSizes.stream().mapToInt(Integer::intValue).sum())
+                .isEqualTo(chunks);
+    }
+
+    @Test
+    void invalidJsonlLinesAreSkipped() throws IOException {
+        String jsonl =
+                line("first", "Captain Krael sank three navy ships.")
+                        + "not json at all\n"
+                        + "{\"source\":\"no-text\"}\n"
+                        + "\n"
+                        + "{\"source\":\"second\",\"meta\":{\"tags\":[1,2]},\"text\":\"Ahoy!\"}";
+
+        BulkIngestionResult result =
+                ingest(bulkIngestor(new BatchEmbedder(16, -1), 2), jsonl, null);
+
+        assertThat(result.documents()).isEqualTo(2);
+        assertThat(result.skipped()).isEqualTo(2);
+        assertThat(store.chunks("first")).containsExactly("Captain Krael sank three navy ships.");
+        assertThat(store.chunks("second")).containsExactly("Ahoy!");
+    }
+
+    @Test
+    void textInputIsChunkedAsOneDocumentAcrossReadBuffers() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; text.length() < 3 * BulkIngestor.READ_BUFFER_BYTES; ++i) {
+            text.append("Größte Schatzkarte № ").append(i).append(" kostet 5 €.");
+            text.append(i % 7 == 0 ? "\n\n" : " ");
+        }
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+
+        BulkIngestionResult result =
+                bulkIngestor(new BatchEmbedder(16, -1), 4)
+                        .ingest(
+                                Channels.newChannel(new ByteArrayInputStream(bytes)),
+                                BulkIngestor.Format.TEXT,
+                                "treasure.txt",
+                                null);
+
+        assertThat(result.documents()).isEqualTo(1);
+        assertThat(result.bytes()).isEqualTo(bytes.length);
+        assertThat(store.chunks("treasure.txt")).isEqualTo(CHUNKER.split(text.toString()));
+    }
+
+    @Test
+    void reingestedDocumentDropsChunksItNoLongerHas() throws IOException {
+        BulkIngestor ingestor = bulkIngestor(new BatchEmbedder(16, -1), 2);
+
+        ingest(ingestor, line("log", longText(250)), null);
+        assertThat(store.chunks("log")).hasSizeGreaterThan(1);
+
+        ingest(ingestor, line("log", "Short now."), null);
+        assertThat(store.chunks("log")).containsExactly("Short now.");
+    }
+
+    @Test
+    void failedJobResumesFromItsCheckpoint() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 8; ++i) {
+            lines.add(line("doc-" + i, "Pirate fact number " + i + "."));
+        }
+        String jsonl = String.join("", lines);
+
+        // batches of 2 chunks, one at a time: the first two batches are stored, the third fails
+        BulkIngestor failing = bulkIngestor(new BatchEmbedder(2, 3), 1);
+        assertThatThrownBy(() -> ingest(failing, jsonl, "pirates"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("embedding failed");
+        assertThat(checkpoints.resolve("pirates.checkpoint")).exists();
+
+        BulkIngestionResult result =
+                ingest(bulkIngestor(new BatchEmbedder(2, -1), 1), jsonl, "pirates");
+
+        // doc-3 was being stored, its first chunk (its only one) made it into the second batch
+        long doc3Offset = String.join("", lines.subList(0, 3)).length();
+        assertThat(result.resumedFrom()).isEqualTo(doc3Offset);
+        assertThat(result.documents()).isEqualTo(5);
+        assertThat(result.chunks()).isEqualTo(4);
+        assertThat(store.size()).isEqualTo(8);
+        assertThat(checkpoints.resolve("pirates.checkpoint")).doesNotExist();
+    }
+
+    @Test
+    void checkpointOfAnotherInputIsRejected() throws IOException {
+        new BulkIngestionCheckpoint(BulkIngestor.Format.JSONL, null, 10L, 0)
+                .save(checkpoints.resolve("pirates.checkpoint"));
+
+        BulkIngestor ingestor = bulkIngestor(new BatchEmbedder(2, -1), 1);
+        assertThatThrownBy(
+                        () ->
+                                ingestor.ingest(
+                                        Channels.newChannel(
+                                                new ByteArrayInputStream(new byte[16])),
+                                        BulkIngestor.Format.TEXT,
+                                        "pirates.txt",
+                                        "pirates"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("checkpoint of another input");
+    }
+
+    private BulkIngestor bulkIngestor(Embedder embedder, int concurrency) {
+        return new BulkIngestor(
+                CHUNKER,
+                new RagProperties.Bulk(
+                        concurrency, 256, checkpoints.toString(), Duration.ofMillis(1)),
+                embedder,
+                store,
+                new SimpleMeterRegistry());
+    }
+
+    private static BulkIngestionResult ingest(BulkIngestor ingestor, String jsonl, String job)
+            throws IOException {
+        return ingestor.ingest(
+                Channels.newChannel(
+                        new ByteArrayInputStream(jsonl.getBytes(StandardCharsets.UTF_8))),
+                BulkIngestor.Format.JSONL,
+                null,
+                job);
+    }
+
+    private static String line(String source, String text) {
+        return "{\"source\":\"" + source + "\",\"text\":\"" + text + "\"}\n";
+    }
+
+    /** Text of about {@code chars} chars, several chunks of {@link #CHUNKER}. */
+    private static String longText(int chars) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; text.length() < chars; ++i) {
+            text.append("The crew sailed to island ").append(i).append(". ");
+        }
+        return text.toString().strip();
+    }
+
+    /** {@link HashingEmbedder} with a max batch size that fails its N-th call if asked to. */
+    private static final class BatchEmbedder implements Embedder {
+
+        private final HashingEmbedder delegate = new HashingEmbedder(64);
+        private final int maxBatchSize;
+        private final int failingCall;
+        private final AtomicInteger calls = new AtomicInteger();
+
+        final Queue<Integer> batchSizes = new ConcurrentLinkedQueue<>();
+
+        BatchEmbedder(int maxBatchSize, int failingCall) {
+            this.maxBatchSize = maxBatchSize;
+            this.failingCall = failingCall;
+        }
+
+        @Override
+        public int dimensions() {
+            return delegate.dimensions();
+        }
+
+        @Override
+        public int maxBatchSize() {
+            return maxBatchSize;
+        }
+
+        @Override
+        public float[] embed(String text) {
+            return delegate.embed(text);
+        }
+
+        @Override
+        public List<float[]> embedAll(List<String> texts) {
+            if (calls.incrementAndGet() == failingCall) {
+                throw new IllegalStateException("embedding failed");
+            }
+            batchSizes.add(texts.size());
+            return delegate.embedAll(texts);
+        }
+    }
+
+    /** Keeps chunks by id, enough to check what was stored. */
+    private static final class MapDocumentStore implements DocumentStore {
+
+        private final Map<String, DocumentChunk> chunks = new ConcurrentHashMap<>();
+
+        @Override
+        public void upsert(List<DocumentChunk> batch, List<float[]> embeddings) {
+            for (DocumentChunk chunk : batch) {
+                chunks.put(chunk.id(), chunk);
+            }
+        }
+
+        @Override
+        public List<ScoredChunk> search(float[] query, int topK) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<ScoredChunk> searchText(String query, int topK, double minCoverage) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int delete(String source, int fromIndex) {
+            int before = chunks.size();
+            chunks.values()
+                    .removeIf(chunk -> chunk.source().equals(source) && chunk.index() >= fromIndex);
+            return before - chunks.size();
+        }
+
+        @Override
+        public int size() {
+            return chunks.size();
+        }
+
+        @Override
+        public long version() {
+            return 0L;
+        }
+
+        List<String> chunks(String source) {
+            return chunks.values().stream()
+                    .filter(chunk -> chunk.source().equals(source))
+                    .sorted(Comparator.comparingInt(DocumentChunk::index))
+                    .map(DocumentChunk::text)
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.github.mstepan.demo_ai.rag;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.github.mstepan.demo_ai.embedding.HashingEmbedder;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+class DocumentIngestorTest {
+
+    private static final String PIRATES =
+            """
+            Blackbeak Betty, called The Buccaneer, sailed the northern seas.
+
+            Captain Krael, called The Kraken, sank three navy ships near the harbour.
+
+            Calico Jack, called The Corsair, buried his gold on a small island.
+            """;
+
+    private MeterRegistry meterRegistry;
+    private InMemoryDocumentStore store;
+    private DocumentIngestor ingestor;
+    private DocumentRetriever retriever;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        store = new InMemoryDocumentStore(1024);
+        var embedder = new HashingEmbedder(384);
+        // small chunks, every pirate gets a chunk of its own
+        ingestor = new DocumentIngestor(new TextChunker(100, 0), 2, embedder, store, meterRegistry);
+        retriever =
+                new DocumentRetriever(
+                        true,
+                        new RagProperties.Retrieval(
+                                1, 0.25, 6000, new RagProperties.Hybrid(true, 20, 60, 0.3)),
+                        embedder,
+                        store,
+                        meterRegistry);
+    }
+
+    @Test
+    void ingestedChunksAreRetrieved() {
+        assertThat(ingestor.ingest("pirates", PIRATES)).isEqualTo(3);
+
+        List<ScoredChunk> found = retriever.retrieve("Which ships did Captain Krael sink?");
+
+        assertThat(found).hasSize(1);
+        assertThat(found.getFirst().chunk().text()).startsWith("Captain Krael");
+        assertThat(DocumentRetriever.format(found))
+                .startsWith("[1] (pirates)\nCaptain Krael, called The Kraken");
+
+        assertThat(meterRegistry.get("app_rag_ingested_chunks_total").counter().count())
+                .isEqualTo(3.0);
+        // 3 chunks in batches of 2
+        assertThat(meterRegistry.get("app_rag_ingestion_batch_seconds").timer().count())
+                .isEqualTo(2L);
+    }
+
+    @Test
+    void reingestingReplacesTheDocument() {
+        ingestor.ingest("pirates", PIRATES);
+
+        assertThat(ingestor.ingest("pirates", "Mad Dog McSweeney, called The Scourge.")).isOne();
+
+        assertThat(store.size()).isEqualTo(1);
+        assertThat(retriever.retrieve("Which ships did Captain Krael sink?")).isEmpty();
+        assertThat(retriever.retrieve("Who is called The Scourge?")).hasSize(1);
+    }
+
+    @Test
+    void unrelatedQuestionFindsNothing() {
+        ingestor.ingest("pirates", PIRATES);
+
+        assertThat(retriever.retrieve("What is the boiling point of water?")).isEmpty();
+        assertThat(
+                        meterRegistry
+                                .get("app_rag_retrievals_total")
+                                .tag("result", "miss")
+                                .counter()
+                                .count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void exactNameIsFoundByKeywordsWhenTheVectorsAreNotSimilarEnough() {
+        ingestor.ingest("pirates", PIRATES);
+        var embedder = new HashingEmbedder(384);
+
+        var vectorOnly = retriever(embedder, new RagProperties.Hybrid(false, 20, 60, 0.3));
+        var hybrid = retriever(embedder, new RagProperties.Hybrid(true, 20, 60, 0.3));
+
+        assertThat(vectorOnly.retrieve("Krael?")).isEmpty();
+        assertThat(hybrid.retrieve("Krael?"))
+                .singleElement()
+                .satisfies(found -> assertThat(found.chunk().text()).startsWith("Captain Krael"));
+        assertThat(
+                        meterRegistry
+                                .get("app_rag_search_seconds")
+                                .tag("kind", "keyword")
+                                .timer()
+                                .count())
+                .isOne();
+    }
+
+    @Test
+    void fusionRanksChunksFoundByBothSearchesFirst() {
+        var betty = new ScoredChunk(new DocumentChunk("pirates", 0, "Betty"), 0.9F);
+        var krael = new ScoredChunk(new DocumentChunk("pirates", 1, "Krael"), 0.8F);
+        var jack = new ScoredChunk(new DocumentChunk("pirates", 2, "Jack"), 12.0F);
+
+        List<ScoredChunk> fused =
+                DocumentRetriever.fuse(List.of(betty, krael), List.of(jack, krael), 60);
+
+        assertThat(fused)
+                .extracting(scored -> scored.chunk().text())
+                .containsExactly("Krael", "Betty", "Jack");
+        assertThat(fused.getFirst().score()).isEqualTo(2.0F / 62);
+    }
+
+    @Test
+    void deleteRemovesTheDocument() {
+        ingestor.ingest("pirates", PIRATES);
+
+        assertThat(ingestor.delete("pirates")).isEqualTo(3);
+        assertThat(store.size()).isZero();
+        assertThat(store.searchText("Krael", 4, 0.0)).isEmpty();
+    }
+
+    /** Retriever asking for near-identical vectors, only a keyword search finds anything. */
+    private DocumentRetriever retriever(HashingEmbedder embedder, RagProperties.Hybrid hybrid) {
+        return new DocumentRetriever(
+                true,
+                new RagProperties.Retrieval(1, 0.99, 6000, hybrid),
+                embedder,
+                store,
+                meterRegistry);
+    }
+}
@@ -0,0 +1,115 @@
+package com.github.mstepan.demo_ai.rag;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class InMemoryDocumentStoreTest {
+
+    private static final int DIMENSIONS = 8;
+
+    @Test
+    void searchReturnsMostSimilarChunksFirst() {
+        var store = new InMemoryDocumentStore(64);
+        store.upsert(
+                List.of(chunk("a", 0), chunk("a", 1), chunk("b", 0)),
+                List.of(axis(0), axis(1), mix(0, 1)));
+
+        List<ScoredChunk> found = store.search(axis(0), 2);
+
+        assertThat(found).extracting(scored -> scored.chunk().id()).containsExactly("a#0", "b#0");
+        assertThat(found.getFirst().score()).isGreaterThan(found.get(1).score());
+        assertThat(store.size()).isEqualTo(3);
+    }
+
+    @Test
+    void upsertReplacesChunkWithSameId() {
+        var store = new InMemoryDocumentStore(64);
+        store.upsert(List.of(chunk("a", 0)), List.of(axis(0)));
+
+        store.upsert(List.of(new DocumentChunk("a", 0, "new text")), List.of(axis(1)));
+
+        assertThat(store.size()).isEqualTo(1);
+        List<ScoredChunk> found = store.search(axis(1), 4);
+        assertThat(found).hasSize(1);
+        assertThat(found.getFirst().chunk().text()).isEqualTo("new text");
+    }
+
+    @Test
+    void deleteRemovesChunksFromIndexOn() {
+        var store = new InMemoryDocumentStore(64);
+        store.upsert(
+                List.of(chunk("a", 0), chunk("a", 1), chunk("a", 2), chunk("b", 0)),
+                List.of(axis(0), axis(1), axis(2), axis(3)));
+
+        assertThat(store.delete("a", 1)).isEqualTo(2);
+        assertThat(store.delete("missing", 0)).isZero();
+
+        assertThat(store.size()).isEqualTo(2);
+        assertThat(store.search(axis(2), 4))
+                .extracting(scored -> scored.chunk().id())
+                .containsExactlyInAnyOrder("a#0", "b#0");
+    }
+
+    @Test
+    void fullIndexIsCompactedWhenChunksWereReplaced() {
+        var store = new InMemoryDocumentStore(16);
+
+        // 5 versions of the same 4 chunks, 20 upserts into a capacity of 16
+        for (int version = 0; version < 5; ++version) {
+            List<DocumentChunk> chunks = new ArrayList<>();
+            List<float[]> embeddings = new ArrayList<>();
+            for (int index = 0; index < 4; ++index) {
+                chunks.add(new DocumentChunk("a", index, "v" + version));
+                embeddings.add(axis(index));
+            }
+            store.upsert(chunks, embeddings);
+        }
+
+        assertThat(store.size()).isEqualTo(4);
+        assertThat(store.search(axis(3), 1).getFirst().chunk())
+                .isEqualTo(new DocumentChunk("a", 3, "v4"));
+    }
+
+    @Test
+    void upsertFailsOnceAllChunksAreLive() {
+        var store = new InMemoryDocumentStore(16);
+        List<DocumentChunk> chunks = new ArrayList<>();
+        List<float[]> embeddings = new ArrayList<>();
+        for (int index = 0; index < 16; ++index) {
+            chunks.add(chunk("a", index));
+            embeddings.add(axis(index % DIMENSIONS));
+        }
+        store.upsert(chunks, embeddings);
+
+        assertThatThrownBy(() -> store.upsert(List.of(chunk("b", 0)), List.of(axis(0))))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("full");
+    }
+
+    @Test
+    void emptyStoreFindsNothing() {
+        assertThat(new InMemoryDocumentStore(16).search(axis(0), 4)).isEmpty();
+    }
+
+    private static DocumentChunk chunk(String source, int index) {
+        return new DocumentChunk(source, index, source + " chunk " + index);
+    }
+
+    private static float[] axis(int dimension) {
+        float[] vector = new float[DIMENSIONS];
+        vector[dimension] = 1.0F;
+        return vector;
+    }
+
+    private static float[] mix(int first, int second) {
+        float[] vector = new float[DIMENSIONS];
+        vector[first] = 0.8F;
+        vector[second] = 0.6F;
+        return vector;
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.mstepan.demo_ai.rag;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class TextChunkerTest {
+
+    @Test
+    void shortTextIsASingleChunk() {
+        var chunker = new TextChunker(200, 20);
+
+        assertThat(chunker.split("  One short paragraph.\n"))
+                .containsExactly("One short paragraph.");
+        assertThat(chunker.split(" \n ")).isEmpty();
+    }
+
+    @Test
+    void chunksEndAtParagraphsAndSentences() {
+        var chunker = new TextChunker(100, 0);
+        String first = "First paragraph, it is about pirates and their ships.";
+        String second = "Second paragraph. It has two sentences and goes on for a while here.";
+
+        assertThat(chunker.split(first + "\n\n" + second)).containsExactly(first, second);
+
+        assertThat(
+                        new TextChunker(60, 0)
+                                .split(
+                                        "Sentence one is here. Sentence two is a bit longer than"
+                                                + " one. Sentence three ends it all."))
+                .containsExactly(
+                        "Sentence one is here. Sentence two is a bit longer than one.",
+                        "Sentence three ends it all.");
+    }
+
+    @Test
+    void chunksRespectMaxSizeAndOverlap() {
+        var chunker = new TextChunker(120, 40);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100; ++i) {
+            text.append("word").append(i).append(' ');
+        }
+
+        List<String> chunks = chunker.split(text.toString());
+
+        assertThat(chunks).hasSizeGreaterThan(5).allMatch(chunk -> chunk.length() <= 120);
+        for (int i = 1; i < chunks.size(); ++i) {
+            String previous = chunks.get(i - 1);
+            String firstWord = chunks.get(i).split(" ")[0];
+            // the next chunk starts with a whole word repeated from the end of the previous one
+            assertThat(previous).contains(" " + firstWord + " ");
+        }
+        assertThat(chunks.getFirst()).startsWith("word0 ");
+        assertThat(chunks.getLast()).endsWith("word99");
+    }
+
+    @Test
+    void wordLongerThanAChunkIsCut() {
+        var chunker = new TextChunker(100, 0);
+
+        List<String> chunks = chunker.split("x".repeat(250));
+
+        assertThat(chunks).extracting(String::length).containsExactly(100, 100, 50);
+    }
+
+    @Test
+    void splitterYieldsTheChunksOfSplitWhateverThePieces() {
+        var chunker = new TextChunker(120, 40);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 60; ++i) {
+            text.append("Pirate ship number ").append(i).append(" sails at dawn.");
+            text.append(i % 5 == 0 ? "\n\n" : " ");
+        }
+
+        for (int pieceSize : new int[] {1, 7, 119, 1000}) {
+            List<String> chunks = new ArrayList<>();
+            TextChunker.Splitter splitter = chunker.splitter(chunks::add);
+            for (int from = 0; from < text.length(); from += pieceSize) {
+                splitter.append(text.subSequence(from, Math.min(from + pieceSize, text.length())));
+            }
+            splitter.finish();
+
+            assertThat(chunks).isEqualTo(chunker.split(text.toString()));
+        }
+    }
+
+    @Test
+    void overlapMustBeAtMostHalfTheChunk() {
+        assertThatThrownBy(() -> new TextChunker(100, 51))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
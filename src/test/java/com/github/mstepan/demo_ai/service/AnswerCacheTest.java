@@ -0,0 +1,119 @@
+package com.github.mstepan.demo_ai.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.github.mstepan.demo_ai.domain.Question;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+class AnswerCacheTest {
+
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void normalizedQuestionHitsCache() {
+        var cache = newCache(true, "model-a", 1.0);
+
+        cache.put(new Question("What is the capital of France?"), "Paris.");
+
+        assertThat(cache.get(new Question("  what IS the   capital of\tFrance? ")))
+                .contains("Paris.");
+        assertThat(cache.get(new Question("What is the capital of Spain?"))).isEmpty();
+
+        assertThat(counter("hit")).isEqualTo(1.0);
+        assertThat(counter("miss")).isEqualTo(1.0);
+    }
+
+    @Test
+    void differentModelOrTemperatureMisses() {
+        var question = new Question("Why sky is blue?");
+        var cacheA = newCache(true, "model-a", 1.0);
+        cacheA.put(question, "Rayleigh scattering.");
+
+        assertThat(cacheA.get(question)).isPresent();
+        assertThat(newCache(true, "model-b", 1.0).get(question)).isEmpty();
+        assertThat(newCache(true, "model-a", 0.0).get(question)).isEmpty();
+    }
+
+    @Test
+    void knowledgeBaseChangeMisses() {
+        var question = new Question("Why sky is blue?");
+        var version = new AtomicLong();
+        var cache =
+                new AnswerCache(
+                        new ChatProperties.Cache(true, 100, Duration.ofMinutes(1), 4),
+                        "model-a",
+                        1.0,
+                        () -> 1,
+                        version::get,
+                        meterRegistry);
+        cache.put(question, "Rayleigh scattering.");
+        assertThat(cache.get(question)).isPresent();
+
+        version.incrementAndGet();
+
+        assertThat(cache.get(question)).isEmpty();
+    }
+
+    @Test
+    void disabledCacheStoresNothing() {
+        var cache = newCache(false, "model-a", 1.0);
+
+        cache.put(new Question("q"), "a");
+
+        assertThat(cache.get(new Question("q"))).isEmpty();
+        assertThat(meterRegistry.find("app_oci_chat_cache_total").counters())
+                .allMatch(counter -> counter.count() == 0.0);
+    }
+
+    @Test
+    void replaySplitsAnswerIntoChunks() {
+        var cache = newCache(true, "model-a", 1.0);
+
+        List<String> chunks = cache.replay("abcdefghij").collectList().block();
+
+        assertThat(chunks).containsExactly("abcd", "efgh", "ij");
+    }
+
+    @Test
+    void chunkNeverSplitsSurrogatePairs() {
+        String text = "ab😀cd";
+
+        List<String> chunks = AnswerCache.chunk(text, 3);
+
+        assertThat(String.join("", chunks)).isEqualTo(text);
+        assertThat(chunks).first().isEqualTo("ab😀");
+    }
+
+    private AnswerCache newCache(boolean enabled, String model, double temperature) {
+        // caches share the registry, meters are looked up by name/tags
+        return new AnswerCache(
+                new ChatProperties.Cache(enabled, 100, Duration.ofMinutes(1), 4),
+                model,
+                temperature,
+                () -> 1,
+                () -> -1L,
+                meterRegistry);
+    }
+
+    private double counter(String result) {
+        return meterRegistry
+                .get("app_oci_chat_cache_total")
+                .tag("result", result)
+                .counter()
+                .count();
+    }
+}
@@ -0,0 +1,157 @@
+package com.github.mstepan.demo_ai.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.github.mstepan.demo_ai.domain.Answer;
+import com.github.mstepan.demo_ai.domain.Question;
+import com.github.mstepan.demo_ai.oci.DeadlineExceededException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+class AskJobServiceTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(60);
+
+    @TempDir Path directory;
+
+    private final ChatService chatService = mock(ChatService.class);
+
+    @Test
+    void submittedJobCompletesInTheBackground() throws Exception {
+        CountDownLatch answering = new CountDownLatch(1);
+        when(chatService.askQuestion(any(Question.class)))
+                .thenAnswer(
+                        call -> {
+                            answering.await();
+                            return new Answer("Blue");
+                        });
+        AskJobService jobService = jobService(4, 10, Duration.ofMinutes(15), null);
+
+        AskJob queued = jobService.submit(new Question("Sky color?"), null, "client", TIMEOUT);
+        assertThat(queued.state()).isEqualTo(AskJob.State.QUEUED);
+        assertThat(jobService.find(queued.id()).orElseThrow().state().isFinished()).isFalse();
+
+        answering.countDown();
+        AskJob done =
+                jobService.completion(queued.id()).orElseThrow().get(5L, TimeUnit.SECONDS);
+
+        assertThat(done.state()).isEqualTo(AskJob.State.COMPLETED);
+        assertThat(done.answer()).isEqualTo("Blue");
+        assertThat(done.finishedAt()).isNotNull();
+        assertThat(jobService.find(queued.id())).contains(done);
+        assertThat(jobService.completion(queued.id()).orElseThrow()).isCompletedWithValue(done);
+        assertThat(done.toJson())
+                .contains("\"state\":\"completed\"")
+                .contains("\"answer\":\"Blue\"");
+    }
+
+    @Test
+    void failedJobGetsAnErrorCode() throws Exception {
+        when(chatService.askQuestion(any(Question.class), any(EvaluationMode.class)))
+                .thenThrow(new DeadlineExceededException("Deadline exceeded"));
+        AskJobService jobService = jobService(4, 10, Duration.ofMinutes(15), null);
+
+        AskJob queued =
+                jobService.submit(
+                        new Question("Sky color?"), EvaluationMode.ASYNC, "client", TIMEOUT);
+        AskJob done =
+                jobService.completion(queued.id()).orElseThrow().get(5L, TimeUnit.SECONDS);
+
+        assertThat(done.state()).isEqualTo(AskJob.State.FAILED);
+        assertThat(done.error()).isEqualTo("deadline-exceeded");
+        assertThat(done.answer()).isNull();
+    }
+
+    @Test
+    void submissionsBeyondMaxPendingAreRejected() throws Exception {
+        CountDownLatch answering = new CountDownLatch(1);
+        when(chatService.askQuestion(any(Question.class)))
+                .thenAnswer(
+                        call -> {
+                            answering.await();
+                            return new Answer("Blue");
+                        });
+        AskJobService jobService = jobService(1, 2, Duration.ofMinutes(15), null);
+
+        AskJob first = jobService.submit(new Question("One?"), null, "client", TIMEOUT);
+        AskJob second = jobService.submit(new Question("Two?"), null, "client", TIMEOUT);
+        assertThatThrownBy(() -> jobService.submit(new Question("Three?"), null, "client", TIMEOUT))
+                .isInstanceOf(AskJobQueueFullException.class);
+
+        answering.countDown();
+        jobService.completion(first.id()).orElseThrow().get(5L, TimeUnit.SECONDS);
+        jobService.completion(second.id()).orElseThrow().get(5L, TimeUnit.SECONDS);
+        assertThat(jobService.submit(new Question("Four?"), null, "client", TIMEOUT).state())
+                .isEqualTo(AskJob.State.QUEUED);
+    }
+
+    @Test
+    void finishedJobsAreEvictedAfterTheirTtl() throws Exception {
+        when(chatService.askQuestion(any(Question.class))).thenReturn(new Answer("Blue"));
+        AskJobService jobService = jobService(4, 10, Duration.ofMillis(50), null);
+
+        AskJob queued = jobService.submit(new Question("Sky color?"), null, "client", TIMEOUT);
+        jobService.completion(queued.id()).orElseThrow().get(5L, TimeUnit.SECONDS);
+        Thread.sleep(100L);
+
+        assertThat(jobService.find(queued.id())).isEmpty();
+        assertThat(jobService.completion(queued.id())).isEmpty();
+    }
+
+    @Test
+    void loggedJobsAreRestoredAfterARestart() throws Exception {
+        when(chatService.askQuestion(any(Question.class))).thenReturn(new Answer("Blue"));
+        AskJobService before = jobService(4, 10, Duration.ofMinutes(15), directory);
+        AskJob done =
+                before.completion(
+                                before.submit(new Question("Sky color?"), null, "client", TIMEOUT)
+                                        .id())
+                        .orElseThrow()
+                        .get(5L, TimeUnit.SECONDS);
+        before.destroy();
+
+        // a job that was still queued when the application stopped
+        AskJob pending = AskJob.queued("pending-job", "Sea color?", Instant.now());
+        Files.writeString(
+                directory.resolve(AskJobLog.FILE_NAME),
+                pending.toJson() + "\n{\"id\":\"cut-short\",\"sta",
+                StandardOpenOption.APPEND);
+
+        AskJobService after = jobService(4, 10, Duration.ofMinutes(15), directory);
+
+        assertThat(after.find(done.id())).contains(done);
+        assertThat(after.find("pending-job").orElseThrow().error()).isEqualTo("interrupted");
+        assertThat(after.find("cut-short")).isEmpty();
+        after.destroy();
+    }
+
+    private AskJobService jobService(int concurrency, int maxPending, Duration ttl, Path logDir) {
+        return new AskJobService(
+                chatService,
+                new ChatProperties.Jobs(
+                        concurrency,
+                        maxPending,
+                        100,
+                        ttl,
+                        Duration.ofMinutes(5),
+                        logDir == null ? null : logDir.toString()),
+                new ChatProperties.RequestTimeout(
+                        Duration.ofSeconds(60), Duration.ofSeconds(120), Duration.ofSeconds(1)),
+                new SimpleMeterRegistry());
+    }
+}
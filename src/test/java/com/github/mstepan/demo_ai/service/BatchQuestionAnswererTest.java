@@ -0,0 +1,231 @@
+package com.github.mstepan.demo_ai.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.github.mstepan.demo_ai.domain.Answer;
+import com.github.mstepan.demo_ai.domain.Question;
+import com.github.mstepan.demo_ai.oci.ConcurrencyLimitExceededException;
+import com.github.mstepan.demo_ai.service.BatchQuestionAnswerer.BatchAnswer;
+import com.github.mstepan.demo_ai.service.BatchQuestionAnswerer.JobState;
+import com.github.mstepan.demo_ai.service.BatchQuestionAnswerer.JobStatus;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+class BatchQuestionAnswererTest {
+
+    @TempDir Path directory;
+
+    private final ChatService chatService = mock(ChatService.class);
+
+    private final Queue<BatchAnswer> answers = new ConcurrentLinkedQueue<>();
+
+    @Test
+    void identicalQuestionsAreAskedOnce() throws IOException {
+        when(chatService.askQuestion(any(Question.class), eq(EvaluationMode.BLOCKING)))
+                .thenAnswer(call -> new Answer(call.getArgument(0, Question.class).question()));
+
+        JobStatus summary =
+                answer(
+                        line("a", "Who is Captain Krael?")
+                                + line("b", "  who is captain krael? ")
+                                + line("c", "Where is the gold?"),
+                        null);
+
+        assertThat(byId()).containsOnlyKeys("a", "b", "c");
+        assertThat(byId().get("b").answer()).isEqualTo(byId().get("a").answer());
+        verify(chatService, times(2)).askQuestion(any(Question.class), eq(EvaluationMode.BLOCKING));
+        assertThat(summary.state()).isEqualTo(JobState.COMPLETED);
+        assertThat(summary.items()).isEqualTo(3);
+        assertThat(summary.answered()).isEqualTo(2);
+        assertThat(summary.duplicates()).isOne();
+        assertThat(summary.toJson()).contains("\"state\":\"completed\"");
+    }
+
+    @Test
+    void failedAndInvalidItemsGetAnErrorAndNeverFailTheBatch() throws IOException {
+        when(chatService.askQuestion(any(Question.class), eq(EvaluationMode.BLOCKING)))
+                .thenThrow(new ConcurrencyLimitExceededException("limit reached", 4))
+                .thenReturn(new Answer("Blue"));
+
+        JobStatus summary =
+                answer(
+                        line("a", "What color is the sea?")
+                                + "not json\n"
+                                + "{\"id\":7}\n"
+                                + "\n"
+                                + line("b", "What color is the sky?"),
+                        null);
+
+        // questions are answered in parallel, either one may get the failure
+        assertThat(byId()).containsOnlyKeys("a", "b", "2", "7");
+        assertThat(byId().get("2").error()).isEqualTo("invalid");
+        assertThat(byId().get("7").error()).isEqualTo("invalid");
+        assertThat(List.of(byId().get("a"), byId().get("b")))
+                .extracting(BatchAnswer::error)
+                .containsExactlyInAnyOrder("overloaded", null);
+        assertThat(summary.items()).isEqualTo(4);
+        assertThat(summary.answered()).isOne();
+        assertThat(summary.failed()).isEqualTo(3);
+    }
+
+    @Test
+    void rerunOfAJobAsksOnlyQuestionsWithoutAStoredAnswer() throws IOException {
+        String questions =
+                line("a", "Who is Captain Krael?")
+                        + line("b", "Where is the gold?")
+                        + line("c", "Who sank the ship?");
+        when(chatService.askQuestion(any(Question.class), eq(EvaluationMode.BLOCKING)))
+                .thenAnswer(
+                        call -> {
+                            String question = call.getArgument(0, Question.class).question();
+                            if (question.contains("gold")) {
+                                throw new IllegalStateException("boom");
+                            }
+                            return new Answer("Answer to " + question);
+                        });
+        answer(questions, "pirates");
+        assertThat(byId().get("b").error()).isEqualTo("internal");
+
+        answers.clear();
+        when(chatService.askQuestion(any(Question.class), eq(EvaluationMode.BLOCKING)))
+                .thenReturn(new Answer("On the island"));
+        JobStatus summary = answer(questions, "pirates");
+
+        assertThat(summary.resumed()).isEqualTo(2);
+        assertThat(summary.answered()).isOne();
+        assertThat(byId().get("b").answer()).isEqualTo("On the island");
+        verify(chatService, times(4)).askQuestion(any(Question.class), eq(EvaluationMode.BLOCKING));
+
+        assertThat(answerer().storedAnswers("pirates").orElseThrow())
+                .extracting(BatchAnswer::id, BatchAnswer::error)
+                .containsExactlyInAnyOrder(tuple("a", null), tuple("b", null), tuple("c", null));
+        assertThat(answerer().status("pirates").orElseThrow().state())
+                .isEqualTo(JobState.STORED);
+    }
+
+    @Test
+    void duplicateOfAnEvictedResultIsAskedAgain() throws IOException {
+        when(chatService.askQuestion(any(Question.class), eq(EvaluationMode.BLOCKING)))
+                .thenReturn(new Answer("Arr"));
+        int distinct = BatchQuestionAnswerer.MAX_FINISHED_QUESTIONS + 10;
+        StringBuilder questions = new StringBuilder();
+        for (int i = 0; i < distinct; ++i) {
+            questions.append(line("q" + i, "Question number " + i + "?"));
+        }
+        questions.append(line("again", "Question number 0?"));
+
+        JobStatus summary = answer(questions.toString(), null);
+
+        assertThat(byId().get("again").answer()).isEqualTo("Arr");
+        assertThat(summary.answered()).isEqualTo(distinct + 1);
+        assertThat(summary.duplicates()).isZero();
+    }
+
+    @Test
+    void itemWaitingForASlotIsAnsweredWhenTheBatchIsInterrupted() throws Exception {
+        CountDownLatch asked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(chatService.askQuestion(any(Question.class), eq(EvaluationMode.BLOCKING)))
+                .thenAnswer(
+                        call -> {
+                            asked.countDown();
+                            try {
+                                release.await(5, TimeUnit.SECONDS);
+                            } catch (InterruptedException interEx) {
+                                Thread.currentThread().interrupt();
+                            }
+                            return new Answer("Blue");
+                        });
+        String questions = line("a", "What color is the sea?") + line("b", "Where is the gold?");
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<JobStatus> batch =
+                    executor.submit(
+                            () ->
+                                    answerer(1)
+                                            .answer(
+                                                    new ByteArrayInputStream(
+                                                            questions.getBytes(
+                                                                    StandardCharsets.UTF_8)),
+                                                    null,
+                                                    EvaluationMode.BLOCKING,
+                                                    TokenBudget.ANONYMOUS,
+                                                    answers::add));
+            asked.await(5, TimeUnit.SECONDS);
+            // let the reader block on the only slot, then stop it
+            Thread.sleep(50L);
+            batch.cancel(true);
+            release.countDown();
+        }
+
+        assertThat(byId().get("b").error()).isEqualTo("interrupted");
+        assertThat(byId().get("a").answer()).isEqualTo("Blue");
+    }
+
+    @Test
+    void invalidJobNameIsRejected() {
+        assertThatThrownBy(() -> answer(line("a", "Ahoy?"), "../etc/passwd"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Invalid job name");
+        assertThat(answers).isEmpty();
+    }
+
+    private BatchQuestionAnswerer answerer() {
+        return answerer(4);
+    }
+
+    private BatchQuestionAnswerer answerer(int concurrency) {
+        return new BatchQuestionAnswerer(
+                chatService,
+                new ChatProperties.Batch(concurrency, directory.toString(), 16384),
+                new ChatProperties.RequestTimeout(
+                        Duration.ofSeconds(60), Duration.ofSeconds(120), Duration.ofSeconds(1)),
+                new SimpleMeterRegistry());
+    }
+
+    private JobStatus answer(String jsonl, String job) throws IOException {
+        return answerer()
+                .answer(
+                        new ByteArrayInputStream(jsonl.getBytes(StandardCharsets.UTF_8)),
+                        job,
+                        EvaluationMode.BLOCKING,
+                        TokenBudget.ANONYMOUS,
+                        answers::add);
+    }
+
+    private Map<String, BatchAnswer> byId() {
+        return answers.stream().collect(Collectors.toMap(BatchAnswer::id, Function.identity()));
+    }
+
+    private static String line(String id, String question) {
+        return "{\"id\":\"" + id + "\",\"question\":\"" + question + "\"}\n";
+    }
+}
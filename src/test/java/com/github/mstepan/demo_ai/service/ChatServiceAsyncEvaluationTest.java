@@ -0,0 +1,122 @@
+package com.github.mstepan.demo_ai.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.github.mstepan.demo_ai.domain.Answer;
+import com.github.mstepan.demo_ai.domain.Question;
+import com.github.mstepan.demo_ai.prompts.PromptTemplateRegistry;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.evaluation.EvaluationRequest;
+import org.springframework.ai.evaluation.EvaluationResponse;
+import org.springframework.ai.evaluation.Evaluator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@SpringBootTest(
+        classes = {
+                    ChatService.class,
+                    AnswerCache.class,
+                    SemanticAnswerCache.class,
+                    PromptTemplateRegistry.class,
+                    TokenBudget.class,
+                    ChatServiceTest.MockConfig.class
+                },
+        properties = {"app.chat.evaluation.mode=async", "app.chat.evaluation.sample_rate=1.0"})
+class ChatServiceAsyncEvaluationTest {
+
+    @Autowired ChatService chatService;
+
+    @Autowired ChatClient chatClient;
+
+    @Autowired
+    @Qualifier("relevancyEvaluator")
+    Evaluator evaluator;
+
+    @Autowired MeterRegistry meterRegistry;
+
+    @MockitoBean RelevancyAuditLog auditLog;
+
+    @BeforeEach
+    void setUp() {
+        reset(chatClient, evaluator);
+
+        ChatResponse chatResponse = Mockito.mock(ChatResponse.class, RETURNS_DEEP_STUBS);
+        when(chatResponse.getMetadata().getUsage()).thenReturn(null);
+        when(chatResponse.getResult().getOutput().getText()).thenReturn("Unchecked answer.");
+
+        when(chatClient
+                        .prompt()
+                        .system(anyString())
+                        .user(anyString())
+                        .call()
+                        .chatResponse())
+                .thenReturn(chatResponse);
+    }
+
+    @Test
+    void answerIsReturnedBeforeEvaluationAndFailureIsAudited() throws Exception {
+        CountDownLatch answerReturned = new CountDownLatch(1);
+        when(evaluator.evaluate(any(EvaluationRequest.class)))
+                .thenAnswer(
+                        invocation -> {
+                            // the caller must not wait for the evaluation
+                            assertThat(answerReturned.await(5, TimeUnit.SECONDS)).isTrue();
+                            return new EvaluationResponse(false, 0.0F, "", Collections.emptyMap());
+                        });
+
+        Answer answer = chatService.askQuestion(new Question("Audit me later"));
+        answerReturned.countDown();
+
+        assertThat(answer.answer()).isEqualTo("Unchecked answer.");
+        verify(auditLog, timeout(5_000))
+                .record(
+                        eq(EvaluationMode.ASYNC),
+                        eq("Audit me later"),
+                        eq("Unchecked answer."),
+                        eq("not_relevant"),
+                        isNull());
+        assertThat(
+                        meterRegistry
+                                .get("app_evaluator_relevancy_total")
+                                .tag("outcome", "no")
+                                .counter()
+                                .count())
+                .isGreaterThanOrEqualTo(1.0);
+        // no retry in the async mode
+        verify(evaluator, times(1)).evaluate(any(EvaluationRequest.class));
+    }
+
+    @Test
+    void blockingModeIsStillAvailablePerRequest() {
+        when(evaluator.evaluate(any(EvaluationRequest.class)))
+                .thenReturn(new EvaluationResponse(false, 0.0F, "", Collections.emptyMap()));
+
+        Answer answer =
+                chatService.askQuestion(new Question("Validate me now"), EvaluationMode.BLOCKING);
+
+        assertThat(answer.answer()).isEqualTo("Can't find answer to your question.");
+    }
+}
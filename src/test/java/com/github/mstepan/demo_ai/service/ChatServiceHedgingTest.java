@@ -0,0 +1,266 @@
+package com.github.mstepan.demo_ai.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.github.mstepan.demo_ai.domain.Answer;
+import com.github.mstepan.demo_ai.domain.Question;
+import com.github.mstepan.demo_ai.oci.AdaptiveConcurrencyLimiter;
+import com.github.mstepan.demo_ai.oci.OCIChatModel;
+import com.github.mstepan.demo_ai.oci.OCICircuitBreaker;
+import com.github.mstepan.demo_ai.oci.OCIGenAiClientPool;
+import com.github.mstepan.demo_ai.oci.OCIGenAiProperties;
+import com.github.mstepan.demo_ai.oci.OCIGenAiRouter;
+import com.github.mstepan.demo_ai.oci.OCIGenAiStreamingSinkFactory;
+import com.github.mstepan.demo_ai.oci.OCIGenAiUnavailableException;
+import com.github.mstepan.demo_ai.oci.OCILogService;
+import com.github.mstepan.demo_ai.prompts.PromptTemplateRegistry;
+import com.oracle.bmc.generativeaiinference.GenerativeAiInferenceClient;
+import com.oracle.bmc.generativeaiinference.requests.ChatRequest;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.evaluation.EvaluationRequest;
+import org.springframework.ai.evaluation.EvaluationResponse;
+import org.springframework.ai.evaluation.Evaluator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.retry.support.RetryTemplate;
+
+import java.net.SocketException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@SpringBootTest(
+        classes = {
+                    ChatService.class,
+                    AnswerCache.class,
+                    SemanticAnswerCache.class,
+                    RelevancyAuditLog.class,
+                    PromptTemplateRegistry.class,
+                    TokenBudget.class,
+                    ChatServiceTest.MockConfig.class
+                },
+        properties = {"app.chat.hedging.enabled=true", "app.chat.hedging.candidates=3"})
+class ChatServiceHedgingTest {
+
+    @Autowired ChatService chatService;
+
+    @Autowired ChatClient chatClient;
+
+    @Autowired
+    @Qualifier("relevancyEvaluator")
+    Evaluator evaluator;
+
+    @Autowired MeterRegistry meterRegistry;
+
+    private ChatResponse hedgedResponse;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        reset(chatClient, evaluator);
+
+        hedgedResponse = Mockito.mock(ChatResponse.class, RETURNS_DEEP_STUBS);
+        when(hedgedResponse.getMetadata().getUsage()).thenReturn(null);
+        when(hedgedResponse.getResult().getOutput().getText()).thenReturn("Hedged answer.");
+
+        when(chatClient
+                        .prompt()
+                        .system(anyString())
+                        .user(anyString())
+                        .call()
+                        .chatResponse())
+                .thenReturn(hedgedResponse);
+    }
+
+    @Test
+    void firstRelevantCandidateWins() {
+        double retriesBefore = retries();
+        // Only the third evaluated candidate is relevant
+        AtomicInteger evaluations = new AtomicInteger();
+        when(evaluator.evaluate(any(EvaluationRequest.class)))
+                .thenAnswer(
+                        invocation ->
+                                new EvaluationResponse(
+                                        evaluations.incrementAndGet() >= 3,
+                                        "",
+                                        Collections.emptyMap()));
+
+        Answer answer = chatService.askQuestion(new Question("What is hedging?"));
+
+        assertThat(answer.answer()).isEqualTo("Hedged answer.");
+        assertThat(evaluations.get()).isEqualTo(3);
+        assertThat(
+                        meterRegistry
+                                .find("app_oci_chat_hedged_total")
+                                .tags("outcome", "accepted")
+                                .counter())
+                .isNotNull();
+        // Losing candidates are not retries
+        assertThat(retries()).isEqualTo(retriesBefore);
+    }
+
+    @Test
+    void noRelevantCandidateFallsBackToRecover() {
+        double retriesBefore = retries();
+        when(evaluator.evaluate(any(EvaluationRequest.class)))
+                .thenReturn(new EvaluationResponse(false, 0.0f, "", Collections.emptyMap()));
+
+        Answer answer = chatService.askQuestion(new Question("Irrelevant please"));
+
+        assertThat(answer.answer()).isEqualTo("Can't find answer to your question.");
+        var rejected =
+                meterRegistry
+                        .find("app_oci_chat_hedged_total")
+                        .tags("outcome", "rejected")
+                        .counter();
+        assertThat(rejected).isNotNull();
+        // Both retry attempts are hedged and rejected
+        assertThat(rejected.count()).isGreaterThanOrEqualTo(2.0);
+        // Once per rejected attempt plus the recovery, as without hedging, not once per candidate
+        assertThat(retries() - retriesBefore).isEqualTo(3.0);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void cancelledLosersAreNotEndpointFailures() throws Exception {
+        when(evaluator.evaluate(any(EvaluationRequest.class)))
+                .thenReturn(new EvaluationResponse(true, 1.0f, "", Collections.emptyMap()));
+
+        // Losers block in OCI until they are cancelled; interrupting a virtual thread closes its
+        // socket, so the call fails with a SocketException
+        GenerativeAiInferenceClient client = mock(GenerativeAiInferenceClient.class);
+        CountDownLatch losersCalling = new CountDownLatch(2);
+        when(client.chat(any(ChatRequest.class)))
+                .thenAnswer(
+                        invocation -> {
+                            losersCalling.countDown();
+                            try {
+                                Thread.sleep(10_000L);
+                            } catch (InterruptedException interEx) {
+                                Thread.currentThread().interrupt();
+                            }
+                            throw new IllegalStateException(
+                                    new SocketException("Closed by interrupt"));
+                        });
+
+        Map<String, String> settings =
+                Map.of(
+                        "oci.genai.base.url",
+                        "http://localhost:8080",
+                        "oci.genai.profile",
+                        "DEFAULT",
+                        "oci.genai.compartment",
+                        "ocid1.compartment.oc1..aaaaaaaatest",
+                        "oci.genai.model",
+                        "test-model",
+                        // a single failure would open the breaker
+                        "oci.genai.circuit-breaker.minimum-calls",
+                        "1");
+        OCIGenAiProperties properties =
+                new Binder(new MapConfigurationPropertySource(settings))
+                        .bindOrCreate("oci.genai", OCIGenAiProperties.class);
+        var ociMeterRegistry = new SimpleMeterRegistry();
+        var breaker = new OCICircuitBreaker(properties.circuitBreaker(), "test", ociMeterRegistry);
+        var router =
+                new OCIGenAiRouter(
+                        List.of(
+                                new OCIGenAiRouter.Endpoint(
+                                        "test",
+                                        new OCIGenAiClientPool(
+                                                () -> client,
+                                                properties.pool(),
+                                                "test",
+                                                ociMeterRegistry),
+                                        breaker)),
+                        properties.routing().decayTime(),
+                        properties.readTimeout(),
+                        ociMeterRegistry);
+        var limiter = new AdaptiveConcurrencyLimiter(properties.limiter(), ociMeterRegistry);
+        var chatModel =
+                new OCIChatModel(
+                        router,
+                        limiter,
+                        RetryTemplate.builder()
+                                .maxAttempts(3)
+                                .retryOn(OCIGenAiUnavailableException.class)
+                                .build(),
+                        new OCILogService(),
+                        properties,
+                        new OCIGenAiStreamingSinkFactory(
+                                router, limiter, new OCILogService(), properties));
+        var prompt = new Prompt(List.of(new SystemMessage("system"), new UserMessage("user")));
+
+        // The first candidate wins once the other two are calling OCI
+        AtomicInteger candidates = new AtomicInteger();
+        CountDownLatch losersDone = new CountDownLatch(2);
+        when(chatClient
+                        .prompt()
+                        .system(anyString())
+                        .user(anyString())
+                        .call()
+                        .chatResponse())
+                .thenAnswer(
+                        invocation -> {
+                            if (candidates.getAndIncrement() == 0) {
+                                losersCalling.await(5L, TimeUnit.SECONDS);
+                                return hedgedResponse;
+                            }
+                            try {
+                                return chatModel.call(prompt);
+                            } finally {
+                                losersDone.countDown();
+                            }
+                        });
+
+        try {
+            Answer answer = chatService.askQuestion(new Question("Who loses the hedge?"));
+
+            assertThat(answer.answer()).isEqualTo("Hedged answer.");
+            assertThat(losersDone.await(5L, TimeUnit.SECONDS)).isTrue();
+            assertThat(breaker.state()).isEqualTo(OCICircuitBreaker.State.CLOSED);
+            assertThat(
+                            ociMeterRegistry
+                                    .get("app_oci_endpoint_failures_total")
+                                    .tag("endpoint", "test")
+                                    .counter()
+                                    .count())
+                    .isZero();
+            // cancelled calls are not retried
+            verify(client, times(2)).chat(any(ChatRequest.class));
+        } finally {
+            chatModel.destroy();
+            router.close();
+        }
+    }
+
+    private double retries() {
+        return meterRegistry
+                .counter("app_llm_retries_total", "reason", "AnswerNotRelevantException")
+                .count();
+    }
+}
@@ -3,7 +3,9 @@ package com.github.mstepan.demo_ai.service;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import com.github.mstepan.demo_ai.domain.Question;
+import com.github.mstepan.demo_ai.rag.DocumentIngestor;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.springframework.ai.chat.client.ChatClient;
@@ -17,8 +19,20 @@ import org.springframework.boot.test.context.SpringBootTest;
 @Tag("exhaustive")
 public class ChatServiceIntegrationTest {
 
+    private static final String FACTS =
+            """
+            Here are few pirate names:
+                1. Blackbeak Betty "The Buccaneer"
+                2.*Captain Krael "The Kraken"
+                3. Bartholomew "Blackheart" Blake
+                4. Calico "The Corsair" Jack
+                5. Mad Dog McSweeney "The Scourge"
+            """;
+
     @Autowired ChatService chatService;
 
+    @Autowired DocumentIngestor documentIngestor;
+
     @Autowired ChatClient.Builder chatClientBuilder;
 
     @Autowired
@@ -29,6 +43,11 @@ public class ChatServiceIntegrationTest {
     @Qualifier("ociGenAIFactsEvaluator")
     Evaluator factsEvaluator;
 
+    @BeforeEach
+    void setUp() {
+        documentIngestor.ingest("pirate-names", FACTS);
+    }
+
     @Test
     void evaluateRelevancy() {
         var userQuestion = "Generate top 5 pirate names.";
@@ -2,13 +2,18 @@ package com.github.mstepan.demo_ai.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.when;
 
 import com.github.mstepan.demo_ai.domain.Answer;
 import com.github.mstepan.demo_ai.domain.Question;
+import com.github.mstepan.demo_ai.oci.OCIGenAiProperties;
+import com.github.mstepan.demo_ai.prompts.PromptProperties;
+import com.github.mstepan.demo_ai.prompts.PromptTemplateRegistry;
 
+import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
@@ -22,24 +27,40 @@ import org.springframework.ai.evaluation.EvaluationResponse;
 import org.springframework.ai.evaluation.Evaluator;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Primary;
-import org.springframework.core.io.Resource;
 import org.springframework.retry.annotation.EnableRetry;
 
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
 
 import java.util.Collections;
 import java.util.List;
-import java.util.function.Consumer;
-
-@SpringBootTest(classes = {ChatService.class, ChatServiceTest.MockConfig.class})
+import java.util.concurrent.CopyOnWriteArrayList;
+
+@SpringBootTest(
+        classes = {
+                    ChatService.class,
+                    AnswerCache.class,
+                    SemanticAnswerCache.class,
+                    RelevancyAuditLog.class,
+                    PromptTemplateRegistry.class,
+                    TokenBudget.class,
+                    ChatServiceTest.MockConfig.class
+                })
 class ChatServiceTest {
 
     @TestConfiguration
     @EnableRetry
+    @EnableConfigurationProperties({
+        ChatProperties.class,
+        OCIGenAiProperties.class,
+        PromptProperties.class
+    })
     static class MockConfig {
         @Bean
         @Primary
@@ -59,7 +80,7 @@ class ChatServiceTest {
 
         @Bean
         @Primary
-        @Qualifier("ociGenAIRelevancyEvaluator")
+        @Qualifier("relevancyEvaluator")
         Evaluator evaluator() {
             return Mockito.mock(Evaluator.class);
         }
@@ -76,7 +97,7 @@ class ChatServiceTest {
     @Autowired ChatClient chatClient;
 
     @Autowired
-    @Qualifier("ociGenAIRelevancyEvaluator")
+    @Qualifier("relevancyEvaluator")
     Evaluator evaluator;
 
     @Autowired MeterRegistry meterRegistry;
@@ -98,8 +119,8 @@ class ChatServiceTest {
 
         when(chatClient
                         .prompt()
-                        .system(any(Resource.class))
-                        .user(any(Consumer.class))
+                        .system(anyString())
+                        .user(anyString())
                         .call()
                         .chatResponse())
                 .thenReturn(chatResponse);
@@ -131,8 +152,8 @@ class ChatServiceTest {
 
         when(chatClient
                         .prompt()
-                        .system(any(Resource.class))
-                        .user(any(Consumer.class))
+                        .system(anyString())
+                        .user(anyString())
                         .call()
                         .chatResponse())
                 .thenReturn(chatResponse);
@@ -169,8 +190,8 @@ class ChatServiceTest {
         // Arrange ChatClient chain to return null ChatResponse
         when(chatClient
                         .prompt()
-                        .system(any(Resource.class))
-                        .user(any(Consumer.class))
+                        .system(anyString())
+                        .user(anyString())
                         .call()
                         .chatResponse())
                 .thenReturn(null);
@@ -192,7 +213,7 @@ class ChatServiceTest {
         // Arrange streaming chain
         Flux<String> publisher = Flux.just("chunk-1", "chunk-2", "chunk-3");
 
-        when(chatClient.prompt().system(any(Resource.class)).user(any(Consumer.class)).stream()
+        when(chatClient.prompt().system(anyString()).user(anyString()).stream()
                         .content())
                 .thenReturn(publisher);
 
@@ -207,4 +228,32 @@ class ChatServiceTest {
         assertThat(chunks).isNotNull();
         assertThat(chunks).containsExactly("chunk-1", "chunk-2", "chunk-3");
     }
+
+    @Test
+    void sharedStreamIsChargedAfterItsStarterLeft() {
+        Sinks.Many<String> upstream = Sinks.many().unicast().onBackpressureBuffer();
+        when(chatClient.prompt().system(anyString()).user(anyString()).stream()
+                        .content())
+                .thenReturn(upstream.asFlux());
+        Counter completionTokens =
+                meterRegistry.counter("app_oci_chat_tokens_total", "type", "completion");
+        double before = completionTokens.count();
+
+        Question question = new Question("Stream it to both of us");
+        Disposable starter = chatService.askQuestionStreaming(question).subscribe();
+        List<String> joined = new CopyOnWriteArrayList<>();
+        chatService.askQuestionStreaming(question).subscribe(joined::add);
+
+        upstream.tryEmitNext("The first chunk, ");
+        // the starter disconnects, the upstream goes on for the caller that joined
+        starter.dispose();
+        upstream.tryEmitNext("the second chunk.");
+        upstream.tryEmitComplete();
+
+        assertThat(joined).containsExactly("The first chunk, ", "the second chunk.");
+        // the whole upstream is charged once, to the starter's reservation
+        assertThat(completionTokens.count() - before)
+                .isEqualTo(
+                        (double) TokenBudget.estimateTokens("The first chunk, the second chunk."));
+    }
 }
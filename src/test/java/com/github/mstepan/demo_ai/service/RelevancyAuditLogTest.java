@@ -0,0 +1,43 @@
+package com.github.mstepan.demo_ai.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+class RelevancyAuditLogTest {
+
+    @TempDir Path dir;
+
+    @Test
+    void recordsAreAppendedAsJsonLines() throws Exception {
+        Path file = dir.resolve("audit/relevancy.jsonl");
+
+        var auditLog = new RelevancyAuditLog(file.toString());
+        auditLog.record(
+                EvaluationMode.ASYNC, "Why?", "Because \"reasons\"\n", "not_relevant", null);
+        auditLog.record(EvaluationMode.ASYNC, "How?", "Somehow", "error", "timeout");
+        auditLog.destroy();
+
+        List<String> lines = Files.readAllLines(file);
+        assertThat(lines).hasSize(2);
+
+        var mapper = new ObjectMapper();
+        JsonNode first = mapper.readTree(lines.get(0));
+        assertThat(first.get("mode").asText()).isEqualTo("async");
+        assertThat(first.get("verdict").asText()).isEqualTo("not_relevant");
+        assertThat(first.get("answer").asText()).isEqualTo("Because \"reasons\"\n");
+        assertThat(first.has("detail")).isFalse();
+        assertThat(first.get("timestamp").asText()).isNotBlank();
+
+        JsonNode second = mapper.readTree(lines.get(1));
+        assertThat(second.get("detail").asText()).isEqualTo("timeout");
+    }
+}
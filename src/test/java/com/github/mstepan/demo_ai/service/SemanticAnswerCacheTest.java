@@ -0,0 +1,195 @@
+package com.github.mstepan.demo_ai.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.github.mstepan.demo_ai.domain.Question;
+import com.github.mstepan.demo_ai.embedding.Embedder;
+import com.github.mstepan.demo_ai.embedding.HashingEmbedder;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+class SemanticAnswerCacheTest {
+
+    private final Embedder embedder = new HashingEmbedder(384);
+
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void paraphrasedQuestionHitsCache() {
+        var cache = newCache(0.75, 100, null);
+        var question = new Question("What is the capital city of France?");
+
+        var miss = cache.lookup(question);
+        assertThat(miss.answer()).isEmpty();
+        cache.put(miss, question, "Paris.");
+
+        var hit = cache.lookup(new Question("what is the capital city of France"));
+        assertThat(hit.answer()).contains("Paris.");
+
+        assertThat(counter("hit")).isEqualTo(1.0);
+        assertThat(counter("miss")).isEqualTo(1.0);
+    }
+
+    @Test
+    void unrelatedQuestionMisses() {
+        var cache = newCache(0.75, 100, null);
+        var question = new Question("What is the capital city of France?");
+        cache.put(cache.lookup(question), question, "Paris.");
+
+        var lookup = cache.lookup(new Question("How do I bake sourdough bread?"));
+        assertThat(lookup.answer()).isEmpty();
+    }
+
+    @Test
+    void disabledCacheNeverEmbeds() {
+        var cache =
+                new SemanticAnswerCache(
+                        new ChatProperties.SemanticCache(
+                                false, 0.9, 100, Duration.ofMinutes(5), null),
+                        () -> {
+                            throw new AssertionError("embedder must not be used");
+                        },
+                        () -> 1,
+                        () -> -1L,
+                        meterRegistry);
+
+        var lookup = cache.lookup(new Question("anything"));
+        cache.put(lookup, new Question("anything"), "answer");
+
+        assertThat(lookup.answer()).isEmpty();
+        assertThat(lookup.embedding()).isNull();
+    }
+
+    @Test
+    void fullIndexIsCompacted() {
+        var cache = newCache(0.99, 16, null);
+        for (int i = 0; i < 40; ++i) {
+            var question = new Question("question number " + i + " about topic " + (i * 31));
+            cache.put(cache.lookup(question), question, "answer " + i);
+        }
+
+        assertThat(
+                        meterRegistry
+                                .get("app_oci_chat_semantic_cache_evictions_total")
+                                .counter()
+                                .count())
+                .isGreaterThan(0.0);
+        assertThat(meterRegistry.get("app_oci_chat_semantic_cache_size").gauge().value())
+                .isLessThanOrEqualTo(16.0);
+
+        var newest = new Question("question number 39 about topic " + (39 * 31));
+        assertThat(cache.lookup(newest).answer()).contains("answer 39");
+    }
+
+    @Test
+    void knowledgeBaseChangeMakesEntriesStale() {
+        var version = new AtomicLong();
+        var cache = newCache(0.75, 100, null, embedder, 1, version::get);
+        var question = new Question("What is the capital city of France?");
+        cache.put(cache.lookup(question), question, "Paris.");
+        assertThat(cache.lookup(question).answer()).contains("Paris.");
+
+        version.incrementAndGet();
+
+        assertThat(cache.lookup(question).answer()).isEmpty();
+    }
+
+    @Test
+    void snapshotSurvivesRestart(@TempDir Path tempDir) {
+        Path snapshot = tempDir.resolve("semantic-cache.bin");
+        var question = new Question("Who wrote War and Peace?");
+
+        var cache = newCache(0.9, 100, snapshot.toString());
+        cache.put(cache.lookup(question), question, "Leo Tolstoy.");
+        cache.destroy();
+
+        assertThat(Files.exists(snapshot)).isTrue();
+
+        var restored = newCache(0.9, 100, snapshot.toString());
+        assertThat(restored.lookup(question).answer()).contains("Leo Tolstoy.");
+    }
+
+    @Test
+    void snapshotOfAnotherModelOrPromptIsDiscarded(@TempDir Path tempDir) {
+        Path snapshot = tempDir.resolve("semantic-cache.bin");
+        var question = new Question("Who wrote War and Peace?");
+
+        var cache = newCache(0.9, 100, snapshot.toString());
+        cache.put(cache.lookup(question), question, "Leo Tolstoy.");
+        cache.destroy();
+
+        var restored = newCache(0.9, 100, snapshot.toString(), embedder, 2, () -> -1L);
+        assertThat(restored.lookup(question).answer()).isEmpty();
+    }
+
+    @Test
+    void snapshotOfAnotherEmbeddingDimensionIsDiscarded(@TempDir Path tempDir) {
+        Path snapshot = tempDir.resolve("semantic-cache.bin");
+        var question = new Question("Who wrote War and Peace?");
+
+        var cache = newCache(0.9, 100, snapshot.toString());
+        cache.put(cache.lookup(question), question, "Leo Tolstoy.");
+        cache.destroy();
+
+        var restored =
+                newCache(0.9, 100, snapshot.toString(), new HashingEmbedder(128), 1, () -> -1L);
+        assertThat(restored.lookup(question).answer()).isEmpty();
+    }
+
+    @Test
+    void snapshotIsNotRestoredWithRag(@TempDir Path tempDir) {
+        Path snapshot = tempDir.resolve("semantic-cache.bin");
+        var question = new Question("Who wrote War and Peace?");
+
+        var cache = newCache(0.9, 100, snapshot.toString());
+        cache.put(cache.lookup(question), question, "Leo Tolstoy.");
+        cache.destroy();
+
+        var restored = newCache(0.9, 100, snapshot.toString(), embedder, 1, () -> 0L);
+        assertThat(restored.lookup(question).answer()).isEmpty();
+    }
+
+    private SemanticAnswerCache newCache(double threshold, int capacity, String snapshotPath) {
+        return newCache(threshold, capacity, snapshotPath, embedder, 1, () -> -1L);
+    }
+
+    private SemanticAnswerCache newCache(
+            double threshold,
+            int capacity,
+            String snapshotPath,
+            Embedder cacheEmbedder,
+            int fingerprint,
+            LongSupplier version) {
+        return new SemanticAnswerCache(
+                new ChatProperties.SemanticCache(
+                        true, threshold, capacity, Duration.ofMinutes(5), snapshotPath),
+                () -> cacheEmbedder,
+                () -> fingerprint,
+                version,
+                meterRegistry);
+    }
+
+    private double counter(String result) {
+        return meterRegistry
+                .get("app_oci_chat_semantic_cache_total")
+                .tag("result", result)
+                .counter()
+                .count();
+    }
+}
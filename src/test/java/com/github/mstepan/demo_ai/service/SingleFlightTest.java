@@ -0,0 +1,240 @@
+package com.github.mstepan.demo_ai.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.github.mstepan.demo_ai.oci.Deadline;
+import com.github.mstepan.demo_ai.oci.DeadlineExceededException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.Test;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+class SingleFlightTest {
+
+    private static final int CALLERS = 8;
+
+    private final Counter coalesced = new SimpleMeterRegistry().counter("coalesced");
+
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>(coalesced);
+
+    @Test
+    void concurrentIdenticalCallsShareOneExecution() throws Exception {
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<String> results =
+                runConcurrently(
+                        () ->
+                                singleFlight.execute(
+                                        "key",
+                                        () -> {
+                                            executions.incrementAndGet();
+                                            awaitQuietly(release);
+                                            return "answer";
+                                        }),
+                        release);
+
+        assertThat(results).hasSize(CALLERS).containsOnly("answer");
+        assertThat(executions).hasValue(1);
+        assertThat(coalesced.count()).isEqualTo(CALLERS - 1);
+    }
+
+    @Test
+    void failureIsSharedWithCoalescedCallers() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<String> results =
+                runConcurrently(
+                        () -> {
+                            try {
+                                return singleFlight.execute(
+                                        "key",
+                                        () -> {
+                                            awaitQuietly(release);
+                                            throw new IllegalStateException("boom");
+                                        });
+                            } catch (IllegalStateException ex) {
+                                return ex.getMessage();
+                            }
+                        },
+                        release);
+
+        assertThat(results).hasSize(CALLERS).containsOnly("boom");
+    }
+
+    @Test
+    void waitingCallerFailsAloneOnceItsDeadlinePasses() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<String> leader =
+                    executor.submit(
+                            () ->
+                                    singleFlight.execute(
+                                            "key",
+                                            () -> {
+                                                started.countDown();
+                                                awaitQuietly(release);
+                                                return "answer";
+                                            }));
+            started.await(5, TimeUnit.SECONDS);
+
+            assertThatThrownBy(() -> withDeadline(Duration.ofMillis(50), () -> "own"))
+                    .isInstanceOf(DeadlineExceededException.class);
+
+            release.countDown();
+            assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("answer");
+        }
+    }
+
+    @Test
+    void deadlineFailureOfTheRunningCallIsNotShared() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<String> leader =
+                    executor.submit(
+                            () -> {
+                                try {
+                                    return singleFlight.execute(
+                                            "key",
+                                            () -> {
+                                                started.countDown();
+                                                awaitQuietly(release);
+                                                throw new DeadlineExceededException("too late");
+                                            });
+                                } catch (DeadlineExceededException ex) {
+                                    return ex.getMessage();
+                                }
+                            });
+            started.await(5, TimeUnit.SECONDS);
+
+            Future<String> follower =
+                    executor.submit(() -> withDeadline(Duration.ofSeconds(5), () -> "own"));
+            while (coalesced.count() < 1.0) {
+                Thread.sleep(5L);
+            }
+            release.countDown();
+
+            assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("too late");
+            assertThat(follower.get(5, TimeUnit.SECONDS)).isEqualTo("own");
+        }
+    }
+
+    @Test
+    void completedCallReleasesKey() {
+        AtomicInteger executions = new AtomicInteger();
+
+        singleFlight.execute("key", () -> "first " + executions.incrementAndGet());
+        String second = singleFlight.execute("key", () -> "second " + executions.incrementAndGet());
+
+        assertThat(second).isEqualTo("second 2");
+        assertThat(coalesced.count()).isZero();
+    }
+
+    @Test
+    void lateStreamSubscriberGetsReplayedChunks() {
+        Sinks.Many<String> upstream = Sinks.many().unicast().onBackpressureBuffer();
+        AtomicInteger subscriptions = new AtomicInteger();
+        List<String> firstChunks = new CopyOnWriteArrayList<>();
+        List<String> secondChunks = new CopyOnWriteArrayList<>();
+
+        singleFlight
+                .stream(
+                        "key",
+                        () -> upstream.asFlux().doOnSubscribe(s -> subscriptions.incrementAndGet()))
+                .subscribe(firstChunks::add);
+        upstream.tryEmitNext("a");
+
+        singleFlight
+                .stream("key", () -> Flux.error(new AssertionError("must join shared stream")))
+                .subscribe(secondChunks::add);
+        upstream.tryEmitNext("b");
+        upstream.tryEmitComplete();
+
+        assertThat(firstChunks).containsExactly("a", "b");
+        assertThat(secondChunks).containsExactly("a", "b");
+        assertThat(subscriptions).hasValue(1);
+        assertThat(coalesced.count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void streamIsNotSharedAfterCompletion() {
+        AtomicInteger subscriptions = new AtomicInteger();
+
+        for (int i = 0; i < 2; ++i) {
+            List<String> chunks =
+                    singleFlight
+                            .stream(
+                                    "key",
+                                    () ->
+                                            Flux.just("x")
+                                                    .doOnSubscribe(
+                                                            s -> subscriptions.incrementAndGet()))
+                            .collectList()
+                            .block();
+
+            assertThat(chunks).containsExactly("x");
+        }
+
+        assertThat(subscriptions).hasValue(2);
+    }
+
+    private List<String> runConcurrently(Callable<String> task, CountDownLatch release)
+            throws InterruptedException, ExecutionException {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < CALLERS; ++i) {
+                futures.add(executor.submit(task));
+            }
+
+            // wait until every caller either runs or joined the single call
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (coalesced.count() < CALLERS - 1 && System.nanoTime() < deadline) {
+                Thread.sleep(5L);
+            }
+            release.countDown();
+
+            List<String> results = new ArrayList<>();
+            for (Future<String> future : futures) {
+                results.add(future.get(5, TimeUnit.SECONDS));
+            }
+            return results;
+        } catch (TimeoutException timeoutEx) {
+            throw new AssertionError("Coalesced callers did not complete", timeoutEx);
+        }
+    }
+
+    private String withDeadline(Duration timeout, Supplier<String> call) {
+        return ScopedValue.where(Deadline.CURRENT, Deadline.after(timeout, Duration.ZERO))
+                .call(() -> singleFlight.execute("key", call));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException interEx) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.github.mstepan.demo_ai.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.github.mstepan.demo_ai.domain.Question;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.ai.evaluation.EvaluationRequest;
+import org.springframework.ai.evaluation.EvaluationResponse;
+import org.springframework.ai.evaluation.Evaluator;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+class StreamRelevancyEvaluatorTest {
+
+    private static final Question QUESTION = new Question("Why is the sky blue?");
+
+    private MeterRegistry meterRegistry;
+    private Evaluator evaluator;
+    private StreamRelevancyEvaluator streamEvaluator;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        evaluator = mock(Evaluator.class);
+        when(evaluator.evaluate(any())).thenReturn(response(true));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (streamEvaluator != null) {
+            streamEvaluator.destroy();
+        }
+    }
+
+    @Test
+    void chunksArePassedThroughAndFollowedByVerdict() {
+        streamEvaluator = streamEvaluator(1024, 0);
+
+        List<String> elements =
+                streamEvaluator
+                        .withVerdict(QUESTION, Flux.just("Rayleigh ", "scattering."))
+                        .collectList()
+                        .block(Duration.ofSeconds(5));
+
+        assertThat(elements)
+                .containsExactly(
+                        "Rayleigh ",
+                        "scattering.",
+                        "{\"verdict\":{\"relevant\":true,\"evaluated_chars\":20,"
+                                + "\"truncated\":false}}");
+        assertThat(evaluatedAnswers()).containsExactly("Rayleigh scattering.");
+        assertThat(evaluations("final")).isEqualTo(1.0);
+    }
+
+    @Test
+    void longAnswerIsEvaluatedByPrefixAsSoonAsBufferIsFull() throws Exception {
+        streamEvaluator = streamEvaluator(8, 0);
+        Sinks.Many<String> upstream = Sinks.many().unicast().onBackpressureBuffer();
+
+        CompletableFuture<List<String>> elements =
+                streamEvaluator.withVerdict(QUESTION, upstream.asFlux()).collectList().toFuture();
+        upstream.tryEmitNext("Rayleigh ");
+
+        // evaluation starts before the stream completes
+        verify(evaluator, timeout(5_000L)).evaluate(any());
+        upstream.tryEmitNext("scattering.");
+        upstream.tryEmitComplete();
+
+        assertThat(elements.get(5, TimeUnit.SECONDS))
+                .containsExactly(
+                        "Rayleigh ",
+                        "scattering.",
+                        "{\"verdict\":{\"relevant\":true,\"evaluated_chars\":8,"
+                                + "\"truncated\":true}}");
+        assertThat(evaluatedAnswers()).containsExactly("Rayleigh");
+    }
+
+    @Test
+    void failedEvaluationStillEmitsVerdict() {
+        streamEvaluator = streamEvaluator(1024, 0);
+        when(evaluator.evaluate(any())).thenThrow(new IllegalStateException("judge down"));
+
+        List<String> elements =
+                streamEvaluator
+                        .withVerdict(QUESTION, Flux.just("Blue."))
+                        .collectList()
+                        .block(Duration.ofSeconds(5));
+
+        assertThat(elements)
+                .containsExactly(
+                        "Blue.",
+                        "{\"verdict\":{\"relevant\":null,\"evaluated_chars\":5,"
+                                + "\"truncated\":false,"
+                                + "\"error\":\"java.lang.IllegalStateException: judge down\"}}");
+    }
+
+    @Test
+    void incrementalVerdictCoveringWholeAnswerIsReused() {
+        streamEvaluator = streamEvaluator(1024, 4);
+        when(evaluator.evaluate(any())).thenReturn(response(false));
+
+        List<String> elements =
+                streamEvaluator
+                        .withVerdict(QUESTION, Flux.just("ab", "cd"))
+                        .collectList()
+                        .block(Duration.ofSeconds(5));
+
+        assertThat(elements)
+                .containsExactly(
+                        "ab",
+                        "cd",
+                        "{\"verdict\":{\"relevant\":false,\"evaluated_chars\":4,"
+                                + "\"truncated\":false}}");
+        verify(evaluator, times(1)).evaluate(any());
+        assertThat(evaluations("incremental")).isEqualTo(1.0);
+        assertThat(evaluations("reused")).isEqualTo(1.0);
+        assertThat(evaluations("final")).isEqualTo(0.0);
+    }
+
+    @Test
+    void failedStreamHasNoVerdict() {
+        streamEvaluator = streamEvaluator(1024, 0);
+
+        List<String> elements = new CopyOnWriteArrayList<>();
+        Flux<String> chunks = Flux.concat(Flux.just("Blue"), Flux.error(new RuntimeException()));
+
+        streamEvaluator
+                .withVerdict(QUESTION, chunks)
+                .onErrorResume(ex -> Flux.empty())
+                .doOnNext(elements::add)
+                .blockLast(Duration.ofSeconds(5));
+
+        assertThat(elements).containsExactly("Blue");
+        verify(evaluator, never()).evaluate(any());
+    }
+
+    @Test
+    void cancelledStreamInterruptsItsEvaluation() throws Exception {
+        streamEvaluator = streamEvaluator(8, 0);
+        CountDownLatch evaluating = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        when(evaluator.evaluate(any()))
+                .thenAnswer(
+                        invocation -> {
+                            evaluating.countDown();
+                            try {
+                                Thread.sleep(10_000L);
+                            } catch (InterruptedException interEx) {
+                                interrupted.countDown();
+                                Thread.currentThread().interrupt();
+                            }
+                            return response(true);
+                        });
+        Sinks.Many<String> upstream = Sinks.many().unicast().onBackpressureBuffer();
+
+        Disposable subscription =
+                streamEvaluator.withVerdict(QUESTION, upstream.asFlux()).subscribe();
+        // fills the buffer, so the evaluation starts right away
+        upstream.tryEmitNext("Rayleigh scattering.");
+        assertThat(evaluating.await(5, TimeUnit.SECONDS)).isTrue();
+
+        subscription.dispose();
+
+        assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private StreamRelevancyEvaluator streamEvaluator(int maxChars, int incrementalEveryChars) {
+        return new StreamRelevancyEvaluator(
+                new ChatProperties.StreamEvaluation(true, maxChars, incrementalEveryChars),
+                64,
+                evaluator,
+                meterRegistry);
+    }
+
+    private List<String> evaluatedAnswers() {
+        ArgumentCaptor<EvaluationRequest> captor = ArgumentCaptor.forClass(EvaluationRequest.class);
+        verify(evaluator, timeout(5_000L).atLeastOnce()).evaluate(captor.capture());
+        return captor.getAllValues().stream().map(EvaluationRequest::getResponseContent).toList();
+    }
+
+    private double evaluations(String phase) {
+        return meterRegistry
+                .get("app_evaluator_stream_total")
+                .tag("phase", phase)
+                .counter()
+                .count();
+    }
+
+    private static EvaluationResponse response(boolean pass) {
+        return new EvaluationResponse(pass, pass ? 1.0F : 0.0F, "", Collections.emptyMap());
+    }
+}
@@ -0,0 +1,18 @@
+package com.github.mstepan.demo_ai.service;
+
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+
+/**
+ * {@link ChatProperties} bound from an empty 'app.chat', so tests and benchmarks get the
+ * {@code @DefaultValue}s instead of repeating every sub-record positionally.
+ */
+final class TestChatProperties {
+
+    private TestChatProperties() {}
+
+    static ChatProperties defaults() {
+        return new Binder(new MapConfigurationPropertySource())
+                .bindOrCreate("app.chat", ChatProperties.class);
+    }
+}
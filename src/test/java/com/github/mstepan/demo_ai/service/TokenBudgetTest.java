@@ -0,0 +1,142 @@
+package com.github.mstepan.demo_ai.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+
+class TokenBudgetTest {
+
+    /** 400 chars of prompt, i.e. an estimate of 100 tokens. */
+    private static final String PROMPT = "x".repeat(400);
+
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void clientBeyondItsBudgetIsRejected() {
+        var budget = budget(true, 1_000L, 100_000L, 400);
+
+        ScopedValue.where(TokenBudget.CLIENT, "alice")
+                .run(
+                        () -> {
+                            budget.reserve(PROMPT);
+                            budget.reserve(PROMPT);
+
+                            assertThatThrownBy(() -> budget.reserve(PROMPT))
+                                    .isInstanceOf(TokenBudgetExceededException.class)
+                                    .satisfies(
+                                            ex -> {
+                                                var budgetEx = (TokenBudgetExceededException) ex;
+                                                assertThat(budgetEx.scope()).isEqualTo("client");
+                                                assertThat(budgetEx.retryAfter()).isPositive();
+                                            });
+                        });
+
+        // another client has its own budget
+        ScopedValue.where(TokenBudget.CLIENT, "bob").run(() -> budget.reserve(PROMPT));
+
+        assertThat(rejected("client")).isEqualTo(1.0);
+        assertThat(budget.trackedClients()).isEqualTo(2);
+    }
+
+    @Test
+    void modelBudgetIsSharedByAllClients() {
+        var budget = budget(true, 100_000L, 1_000L, 400);
+
+        ScopedValue.where(TokenBudget.CLIENT, "alice").run(() -> budget.reserve(PROMPT));
+        ScopedValue.where(TokenBudget.CLIENT, "bob").run(() -> budget.reserve(PROMPT));
+
+        assertThatThrownBy(
+                        () ->
+                                ScopedValue.where(TokenBudget.CLIENT, "carol")
+                                        .run(() -> budget.reserve(PROMPT)))
+                .isInstanceOf(TokenBudgetExceededException.class)
+                .hasMessageContaining("Model");
+        assertThat(rejected("model")).isEqualTo(1.0);
+    }
+
+    @Test
+    void unusedTokensGoBackToBudgetOnSettle() {
+        var budget = budget(true, 100_000L, 1_000L, 400);
+
+        TokenBudget.Reservation reservation = budget.reserve(PROMPT);
+        assertThat(budget.modelRemaining()).isBetween(500L, 501L);
+
+        reservation.settle(new DefaultUsage(100, 20, 120));
+
+        assertThat(budget.modelRemaining()).isBetween(880L, 881L);
+        assertThat(tokens("prompt")).isEqualTo(100.0);
+        assertThat(tokens("completion")).isEqualTo(20.0);
+    }
+
+    @Test
+    void onlyFirstSettlementCounts() {
+        var budget = budget(true, 100_000L, 1_000L, 400);
+
+        TokenBudget.Reservation reservation = budget.reserve(PROMPT);
+        reservation.settleEstimated(80L);
+        reservation.cancel();
+
+        assertThat(budget.modelRemaining()).isBetween(880L, 881L);
+        assertThat(tokens("prompt")).isEqualTo(100.0);
+        assertThat(tokens("completion")).isEqualTo(20.0);
+    }
+
+    @Test
+    void disabledBudgetNeverRejectsButStillCountsUsage() {
+        var budget = budget(false, 1L, 1L, 400);
+
+        TokenBudget.Reservation reservation = budget.reserve(PROMPT);
+        reservation.settle(new DefaultUsage(7, 3, 10));
+
+        assertThat(tokens("prompt")).isEqualTo(7.0);
+        assertThat(tokens("completion")).isEqualTo(3.0);
+        assertThat(rejected("model")).isZero();
+    }
+
+    @Test
+    void tokensAreEstimatedFromChars() {
+        assertThat(TokenBudget.estimateTokens((String) null)).isZero();
+        assertThat(TokenBudget.estimateTokens("")).isZero();
+        assertThat(TokenBudget.estimateTokens("abc")).isEqualTo(1L);
+        assertThat(TokenBudget.estimateTokens("abcde")).isEqualTo(2L);
+    }
+
+    private TokenBudget budget(
+            boolean enabled,
+            long clientTokensPerMinute,
+            long modelTokensPerMinute,
+            int reservedCompletionTokens) {
+        return new TokenBudget(
+                new ChatProperties.Budget(
+                        enabled,
+                        clientTokensPerMinute,
+                        modelTokensPerMinute,
+                        reservedCompletionTokens,
+                        10_000),
+                "test-model",
+                meterRegistry);
+    }
+
+    private double rejected(String scope) {
+        return meterRegistry
+                .get("app_token_budget_rejected_total")
+                .tag("scope", scope)
+                .counter()
+                .count();
+    }
+
+    private double tokens(String type) {
+        return meterRegistry.get("app_oci_chat_tokens_total").tag("type", type).counter().count();
+    }
+}
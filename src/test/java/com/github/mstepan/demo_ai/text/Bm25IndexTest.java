@@ -0,0 +1,92 @@
+package com.github.mstepan.demo_ai.text;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+class Bm25IndexTest {
+
+    @Test
+    void documentWithTheRarerTermRanksFirst() {
+        var index = new Bm25Index();
+        index.add("The ship sailed to the island.");
+        index.add("Captain Krael sank the ship.");
+        index.add("The gold was buried on the island.");
+
+        List<Bm25Index.Hit> hits = index.search("Krael's ship", 10, 0.0);
+
+        assertThat(hits).extracting(Bm25Index.Hit::doc).containsExactly(1, 0);
+        assertThat(hits.getFirst().score()).isGreaterThan(hits.get(1).score());
+    }
+
+    @Test
+    void documentsMatchingOnlyCommonWordsAreBelowTheCoverage() {
+        var index = new Bm25Index();
+        index.add("Blackbeak Betty sailed the northern seas.");
+        index.add("Captain Krael sank three navy ships near the harbour.");
+        index.add("Calico Jack buried his gold on the island.");
+
+        assertThat(index.search("What is the boiling point of water?", 10, 0.5)).isEmpty();
+        assertThat(index.search("What is the boiling point of water?", 10, 0.0)).hasSize(3);
+        assertThat(index.search("Where did Calico Jack bury the gold?", 10, 0.3))
+                .extracting(Bm25Index.Hit::doc)
+                .containsExactly(2);
+    }
+
+    @Test
+    void removedDocumentsAreNotReturned() {
+        var index = new Bm25Index();
+        index.add("Krael sank a ship.");
+        index.add("Krael sank two ships.");
+
+        index.remove(0);
+
+        assertThat(index.search("krael", 10, 0.0))
+                .extracting(Bm25Index.Hit::doc)
+                .containsExactly(1);
+        assertThat(index.liveSize()).isOne();
+        assertThat(index.size()).isEqualTo(2);
+    }
+
+    @Test
+    void compactionRenumbersLiveDocumentsInOrder() {
+        var index = new Bm25Index();
+        index.add("Blackbeak Betty");
+        index.add("Captain Krael");
+        index.add("Calico Jack and Captain Krael");
+        List<Bm25Index.Hit> before = index.search("captain krael", 10, 0.0);
+
+        index.remove(0);
+        int[] newIds = index.compact();
+
+        assertThat(newIds).containsExactly(Bm25Index.REMOVED, 0, 1);
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.search("captain krael", 10, 0.0))
+                .extracting(Bm25Index.Hit::doc)
+                .containsExactly(newIds[before.getFirst().doc()], newIds[before.get(1).doc()]);
+        assertThat(index.search("betty", 10, 0.0)).isEmpty();
+
+        assertThat(index.add("Betty is back")).isEqualTo(2);
+        assertThat(index.search("betty", 10, 0.0))
+                .extracting(Bm25Index.Hit::doc)
+                .containsExactly(2);
+    }
+
+    @Test
+    void postingsSpanManySlicesAndSlabs() {
+        var index = new Bm25Index();
+        int documents = 100_000;
+        for (int i = 0; i < documents; ++i) {
+            index.add("pirate item-" + i + (i % 1000 == 0 ? " treasure" : ""));
+        }
+
+        assertThat(index.postingsBytes()).isGreaterThan(1L << 20);
+        assertThat(index.search("pirate", documents, 0.0)).hasSize(documents);
+        assertThat(index.search("treasure", documents, 0.0)).hasSize(documents / 1000);
+        assertThat(index.search("item 76543", 3, 1.0))
+                .extracting(Bm25Index.Hit::doc)
+                .containsExactly(76543);
+    }
+}
@@ -0,0 +1,123 @@
+package com.github.mstepan.demo_ai.vector;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.data.Offset.offset;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+class HnswIndexTest {
+
+    private static final int DIMENSIONS = 32;
+
+    @Test
+    void searchFindsExactVector() {
+        var index = new HnswIndex(DIMENSIONS, 1_000);
+        float[][] vectors = randomVectors(1_000, 7L);
+        for (float[] vector : vectors) {
+            index.add(vector);
+        }
+
+        for (int node = 0; node < vectors.length; node += 97) {
+            List<HnswIndex.Neighbor> found = index.search(vectors[node], 1);
+
+            assertThat(found).hasSize(1);
+            assertThat(found.getFirst().node()).isEqualTo(node);
+            assertThat(found.getFirst().similarity()).isCloseTo(1.0F, offset(1e-4F));
+        }
+    }
+
+    @Test
+    void recallAgainstBruteForceIsHigh() {
+        var index = new HnswIndex(DIMENSIONS, 2_000);
+        float[][] vectors = randomVectors(2_000, 11L);
+        for (float[] vector : vectors) {
+            index.add(vector);
+        }
+
+        float[][] queries = randomVectors(50, 13L);
+        int hits = 0;
+        for (float[] query : queries) {
+            int expected = bruteForceClosest(vectors, query);
+            if (index.search(query, 1).getFirst().node() == expected) {
+                ++hits;
+            }
+        }
+
+        assertThat(hits).isGreaterThanOrEqualTo(45);
+    }
+
+    @Test
+    void removedNodesAreNotReturned() {
+        var index = new HnswIndex(DIMENSIONS, 100);
+        float[][] vectors = randomVectors(100, 17L);
+        for (float[] vector : vectors) {
+            index.add(vector);
+        }
+
+        index.remove(42);
+
+        assertThat(index.liveSize()).isEqualTo(99);
+        assertThat(index.isDeleted(42)).isTrue();
+        assertThat(index.search(vectors[42], 5))
+                .extracting(HnswIndex.Neighbor::node)
+                .doesNotContain(42);
+    }
+
+    @Test
+    void addFailsWhenFull() {
+        var index = new HnswIndex(DIMENSIONS, 2);
+        float[][] vectors = randomVectors(3, 19L);
+        index.add(vectors[0]);
+        index.add(vectors[1]);
+
+        assertThatThrownBy(() -> index.add(vectors[2])).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void wrongDimensionsAreRejected() {
+        var index = new HnswIndex(DIMENSIONS, 2);
+
+        assertThatThrownBy(() -> index.add(new float[DIMENSIONS + 1]))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static int bruteForceClosest(float[][] vectors, float[] query) {
+        int best = -1;
+        double bestSimilarity = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < vectors.length; ++i) {
+            double sim = cosine(vectors[i], query);
+            if (sim > bestSimilarity) {
+                bestSimilarity = sim;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private static double cosine(float[] first, float[] second) {
+        double dot = 0.0;
+        double firstNorm = 0.0;
+        double secondNorm = 0.0;
+        for (int i = 0; i < first.length; ++i) {
+            dot += first[i] * second[i];
+            firstNorm += first[i] * first[i];
+            secondNorm += second[i] * second[i];
+        }
+        return dot / Math.sqrt(firstNorm * secondNorm);
+    }
+
+    private static float[][] randomVectors(int count, long seed) {
+        Random rand = new Random(seed);
+        float[][] vectors = new float[count][DIMENSIONS];
+        for (float[] vector : vectors) {
+            for (int i = 0; i < DIMENSIONS; ++i) {
+                vector[i] = (float) rand.nextGaussian();
+            }
+        }
+        return vectors;
+    }
+}
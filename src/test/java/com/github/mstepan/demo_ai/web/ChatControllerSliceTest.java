@@ -1,5 +1,6 @@
 package com.github.mstepan.demo_ai.web;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.containsString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
@@ -9,11 +10,24 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.mstepan.demo_ai.domain.Answer;
 import com.github.mstepan.demo_ai.domain.Question;
+import com.github.mstepan.demo_ai.oci.CircuitBreakerOpenException;
+import com.github.mstepan.demo_ai.oci.ConcurrencyLimitExceededException;
+import com.github.mstepan.demo_ai.oci.Deadline;
+import com.github.mstepan.demo_ai.oci.DeadlineExceededException;
+import com.github.mstepan.demo_ai.oci.OCIGenAiException;
+import com.github.mstepan.demo_ai.service.ChatProperties;
 import com.github.mstepan.demo_ai.service.ChatService;
+import com.github.mstepan.demo_ai.service.StreamRelevancyEvaluator;
+import com.github.mstepan.demo_ai.service.TokenBudget;
+import com.github.mstepan.demo_ai.service.TokenBudgetExceededException;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
@@ -24,6 +38,9 @@ import org.springframework.test.web.servlet.MockMvc;
 
 import reactor.core.publisher.Flux;
 
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
 @WebMvcTest(controllers = ChatController.class)
 @Import(ExceptionHandlerAdvice.class)
 class ChatControllerSliceTest {
@@ -34,13 +51,32 @@ class ChatControllerSliceTest {
 
     @Autowired private ChatService chatService;
 
+    @Autowired private StreamRelevancyEvaluator streamEvaluator;
+
+    @BeforeEach
+    void resetMocks() {
+        // plain Mockito mocks registered as beans are not reset between tests
+        reset(chatService, streamEvaluator);
+    }
+
     @TestConfiguration
+    @EnableConfigurationProperties(ChatProperties.class)
     static class MockConfig {
         @Bean
         @Primary
         public ChatService mockChatService() {
             return Mockito.mock(ChatService.class);
         }
+
+        @Bean
+        public StreamChunkCoalescer streamChunkCoalescer(ChatProperties properties) {
+            return new StreamChunkCoalescer(properties, new SimpleMeterRegistry());
+        }
+
+        @Bean
+        public StreamRelevancyEvaluator streamRelevancyEvaluator() {
+            return Mockito.mock(StreamRelevancyEvaluator.class);
+        }
     }
 
     @Test
@@ -86,6 +122,148 @@ class ChatControllerSliceTest {
         verifyNoInteractions(chatService);
     }
 
+    @Test
+    void askReturnsServiceUnavailableWhenConcurrencyLimitIsExceeded() throws Exception {
+        // given
+        final Question requestQuestion = new Question("Why sky is blue?");
+        when(chatService.askQuestion(eq(requestQuestion)))
+                .thenThrow(new ConcurrencyLimitExceededException("Too many", 8));
+
+        // when/then
+        mockMvc.perform(
+                        post("/ask")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(requestQuestion)))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"))
+                .andExpect(
+                        header().string("Content-Type", containsString("application/problem+json")))
+                .andExpect(jsonPath("$.type").value("demo-ai:overloaded"))
+                .andExpect(jsonPath("$.status").value(503))
+                .andExpect(jsonPath("$['concurrency-limit']").value(8));
+    }
+
+    @Test
+    void askReturnsTooManyRequestsWhenTokenBudgetIsExhausted() throws Exception {
+        // given
+        final Question requestQuestion = new Question("Why sky is blue?");
+        AtomicReference<String> client = new AtomicReference<>();
+        when(chatService.askQuestion(eq(requestQuestion)))
+                .thenAnswer(
+                        invocation -> {
+                            client.set(TokenBudget.CLIENT.get());
+                            throw new TokenBudgetExceededException(
+                                    "Client token budget exhausted",
+                                    "client",
+                                    Duration.ofMillis(2_500L));
+                        });
+
+        // when/then
+        mockMvc.perform(
+                        post("/ask")
+                                .header("X-API-Key", "client-1")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(requestQuestion)))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "3"))
+                .andExpect(jsonPath("$.type").value("demo-ai:rate-limited"))
+                .andExpect(jsonPath("$.budget").value("client"));
+
+        assertThat(client.get()).isEqualTo("client-1");
+    }
+
+    @Test
+    void askBindsDeadlineFromRequestTimeoutHeader() throws Exception {
+        // given
+        final Question requestQuestion = new Question("Why sky is blue?");
+        AtomicReference<Duration> remaining = new AtomicReference<>();
+        when(chatService.askQuestion(eq(requestQuestion)))
+                .thenAnswer(
+                        invocation -> {
+                            remaining.set(Deadline.CURRENT.get().remaining());
+                            return new Answer("Rayleigh scattering");
+                        });
+
+        // when
+        mockMvc.perform(
+                        post("/ask")
+                                .header("X-Request-Timeout", "5s")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(requestQuestion)))
+                .andExpect(status().isOk());
+
+        // then
+        assertThat(remaining.get()).isPositive().isLessThanOrEqualTo(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void askReturnsBadRequestOnInvalidRequestTimeoutHeader() throws Exception {
+        // given
+        final Question requestQuestion = new Question("Why sky is blue?");
+
+        // when/then
+        mockMvc.perform(
+                        post("/ask")
+                                .header("X-Request-Timeout", "soon")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(requestQuestion)))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(chatService);
+    }
+
+    @Test
+    void askReturnsGatewayTimeoutWhenDeadlineIsExceeded() throws Exception {
+        // given
+        final Question requestQuestion = new Question("Why sky is blue?");
+        when(chatService.askQuestion(eq(requestQuestion)))
+                .thenThrow(new DeadlineExceededException("No time left for answer generation"));
+
+        // when/then
+        mockMvc.perform(
+                        post("/ask")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(requestQuestion)))
+                .andExpect(status().isGatewayTimeout())
+                .andExpect(jsonPath("$.type").value("demo-ai:deadline-exceeded"));
+    }
+
+    @Test
+    void askReturnsServiceUnavailableWhenCircuitBreakerIsOpen() throws Exception {
+        // given
+        final Question requestQuestion = new Question("Why sky is blue?");
+        when(chatService.askQuestion(eq(requestQuestion)))
+                .thenThrow(
+                        new CircuitBreakerOpenException(
+                                "OCI GenAI circuit breaker is open", Duration.ofMillis(9_500L)));
+
+        // when/then
+        mockMvc.perform(
+                        post("/ask")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(requestQuestion)))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "10"))
+                .andExpect(jsonPath("$.type").value("demo-ai:upstream-unavailable"));
+    }
+
+    @Test
+    void askReturnsBadGatewayWhenOCIRejectsTheCall() throws Exception {
+        // given
+        final Question requestQuestion = new Question("Why sky is blue?");
+        when(chatService.askQuestion(eq(requestQuestion)))
+                .thenThrow(new OCIGenAiException("OCI GenAI chat call failed", null, 400));
+
+        // when/then
+        mockMvc.perform(
+                        post("/ask")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(requestQuestion)))
+                .andExpect(status().isBadGateway())
+                .andExpect(jsonPath("$.type").value("demo-ai:upstream-error"))
+                .andExpect(jsonPath("$['upstream-status']").value(400));
+    }
+
     @Test
     void askStreamReturnsNDJSONStream() throws Exception {
         // given
@@ -106,4 +284,30 @@ class ChatControllerSliceTest {
         verify(chatService, times(1)).askQuestionStreaming(eq(request));
         verifyNoMoreInteractions(chatService);
     }
+
+    @Test
+    void askStreamAppendsVerdictWhenRequested() throws Exception {
+        // given
+        Question request = new Question("stream please");
+        when(chatService.askQuestionStreaming(eq(request))).thenReturn(Flux.just("part1"));
+        when(streamEvaluator.withVerdict(eq(request), any()))
+                .thenAnswer(
+                        invocation ->
+                                invocation
+                                        .<Flux<String>>getArgument(1)
+                                        .concatWith(Flux.just("{\"verdict\":{}}")));
+
+        // when/then
+        mockMvc.perform(
+                        post("/ask/stream")
+                                .param("evaluate", "true")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .accept(MediaType.APPLICATION_NDJSON)
+                                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("part1")))
+                .andExpect(content().string(containsString("\"verdict\"")));
+
+        verify(streamEvaluator, times(1)).withVerdict(eq(request), any());
+    }
 }
@@ -0,0 +1,133 @@
+package com.github.mstepan.demo_ai.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.github.mstepan.demo_ai.service.ChatProperties;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+class StreamChunkCoalescerTest {
+
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void firstChunkGoesOutAloneAndTheRestIsBatchedBySize() {
+        var coalescer = coalescer(true, 8, Duration.ofSeconds(10));
+
+        List<String> batches =
+                coalescer
+                        .coalesce(Flux.just("a", "bbbb", "cccc", "dd", "ee", "ff", "g"))
+                        .collectList()
+                        .block(Duration.ofSeconds(5));
+
+        assertThat(batches).containsExactly("a", "bbbbcccc", "ddeeffg");
+        assertThat(flushes("first")).isEqualTo(1.0);
+        assertThat(flushes("size")).isEqualTo(1.0);
+        assertThat(flushes("complete")).isEqualTo(1.0);
+        assertThat(meterRegistry.get("app_stream_batch_bytes").summary().totalAmount())
+                .isEqualTo(16.0);
+    }
+
+    @Test
+    void pendingChunksAreFlushedAfterMaxDelay() throws Exception {
+        var coalescer = coalescer(true, 1024, Duration.ofMillis(20));
+        Sinks.Many<String> upstream = Sinks.many().unicast().onBackpressureBuffer();
+        List<String> batches = new CopyOnWriteArrayList<>();
+
+        coalescer.coalesce(upstream.asFlux()).subscribe(batches::add);
+
+        upstream.tryEmitNext("first");
+        upstream.tryEmitNext("x");
+        upstream.tryEmitNext("y");
+        Thread.sleep(300L);
+
+        assertThat(batches).containsExactly("first", "xy");
+        assertThat(flushes("time")).isEqualTo(1.0);
+
+        upstream.tryEmitComplete();
+    }
+
+    @Test
+    void upstreamIsNotDrainedWhileDownstreamHasNoDemand() throws Exception {
+        var coalescer = coalescer(true, 16, Duration.ofMillis(5));
+        AtomicLong upstreamRequested = new AtomicLong();
+        Flux<String> upstream =
+                Flux.fromStream(IntStream.range(0, 10_000).mapToObj(i -> "chunk"))
+                        .doOnRequest(upstreamRequested::addAndGet);
+
+        var subscriber = new OneByOneSubscriber();
+        coalescer.coalesce(upstream).subscribe(subscriber);
+        Thread.sleep(200L);
+
+        // first chunk emitted, then at most 'max_bytes' buffered and nothing more requested
+        assertThat(subscriber.received).containsExactly("chunk");
+        assertThat(upstreamRequested.get()).isLessThanOrEqualTo(5L);
+
+        subscriber.cancel();
+    }
+
+    @Test
+    void disabledBatchingPassesChunksThrough() {
+        var coalescer = coalescer(false, 8, Duration.ofMillis(20));
+
+        List<String> batches = coalescer.coalesce(Flux.just("a", "b", "c")).collectList().block();
+
+        assertThat(batches).containsExactly("a", "b", "c");
+    }
+
+    @Test
+    void utf8LengthCountsMultiByteCharacters() {
+        assertThat(StreamChunkCoalescer.utf8Length("abc")).isEqualTo(3);
+        assertThat(StreamChunkCoalescer.utf8Length("é")).isEqualTo(2);
+        assertThat(StreamChunkCoalescer.utf8Length("€")).isEqualTo(3);
+        assertThat(StreamChunkCoalescer.utf8Length("😀")).isEqualTo(4);
+    }
+
+    private StreamChunkCoalescer coalescer(boolean enabled, int maxBytes, Duration maxDelay) {
+        return new StreamChunkCoalescer(
+                new ChatProperties.StreamBatching(enabled, maxBytes, maxDelay), meterRegistry);
+    }
+
+    private double flushes(String trigger) {
+        return meterRegistry
+                .get("app_stream_flushes_total")
+                .tag("trigger", trigger)
+                .counter()
+                .count();
+    }
+
+    private static final class OneByOneSubscriber extends BaseSubscriber<String> {
+
+        private final List<String> received = new CopyOnWriteArrayList<>();
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+            request(1);
+        }
+
+        @Override
+        protected void hookOnNext(String value) {
+            received.add(value);
+        }
+    }
+}